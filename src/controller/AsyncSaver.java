@@ -0,0 +1,205 @@
+package controller;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.imagerepresentation.Image;
+
+/**
+ * Encodes and writes images on a pool of background threads, so a script can go on with its next
+ * lines while a save is being encoded. Each save works on a copy of the image taken when it is
+ * queued, so later changes to the image cannot reach the file. At most twice as many saves as
+ * there are threads are running or queued; queueing another one waits until one finishes, which
+ * bounds the memory held by the copies.
+ *
+ * <p>Errors are kept until {@link #checkErrors()} or {@link #flush()} reports them, in the order
+ * the saves were queued. A save is queued behind a pending save to the same file, so the last one
+ * queued is the one that ends up on disk.
+ */
+final class AsyncSaver implements AutoCloseable {
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final ImageLoader loader;
+  private final ExecutorService pool;
+  private final Semaphore slots;
+  private final List<PendingSave> pending = new ArrayList<>();
+
+  /**
+   * Creates a saver with the given number of threads.
+   *
+   * @param loader  The loader that encodes and writes the files.
+   * @param threads The number of saves encoded at once.
+   */
+  AsyncSaver(ImageLoader loader, int threads) {
+    this.loader = loader;
+    this.slots = new Semaphore(threads * 2);
+    this.pool = Executors.newFixedThreadPool(threads, task -> {
+      Thread thread = new Thread(task, "image-save-" + THREAD_COUNT.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Queues a save of a copy of the image, waiting while the queue is full.
+   *
+   * @param imagePath The path to save the image to.
+   * @param image     The image to save.
+   */
+  void save(String imagePath, Image image) {
+    if (image == null) {
+      throw new IllegalArgumentException("Image to save cannot be null.");
+    }
+    Path path = normalize(imagePath);
+    if (isPending(path)) {
+      flush();
+    }
+    if ((long) image.getWidth() * image.getHeight() > Integer.MAX_VALUE - 8) {
+      // Too large for a packed copy; write it before going on
+      loader.saveImage(imagePath, image);
+      return;
+    }
+    Image snapshot = snapshot(image);
+    try {
+      slots.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while queueing a save", e);
+    }
+    try {
+      pending.add(new PendingSave(path, pool.submit(() -> {
+        try {
+          loader.saveImage(imagePath, snapshot);
+        } finally {
+          slots.release();
+        }
+      })));
+    } catch (RuntimeException e) {
+      slots.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns whether a save to the given file is queued or running.
+   *
+   * @param imagePath The path of the file.
+   * @return true if the file may still be written.
+   */
+  boolean isPending(String imagePath) {
+    return isPending(normalize(imagePath));
+  }
+
+  /**
+   * Throws the error of the first save that has failed, if any, forgetting the saves that have
+   * finished.
+   */
+  void checkErrors() {
+    Iterator<PendingSave> saves = pending.iterator();
+    while (saves.hasNext()) {
+      PendingSave save = saves.next();
+      if (!save.future.isDone()) {
+        continue;
+      }
+      saves.remove();
+      rethrow(save.future);
+    }
+  }
+
+  /**
+   * Waits for every queued save to finish and throws the error of the first one that failed.
+   */
+  void flush() {
+    RuntimeException first = null;
+    for (PendingSave save : pending) {
+      try {
+        rethrow(save.future);
+      } catch (RuntimeException e) {
+        if (first == null) {
+          first = e;
+        }
+      }
+    }
+    pending.clear();
+    if (first != null) {
+      throw first;
+    }
+  }
+
+  /**
+   * Waits for the queued saves and stops the threads. Errors are not reported; call
+   * {@link #flush()} first to see them.
+   */
+  @Override
+  public void close() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      // Already failing, or the caller chose not to flush
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private boolean isPending(Path path) {
+    for (PendingSave save : pending) {
+      if (save.path.equals(path) && !save.future.isDone()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Image snapshot(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = new int[width * height];
+    image.readRegion(0, 0, width, height, pixels, 0, width);
+    return Image.wrapPacked(width, height, pixels);
+  }
+
+  private static void rethrow(Future<?> future) {
+    try {
+      future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Could not save image", cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a save", e);
+    }
+  }
+
+  private static Path normalize(String file) {
+    return Paths.get(file).toAbsolutePath().normalize();
+  }
+
+  /**
+   * A save that has been queued, with the file it writes.
+   */
+  private static final class PendingSave {
+
+    private final Path path;
+    private final Future<?> future;
+
+    PendingSave(Path path, Future<?> future) {
+      this.path = path;
+      this.future = future;
+    }
+  }
+}
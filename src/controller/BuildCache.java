@@ -0,0 +1,368 @@
+package controller;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageFile;
+import model.imagerepresentation.Workspace;
+
+/**
+ * Keeps the images a script computes in a directory, so that running the script again loads the
+ * results of unchanged lines instead of computing them, much as make skips targets that are up to
+ * date. Every image name a script writes gets a digest of how it was made: a load hashes the bytes
+ * of its file together with its crop and subsampling, and an image operation hashes its command and
+ * parameters together with the digests of the images it reads. Changing a parameter or an input
+ * file therefore changes the digests of everything computed from it, and only those lines run
+ * again. Each result is stored as an uncompressed {@link ImageFile} named after its digest and is
+ * mapped into memory when it is used again.
+ *
+ * <p>Names written by anything other than the script's own lines, such as images the caller put in
+ * the workspace, have no digest, so lines reading them are neither looked up nor stored. File
+ * hashes are remembered per path, size and modification time for the life of the cache. Once the
+ * directory holds more than its size limit, {@link #trim()} deletes the least recently used
+ * results. All methods are thread-safe.
+ */
+final class BuildCache {
+
+  // Part of every key, so that results computed differently by older code are not reused
+  private static final String FORMAT = "1";
+  private static final String SUFFIX = ".img";
+  private static final int HASH_BUFFER_BYTES = 1 << 20;
+
+  private final Path directory;
+  private final long maxBytes;
+  // The digest of every name whose image came from a cached or cacheable line
+  private final Map<String, Digest> digests = new ConcurrentHashMap<>();
+  // Hashes of file contents, keyed by path, size and modification time
+  private final Map<String, String> fileHashes = new ConcurrentHashMap<>();
+  private long hits;
+  private long misses;
+  private long stored;
+  private long storedBytes;
+  private long evicted;
+  private long size;
+
+  /**
+   * Creates a cache in a directory, creating the directory if needed.
+   *
+   * @param directory The directory holding the results.
+   * @param maxBytes  The size the results are trimmed to.
+   * @throws IOException if the directory cannot be created.
+   */
+  BuildCache(Path directory, long maxBytes) throws IOException {
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Cache size cannot be negative");
+    }
+    this.directory = Files.createDirectories(directory);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the key of a load command from the contents of its file.
+   *
+   * @param parts The parts of the load command.
+   * @return The key, or null if the file cannot be read, in which case the load reports it.
+   */
+  String loadKey(String[] parts) {
+    if (parts.length < 3) {
+      return null;
+    }
+    String hash;
+    try {
+      hash = fileHash(Paths.get(parts[1]));
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+    int dot = parts[1].lastIndexOf('.');
+    StringBuilder key = new StringBuilder("load ")
+        .append(dot >= 0 ? parts[1].substring(dot + 1).toLowerCase() : "").append(' ')
+        .append(hash);
+    for (int i = 3; i < parts.length; i++) {
+      key.append(' ').append(parts[i]);
+    }
+    return hash(key.toString());
+  }
+
+  /**
+   * Returns the key of an image operation from the digests of the images it reads now.
+   *
+   * @param command   The command about to run.
+   * @param workspace The workspace holding its images.
+   * @return The key, or null if the command is not cached.
+   */
+  String key(ScriptCommand command, Workspace workspace) {
+    if (!command.isImageOperation()) {
+      return null;
+    }
+    Map<String, String> tokens = new HashMap<>();
+    for (String read : command.getReads()) {
+      Digest digest = digests.get(read);
+      Image image = digest != null ? digest.image.get() : null;
+      if (image == null || workspace.get(read) != image) {
+        return null;
+      }
+      tokens.put(read, digest.value);
+    }
+    String description = ScriptMemo.describe(command, tokens);
+    return description != null ? hash(description) : null;
+  }
+
+  /**
+   * Returns the results stored for a key, and counts a hit or a miss.
+   *
+   * @param key     The key of the command.
+   * @param outputs The number of images the command writes.
+   * @return The images in the order of the command's writes, or null if any is missing.
+   */
+  List<Image> fetch(String key, int outputs) {
+    List<Image> images = new ArrayList<>();
+    try {
+      for (int i = 0; i < outputs; i++) {
+        Path path = entry(key, i);
+        images.add(ImageFile.map(path));
+        // Recently used results are the last to be evicted
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+      }
+    } catch (IOException e) {
+      // Missing, evicted meanwhile or unreadable: compute the images again
+      synchronized (this) {
+        misses++;
+      }
+      return null;
+    }
+    synchronized (this) {
+      hits++;
+    }
+    return images;
+  }
+
+  /**
+   * Stores the results of a command that has just run. A result that cannot be written is left
+   * out; the command then runs again the next time.
+   *
+   * @param key    The key the command had before it ran.
+   * @param images The images in the order of the command's writes.
+   */
+  void store(String key, List<Image> images) {
+    for (int i = 0; i < images.size(); i++) {
+      Path path = entry(key, i);
+      Path temporary = null;
+      try {
+        // Unique, so that runs storing the same result at once do not write into one file
+        temporary = Files.createTempFile(directory, key, ".tmp");
+        ImageFile.write(temporary, images.get(i), false);
+        long bytes = Files.size(temporary);
+        try {
+          Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        synchronized (this) {
+          stored++;
+          storedBytes += bytes;
+        }
+      } catch (IOException e) {
+        try {
+          if (temporary != null) {
+            Files.deleteIfExists(temporary);
+          }
+        } catch (IOException ignored) {
+          // Left for a later trim
+        }
+      }
+    }
+  }
+
+  /**
+   * Records the digests of the images a command has just stored.
+   *
+   * @param command   The command.
+   * @param key       The key the command had before it ran, or null if it has none.
+   * @param workspace The workspace holding its images.
+   */
+  void written(ScriptCommand command, String key, Workspace workspace) {
+    List<String> writes = command.getWrites();
+    for (int i = 0; i < writes.size(); i++) {
+      Image image = key != null ? workspace.get(writes.get(i)) : null;
+      if (image != null) {
+        digests.put(writes.get(i), new Digest(key + "-" + i, image));
+      } else {
+        digests.remove(writes.get(i));
+      }
+    }
+  }
+
+  /**
+   * Records the digest of an image that was just loaded.
+   *
+   * @param parts The parts of the load command.
+   * @param key   The key of the load, or null if it has none.
+   * @param image The loaded image.
+   */
+  void loaded(String[] parts, String key, Image image) {
+    if (key != null) {
+      digests.put(parts[2], new Digest(key + "-0", image));
+    } else {
+      digests.remove(parts[2]);
+    }
+  }
+
+  /**
+   * Deletes the least recently used results until the directory holds no more than the size
+   * limit, along with files left by interrupted writes.
+   *
+   * @throws IOException if the directory cannot be listed.
+   */
+  void trim() throws IOException {
+    List<Path> entries = new ArrayList<>();
+    Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path : stream) {
+        try {
+          BasicFileAttributes attribute = Files.readAttributes(path, BasicFileAttributes.class);
+          String name = path.getFileName().toString();
+          if (name.endsWith(".tmp") && attribute.lastModifiedTime().toMillis()
+              < System.currentTimeMillis() - 24 * 60 * 60 * 1000L) {
+            Files.deleteIfExists(path);
+          } else if (name.endsWith(SUFFIX) && attribute.isRegularFile()) {
+            entries.add(path);
+            attributes.put(path, attribute);
+          }
+        } catch (NoSuchFileException e) {
+          // Removed by another run meanwhile
+        }
+      }
+    }
+    entries.sort(Comparator.comparing(path -> attributes.get(path).lastModifiedTime()));
+    long total = 0;
+    for (Path path : entries) {
+      total += attributes.get(path).size();
+    }
+    long removed = 0;
+    for (int i = 0; i < entries.size() && total > maxBytes; i++) {
+      try {
+        Files.deleteIfExists(entries.get(i));
+        total -= attributes.get(entries.get(i)).size();
+        removed++;
+      } catch (IOException e) {
+        // Still mapped on a platform that cannot delete it; try the next one
+      }
+    }
+    synchronized (this) {
+      evicted += removed;
+      size = total;
+    }
+  }
+
+  /**
+   * Returns how many lines loaded their results from the cache.
+   *
+   * @return The number of hits.
+   */
+  synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns how many lines were looked up but had to be computed.
+   *
+   * @return The number of misses.
+   */
+  synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns a one-line summary of the cache: hits, misses, results stored and evicted, and the
+   * size of the directory as of the last trim.
+   *
+   * @return The summary.
+   */
+  synchronized String report() {
+    return String.format("Build cache: %d hits, %d misses, %d images stored (%.1f MB), "
+            + "%d evicted, %.1f of %.1f MB in use.", hits, misses, stored, storedBytes / 1e6,
+        evicted, size / 1e6, maxBytes / 1e6);
+  }
+
+  private Path entry(String key, int index) {
+    return directory.resolve(key + "-" + index + SUFFIX);
+  }
+
+  private String fileHash(Path path) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    String stamp = path.toAbsolutePath() + "|" + attributes.size() + "|"
+        + attributes.lastModifiedTime().toMillis();
+    String hash = fileHashes.get(stamp);
+    if (hash == null) {
+      MessageDigest digest = sha256();
+      ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_BYTES);
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        while (channel.read(buffer) >= 0) {
+          buffer.flip();
+          digest.update(buffer);
+          buffer.clear();
+        }
+      }
+      hash = hex(digest.digest());
+      fileHashes.put(stamp, hash);
+    }
+    return hash;
+  }
+
+  private static String hash(String description) {
+    return hex(sha256().digest((FORMAT + " " + description).getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * How a stored image was made, with the image it was recorded for.
+   */
+  private static final class Digest {
+
+    final String value;
+    final WeakReference<Image> image;
+
+    Digest(String value, Image image) {
+      this.value = value;
+      this.image = new WeakReference<>(image);
+    }
+  }
+}
@@ -19,6 +19,8 @@ import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.ImagePool;
+import model.imagerepresentation.Workspace;
 import model.transformations.classes.ColorCorrection;
 import model.transformations.classes.ColorRepresentation;
 import model.transformations.classes.ColorTransformation;
@@ -37,10 +39,15 @@ import view.GUI;
  */
 public class GUIController {
 
+  private static final String PREVIEW_IMAGE = "previewImage";
+
   public ImageOperations imageOperations;
   public ImageLoader imageLoader;
   private GUI view;
 
+  // Buffers of replaced current images and discarded previews, reused by later operations
+  private final ImagePool imagePool;
+
   /**
    * Creates a new controller with a GUI view and image processing capabilities. Sets up image
    * operations and image loader.
@@ -49,8 +56,11 @@ public class GUIController {
    */
   public GUIController(GUI view) {
     this.view = view;
-    this.imageOperations = new ImageOperations();
+    // Each window has its own workspace, so its image names never clash with another window's
+    this.imageOperations = new ImageOperations(new Workspace());
     this.imageLoader = new ImageLoader();
+    this.imagePool = new ImagePool();
+    this.imageOperations.setImagePool(imagePool);
   }
 
   /**
@@ -67,7 +77,7 @@ public class GUIController {
         if (currentImage == null) {
           throw new Exception("Failed to load image: Image object is null.");
         }
-        imageOperations.saveImage("currentImage", currentImage);
+        replaceCurrentImage(currentImage);
         view.setCurrentImage(currentImage);
         displayImage(currentImage);
         updateHistogram(currentImage);
@@ -111,7 +121,7 @@ public class GUIController {
    * @param component Color component to visualize (red, green, or blue)
    */
   public void visualizeComponent(String component) {
-    ComponentVisualization visualizer = new ComponentVisualization();
+    ComponentVisualization visualizer = new ComponentVisualization(imageOperations.getWorkspace());
     String tempDestName = "temp_" + component + "_component_image.ppm";
 
     switch (component.toLowerCase()) {
@@ -130,8 +140,7 @@ public class GUIController {
         return;
     }
 
-    Image currentImage = imageOperations.getImage(tempDestName);
-    imageOperations.saveImage("currentImage", currentImage);
+    Image currentImage = promote(tempDestName);
     view.setCurrentImage(currentImage);
     displayImage(currentImage);
     updateHistogram(currentImage, component);
@@ -152,7 +161,7 @@ public class GUIController {
     }
 
     try {
-      Flipping flipper = new Flipping();
+      Flipping flipper = new Flipping(imageOperations.getWorkspace());
       String flippedImageName = horizontal ? "flipped_horizontal" : "flipped_vertical";
 
       if (horizontal) {
@@ -161,8 +170,7 @@ public class GUIController {
         flipper.verticalFlip("currentImage", flippedImageName);
       }
 
-      currentImage = imageOperations.getImage(flippedImageName);
-      imageOperations.saveImage("currentImage", currentImage);
+      currentImage = promote(flippedImageName);
       view.setCurrentImage(currentImage);
       displayImage(currentImage);
       updateHistogram(currentImage);
@@ -189,7 +197,7 @@ public class GUIController {
     }
 
     try {
-      Filtering filter = new Filtering();
+      Filtering filter = new Filtering(imageOperations.getWorkspace());
       String filteredImageName = "filtered_" + filterType;
 
       if ("blur".equals(filterType)) {
@@ -202,8 +210,7 @@ public class GUIController {
         return;
       }
 
-      currentImage = imageOperations.getImage(filteredImageName);
-      imageOperations.saveImage("currentImage", currentImage);
+      currentImage = promote(filteredImageName);
       view.setCurrentImage(currentImage);
       displayImage(currentImage);
       updateHistogram(currentImage);
@@ -227,15 +234,14 @@ public class GUIController {
     }
 
     try {
-      ColorRepresentation colorRep = new ColorRepresentation();
+      ColorRepresentation colorRep = new ColorRepresentation(imageOperations.getWorkspace());
       String tempDestName = "temp_luma_grayscale_image.ppm";
 
       // Apply the luma transformation
       colorRep.lumaComponent("currentImage", tempDestName);
 
       // Update currentImage and save the transformed image
-      currentImage = imageOperations.getImage(tempDestName);
-      imageOperations.saveImage("currentImage", currentImage);
+      currentImage = promote(tempDestName);
       view.setCurrentImage(currentImage);
 
       // Display the updated image in the view
@@ -266,7 +272,7 @@ public class GUIController {
     }
 
     try {
-      ColorTransformation colorTrans = new ColorTransformation();
+      ColorTransformation colorTrans = new ColorTransformation(imageOperations.getWorkspace());
       String tempDestName = "temp_" + transformationType + "_image.ppm";
 
       if ("sepia".equals(transformationType)) {
@@ -280,8 +286,7 @@ public class GUIController {
         return;
       }
 
-      currentImage = imageOperations.getImage(tempDestName);
-      imageOperations.saveImage("currentImage", currentImage);
+      currentImage = promote(tempDestName);
       view.setCurrentImage(currentImage);
       displayImage(currentImage);
       updateHistogram(currentImage);
@@ -308,12 +313,11 @@ public class GUIController {
     }
 
     try {
-      ImageCompression compressor = new ImageCompression();
+      ImageCompression compressor = new ImageCompression(imageOperations.getWorkspace());
       String compressedImageName = "compressed_image";
 
       compressor.compress(compressionFactor, "currentImage", compressedImageName);
-      currentImage = imageOperations.getImage(compressedImageName);
-      imageOperations.saveImage("currentImage", currentImage);
+      currentImage = promote(compressedImageName);
       view.setCurrentImage(currentImage);
       displayImage(currentImage);
       updateHistogram(currentImage);
@@ -338,12 +342,11 @@ public class GUIController {
     }
 
     try {
-      ColorCorrection colorCorrector = new ColorCorrection();
+      ColorCorrection colorCorrector = new ColorCorrection(imageOperations.getWorkspace());
       String tempDestName = "temp_color_corrected_image.ppm";
 
       colorCorrector.colorCorrect("currentImage", tempDestName, splitPositionPercentage);
-      currentImage = imageOperations.getImage(tempDestName);
-      imageOperations.saveImage("currentImage", currentImage);
+      currentImage = promote(tempDestName);
       view.setCurrentImage(currentImage);
       displayImage(currentImage);
       updateHistogram(currentImage);
@@ -375,7 +378,7 @@ public class GUIController {
       }
 
       // Apply level adjustment to the image using the model
-      LevelAdjust levelAdjuster = new LevelAdjust();
+      LevelAdjust levelAdjuster = new LevelAdjust(imageOperations.getWorkspace());
       String adjustedImageName = "adjusted_levels_image";
 
       System.out.println(
@@ -384,8 +387,7 @@ public class GUIController {
       levelAdjuster.levelsAdjust(black, mid, white, "currentImage", adjustedImageName, 100);
 
       // Update current image in view and model
-      Image adjustedImage = imageOperations.getImage(adjustedImageName);
-      imageOperations.saveImage("currentImage", adjustedImage);
+      Image adjustedImage = promote(adjustedImageName);
       view.setCurrentImage(adjustedImage);
       displayImage(adjustedImage);
       updateHistogram(adjustedImage);
@@ -438,12 +440,11 @@ public class GUIController {
     }
 
     try {
-      ImageDownsizing downsizer = new ImageDownsizing();
+      ImageDownsizing downsizer = new ImageDownsizing(imageOperations.getWorkspace());
       String downsizedImageName = "downsized_image";
 
       downsizer.downsize("currentImage", downsizedImageName, targetWidth, targetHeight);
-      currentImage = imageOperations.getImage(downsizedImageName);
-      imageOperations.saveImage("currentImage", currentImage);
+      currentImage = promote(downsizedImageName);
       view.setCurrentImage(currentImage);
       displayImage(currentImage);
       updateHistogram(currentImage);
@@ -505,6 +506,7 @@ public class GUIController {
 
       Image previewImage = applySplitPreview(currentImage, operation, splitPosition);
       BufferedImage bufferedImage = ImageLoader.convertToBufferedImage(previewImage);
+      discardPreview(previewImage, currentImage);
       BufferedImage scaledImage = drawSplitLine(bufferedImage, splitPosition,
           previewImageLabel.getWidth(), previewImageLabel.getHeight());
       previewImageLabel.setIcon(new ImageIcon(scaledImage));
@@ -523,6 +525,7 @@ public class GUIController {
     int initialSplitPosition = splitSlider.getValue();
     Image previewImage = applySplitPreview(currentImage, operation, initialSplitPosition);
     BufferedImage bufferedImage = ImageLoader.convertToBufferedImage(previewImage);
+    discardPreview(previewImage, currentImage);
     BufferedImage scaledImage = drawSplitLine(bufferedImage, initialSplitPosition, 600, 450);
     previewImageLabel.setIcon(new ImageIcon(scaledImage));
 
@@ -540,26 +543,26 @@ public class GUIController {
    */
   public Image applySplitPreview(Image image, String operation, int splitPosition) {
     try {
-      String previewImageName = "previewImage";
+      String previewImageName = PREVIEW_IMAGE;
       switch (operation) {
         case "blur":
-          Filtering filter = new Filtering();
+          Filtering filter = new Filtering(imageOperations.getWorkspace());
           filter.blur("currentImage", previewImageName, splitPosition);
           break;
         case "sharpen":
-          Filtering sharpenFilter = new Filtering();
+          Filtering sharpenFilter = new Filtering(imageOperations.getWorkspace());
           sharpenFilter.sharpen("currentImage", previewImageName, splitPosition);
           break;
         case "sepia":
-          ColorTransformation sepiaTrans = new ColorTransformation();
+          ColorTransformation sepiaTrans = new ColorTransformation(imageOperations.getWorkspace());
           sepiaTrans.sepia("currentImage", previewImageName, splitPosition);
           break;
         case "greyscale":
-          ColorTransformation greyTrans = new ColorTransformation();
+          ColorTransformation greyTrans = new ColorTransformation(imageOperations.getWorkspace());
           greyTrans.greyscale("currentImage", previewImageName, splitPosition);
           break;
         case "colorCorrect":
-          ColorCorrection colorCorrection = new ColorCorrection();
+          ColorCorrection colorCorrection = new ColorCorrection(imageOperations.getWorkspace());
           colorCorrection.colorCorrect("currentImage", previewImageName, splitPosition);
           break;
         case "levelsAdjust":
@@ -567,7 +570,7 @@ public class GUIController {
           int black = Integer.parseInt(view.getBlackTextField().getText().trim());
           int mid = Integer.parseInt(view.getMidTextField().getText().trim());
           int white = Integer.parseInt(view.getWhiteTextField().getText().trim());
-          LevelAdjust levelAdjust = new LevelAdjust();
+          LevelAdjust levelAdjust = new LevelAdjust(imageOperations.getWorkspace());
           levelAdjust.levelsAdjust(black, mid, white, "currentImage", previewImageName,
               splitPosition);
           break;
@@ -582,6 +585,24 @@ public class GUIController {
     return image;
   }
 
+  /**
+   * Hands a preview that has been drawn back to the image pool, together with the histogram that
+   * levels adjustment generates for it, so the next slider tick can reuse their memory.
+   *
+   * @param previewImage The preview returned by applySplitPreview
+   * @param currentImage The image being previewed, which is kept
+   */
+  private void discardPreview(Image previewImage, Image currentImage) {
+    if (previewImage != currentImage) {
+      imageOperations.removeImage(PREVIEW_IMAGE);
+      imagePool.release(previewImage);
+    }
+    Image histogramImage = imageOperations.removeImage("histogram_" + PREVIEW_IMAGE);
+    if (histogramImage != null) {
+      imagePool.release(histogramImage);
+    }
+  }
+
   /**
    * Draws a split line on a buffered image to show preview boundaries. Creates a visual indicator
    * for split preview functionality.
@@ -642,13 +663,12 @@ public class GUIController {
           // Get the current values from the view and apply them
           int[] levels = view.getLevelAdjustmentValues();
           if (validateLevelValues(levels[0], levels[1], levels[2])) {
-            LevelAdjust levelAdjust = new LevelAdjust();
+            LevelAdjust levelAdjust = new LevelAdjust(imageOperations.getWorkspace());
             String adjustedImageName = "adjusted_levels_image";
             levelAdjust.levelsAdjust(levels[0], levels[1], levels[2], "currentImage",
                 adjustedImageName, 100);
 
-            Image adjustedImage = imageOperations.getImage(adjustedImageName);
-            imageOperations.saveImage("currentImage", adjustedImage);
+            Image adjustedImage = promote(adjustedImageName);
             view.setCurrentImage(adjustedImage);
             displayImage(adjustedImage);
             updateHistogram(adjustedImage);
@@ -664,6 +684,33 @@ public class GUIController {
   }
 
 
+  /**
+   * Makes the result stored under the given name the current image. The name is dropped so that
+   * the current image is the only reference to the result.
+   *
+   * @param imageName Name under which the operation saved its result
+   * @return The new current image
+   */
+  private Image promote(String imageName) {
+    Image image = imageOperations.getImage(imageName);
+    imageOperations.removeImage(imageName);
+    replaceCurrentImage(image);
+    return image;
+  }
+
+  /**
+   * Stores a new current image and returns the image it replaces to the image pool.
+   *
+   * @param image The new current image
+   */
+  private void replaceCurrentImage(Image image) {
+    Image previous = imageOperations.removeImage("currentImage");
+    imageOperations.saveImage("currentImage", image);
+    if (previous != null && previous != image) {
+      imagePool.release(previous);
+    }
+  }
+
   private void displayImage(Image image) {
     BufferedImage bufferedImage = ImageLoader.convertToBufferedImage(image);
     ImageIcon imageIcon = new ImageIcon(bufferedImage);
@@ -678,7 +725,7 @@ public class GUIController {
       return;
     }
 
-    Histogram histogram = new Histogram();
+    Histogram histogram = new Histogram(imageOperations.getWorkspace());
     Image histogramImage = histogram.createHistogram(image);
     BufferedImage histogramBufferedImage = ImageLoader.convertToBufferedImage(histogramImage);
     ImageIcon histogramIcon = new ImageIcon(histogramBufferedImage);
@@ -693,7 +740,7 @@ public class GUIController {
       return;
     }
 
-    Histogram histogram = new Histogram();
+    Histogram histogram = new Histogram(imageOperations.getWorkspace());
     Image histogramImage = histogram.createHistogram(image, component);
     BufferedImage histogramBufferedImage = ImageLoader.convertToBufferedImage(histogramImage);
     ImageIcon histogramIcon = new ImageIcon(histogramBufferedImage);
@@ -1,71 +1,87 @@
 package controller;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import model.imagerepresentation.Image;
-import model.imagerepresentation.Pixel;
+import model.imagerepresentation.ImageFile;
 
 /**
  * This class is responsible for loading and saving images. It supports reading and writing both PPM
- * and standard image formats.
+ * and standard image formats. PPM files can be ASCII (P3) or binary (P6), and greyscale images can
+ * be read and written as binary PGM (P5).
  */
 public class ImageLoader {
 
   // Supported image formats for saving images
-  private static final String[] SUPPORTED_FORMATS = {"png", "jpeg", "jpg", "ppm"};
+  private static final String[] SUPPORTED_FORMATS = {"png", "jpeg", "jpg", "ppm", "pgm", "img"};
+
+  // Memory layout of the images this loader creates
+  private final Image.Layout layout;
+
+  // Whether .ppm files are saved as binary P6 rather than ASCII P3
+  private boolean binaryPpm;
+
+  // Whether .img files are saved deflated rather than raw
+  private boolean compressImg;
 
   /**
-   * Converts a custom Image object to a BufferedImage for saving.
+   * Creates a loader that produces images in the default packed layout.
+   */
+  public ImageLoader() {
+    this(Image.Layout.PACKED);
+  }
+
+  /**
+   * Creates a loader that produces images in the given memory layout. Loading into
+   * {@link Image.Layout#PLANAR} lets channel operations such as rgb-split share planes instead of
+   * copying pixels.
    *
-   * @param image The custom Image object.
-   * @return A BufferedImage representing the same image.
+   * @param layout The layout of loaded images.
    */
-  public static BufferedImage convertToBufferedImage(Image image) {
-    BufferedImage bufferedImage = new BufferedImage(image.getWidth(), image.getHeight(),
-        BufferedImage.TYPE_INT_RGB);
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel pixel = image.getPixel(x, y);
-        int rgb = (pixel.getRed() << 16) | (pixel.getGreen() << 8) | pixel.getBlue();
-        bufferedImage.setRGB(x, y, rgb);
-      }
+  public ImageLoader(Image.Layout layout) {
+    if (layout == null) {
+      throw new IllegalArgumentException("Layout cannot be null.");
     }
-    return bufferedImage;
+    this.layout = layout;
   }
 
   /**
-   * Writes a custom Image object to a PPM file.
+   * Sets whether .ppm files are saved in the binary P6 format, which is much smaller and faster to
+   * read and write than the default ASCII P3 format. Loading detects the format on its own.
    *
-   * @param filePath The path to write the PPM file to.
-   * @param image    The Image object to save.
-   * @throws IOException If the file cannot be written.
+   * @param binaryPpm true to save P6, false to save P3.
    */
-  private static void writePPM(String filePath, Image image) throws IOException {
-    BufferedWriter bw = new BufferedWriter(new FileWriter(filePath));
-
-    int width = image.getWidth();
-    int height = image.getHeight();
-
-    bw.write("P3\n");
-    bw.write(width + " " + height + "\n");
-    bw.write("255\n");
+  public void setBinaryPpm(boolean binaryPpm) {
+    this.binaryPpm = binaryPpm;
+  }
 
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        Pixel pixel = image.getPixel(x, y);
-        bw.write(pixel.getRed() + "\n");
-        bw.write(pixel.getGreen() + "\n");
-        bw.write(pixel.getBlue() + "\n");
-      }
-    }
+  /**
+   * Sets whether .img files are saved with their tiles deflated. Raw files, the default, are
+   * loaded by mapping them into memory without reading them; deflated ones are smaller but are
+   * inflated into the heap when loaded.
+   *
+   * @param compressImg true to deflate, false to save the samples raw.
+   */
+  public void setCompressImg(boolean compressImg) {
+    this.compressImg = compressImg;
+  }
 
-    bw.close();
+  /**
+   * Converts a custom Image object to a BufferedImage for saving.
+   *
+   * @param image The custom Image object.
+   * @return A BufferedImage representing the same image.
+   */
+  public static BufferedImage convertToBufferedImage(Image image) {
+    return RasterConversion.toBufferedImage(image);
   }
 
   /**
@@ -84,15 +100,18 @@ public class ImageLoader {
 
   /**
    * Loads an image from a given path and stores it with the given name. It supports PPM format and
-   * other standard formats like PNG or JPEG.
+   * other standard formats like PNG or JPEG. Native .img files are mapped into memory rather than
+   * decoded, whatever layout this loader creates.
    *
    * @param imagePath The path of the image file to load.
    */
   public Image loadImage(String imagePath) {
     Image customImage;
     try {
-      if (imagePath.endsWith(".ppm")) {
-        customImage = readPPM(imagePath);
+      if (isNativeFile(imagePath)) {
+        customImage = ImageFile.map(Paths.get(imagePath));
+      } else if (canReadRows(imagePath)) {
+        customImage = readNetpbm(imagePath);
       } else {
         BufferedImage bufferedImage = ImageIO.read(new File(imagePath));
         if (bufferedImage != null) {
@@ -107,6 +126,40 @@ public class ImageLoader {
     return customImage;
   }
 
+  /**
+   * Loads part of an image, optionally keeping only every {@code subsampling}-th row and column.
+   * Only the part requested is decoded: ImageIO formats get the region and subsampling as read
+   * parameters, and PPM and PGM files skip the rows they do not need while being parsed. The
+   * result is {@code ceil(width / subsampling)} by {@code ceil(height / subsampling)} pixels for
+   * the region clipped to the image.
+   *
+   * @param imagePath   The path of the image file to load.
+   * @param region      The part of the image to load, or null for all of it.
+   * @param subsampling The distance between two rows or columns kept; 1 keeps every pixel.
+   * @return The loaded image.
+   * @throws IllegalArgumentException If the file cannot be loaded, the subsampling is not
+   *                                  positive or the region lies outside the image.
+   */
+  public Image loadImage(String imagePath, Rectangle region, int subsampling) {
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("Subsampling must be at least 1: " + subsampling);
+    }
+    if (region == null && subsampling == 1) {
+      return loadImage(imagePath);
+    }
+    try {
+      if (isNativeFile(imagePath)) {
+        return copyRegion(ImageFile.map(Paths.get(imagePath)), region, subsampling);
+      }
+      if (canReadRows(imagePath)) {
+        return NetpbmCodec.read(Paths.get(imagePath), layout, region, subsampling);
+      }
+      return readRegion(new File(imagePath), region, subsampling);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not load image: " + e.getMessage());
+    }
+  }
+
   /**
    * Saves an image to the specified file path. Supports saving in PPM and other standard image
    * formats.
@@ -123,11 +176,13 @@ public class ImageLoader {
         // Check if the format is supported
         if (!isSupportedFormat(format)) {
           throw new IllegalArgumentException("Unsupported file format: " + format
-              + ". Supported formats are: png, jpeg, jpg, ppm");
+              + ". Supported formats are: png, jpeg, jpg, ppm, pgm, img");
         }
 
-        if (format.equals("ppm")) {
-          writePPM(imagePath, imageToSave);
+        if (format.equals("img")) {
+          ImageFile.write(Paths.get(imagePath), imageToSave, compressImg);
+        } else if (format.equals("ppm") || format.equals("pgm")) {
+          NetpbmCodec.write(Paths.get(imagePath), imageToSave, netpbmKind(format));
         } else {
           BufferedImage bufferedImage = convertToBufferedImage(imageToSave);
           ImageIO.write(bufferedImage, format, new File(imagePath));
@@ -157,87 +212,161 @@ public class ImageLoader {
   }
 
   /**
-   * Reads a PPM image from the given file path.
+   * Returns whether {@link #openRowReader(String)} can read the given file a row at a time. This
+   * holds for the files {@link #loadImage(String)} reads itself rather than through ImageIO.
    *
-   * @param filePath The path of the PPM file to read.
-   * @return The Image object created from the PPM file.
-   * @throws IOException If the file cannot be read.
+   * @param imagePath The path of the image file.
+   * @return true for PPM and PGM files.
    */
-  private Image readPPM(String filePath) throws IOException {
-    BufferedReader br = new BufferedReader(new FileReader(filePath));
-    String startnum = br.readLine().trim();
+  static boolean canReadRows(String imagePath) {
+    int dotIndex = imagePath.lastIndexOf('.');
+    String format = imagePath.substring(dotIndex + 1).toLowerCase();
+    return dotIndex > 0 && (format.equals("ppm") || format.equals("pgm"));
+  }
 
-    // Makes sure the PPM file is valid
-    if (!startnum.equals("P3")) {
-      throw new IOException("Invalid PPM file format: " + startnum);
-    }
+  /**
+   * Opens a PPM or PGM file to be read a row at a time.
+   *
+   * @param imagePath The path of the file to read.
+   * @return A reader positioned at the first row.
+   * @throws IOException If the file cannot be opened or its header is not valid.
+   */
+  RowReader openRowReader(String imagePath) throws IOException {
+    return NetpbmCodec.openReader(Paths.get(imagePath));
+  }
 
-    // Skipping the comments
-    String line;
-    while ((line = br.readLine()) != null) {
-      line = line.trim();
-      if (line.startsWith("#")) {
-        continue;
-      }
-      break;
+  /**
+   * Returns whether {@link #openRowWriter(String, int, int)} can write the given file a row at a
+   * time.
+   *
+   * @param imagePath The path of the image file.
+   * @return true for PPM, PGM and PNG files.
+   */
+  static boolean canWriteRows(String imagePath) {
+    int dotIndex = imagePath.lastIndexOf('.');
+    String format = imagePath.substring(dotIndex + 1).toLowerCase();
+    return dotIndex > 0 && (format.equals("ppm") || format.equals("pgm") || format.equals("png"));
+  }
+
+  /**
+   * Creates a PPM, PGM or PNG file to be written a row at a time, in the same format
+   * {@link #saveImage(String, Image)} would use.
+   *
+   * @param imagePath The path of the file to write.
+   * @param width     The width of the image.
+   * @param height    The height of the image.
+   * @return A writer expecting the first row.
+   * @throws IOException If the file cannot be created.
+   */
+  RowWriter openRowWriter(String imagePath, int width, int height) throws IOException {
+    String format = getFileExtension(imagePath);
+    if (format.equals("png")) {
+      return new PngWriter(Paths.get(imagePath), width, height);
     }
+    return NetpbmCodec.openWriter(Paths.get(imagePath), netpbmKind(format), width, height);
+  }
+
+  /**
+   * Returns the layout of the images this loader creates.
+   *
+   * @return The layout.
+   */
+  Image.Layout getLayout() {
+    return layout;
+  }
 
-    // Read width and height
-    String[] dimensions = line.split("\\s+");
-    int width = Integer.parseInt(dimensions[0]);
-    int height = Integer.parseInt(dimensions[1]);
-
-    // Reading max color value
-    line = br.readLine().trim();
-    int maxColorValue = Integer.parseInt(line);
-
-    // Creates an Image object
-    Image image = new Image(width, height);
-
-    // Reads the pixel data
-    int[] rgbValues = new int[width * height * 3];
-    int index = 0;
-
-    while ((line = br.readLine()) != null) {
-      line = line.trim();
-      if (!line.isEmpty() && !line.startsWith("#")) {
-        String[] values = line.split("\\s+");
-        for (String value : values) {
-          rgbValues[index++] = Integer.parseInt(value);
-          if (index >= rgbValues.length) {
-            break;
+  /**
+   * Decodes part of an image through ImageIO, letting the reader skip what is not needed.
+   *
+   * @param file        The file to read.
+   * @param region      The part of the image to decode, or null for all of it.
+   * @param subsampling The distance between two rows or columns kept.
+   * @return The decoded image.
+   * @throws IOException If the file cannot be read.
+   */
+  private Image readRegion(File file, Rectangle region, int subsampling) throws IOException {
+    if (!file.canRead()) {
+      throw new IOException("Can't read input file!");
+    }
+    try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+      Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+      if (readers == null || !readers.hasNext()) {
+        throw new IOException("Image could not be loaded.");
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (region != null) {
+          Rectangle area = region.intersection(
+              new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0)));
+          if (area.isEmpty()) {
+            throw new IllegalArgumentException("Region " + region.width + "x" + region.height
+                + " at " + region.x + "," + region.y + " lies outside the image");
           }
+          param.setSourceRegion(area);
         }
-      }
-      if (index >= rgbValues.length) {
-        break;
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return convertToCustomImage(reader.read(0, param));
+      } finally {
+        reader.dispose();
       }
     }
+  }
 
-    // Sets the pixel values
-    index = 0;
+  /**
+   * Copies part of a mapped image into a new image, keeping every {@code subsampling}-th row and
+   * column. Only the rows kept are touched, so only their pages of the file are read.
+   *
+   * @param source      The mapped image.
+   * @param region      The part of the image to copy, or null for all of it.
+   * @param subsampling The distance between two rows or columns kept.
+   * @return The copy, in this loader's layout.
+   */
+  private Image copyRegion(Image source, Rectangle region, int subsampling) {
+    Rectangle area = new Rectangle(0, 0, source.getWidth(), source.getHeight());
+    if (region != null) {
+      area = region.intersection(area);
+      if (area.isEmpty()) {
+        throw new IllegalArgumentException("Region " + region.width + "x" + region.height
+            + " at " + region.x + "," + region.y + " lies outside the image");
+      }
+    }
+    int width = (area.width + subsampling - 1) / subsampling;
+    int height = (area.height + subsampling - 1) / subsampling;
+    Image image = Image.allocateUninitialized(width, height, layout);
+    int[] row = new int[area.width];
+    int[] kept = new int[width];
     for (int y = 0; y < height; y++) {
+      source.readRegion(area.x, area.y + y * subsampling, area.width, 1, row, 0, area.width);
       for (int x = 0; x < width; x++) {
-        int r = clamp((rgbValues[index++] * 255) / maxColorValue);
-        int g = clamp((rgbValues[index++] * 255) / maxColorValue);
-        int b = clamp((rgbValues[index++] * 255) / maxColorValue);
-
-        image.setPixel(x, y, new Pixel(r, g, b));
+        kept[x] = row[x * subsampling];
       }
+      image.writeRow(y, kept);
     }
-
-    br.close();
     return image;
   }
 
+  private static boolean isNativeFile(String imagePath) {
+    return imagePath.toLowerCase().endsWith(".img");
+  }
+
   /**
-   * Clamps a value to make sure it's between 0 and 255.
+   * Reads a PPM or PGM image in whichever of the ASCII or binary formats the file uses.
    *
-   * @param value The value to be clamped.
-   * @return The clamped value.
+   * @param filePath The path of the file to read.
+   * @return The Image object created from the file.
+   * @throws IOException If the file cannot be read.
    */
-  private int clamp(int value) {
-    return Math.max(0, Math.min(value, 255));
+  private Image readNetpbm(String filePath) throws IOException {
+    return NetpbmCodec.read(Paths.get(filePath), layout);
+  }
+
+  private char netpbmKind(String format) {
+    if (format.equals("pgm")) {
+      return '5';
+    }
+    return binaryPpm ? '6' : '3';
   }
 
   /**
@@ -247,20 +376,7 @@ public class ImageLoader {
    * @return A custom Image object.
    */
   private Image convertToCustomImage(BufferedImage bufferedImage) {
-    int width = bufferedImage.getWidth();
-    int height = bufferedImage.getHeight();
-    Image image = new Image(width, height);
-
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        int rgb = bufferedImage.getRGB(x, y);
-        int r = (rgb >> 16) & 0xFF;
-        int g = (rgb >> 8) & 0xFF;
-        int b = rgb & 0xFF;
-        image.setPixel(x, y, new Pixel(r, g, b));
-      }
-    }
-    return image;
+    return RasterConversion.toImage(bufferedImage, layout);
   }
 
 }
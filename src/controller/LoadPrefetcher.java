@@ -0,0 +1,151 @@
+package controller;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.imagerepresentation.Image;
+
+/**
+ * Decodes the images of a script's load commands on a pool of background threads ahead of the
+ * lines that need them. At most as many loads as there are threads are decoded or waiting to be
+ * taken at a time, which bounds the memory spent on images loaded early.
+ *
+ * <p>A load is only started early when nothing before it in the script can change its file: loads
+ * after a barrier such as {@code run}, or after a save to the same file, run on their own line as
+ * usual. Each image is handed over when its line runs, and an error while decoding it is thrown
+ * there too, so the script fails at the same line and with the same error as without prefetching.
+ */
+final class LoadPrefetcher implements AutoCloseable {
+
+  /**
+   * Decodes the image of a load command.
+   */
+  interface Loader {
+
+    /**
+     * Loads an image.
+     *
+     * @param parts The load command and its arguments.
+     * @return The image.
+     */
+    Image load(String[] parts);
+  }
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final List<ScriptCommand> commands;
+  private final Loader loader;
+  private final ExecutorService pool;
+  private final int window;
+  private final List<Integer> loads;
+  private final Map<Integer, Future<Image>> pending = new HashMap<>();
+  private int nextLoad;
+
+  /**
+   * Starts decoding the first loads of a script.
+   *
+   * @param commands The commands of the script, in order.
+   * @param loader   Decodes the image of a load command.
+   * @param threads  The number of loads decoded at once.
+   */
+  LoadPrefetcher(List<ScriptCommand> commands, Loader loader, int threads) {
+    this.commands = commands;
+    this.loader = loader;
+    this.window = threads;
+    this.loads = prefetchable(commands);
+    this.pool = Executors.newFixedThreadPool(threads, task -> {
+      Thread thread = new Thread(task, "image-prefetch-" + THREAD_COUNT.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    fill();
+  }
+
+  /**
+   * Returns the indices of the load commands that can be decoded before their line runs.
+   *
+   * @param commands The commands of the script, in order.
+   * @return The indices, in increasing order.
+   */
+  static List<Integer> prefetchable(List<ScriptCommand> commands) {
+    List<Integer> loads = new ArrayList<>();
+    Set<Path> saved = new HashSet<>();
+    for (int i = 0; i < commands.size(); i++) {
+      ScriptCommand command = commands.get(i);
+      if (command.isBarrier()) {
+        break;
+      }
+      if (command.getName().equals("save")) {
+        saved.add(normalize(command.getParts()[1]));
+      } else if (command.getName().equals("load")
+          && !saved.contains(normalize(command.getParts()[1]))) {
+        loads.add(i);
+      }
+    }
+    return loads;
+  }
+
+  /**
+   * Takes the image decoded for a command, waiting for it if needed, and starts decoding the next
+   * load.
+   *
+   * @param index The index of the command in the script.
+   * @return The image, or null if the command was not prefetched and should run as usual.
+   */
+  Image take(int index) {
+    Future<Image> future = pending.remove(index);
+    if (future == null) {
+      return null;
+    }
+    fill();
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Could not load image", cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while loading an image", e);
+    }
+  }
+
+  /**
+   * Cancels the loads that have not been taken and stops the threads.
+   */
+  @Override
+  public void close() {
+    for (Future<Image> future : pending.values()) {
+      future.cancel(true);
+    }
+    pending.clear();
+    pool.shutdownNow();
+  }
+
+  private void fill() {
+    while (pending.size() < window && nextLoad < loads.size()) {
+      int index = loads.get(nextLoad++);
+      String[] parts = commands.get(index).getParts();
+      pending.put(index, pool.submit(() -> loader.load(parts)));
+    }
+  }
+
+  private static Path normalize(String file) {
+    return Paths.get(file).toAbsolutePath().normalize();
+  }
+}
@@ -1,99 +1,178 @@
-package controller;
-
-import java.util.Scanner;
-import model.imagerepresentation.ImageOperations;
-import view.ConsoleImageLoaderView;
-import view.GUI;
-
-/**
- * The Main class runs the image manipulation program. It can execute a script, run in interactive
- * text mode, or launch the GUI.
- */
-public class Main {
-
-  /**
-   * Main function of the code, where the application begins by getting user arguments.
-   *
-   * @param args is the command line argument the user feeds in.
-   */
-  public static void main(String[] args) {
-    // Checks the arguments to determine how to run the program
-    if (args.length == 0) {
-      // No arguments - launch the GUI
-      javax.swing.SwingUtilities.invokeLater(() -> new GUI());
-    } else if (args.length == 1 && "-text".equalsIgnoreCase(args[0])) {
-      // Interactive text mode
-      runInteractiveMode();
-    } else if (args.length == 2 && "-file".equalsIgnoreCase(args[0])) {
-      // Script mode
-      runScriptMode(args[1]);
-    } else {
-      System.out.println("Invalid arguments. Usage:");
-      System.out.println("java -jar Program.jar -file path-of-script-file");
-      System.out.println("java -jar Program.jar -text");
-      System.out.println("java -jar Program.jar");
-    }
-  }
-
-  /**
-   * Runs the program in interactive text mode.
-   */
-  private static void runInteractiveMode() {
-    // Creates an instance of ImageLoader to load images.
-    ImageLoader imageLoader = new ImageLoader();
-
-    // Creates an instance of ImageOperations using the images loaded by ImageLoader.
-    ImageOperations imageOperations = new ImageOperations();
-
-    ConsoleImageLoaderView view = new ConsoleImageLoaderView();
-
-    // Creates a ScriptParser to handle and parse script files interactively.
-    ScriptParser scriptParser = new ScriptParser(imageLoader, imageOperations, view);
-
-    Scanner scanner = new Scanner(System.in);
-    System.out.println(
-        "Interactive mode started. Type commands one line at a time. Type 'exit' to quit.");
-
-    while (true) {
-      System.out.print("> ");
-      String inputLine = scanner.nextLine().trim();
-      if ("exit".equalsIgnoreCase(inputLine)) {
-        System.out.println("Exiting interactive mode.");
-        break;
-      }
-      try {
-        scriptParser.executeLine(inputLine);
-      } catch (Exception e) {
-        System.out.println("Error processing command: " + e.getMessage());
-      }
-    }
-
-    scanner.close();
-  }
-
-  /**
-   * Runs the program in script mode with the given script file path.
-   *
-   * @param scriptPath The path to the script file to be executed.
-   */
-  private static void runScriptMode(String scriptPath) {
-    // Creates an instance of ImageLoader to load images.
-    ImageLoader imageLoader = new ImageLoader();
-
-    // Creates an instance of ImageOperations using the images loaded by ImageLoader.
-    ImageOperations imageOperations = new ImageOperations();
-
-    ConsoleImageLoaderView view = new ConsoleImageLoaderView();
-
-    // Creates a ScriptParser to handle and parse script files.
-    ScriptParser scriptParser = new ScriptParser(imageLoader, imageOperations, view);
-
-    try {
-      scriptParser.parseScript(scriptPath);
-    } catch (Exception e) {
-      System.out.println("Error processing script: " + e.getMessage());
-      e.printStackTrace();
-    }
-  }
-}
-
+package controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Scanner;
+import model.imagerepresentation.ImageOperations;
+import view.ConsoleImageLoaderView;
+import view.GUI;
+
+/**
+ * The Main class runs the image manipulation program. It can execute a script, run in interactive
+ * text mode, or launch the GUI.
+ */
+public class Main {
+
+  // The size a build cache given with -cache is trimmed to
+  private static final long BUILD_CACHE_BYTES = 2L << 30;
+
+  /**
+   * Main function of the code, where the application begins by getting user arguments.
+   *
+   * @param args is the command line argument the user feeds in.
+   */
+  public static void main(String[] args) {
+    // Checks the arguments to determine how to run the program
+    if (args.length == 0) {
+      // No arguments - launch the GUI
+      javax.swing.SwingUtilities.invokeLater(() -> new GUI());
+    } else if (args.length == 1 && "-text".equalsIgnoreCase(args[0])) {
+      // Interactive text mode
+      runInteractiveMode();
+    } else if (args.length >= 2 && "-file".equalsIgnoreCase(args[0])) {
+      // Script mode, with optional flags after the script
+      boolean prune = false;
+      boolean dryRun = false;
+      Path cache = null;
+      for (int i = 2; i < args.length; i++) {
+        if ("-prune".equalsIgnoreCase(args[i])) {
+          // Skip the lines no save uses
+          prune = true;
+        } else if ("-dry-run".equalsIgnoreCase(args[i])) {
+          // Only list the lines of the script that would be skipped
+          dryRun = true;
+        } else if ("-cache".equalsIgnoreCase(args[i]) && i + 1 < args.length) {
+          // Keep results in a directory for later runs of the script
+          cache = Paths.get(args[++i]);
+        } else {
+          printUsage();
+          return;
+        }
+      }
+      runScriptMode(args[1], prune, dryRun, cache);
+    } else {
+      printUsage();
+    }
+  }
+
+  private static void printUsage() {
+    System.out.println("Invalid arguments. Usage:");
+    System.out.println("java -jar Program.jar -file path-of-script-file [-prune] [-dry-run] "
+        + "[-cache directory]");
+    System.out.println("java -jar Program.jar -text");
+    System.out.println("java -jar Program.jar");
+  }
+
+  /**
+   * Runs the program in interactive text mode.
+   */
+  private static void runInteractiveMode() {
+    // Creates an instance of ImageLoader to load images.
+    ImageLoader imageLoader = new ImageLoader();
+
+    // Creates an instance of ImageOperations using the images loaded by ImageLoader.
+    ImageOperations imageOperations = new ImageOperations();
+
+    ConsoleImageLoaderView view = new ConsoleImageLoaderView();
+
+    // Creates a ScriptParser to handle and parse script files interactively.
+    ScriptParser scriptParser = new ScriptParser(imageLoader, imageOperations, view);
+
+    Scanner scanner = new Scanner(System.in);
+    System.out.println(
+        "Interactive mode started. Type commands one line at a time. Type 'exit' to quit.");
+
+    while (true) {
+      System.out.print("> ");
+      String inputLine = scanner.nextLine().trim();
+      if ("exit".equalsIgnoreCase(inputLine)) {
+        System.out.println("Exiting interactive mode.");
+        break;
+      }
+      try {
+        scriptParser.executeLine(inputLine);
+      } catch (Exception e) {
+        System.out.println("Error processing command: " + e.getMessage());
+      }
+    }
+
+    scanner.close();
+  }
+
+  /**
+   * Runs the program in script mode with the given script file path.
+   *
+   * @param scriptPath The path to the script file to be executed.
+   * @param prune      true to skip the lines whose images no save uses.
+   * @param dryRun     true to only print the lines that would be skipped, without running any.
+   * @param cache      The directory of the build cache, or null to compute every line.
+   */
+  private static void runScriptMode(String scriptPath, boolean prune, boolean dryRun,
+      Path cache) {
+    // Creates an instance of ImageLoader to load images.
+    ImageLoader imageLoader = new ImageLoader();
+
+    // Creates an instance of ImageOperations using the images loaded by ImageLoader.
+    ImageOperations imageOperations = new ImageOperations();
+
+    ConsoleImageLoaderView view = new ConsoleImageLoaderView();
+
+    // Creates a ScriptParser to handle and parse script files.
+    ScriptParser scriptParser = new ScriptParser(imageLoader, imageOperations, view);
+    // Nothing reads the images once the script is done, so each can go after its last use
+    scriptParser.setReleaseDeadImages(true);
+    // For the same reason row-by-row scripts can stream their images instead of loading them whole
+    scriptParser.setStreaming(true);
+    // and chains of per-pixel lines can skip storing the images passed between them
+    scriptParser.setFusing(true);
+    // Decode upcoming loads on every core while earlier lines run
+    scriptParser.setPrefetchThreads(Runtime.getRuntime().availableProcessors());
+    // and encode saves in the background while later lines run
+    scriptParser.setSaveThreads(Runtime.getRuntime().availableProcessors());
+    // On several cores, run lines that touch unrelated images at the same time instead
+    scriptParser.setParallelThreads(Runtime.getRuntime().availableProcessors());
+    // Generated scripts often repeat an operation on the same image under another name
+    scriptParser.setMemoizing(true);
+    // Pruned lines are never checked, so a broken line that no save uses goes unreported
+    scriptParser.setPruning(prune);
+    scriptParser.setDryRun(dryRun);
+    // Re-running a script after changing a line only recomputes what that line affects
+    if (cache != null && !dryRun) {
+      try {
+        scriptParser.setBuildCache(cache, BUILD_CACHE_BYTES);
+      } catch (IOException e) {
+        System.out.println("Build cache disabled: " + e.getMessage());
+      }
+    }
+
+    try {
+      scriptParser.parseScript(scriptPath);
+      if (dryRun) {
+        for (String line : scriptParser.getPrunedLines()) {
+          System.out.println("Would skip: " + line);
+        }
+        for (String name : scriptParser.getSkippedOutputs()) {
+          System.out.println("Would not compute: " + name);
+        }
+        System.out.println(scriptParser.getPrunedLines().size() + " lines would be skipped.");
+        return;
+      }
+      if (!scriptParser.getPrunedLines().isEmpty()) {
+        System.out.println("Skipped " + scriptParser.getPrunedLines().size()
+            + " lines that no save uses.");
+      }
+      if (scriptParser.getCacheReport() != null) {
+        System.out.println(scriptParser.getCacheReport());
+      }
+      if (scriptParser.getReusedResults() > 0) {
+        System.out.println("Reused " + scriptParser.getReusedResults() + " results instead of "
+            + "computing " + scriptParser.getReusedPixels() + " pixels.");
+      }
+    } catch (Exception e) {
+      System.out.println("Error processing script: " + e.getMessage());
+      e.printStackTrace();
+    }
+  }
+}
+
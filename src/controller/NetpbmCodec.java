@@ -0,0 +1,625 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.Pixel;
+
+/**
+ * Reads and writes the Netpbm formats: ASCII P3, binary P6 (RGB) and binary P5 (greyscale). Binary
+ * files are read and written through a {@link FileChannel} and a direct buffer holding whole rows.
+ * ASCII files are parsed and formatted byte by byte through a plain buffer, without building
+ * strings. Either way the file is read or written one row at a time through a {@link RowReader} or
+ * {@link RowWriter}, which also lets a script stream rows through without holding whole images.
+ */
+final class NetpbmCodec {
+
+  private static final int BUFFER_BYTES = 1 << 16;
+
+  // Decimal text of every sample value followed by a separator, for the P3 writer
+  private static final byte[][] SAMPLE_TEXT = new byte[256][];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      SAMPLE_TEXT[i] = (i + " ").getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private NetpbmCodec() {
+  }
+
+  /**
+   * Reads a P3, P5 or P6 file, whichever its magic number names.
+   *
+   * @param path   The file to read.
+   * @param layout The layout of the returned image.
+   * @return The image.
+   * @throws IOException If the file cannot be read or is not a valid Netpbm file.
+   */
+  static Image read(Path path, Image.Layout layout) throws IOException {
+    return read(path, layout, null, 1);
+  }
+
+  /**
+   * Reads part of a P3, P5 or P6 file. Only every {@code subsampling}-th row and column of the
+   * region is kept, starting from its top left corner. Rows above, below and between the rows kept
+   * are skipped, which for binary files means they are never read from disk.
+   *
+   * @param path        The file to read.
+   * @param layout      The layout of the returned image.
+   * @param region      The part of the image to read, clipped to the image, or null for all of it.
+   * @param subsampling The distance between two rows or columns kept, at least 1.
+   * @return The image, {@code ceil(width / subsampling)} by {@code ceil(height / subsampling)}
+   *         pixels for the clipped region.
+   * @throws IOException              If the file cannot be read or is not a valid Netpbm file.
+   * @throws IllegalArgumentException If the region lies outside the image.
+   */
+  static Image read(Path path, Image.Layout layout, Rectangle region, int subsampling)
+      throws IOException {
+    try (RowReader reader = openReader(path)) {
+      Rectangle area = new Rectangle(0, 0, reader.getWidth(), reader.getHeight());
+      if (region != null) {
+        area = area.intersection(region);
+        if (area.isEmpty()) {
+          throw new IllegalArgumentException("Region " + region.width + "x" + region.height
+              + " at " + region.x + "," + region.y + " lies outside the image");
+        }
+      }
+      int width = (area.width + subsampling - 1) / subsampling;
+      int height = (area.height + subsampling - 1) / subsampling;
+      Image image = Image.allocateUninitialized(width, height, layout);
+      int[] row = new int[width];
+      reader.skipRows(area.y);
+      for (int y = 0; y < height; y++) {
+        if (y > 0) {
+          reader.skipRows(subsampling - 1);
+        }
+        reader.readRow(row, area.x, width, subsampling);
+        image.writeRow(y, row);
+      }
+      return image;
+    }
+  }
+
+  /**
+   * Writes an image as ASCII P3, binary P6, or binary P5 holding the luma of each pixel.
+   *
+   * @param path  The file to write.
+   * @param image The image to write.
+   * @param kind  The format digit: '3', '5' or '6'.
+   * @throws IOException If the file cannot be written.
+   */
+  static void write(Path path, Image image, char kind) throws IOException {
+    try (RowWriter writer = openWriter(path, kind, image.getWidth(), image.getHeight())) {
+      int[] row = new int[image.getWidth()];
+      for (int y = 0; y < image.getHeight(); y++) {
+        image.readRow(y, row);
+        writer.writeRow(row);
+      }
+    }
+  }
+
+  /**
+   * Opens a P3, P5 or P6 file and reads its header. Samples are scaled to 0-255 when the maximum
+   * value is not 255, and binary files may use two-byte samples (maximum value above 255).
+   *
+   * @param path The file to read.
+   * @return A reader positioned at the first row.
+   * @throws IOException If the file cannot be read or its header is not valid.
+   */
+  static RowReader openReader(Path path) throws IOException {
+    int kind;
+    try (InputStream in = Files.newInputStream(path)) {
+      if (in.read() != 'P') {
+        throw new IOException("Invalid PPM file format: missing magic number");
+      }
+      kind = in.read();
+    }
+    if (kind == '5' || kind == '6') {
+      return new BinaryReader(path);
+    }
+    return new AsciiReader(path);
+  }
+
+  /**
+   * Creates a file and writes the header for an image of the given size.
+   *
+   * @param path   The file to write.
+   * @param kind   The format digit: '3' for ASCII RGB, '6' for binary RGB or '5' for binary luma.
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return A writer expecting the first row.
+   * @throws IOException If the file cannot be created.
+   */
+  static RowWriter openWriter(Path path, char kind, int width, int height) throws IOException {
+    switch (kind) {
+      case '3':
+        return new AsciiWriter(path, width, height);
+      case '5':
+      case '6':
+        return new BinaryWriter(path, kind == '5', width, height);
+      default:
+        throw new IllegalArgumentException("Unknown Netpbm format: P" + kind);
+    }
+  }
+
+  private static int put(byte[] buffer, int position, byte[] text) {
+    System.arraycopy(text, 0, buffer, position, text.length);
+    return position + text.length;
+  }
+
+  private static int sample(ByteBuffer buffer, int sampleBytes) {
+    int value = buffer.get() & 0xFF;
+    return sampleBytes == 1 ? value : value << 8 | (buffer.get() & 0xFF);
+  }
+
+  private static int scale(int sample, int maxValue) {
+    return Math.min(255, sample * 255 / maxValue);
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Reads a decimal header field, skipping whitespace and comments before it.
+   */
+  private static int readHeaderNumber(Input input) throws IOException {
+    int c = input.read();
+    while (c == '#' || Character.isWhitespace(c)) {
+      if (c == '#') {
+        while (c != '\n' && c != '\r' && c != -1) {
+          c = input.read();
+        }
+      }
+      c = input.read();
+    }
+    if (c < '0' || c > '9') {
+      throw new IOException("Invalid PPM header: expected a number");
+    }
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + c - '0';
+      if (value > Integer.MAX_VALUE) {
+        throw new IOException("Invalid PPM header: number too large");
+      }
+      c = input.read();
+    }
+    if (c != -1 && !Character.isWhitespace(c) && c != '#') {
+      throw new IOException("Invalid PPM header: unexpected character " + (char) c);
+    }
+    if (c == '#') {
+      // A comment right after the number; step back so the next field skips it
+      input.buffer.position(input.buffer.position() - 1);
+    }
+    return (int) value;
+  }
+
+  /**
+   * Byte-level reader for ASCII Netpbm files.
+   */
+  private static final class AsciiInput {
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private int position;
+    private int limit;
+
+    AsciiInput(InputStream in) {
+      this.in = in;
+    }
+
+    int read() throws IOException {
+      if (position == limit) {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return -1;
+        }
+      }
+      return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Reads the next decimal number, skipping whitespace and comments before it.
+     */
+    int readNumber() throws IOException {
+      int c = read();
+      while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '#' || c == '\f') {
+        if (c == '#') {
+          while (c != '\n' && c != '\r' && c != -1) {
+            c = read();
+          }
+        } else {
+          c = read();
+        }
+      }
+      if (c == -1) {
+        throw new IOException("PPM file is truncated");
+      }
+      if (c < '0' || c > '9') {
+        throw new IOException("Invalid PPM value: unexpected character " + (char) c);
+      }
+      int value = 0;
+      while (c >= '0' && c <= '9') {
+        if (value > (Integer.MAX_VALUE - 9) / 10) {
+          throw new IOException("Invalid PPM value: number too large");
+        }
+        value = value * 10 + c - '0';
+        c = read();
+      }
+      if (c == '#') {
+        // A comment directly after the number; let the next call skip it
+        position--;
+      } else if (c != -1 && c != ' ' && c != '\n' && c != '\r' && c != '\t' && c != '\f') {
+        throw new IOException("Invalid PPM value: unexpected character " + (char) c);
+      }
+      return value;
+    }
+  }
+
+  /**
+   * A file channel read through a direct buffer that can be asked to hold a number of bytes.
+   */
+  private static final class Input {
+
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+
+    Input(FileChannel channel, int capacity) {
+      this.channel = channel;
+      this.buffer = ByteBuffer.allocateDirect(capacity);
+      buffer.limit(0);
+    }
+
+    /**
+     * Makes sure the buffer can hold at least the given number of bytes.
+     */
+    void reserve(int bytes) {
+      if (buffer.capacity() < bytes) {
+        ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+        larger.put(buffer);
+        larger.flip();
+        buffer = larger;
+      }
+    }
+
+    /**
+     * Fills the buffer until at least the given number of bytes remain.
+     *
+     * @return false if the file ends first.
+     */
+    boolean require(int bytes) throws IOException {
+      if (buffer.remaining() >= bytes) {
+        return true;
+      }
+      buffer.compact();
+      while (buffer.position() < bytes) {
+        if (channel.read(buffer) < 0) {
+          buffer.flip();
+          return false;
+        }
+      }
+      buffer.flip();
+      return true;
+    }
+
+    int read() throws IOException {
+      return require(1) ? buffer.get() & 0xFF : -1;
+    }
+  }
+
+  /**
+   * Reads the rows of a P5 or P6 file through a direct buffer holding at least one row.
+   */
+  private static final class BinaryReader implements RowReader {
+
+    private final FileChannel channel;
+    private final Input input;
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final int sampleBytes;
+    private final int maxValue;
+    private final int rowBytes;
+    private int y;
+
+    BinaryReader(Path path) throws IOException {
+      channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+        input = new Input(channel, BUFFER_BYTES);
+        if (input.read() != 'P') {
+          throw new IOException("Invalid PPM file format: missing magic number");
+        }
+        int kind = input.read();
+        if (kind != '5' && kind != '6') {
+          throw new IOException("Invalid binary PPM file format: P" + (char) kind);
+        }
+        width = readHeaderNumber(input);
+        height = readHeaderNumber(input);
+        // Also consumes the single whitespace byte that ends the header
+        maxValue = readHeaderNumber(input);
+        if (width <= 0 || height <= 0 || maxValue <= 0 || maxValue > 65535) {
+          throw new IOException("Invalid PPM header: " + width + "x" + height + ", max "
+              + maxValue);
+        }
+        channels = kind == '6' ? 3 : 1;
+        sampleBytes = maxValue > 255 ? 2 : 1;
+        long rowBytesLong = (long) width * channels * sampleBytes;
+        if (rowBytesLong > Integer.MAX_VALUE) {
+          throw new IOException("Image rows are too large: " + width);
+        }
+        rowBytes = (int) rowBytesLong;
+        input.reserve(rowBytes);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+
+    @Override
+    public int getHeight() {
+      return height;
+    }
+
+    @Override
+    public void readRow(int[] row, int x, int count, int step) throws IOException {
+      if (!input.require(rowBytes)) {
+        throw new IOException("PPM file is truncated at row " + y);
+      }
+      y++;
+      ByteBuffer buffer = input.buffer;
+      int start = buffer.position();
+      int pixelBytes = channels * sampleBytes;
+      if (x != 0 || step != 1) {
+        // Only the pixels kept are decoded; the rest of the row is stepped over
+        for (int i = 0; i < count; i++) {
+          buffer.position(start + (x + i * step) * pixelBytes);
+          row[i] = decodePixel(buffer);
+        }
+      } else if (sampleBytes == 1 && maxValue == 255 && channels == 3) {
+        for (int i = 0; i < count; i++) {
+          row[i] = (buffer.get() & 0xFF) << 16 | (buffer.get() & 0xFF) << 8
+              | (buffer.get() & 0xFF);
+        }
+      } else {
+        for (int i = 0; i < count; i++) {
+          row[i] = decodePixel(buffer);
+        }
+      }
+      buffer.position(start + rowBytes);
+    }
+
+    private int decodePixel(ByteBuffer buffer) {
+      if (sampleBytes == 1 && maxValue == 255) {
+        if (channels == 3) {
+          return (buffer.get() & 0xFF) << 16 | (buffer.get() & 0xFF) << 8 | (buffer.get() & 0xFF);
+        }
+        return (buffer.get() & 0xFF) * 0x010101;
+      }
+      int r = scale(sample(buffer, sampleBytes), maxValue);
+      if (channels == 3) {
+        int g = scale(sample(buffer, sampleBytes), maxValue);
+        int b = scale(sample(buffer, sampleBytes), maxValue);
+        return r << 16 | g << 8 | b;
+      }
+      return r * 0x010101;
+    }
+
+    @Override
+    public void skipRows(int rows) throws IOException {
+      if (rows <= 0) {
+        return;
+      }
+      y += rows;
+      long bytes = (long) rows * rowBytes;
+      ByteBuffer buffer = input.buffer;
+      if (buffer.remaining() >= bytes) {
+        buffer.position(buffer.position() + (int) bytes);
+        return;
+      }
+      // Drop what is buffered and move the channel past the rest; a skip past the end shows up as
+      // a truncated file on the next read
+      bytes -= buffer.remaining();
+      buffer.position(buffer.limit());
+      channel.position(channel.position() + bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * Reads the rows of an ASCII P3 file. Comments may appear anywhere whitespace may, in the header
+   * and among the samples.
+   */
+  private static final class AsciiReader implements RowReader {
+
+    private final InputStream in;
+    private final AsciiInput input;
+    private final int width;
+    private final int height;
+    private final int maxValue;
+
+    AsciiReader(Path path) throws IOException {
+      in = Files.newInputStream(path);
+      try {
+        input = new AsciiInput(in);
+        if (input.read() != 'P' || input.read() != '3') {
+          throw new IOException("Invalid PPM file format: expected P3");
+        }
+        width = input.readNumber();
+        height = input.readNumber();
+        maxValue = input.readNumber();
+        if (width <= 0 || height <= 0 || maxValue <= 0) {
+          throw new IOException("Invalid PPM header: " + width + "x" + height + ", max "
+              + maxValue);
+        }
+      } catch (IOException | RuntimeException e) {
+        in.close();
+        throw e;
+      }
+    }
+
+    @Override
+    public int getWidth() {
+      return width;
+    }
+
+    @Override
+    public int getHeight() {
+      return height;
+    }
+
+    @Override
+    public void readRow(int[] row, int x, int count, int step) throws IOException {
+      // Text samples have no fixed size, so every one up to the end of the row is parsed
+      int next = x;
+      int kept = 0;
+      for (int column = 0; column < width; column++) {
+        int r = input.readNumber();
+        int g = input.readNumber();
+        int b = input.readNumber();
+        if (column != next || kept == count) {
+          continue;
+        }
+        if (maxValue != 255) {
+          r = scale(r, maxValue);
+          g = scale(g, maxValue);
+          b = scale(b, maxValue);
+        }
+        row[kept++] = Pixel.toRGB(r, g, b);
+        next += step;
+      }
+    }
+
+    @Override
+    public void skipRows(int rows) throws IOException {
+      for (long samples = (long) rows * width * 3; samples > 0; samples--) {
+        input.readNumber();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the rows of a P6 or P5 file through a direct buffer holding at least one row.
+   */
+  private static final class BinaryWriter implements RowWriter {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean grey;
+    private final int width;
+    private final int rowBytes;
+
+    BinaryWriter(Path path, boolean grey, int width, int height) throws IOException {
+      this.grey = grey;
+      this.width = width;
+      this.rowBytes = width * (grey ? 1 : 3);
+      buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_BYTES, rowBytes));
+      buffer.put(((grey ? "P5" : "P6") + "\n" + width + " " + height + "\n255\n")
+          .getBytes(StandardCharsets.US_ASCII));
+      channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void writeRow(int[] row) throws IOException {
+      if (buffer.remaining() < rowBytes) {
+        flush(channel, buffer);
+      }
+      if (grey) {
+        for (int x = 0; x < width; x++) {
+          int rgb = row[x];
+          // Luma weights in fixed point; grey pixels map to their own value exactly
+          buffer.put((byte) ((2126 * Pixel.red(rgb) + 7152 * Pixel.green(rgb)
+              + 722 * Pixel.blue(rgb) + 5000) / 10000));
+        }
+      } else {
+        for (int x = 0; x < width; x++) {
+          int rgb = row[x];
+          buffer.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush(channel, buffer);
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Writes the rows of an ASCII P3 file, one pixel per line.
+   */
+  private static final class AsciiWriter implements RowWriter {
+
+    // "255 255 255 " with the last separator turned into a newline
+    private static final int MAX_PIXEL_BYTES = 12;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private final int width;
+    private int position;
+
+    AsciiWriter(Path path, int width, int height) throws IOException {
+      this.width = width;
+      out = Files.newOutputStream(path);
+      position = put(buffer, 0, ("P3\n" + width + " " + height + "\n255\n")
+          .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void writeRow(int[] row) throws IOException {
+      for (int x = 0; x < width; x++) {
+        int rgb = row[x];
+        if (position > buffer.length - MAX_PIXEL_BYTES) {
+          out.write(buffer, 0, position);
+          position = 0;
+        }
+        position = put(buffer, position, SAMPLE_TEXT[Pixel.red(rgb)]);
+        position = put(buffer, position, SAMPLE_TEXT[Pixel.green(rgb)]);
+        position = put(buffer, position, SAMPLE_TEXT[Pixel.blue(rgb)]);
+        buffer[position - 1] = '\n';
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        out.write(buffer, 0, position);
+      } finally {
+        out.close();
+      }
+    }
+  }
+}
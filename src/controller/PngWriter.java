@@ -0,0 +1,165 @@
+package controller;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8-bit RGB PNG file one row at a time. ImageIO's PNG writer pulls the whole image
+ * through a RenderedImage and cannot be fed rows as they are produced, so this writer encodes the
+ * file itself: each row gets the filter that leaves the smallest sum of absolute differences, the
+ * same heuristic most encoders use, and the compressed data is written out in IDAT chunks of at
+ * most {@value #CHUNK_BYTES} bytes.
+ */
+final class PngWriter implements RowWriter {
+
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+  private static final int CHUNK_BYTES = 1 << 16;
+  private static final int BYTES_PER_PIXEL = 3;
+
+  private final OutputStream out;
+  private final Deflater deflater = new Deflater(4);
+  private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(CHUNK_BYTES * 2);
+  private final DeflaterOutputStream idat;
+  private final int width;
+  private byte[] previous;
+  private byte[] current;
+  // The row filtered with each of the five filter types, each starting with the type byte
+  private final byte[][] filtered = new byte[5][];
+
+  /**
+   * Creates the file and writes its header.
+   *
+   * @param path   The file to write.
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @throws IOException If the file cannot be created.
+   */
+  PngWriter(Path path, int width, int height) throws IOException {
+    this.width = width;
+    int rowBytes = width * BYTES_PER_PIXEL;
+    previous = new byte[rowBytes];
+    current = new byte[rowBytes];
+    for (int type = 0; type < filtered.length; type++) {
+      filtered[type] = new byte[rowBytes + 1];
+      filtered[type][0] = (byte) type;
+    }
+    idat = new DeflaterOutputStream(compressed, deflater, CHUNK_BYTES);
+
+    out = new BufferedOutputStream(Files.newOutputStream(path), CHUNK_BYTES);
+    out.write(SIGNATURE);
+    byte[] header = new byte[13];
+    putInt(header, 0, width);
+    putInt(header, 4, height);
+    header[8] = 8; // bits per sample
+    header[9] = 2; // truecolor; compression, filter and interlace methods stay 0
+    writeChunk("IHDR", header, header.length);
+  }
+
+  @Override
+  public void writeRow(int[] row) throws IOException {
+    for (int x = 0, i = 0; x < width; x++, i += BYTES_PER_PIXEL) {
+      int rgb = row[x];
+      current[i] = (byte) (rgb >> 16);
+      current[i + 1] = (byte) (rgb >> 8);
+      current[i + 2] = (byte) rgb;
+    }
+    idat.write(filter());
+    if (compressed.size() >= CHUNK_BYTES) {
+      writeChunk("IDAT", compressed.toByteArray(), compressed.size());
+      compressed.reset();
+    }
+    byte[] swap = previous;
+    previous = current;
+    current = swap;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      idat.finish();
+      if (compressed.size() > 0) {
+        writeChunk("IDAT", compressed.toByteArray(), compressed.size());
+      }
+      writeChunk("IEND", new byte[0], 0);
+    } finally {
+      deflater.end();
+      out.close();
+    }
+  }
+
+  /**
+   * Filters the current row with every filter type and returns the one that is likely to
+   * compress best.
+   */
+  private byte[] filter() {
+    byte[] none = filtered[0];
+    byte[] sub = filtered[1];
+    byte[] up = filtered[2];
+    byte[] average = filtered[3];
+    byte[] paeth = filtered[4];
+    long[] sums = new long[5];
+    for (int i = 0; i < current.length; i++) {
+      int x = current[i] & 0xFF;
+      int a = i >= BYTES_PER_PIXEL ? current[i - BYTES_PER_PIXEL] & 0xFF : 0;
+      int b = previous[i] & 0xFF;
+      int c = i >= BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xFF : 0;
+      none[i + 1] = (byte) x;
+      sub[i + 1] = (byte) (x - a);
+      up[i + 1] = (byte) (x - b);
+      average[i + 1] = (byte) (x - (a + b >> 1));
+      paeth[i + 1] = (byte) (x - paethPredictor(a, b, c));
+      for (int type = 0; type < 5; type++) {
+        sums[type] += Math.abs(filtered[type][i + 1]);
+      }
+    }
+    int best = 0;
+    for (int type = 1; type < 5; type++) {
+      if (sums[type] < sums[best]) {
+        best = type;
+      }
+    }
+    return filtered[best];
+  }
+
+  private static int paethPredictor(int a, int b, int c) {
+    int p = a + b - c;
+    int pa = Math.abs(p - a);
+    int pb = Math.abs(p - b);
+    int pc = Math.abs(p - c);
+    if (pa <= pb && pa <= pc) {
+      return a;
+    }
+    return pb <= pc ? b : c;
+  }
+
+  private void writeChunk(String type, byte[] data, int length) throws IOException {
+    byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+    byte[] lengthBytes = new byte[4];
+    putInt(lengthBytes, 0, length);
+    CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data, 0, length);
+    byte[] crcBytes = new byte[4];
+    putInt(crcBytes, 0, (int) crc.getValue());
+
+    out.write(lengthBytes);
+    out.write(typeBytes);
+    out.write(data, 0, length);
+    out.write(crcBytes);
+  }
+
+  private static void putInt(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >>> 24);
+    bytes[offset + 1] = (byte) (value >>> 16);
+    bytes[offset + 2] = (byte) (value >>> 8);
+    bytes[offset + 3] = (byte) value;
+  }
+}
@@ -0,0 +1,148 @@
+package controller;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import model.imagerepresentation.Image;
+
+/**
+ * Converts between {@link Image} and {@link BufferedImage} by working on the raster's backing
+ * array, instead of going through {@code getRGB}/{@code setRGB}, which look every pixel up in the
+ * color model. The common types read by ImageIO (packed int RGB, 3-byte BGR and 4-byte ABGR) are
+ * copied in bulk; a packed int RGB image whose raster covers its whole array is wrapped without
+ * copying when the target layout is packed. Any other type falls back to {@code getRGB} one row at
+ * a time, so color spaces such as the one of {@code TYPE_BYTE_GRAY} are converted as before.
+ */
+final class RasterConversion {
+
+  private RasterConversion() {
+  }
+
+  /**
+   * Copies an image into a new {@code TYPE_INT_RGB} BufferedImage.
+   *
+   * @param image The image to convert.
+   * @return A BufferedImage with the same pixels.
+   */
+  static BufferedImage toBufferedImage(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    // A fresh TYPE_INT_RGB image has one bank of width * height ints with no offset
+    int[] data = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+    image.readRegion(0, 0, width, height, data, 0, width);
+    return bufferedImage;
+  }
+
+  /**
+   * Converts a BufferedImage into an image of the given layout. When the BufferedImage is wrapped
+   * rather than copied, it shares its pixels with the result and should not be used afterwards.
+   *
+   * @param bufferedImage The BufferedImage to convert.
+   * @param layout        The layout of the returned image.
+   * @return An image with the same RGB values, any alpha being dropped.
+   */
+  static Image toImage(BufferedImage bufferedImage, Image.Layout layout) {
+    switch (bufferedImage.getType()) {
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_ARGB:
+      case BufferedImage.TYPE_INT_BGR:
+        return fromPackedInts(bufferedImage, layout);
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR:
+        return fromInterleavedBytes(bufferedImage, layout);
+      default:
+        return fromRgb(bufferedImage, layout);
+    }
+  }
+
+  private static Image fromPackedInts(BufferedImage bufferedImage, Image.Layout layout) {
+    WritableRaster raster = bufferedImage.getRaster();
+    SampleModel sampleModel = raster.getSampleModel();
+    if (!(sampleModel instanceof SinglePixelPackedSampleModel)
+        || raster.getDataBuffer().getNumBanks() != 1) {
+      return fromRgb(bufferedImage, layout);
+    }
+    int width = bufferedImage.getWidth();
+    int height = bufferedImage.getHeight();
+    DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+    int[] data = buffer.getData();
+    int scanline = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+    int offset = buffer.getOffset() - raster.getSampleModelTranslateY() * scanline
+        - raster.getSampleModelTranslateX();
+
+    if (bufferedImage.getType() == BufferedImage.TYPE_INT_BGR) {
+      Image image = Image.allocateUninitialized(width, height, layout);
+      int[] row = new int[width];
+      for (int y = 0; y < height; y++) {
+        int start = offset + y * scanline;
+        for (int x = 0; x < width; x++) {
+          int bgr = data[start + x];
+          row[x] = (bgr & 0xFF) << 16 | bgr & 0xFF00 | bgr >> 16 & 0xFF;
+        }
+        image.writeRow(y, row);
+      }
+      return image;
+    }
+    if (layout == Image.Layout.PACKED && bufferedImage.getType() == BufferedImage.TYPE_INT_RGB
+        && offset == 0 && scanline == width && data.length == width * height) {
+      return Image.wrapPacked(width, height, data);
+    }
+    // writeRegion ignores the alpha byte of TYPE_INT_ARGB
+    Image image = Image.allocateUninitialized(width, height, layout);
+    image.writeRegion(0, 0, width, height, data, offset, scanline);
+    return image;
+  }
+
+  private static Image fromInterleavedBytes(BufferedImage bufferedImage, Image.Layout layout) {
+    WritableRaster raster = bufferedImage.getRaster();
+    SampleModel sampleModel = raster.getSampleModel();
+    DataBuffer dataBuffer = raster.getDataBuffer();
+    if (!(sampleModel instanceof ComponentSampleModel) || !(dataBuffer instanceof DataBufferByte)
+        || dataBuffer.getNumBanks() != 1) {
+      return fromRgb(bufferedImage, layout);
+    }
+    int width = bufferedImage.getWidth();
+    int height = bufferedImage.getHeight();
+    ComponentSampleModel components = (ComponentSampleModel) sampleModel;
+    byte[] data = ((DataBufferByte) dataBuffer).getData();
+    int pixelStride = components.getPixelStride();
+    int scanline = components.getScanlineStride();
+    int[] bandOffsets = components.getBandOffsets();
+    int offset = dataBuffer.getOffset() - raster.getSampleModelTranslateY() * scanline
+        - raster.getSampleModelTranslateX() * pixelStride;
+    int red = bandOffsets[0];
+    int green = bandOffsets[1];
+    int blue = bandOffsets[2];
+
+    Image image = Image.allocateUninitialized(width, height, layout);
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      int index = offset + y * scanline;
+      for (int x = 0; x < width; x++) {
+        row[x] = (data[index + red] & 0xFF) << 16 | (data[index + green] & 0xFF) << 8
+            | data[index + blue] & 0xFF;
+        index += pixelStride;
+      }
+      image.writeRow(y, row);
+    }
+    return image;
+  }
+
+  private static Image fromRgb(BufferedImage bufferedImage, Image.Layout layout) {
+    int width = bufferedImage.getWidth();
+    int height = bufferedImage.getHeight();
+    Image image = Image.allocateUninitialized(width, height, layout);
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      bufferedImage.getRGB(0, y, width, 1, row, 0, width);
+      image.writeRow(y, row);
+    }
+    return image;
+  }
+}
@@ -0,0 +1,55 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of image rows read from the top down, such as an image file being decoded. Only one row
+ * is held at a time, so an image can be processed without holding all of it in memory.
+ */
+interface RowReader extends Closeable {
+
+  /**
+   * Returns the width of the image.
+   *
+   * @return The number of pixels in a row.
+   */
+  int getWidth();
+
+  /**
+   * Returns the height of the image.
+   *
+   * @return The number of rows.
+   */
+  int getHeight();
+
+  /**
+   * Reads the next row as packed {@code 0xRRGGBB} values.
+   *
+   * @param row The array receiving the row, holding at least {@link #getWidth()} values.
+   * @throws IOException If the row cannot be read.
+   */
+  default void readRow(int[] row) throws IOException {
+    readRow(row, 0, getWidth(), 1);
+  }
+
+  /**
+   * Reads the next row, keeping only every {@code step}-th pixel from column {@code x} on. Pixels
+   * that are not kept are skipped without being decoded where the format allows it.
+   *
+   * @param row   The array receiving the pixels kept, holding at least {@code count} values.
+   * @param x     The first column kept.
+   * @param count The number of pixels kept.
+   * @param step  The distance between two columns kept.
+   * @throws IOException If the row cannot be read.
+   */
+  void readRow(int[] row, int x, int count, int step) throws IOException;
+
+  /**
+   * Skips rows without decoding them where the format allows it.
+   *
+   * @param rows The number of rows to skip.
+   * @throws IOException If the rows cannot be read.
+   */
+  void skipRows(int rows) throws IOException;
+}
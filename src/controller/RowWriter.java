@@ -0,0 +1,19 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A sink for image rows written from the top down, such as an image file being encoded. Closing
+ * it finishes the file; it must only be closed once every row has been written.
+ */
+interface RowWriter extends Closeable {
+
+  /**
+   * Writes the next row from packed {@code 0xRRGGBB} values.
+   *
+   * @param row The array holding the row, at least as long as the image is wide.
+   * @throws IOException If the row cannot be written.
+   */
+  void writeRow(int[] row) throws IOException;
+}
@@ -0,0 +1,208 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One parsed script line together with the image names it reads and writes. The names are worked
+ * out from the shape of the command only; whether the line is valid is still decided when it is
+ * executed. Lines whose names cannot be known, such as {@code run} or malformed commands, are
+ * barriers that later passes must not move work across.
+ */
+final class ScriptCommand {
+
+  private final String line;
+  private final String[] parts;
+  private final String name;
+  private final List<String> reads;
+  private final List<String> writes;
+  private final boolean barrier;
+  // The lines a fused command stands for, empty for a line of the script itself
+  private final List<ScriptCommand> steps;
+
+  private ScriptCommand(String line, String[] parts, List<String> reads, List<String> writes,
+      boolean barrier, List<ScriptCommand> steps) {
+    this.line = line;
+    this.parts = parts;
+    this.name = parts[0].toLowerCase();
+    this.reads = Collections.unmodifiableList(reads);
+    this.writes = Collections.unmodifiableList(writes);
+    this.barrier = barrier;
+    this.steps = Collections.unmodifiableList(steps);
+  }
+
+  /**
+   * Parses a script line.
+   *
+   * @param line The trimmed, non-empty line.
+   * @return The parsed command.
+   */
+  static ScriptCommand parse(String line) {
+    String[] parts = line.split("\\s+");
+    String command = parts[0].toLowerCase();
+    int n = parts.length;
+    switch (command) {
+      case "load":
+        // load file name [crop x y w h] [subsample n]
+        return n == 3 || n == 5 || n == 8 || n == 10 ? of(line, parts, names(), names(parts[2]))
+            : barrier(line, parts);
+      case "save":
+        return n == 3 ? of(line, parts, names(parts[2]), names()) : barrier(line, parts);
+      case "red-component":
+      case "green-component":
+      case "blue-component":
+        if (n == 3) {
+          return of(line, parts, names(parts[1]), names(parts[2]));
+        }
+        return n == 4 ? of(line, parts, names(parts[1], parts[2]), names(parts[3]))
+            : barrier(line, parts);
+      case "value-component":
+      case "luma-component":
+      case "intensity-component":
+      case "horizontal-flip":
+      case "vertical-flip":
+      case "histogram":
+        return n == 3 ? of(line, parts, names(parts[1]), names(parts[2])) : barrier(line, parts);
+      case "brighten":
+      case "darken":
+      case "compress":
+        return n == 4 ? of(line, parts, names(parts[2]), names(parts[3])) : barrier(line, parts);
+      case "rgb-split":
+        return n == 5 ? of(line, parts, names(parts[1]), names(parts[2], parts[3], parts[4]))
+            : barrier(line, parts);
+      case "rgb-combine":
+        return n == 5 ? of(line, parts, names(parts[2], parts[3], parts[4]), names(parts[1]))
+            : barrier(line, parts);
+      case "blur":
+      case "sharpen":
+      case "sepia":
+      case "greyscale":
+        if (n == 3 || n == 5 && parts[3].equals("split")) {
+          return of(line, parts, names(parts[1]), names(parts[2]));
+        }
+        if (n == 4 || n == 6 && parts[4].equals("split")) {
+          return of(line, parts, names(parts[1], parts[2]), names(parts[3]));
+        }
+        return barrier(line, parts);
+      case "color-correct":
+        return n == 3 || n == 5 && parts[3].equals("split")
+            ? of(line, parts, names(parts[1]), names(parts[2])) : barrier(line, parts);
+      case "level-adjust":
+        // Also stores the histogram of its result
+        return n == 6 || n == 8 && parts[6].equals("split")
+            ? of(line, parts, names(parts[4]), names(parts[5], histogramOf(parts[5])))
+            : barrier(line, parts);
+      default:
+        // "run" and anything unknown
+        return barrier(line, parts);
+    }
+  }
+
+  /**
+   * Creates a command that stands for a chain of lines, each reading only the image the one
+   * before it wrote. It reads the source of the first line and writes the result of the last.
+   *
+   * @param steps The lines, in order.
+   * @return The fused command.
+   */
+  static ScriptCommand fused(List<ScriptCommand> steps) {
+    List<String> lines = new ArrayList<>();
+    for (ScriptCommand step : steps) {
+      lines.add(step.getLine());
+    }
+    return new ScriptCommand(String.join("; ", lines), new String[]{"fused"},
+        new ArrayList<>(steps.get(0).getReads()),
+        new ArrayList<>(steps.get(steps.size() - 1).getWrites()), false, new ArrayList<>(steps));
+  }
+
+  /**
+   * Returns a copy of this command that does not store some of its outputs, such as a
+   * level-adjust whose histogram nothing reads.
+   *
+   * @param names The outputs to leave out.
+   * @return The narrowed command.
+   */
+  ScriptCommand withoutWrites(Collection<String> names) {
+    List<String> kept = new ArrayList<>(writes);
+    kept.removeAll(names);
+    return new ScriptCommand(line, parts, new ArrayList<>(reads), kept, barrier, steps);
+  }
+
+  /**
+   * Returns the name under which a level-adjust stores the histogram of its result.
+   *
+   * @param name The name of the result.
+   * @return The name of the histogram.
+   */
+  static String histogramOf(String name) {
+    return "histogram_" + name;
+  }
+
+  private static ScriptCommand of(String line, String[] parts, List<String> reads,
+      List<String> writes) {
+    return new ScriptCommand(line, parts, reads, writes, false, Collections.emptyList());
+  }
+
+  private static ScriptCommand barrier(String line, String[] parts) {
+    return new ScriptCommand(line, parts, names(), names(), true, Collections.emptyList());
+  }
+
+  private static List<String> names(String... names) {
+    return new ArrayList<>(Arrays.asList(names));
+  }
+
+  String getLine() {
+    return line;
+  }
+
+  String[] getParts() {
+    return parts;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  List<String> getReads() {
+    return reads;
+  }
+
+  List<String> getWrites() {
+    return writes;
+  }
+
+  /**
+   * Returns the lines a fused command stands for.
+   *
+   * @return The lines in order, or an empty list if this is a line of the script itself.
+   */
+  List<ScriptCommand> getSteps() {
+    return steps;
+  }
+
+  /**
+   * Returns whether the image names this command touches are unknown.
+   *
+   * @return true for {@code run} and malformed commands.
+   */
+  boolean isBarrier() {
+    return barrier;
+  }
+
+  /**
+   * Returns whether the command only computes images from other images, without touching files.
+   *
+   * @return true for every well-formed command except load, save and run.
+   */
+  boolean isImageOperation() {
+    return !barrier && !name.equals("load") && !name.equals("save");
+  }
+
+  @Override
+  public String toString() {
+    return line;
+  }
+}
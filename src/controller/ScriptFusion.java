@@ -0,0 +1,220 @@
+package controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import model.transformations.classes.BrightenDarken;
+import model.transformations.classes.ColorRepresentation;
+import model.transformations.classes.ColorTransformation;
+import model.transformations.classes.ComponentVisualization;
+import model.transformations.classes.Histogram;
+import model.transformations.classes.LevelAdjust;
+import model.transformations.interfaces.PointwiseKernel;
+
+/**
+ * Fuses chains of script lines that each compute a pixel from the pixel at the same position, such
+ * as {@code brighten 10 a b; sepia b c; greyscale c d}, into one command that reads the source
+ * once, applies every line's operation to a row while it is in cache and writes only the final
+ * image. A line joins the chain before it when it reads the image the previous line wrote and no
+ * other line reads that image before it is written again, so the intermediate images are never
+ * stored. Each operation is the one its own transformation class uses, so the pixels are the same
+ * as when the lines run one by one.
+ *
+ * <p>Brighten, darken, sepia and greyscale (with or without a split), the red, green, blue, value,
+ * luma and intensity components and level-adjust are fused; lines with a mask are not. A
+ * level-adjust only ends a chain, since it also stores the histogram of its result.
+ */
+final class ScriptFusion {
+
+  private ScriptFusion() {
+  }
+
+  /**
+   * Replaces each chain of at least two fusable lines by a single fused command. Nothing is fused
+   * across a barrier, nor before the last barrier of the script, since it may read any image.
+   *
+   * @param commands The commands of the script, in order.
+   * @return The commands with the chains fused.
+   */
+  static List<ScriptCommand> fuse(List<ScriptCommand> commands) {
+    return fuse(commands, Collections.emptySet());
+  }
+
+  /**
+   * Fuses chains as {@link #fuse(List)} does, without passing any of the given names between
+   * the lines of a chain.
+   *
+   * @param commands The commands of the script, in order.
+   * @param kept     Names the caller still needs once the script is done.
+   * @return The commands with the chains fused.
+   */
+  static List<ScriptCommand> fuse(List<ScriptCommand> commands, Set<String> kept) {
+    List<Set<String>> deadAfter = ScriptLiveness.deadAfter(commands, kept);
+    List<ScriptCommand> fused = new ArrayList<>();
+    int start = 0;
+    while (start < commands.size()) {
+      int end = start;
+      while (end + 1 < commands.size() && continues(commands, deadAfter, start, end)) {
+        end++;
+      }
+      fused.add(end > start ? ScriptCommand.fused(commands.subList(start, end + 1))
+          : commands.get(start));
+      start = end + 1;
+    }
+    return fused;
+  }
+
+  /**
+   * Runs a fused command. When a line of the chain has invalid arguments, the lines run one by one
+   * instead, so that the invalid line reports its error as usual.
+   *
+   * @param command   The fused command.
+   * @param workspace The workspace holding the images.
+   * @param operation Runs a single line of the chain.
+   * @throws IOException If a line run on its own fails with one.
+   */
+  static void run(ScriptCommand command, Workspace workspace, ScriptStreamer.Operation operation)
+      throws IOException {
+    ImageOperations opn = new ImageOperations(workspace);
+    List<ScriptCommand> steps = command.getSteps();
+    List<PointwiseKernel> kernels = new ArrayList<>();
+    try {
+      for (ScriptCommand step : steps) {
+        kernels.add(kernel(step));
+      }
+    } catch (IllegalArgumentException e) {
+      for (ScriptCommand step : steps) {
+        operation.apply(step.getParts(), workspace);
+      }
+      // Nothing else reads the intermediates
+      for (ScriptCommand step : steps.subList(0, steps.size() - 1)) {
+        opn.removeImage(step.getWrites().get(0));
+      }
+      return;
+    }
+
+    Image source = opn.getImage(command.getReads().get(0));
+    Image result = opn.createDestination(source, source.getWidth(), source.getHeight());
+    int[] row = new int[source.getWidth()];
+    for (int y = 0; y < source.getHeight(); y++) {
+      source.readRow(y, row);
+      for (PointwiseKernel kernel : kernels) {
+        kernel.apply(row);
+      }
+      result.writeRow(y, row);
+    }
+
+    String destination = command.getWrites().get(0);
+    opn.saveImage(destination, result);
+    String histogram = ScriptCommand.histogramOf(destination);
+    if (command.getWrites().contains(histogram)) {
+      // Stored by a level-adjust at the end of the chain
+      new Histogram(workspace).generateHistogram(destination, histogram);
+    }
+  }
+
+  /**
+   * Returns the per-pixel operation of a fusable line.
+   *
+   * @param command The line.
+   * @return The operation.
+   * @throws IllegalArgumentException If the line is not fusable or its arguments are invalid.
+   */
+  static PointwiseKernel kernel(ScriptCommand command) {
+    String[] parts = command.getParts();
+    switch (command.getName()) {
+      case "brighten":
+        return BrightenDarken.kernel(Integer.parseInt(parts[1]));
+      case "darken":
+        return BrightenDarken.kernel(-Integer.parseInt(parts[1]));
+      case "sepia":
+        return ColorTransformation.sepiaKernel(splitPosition(parts));
+      case "greyscale":
+        return ColorTransformation.greyscaleKernel(splitPosition(parts));
+      case "red-component":
+        return ComponentVisualization.kernel(Image.Channel.RED);
+      case "green-component":
+        return ComponentVisualization.kernel(Image.Channel.GREEN);
+      case "blue-component":
+        return ComponentVisualization.kernel(Image.Channel.BLUE);
+      case "value-component":
+        return ColorRepresentation.kernel(ColorRepresentation.ComponentType.VALUE);
+      case "luma-component":
+        return ColorRepresentation.kernel(ColorRepresentation.ComponentType.LUMA);
+      case "intensity-component":
+        return ColorRepresentation.kernel(ColorRepresentation.ComponentType.INTENSITY);
+      case "level-adjust":
+        return LevelAdjust.kernel(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+            Integer.parseInt(parts[3]), parts.length == 8 ? Integer.parseInt(parts[7]) : null);
+      default:
+        throw new IllegalArgumentException("Not a pointwise command: " + command);
+    }
+  }
+
+  // Whether the line after end continues the chain running from start to end
+  private static boolean continues(List<ScriptCommand> commands, List<Set<String>> deadAfter,
+      int start, int end) {
+    ScriptCommand last = commands.get(end);
+    ScriptCommand next = commands.get(end + 1);
+    if (!isFusable(last) || !isFusable(next) || last.getName().equals("level-adjust")) {
+      return false;
+    }
+    String intermediate = last.getWrites().get(0);
+    if (!next.getReads().equals(last.getWrites()) || next.getWrites().contains(intermediate)
+        || !deadAfter.get(end + 1).contains(intermediate)) {
+      return false;
+    }
+    // The intermediate must not stand for another image of the chain
+    if (commands.get(start).getReads().contains(intermediate)) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (commands.get(i).getWrites().contains(intermediate)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isFusable(ScriptCommand command) {
+    if (command.isBarrier()) {
+      return false;
+    }
+    int n = command.getParts().length;
+    switch (command.getName()) {
+      case "sepia":
+      case "greyscale":
+        return n == 3 || n == 5;
+      case "red-component":
+      case "green-component":
+      case "blue-component":
+        return n == 3;
+      case "brighten":
+      case "darken":
+      case "value-component":
+      case "luma-component":
+      case "intensity-component":
+      case "level-adjust":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static Integer splitPosition(String[] parts) {
+    if (parts.length != 5) {
+      return 100;
+    }
+    int splitPosition = Integer.parseInt(parts[4]);
+    if (splitPosition < 0) {
+      // Left to the line itself, which does not expect it
+      throw new IllegalArgumentException("Invalid split position: " + splitPosition);
+    }
+    return splitPosition;
+  }
+}
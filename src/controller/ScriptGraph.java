@@ -0,0 +1,270 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The commands of a script as a dataflow graph, so that lines touching unrelated images can run
+ * at the same time. A line waits for the earlier lines whose images it reads (read after write),
+ * whose images it overwrites or frees (write after write, write after read), and for an earlier
+ * save of a file it loads. A barrier such as {@code run} waits for every earlier line and every
+ * later line waits for it. A save also waits for every earlier line, so a file is only written
+ * once everything before it in the script has succeeded.
+ *
+ * <p>{@link #run(int, Step)} runs the lines on a work-stealing pool. When lines fail, the error
+ * thrown is the one of the earliest failing line: lines before it still run, and lines after it
+ * that have not started yet are skipped. A failing script thus reports the same error and writes
+ * the same files as when run in order, though images of later lines may already be stored.
+ */
+final class ScriptGraph {
+
+  /**
+   * Runs one line of the script.
+   */
+  interface Step {
+
+    /**
+     * Runs a line.
+     *
+     * @param index The index of the line's command in the script.
+     * @throws IOException If the line fails to read or write a file.
+     */
+    void run(int index) throws IOException;
+  }
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final List<List<Integer>> dependencies;
+  private final List<List<Integer>> dependents;
+
+  private ScriptGraph(List<List<Integer>> dependencies) {
+    this.dependencies = dependencies;
+    this.dependents = new ArrayList<>();
+    for (int i = 0; i < dependencies.size(); i++) {
+      dependents.add(new ArrayList<>());
+    }
+    for (int i = 0; i < dependencies.size(); i++) {
+      for (int dependency : dependencies.get(i)) {
+        dependents.get(dependency).add(i);
+      }
+    }
+  }
+
+  /**
+   * Builds the graph of a script.
+   *
+   * @param commands  The commands of the script, in order.
+   * @param deadAfter For each command, the names freed once it has run, or null if none are.
+   * @return The graph.
+   */
+  static ScriptGraph build(List<ScriptCommand> commands, List<Set<String>> deadAfter) {
+    List<List<Integer>> dependencies = new ArrayList<>();
+    Map<String, Integer> lastWriter = new HashMap<>();
+    Map<String, List<Integer>> readers = new HashMap<>();
+    Map<Path, Integer> lastSave = new HashMap<>();
+    // The last barrier, and the last line that waited for every line before it
+    int fence = -1;
+    int ordered = -1;
+    for (int i = 0; i < commands.size(); i++) {
+      ScriptCommand command = commands.get(i);
+      Set<Integer> waitsFor = new TreeSet<>();
+      boolean save = command.getName().equals("save") && !command.isBarrier();
+      if (command.isBarrier() || save) {
+        for (int j = Math.max(ordered, 0); j < i; j++) {
+          waitsFor.add(j);
+        }
+      } else if (fence >= 0) {
+        waitsFor.add(fence);
+      }
+
+      List<String> writes = new ArrayList<>(command.getWrites());
+      if (deadAfter != null) {
+        // Freeing a name is a write: it must wait for the name's readers
+        writes.addAll(deadAfter.get(i));
+      }
+      for (String name : command.getReads()) {
+        addIfPresent(waitsFor, lastWriter.get(name));
+      }
+      for (String name : writes) {
+        addIfPresent(waitsFor, lastWriter.get(name));
+        waitsFor.addAll(readers.getOrDefault(name, Collections.emptyList()));
+      }
+      if (command.getName().equals("load") && !command.isBarrier()) {
+        addIfPresent(waitsFor, lastSave.get(normalize(command.getParts()[1])));
+      }
+      waitsFor.remove(i);
+      dependencies.add(new ArrayList<>(waitsFor));
+
+      if (command.isBarrier()) {
+        lastWriter.clear();
+        readers.clear();
+        lastSave.clear();
+        fence = i;
+        ordered = i;
+        continue;
+      }
+      for (String name : command.getReads()) {
+        readers.computeIfAbsent(name, key -> new ArrayList<>()).add(i);
+      }
+      for (String name : writes) {
+        lastWriter.put(name, i);
+        readers.remove(name);
+      }
+      if (save) {
+        lastSave.put(normalize(command.getParts()[1]), i);
+        ordered = i;
+      }
+    }
+    return new ScriptGraph(dependencies);
+  }
+
+  /**
+   * Returns the lines a line waits for.
+   *
+   * @param index The index of the line.
+   * @return The indices of the earlier lines, in increasing order.
+   */
+  List<Integer> getDependencies(int index) {
+    return Collections.unmodifiableList(dependencies.get(index));
+  }
+
+  /**
+   * Runs every line once the lines it waits for have run, at most the given number at a time, and
+   * returns once all of them have run or the script has failed.
+   *
+   * @param threads The number of lines run at once.
+   * @param step    Runs one line.
+   * @throws IOException If the earliest failing line failed with one.
+   */
+  void run(int threads, Step step) throws IOException {
+    ForkJoinPool pool = new ForkJoinPool(threads, forkJoinPool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+          .newThread(forkJoinPool);
+      thread.setName("image-script-" + THREAD_COUNT.incrementAndGet());
+      return thread;
+    }, null, false);
+    Execution execution = new Execution(pool, step);
+    try {
+      execution.start();
+      execution.await();
+    } finally {
+      pool.shutdown();
+    }
+    execution.rethrow();
+  }
+
+  private static void addIfPresent(Set<Integer> indices, Integer index) {
+    if (index != null) {
+      indices.add(index);
+    }
+  }
+
+  private static Path normalize(String file) {
+    return Paths.get(file).toAbsolutePath().normalize();
+  }
+
+  /**
+   * The state of one run of the graph, guarded by its own lock.
+   */
+  private final class Execution {
+
+    private final ForkJoinPool pool;
+    private final Step step;
+    private final int[] waiting;
+    private int running;
+    // Index of the earliest line that failed, or the number of lines while none has
+    private int firstFailure;
+    private Throwable failure;
+
+    Execution(ForkJoinPool pool, Step step) {
+      this.pool = pool;
+      this.step = step;
+      this.waiting = new int[dependencies.size()];
+      for (int i = 0; i < waiting.length; i++) {
+        waiting[i] = dependencies.get(i).size();
+      }
+      this.firstFailure = waiting.length;
+    }
+
+    synchronized void start() {
+      for (int i = 0; i < waiting.length; i++) {
+        if (waiting[i] == 0) {
+          schedule(i);
+        }
+      }
+    }
+
+    synchronized void await() {
+      while (running > 0) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while running the script", e);
+        }
+      }
+    }
+
+    void rethrow() throws IOException {
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      if (failure != null) {
+        throw new IllegalStateException("Script failed", failure);
+      }
+    }
+
+    private void schedule(int index) {
+      if (index > firstFailure) {
+        // Would not have run in order either
+        return;
+      }
+      running++;
+      pool.execute(() -> {
+        Throwable error = null;
+        try {
+          step.run(index);
+        } catch (Throwable t) {
+          error = t;
+        }
+        finish(index, error);
+      });
+    }
+
+    private synchronized void finish(int index, Throwable error) {
+      running--;
+      if (error != null) {
+        if (index < firstFailure) {
+          firstFailure = index;
+          failure = error;
+        }
+      } else {
+        for (int dependent : dependents.get(index)) {
+          if (--waiting[dependent] == 0) {
+            schedule(dependent);
+          }
+        }
+      }
+      if (running == 0) {
+        notifyAll();
+      }
+    }
+  }
+}
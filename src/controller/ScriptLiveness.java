@@ -0,0 +1,70 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works out, for each command of a script, which image names are dead once it has run: names the
+ * script writes that no later command reads before writing them again. Freeing them right away
+ * bounds the memory of a script by its working set rather than by the number of names it uses.
+ *
+ * <p>Only names the script itself writes are considered, so images that existed before the script
+ * started are left alone until the script overwrites them. A barrier command such as {@code run}
+ * may read any name, so nothing is freed before the last barrier.
+ */
+final class ScriptLiveness {
+
+  private ScriptLiveness() {
+  }
+
+  /**
+   * Computes the names that die after each command.
+   *
+   * @param commands The commands of the script, in order.
+   * @return For each command, the names that can be freed once it has run.
+   */
+  static List<Set<String>> deadAfter(List<ScriptCommand> commands) {
+    return deadAfter(commands, Collections.emptySet());
+  }
+
+  /**
+   * Computes the names that die after each command, keeping some names alive to the end.
+   *
+   * @param commands The commands of the script, in order.
+   * @param kept     Names the caller still needs once the script is done.
+   * @return For each command, the names that can be freed once it has run.
+   */
+  static List<Set<String>> deadAfter(List<ScriptCommand> commands, Set<String> kept) {
+    Set<String> written = new HashSet<>();
+    for (ScriptCommand command : commands) {
+      written.addAll(command.getWrites());
+    }
+
+    List<Set<String>> dead = new ArrayList<>(commands.size());
+    for (int i = 0; i < commands.size(); i++) {
+      dead.add(new LinkedHashSet<>());
+    }
+    // Names read by some later command before being written again
+    Set<String> live = new HashSet<>(kept);
+    for (int i = commands.size() - 1; i >= 0; i--) {
+      ScriptCommand command = commands.get(i);
+      if (command.isBarrier()) {
+        break;
+      }
+      Set<String> touched = new LinkedHashSet<>(command.getReads());
+      touched.addAll(command.getWrites());
+      for (String name : touched) {
+        if (written.contains(name) && !live.contains(name)) {
+          dead.get(i).add(name);
+        }
+      }
+      live.removeAll(command.getWrites());
+      live.addAll(command.getReads());
+    }
+    return dead;
+  }
+}
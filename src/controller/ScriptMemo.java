@@ -0,0 +1,232 @@
+package controller;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.Workspace;
+
+/**
+ * Remembers the results of the image operations a parser has run, keyed by the command, its
+ * parameters and the versions of the images it read, so that running the same operation on the
+ * same pixels again stores the earlier results under the new names instead of computing them.
+ * Stored images are never written in place, since every operation writes a new destination, so a
+ * result shared by several names is copied on write: overwriting one of the names stores a new
+ * image and leaves the others alone.
+ *
+ * <p>Every image read by a command gets a version the first time it is seen; two names hold the
+ * same version exactly when they hold the same image, for instance after a result was reused. The
+ * results are only held weakly, so remembering them never keeps a freed image in memory; once one
+ * is collected the command runs again. Results in an image pool are only reused while they are
+ * still stored under the name they were computed for, since a freed one may have been recycled,
+ * and off-heap results are never remembered, since their arena may be closed. All methods are
+ * thread-safe.
+ */
+final class ScriptMemo {
+
+  // Versions of the images read so far; images use identity for equality
+  private final Map<Image, Long> versions = new WeakHashMap<>();
+  private final Map<String, Result> results = new HashMap<>();
+  private long nextVersion;
+  private int purgeAt = 64;
+  private long reused;
+  private long reusedPixels;
+
+  /**
+   * Returns the key of a command given the images it reads now.
+   *
+   * @param command   The command about to run.
+   * @param workspace The workspace holding its images.
+   * @return The key, or null if the command is not remembered.
+   */
+  String key(ScriptCommand command, Workspace workspace) {
+    if (!command.isImageOperation()) {
+      return null;
+    }
+    List<String> reads = command.getReads();
+    Image[] sources = new Image[reads.size()];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = workspace.get(reads.get(i));
+      if (sources[i] == null) {
+        return null;
+      }
+    }
+
+    Map<String, String> tokens = new HashMap<>();
+    synchronized (this) {
+      for (int i = 0; i < sources.length; i++) {
+        Long version = versions.get(sources[i]);
+        if (version == null) {
+          version = nextVersion++;
+          versions.put(sources[i], version);
+        }
+        tokens.put(reads.get(i), "#" + version);
+      }
+    }
+    return describe(command, tokens);
+  }
+
+  /**
+   * Describes an image operation with the images it reads replaced by the given tokens, the
+   * images it writes by their position and the intermediates of a fused command by their place in
+   * the chain, so that two commands with the same description compute the same images from the
+   * same sources.
+   *
+   * @param command    The command.
+   * @param readTokens The token of every name the command reads.
+   * @return The description, or null if a name could be mistaken for a parameter.
+   */
+  static String describe(ScriptCommand command, Map<String, String> readTokens) {
+    List<ScriptCommand> steps = command.getSteps().isEmpty()
+        ? Collections.singletonList(command) : command.getSteps();
+    for (ScriptCommand step : steps) {
+      for (String name : names(step)) {
+        // A name that reads as a number could stand for a parameter as well
+        if (name.matches("[+-]?\\d+")) {
+          return null;
+        }
+      }
+    }
+    Map<String, String> tokens = new HashMap<>(readTokens);
+    List<String> writes = command.getWrites();
+    for (int i = 0; i < writes.size(); i++) {
+      tokens.putIfAbsent(writes.get(i), "@" + i);
+    }
+    StringBuilder key = new StringBuilder();
+    for (ScriptCommand step : steps) {
+      for (String name : step.getWrites()) {
+        // Intermediates of a fused command, by their place in the chain
+        tokens.putIfAbsent(name, "%" + tokens.size());
+      }
+      for (String part : step.getParts()) {
+        key.append(tokens.getOrDefault(part, part)).append(' ');
+      }
+      key.append(';');
+    }
+    // A level-adjust whose histogram is not needed stores fewer images
+    return key.append(writes.size()).toString();
+  }
+
+  /**
+   * Stores the remembered results of a key under the outputs of a command.
+   *
+   * @param key       The key of the command.
+   * @param command   The command about to run.
+   * @param workspace The workspace holding its images.
+   * @return true if the results were stored and the command need not run.
+   */
+  boolean reuse(String key, ScriptCommand command, Workspace workspace) {
+    Result result;
+    synchronized (this) {
+      result = results.get(key);
+    }
+    if (result == null) {
+      return false;
+    }
+    List<Image> images = new ArrayList<>();
+    for (int i = 0; i < result.images.size(); i++) {
+      Image image = result.images.get(i).get();
+      if (image == null || workspace.getImagePool() != null
+          && workspace.get(result.names.get(i)) != image) {
+        synchronized (this) {
+          results.remove(key, result);
+        }
+        return false;
+      }
+      images.add(image);
+    }
+
+    List<String> outputs = command.getWrites();
+    long pixels = 0;
+    for (int i = 0; i < outputs.size(); i++) {
+      workspace.put(outputs.get(i), images.get(i));
+      pixels += (long) images.get(i).getWidth() * images.get(i).getHeight();
+    }
+    synchronized (this) {
+      reused++;
+      reusedPixels += pixels;
+    }
+    return true;
+  }
+
+  /**
+   * Remembers the results of a command that has just run.
+   *
+   * @param key       The key the command had before it ran.
+   * @param command   The command.
+   * @param workspace The workspace holding its images.
+   */
+  void record(String key, ScriptCommand command, Workspace workspace) {
+    List<String> outputs = command.getWrites();
+    List<WeakReference<Image>> images = new ArrayList<>();
+    for (String output : outputs) {
+      Image image = workspace.get(output);
+      if (image == null || image.getLayout() == Image.Layout.OFF_HEAP) {
+        return;
+      }
+      images.add(new WeakReference<>(image));
+    }
+    synchronized (this) {
+      results.put(key, new Result(outputs, images));
+      if (results.size() >= purgeAt) {
+        purge();
+        purgeAt = Math.max(64, results.size() * 2);
+      }
+    }
+  }
+
+  /**
+   * Returns how many commands were skipped because their results were reused.
+   *
+   * @return The number of reused results.
+   */
+  synchronized long getReused() {
+    return reused;
+  }
+
+  /**
+   * Returns how many pixels the skipped commands would have computed.
+   *
+   * @return The number of pixels of the reused results.
+   */
+  synchronized long getReusedPixels() {
+    return reusedPixels;
+  }
+
+  private static List<String> names(ScriptCommand command) {
+    List<String> names = new ArrayList<>(command.getReads());
+    names.addAll(command.getWrites());
+    return names;
+  }
+
+  private void purge() {
+    Iterator<Result> iterator = results.values().iterator();
+    while (iterator.hasNext()) {
+      for (WeakReference<Image> image : iterator.next().images) {
+        if (image.get() == null) {
+          iterator.remove();
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * The outputs of a command, with the names they were first stored under.
+   */
+  private static final class Result {
+
+    final List<String> names;
+    final List<WeakReference<Image>> images;
+
+    Result(List<String> names, List<WeakReference<Image>> images) {
+      this.names = names;
+      this.images = images;
+    }
+  }
+}
@@ -1,10 +1,22 @@
 package controller;
 
+import java.awt.Rectangle;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Recipe;
+import model.imagerepresentation.Workspace;
 import model.transformations.classes.BrightenDarken;
 import model.transformations.classes.ColorCorrection;
 import model.transformations.classes.ColorRepresentation;
@@ -41,7 +53,34 @@ public class ScriptParser {
   private ImageLoader imageLoader;
   private ImageOperations imageOperations = new ImageOperations();
   private ImageLoaderView view; // Add view reference
-
+  private boolean lazy;
+  private boolean releaseDeadImages;
+  private boolean streaming;
+  // Threads decoding upcoming load commands, 0 to load each image on its own line
+  private int prefetchThreads;
+  // Threads encoding saves in the background, 0 to write each file on its own line
+  private int saveThreads;
+  // Saves of the script being run, shared with the scripts it starts with "run"
+  private AsyncSaver saver;
+  // Lines of a script run at once, 1 or less to run them in order
+  private int parallelThreads;
+  // Whether chains of per-pixel lines run as one pass over the image
+  private boolean fusing;
+  // Whether lines that contribute to no save or kept name are dropped before a script runs
+  private boolean pruning;
+  // Whether scripts are only pruned, without running any of their lines
+  private boolean dryRun;
+  // Names whose images are still needed once a script is done
+  private Set<String> keptNames = Collections.emptySet();
+  // Lines dropped from, and side products not computed by, the last script that was pruned
+  private List<String> prunedLines = Collections.emptyList();
+  private List<String> skippedOutputs = Collections.emptyList();
+  // Results of earlier image operations, or null to always run them
+  private ScriptMemo memo;
+  // Results kept on disk across runs, or null to compute every line
+  private BuildCache buildCache;
+  // Scripts started by "run" from a script that is already running
+  private int scriptDepth;
 
   /**
    * Constructs a ScriptParser with the given ImageLoader and ImageOperations.
@@ -57,6 +96,245 @@ public class ScriptParser {
 
   }
 
+  /**
+   * Sets whether image operations are deferred. When lazy, an operation whose sources exist is
+   * stored as a recipe and only run when one of its outputs is needed, for example by a save, so
+   * intermediates that nothing reads are never computed. Errors in a deferred operation surface
+   * when it runs. Operations that overwrite one of their own sources always run at once.
+   *
+   * @param lazy true to defer image operations.
+   */
+  public void setLazy(boolean lazy) {
+    this.lazy = lazy;
+  }
+
+  /**
+   * Sets whether a script frees each image it creates right after the last command that uses it.
+   * Images the script writes but never reads or saves afterwards are freed at once, so only enable
+   * this when nothing needs the script's images once it is done. Scripts started with {@code run}
+   * from a running script never free images, since the outer script may still need them.
+   *
+   * @param releaseDeadImages true to free dead images while a script runs.
+   */
+  public void setReleaseDeadImages(boolean releaseDeadImages) {
+    this.releaseDeadImages = releaseDeadImages;
+  }
+
+  /**
+   * Sets whether a script that only loads PPM or PGM files, runs operations that work row by row
+   * (such as brighten, sepia, the component operations and level-adjust) and saves PPM, PGM or PNG
+   * files is streamed through in bands of rows. Its memory use then no longer grows with the
+   * height of the images, but none of its images are kept once it is done, as if
+   * {@link #setReleaseDeadImages(boolean)} were on. Other scripts, and scripts started with
+   * {@code run}, are not affected.
+   *
+   * @param streaming true to stream scripts that allow it.
+   */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  /**
+   * Sets how many upcoming load commands of a script are decoded in the background while earlier
+   * lines run. Each image is still stored when its own line runs, and a load that fails reports
+   * its error there. Loads that come after a {@code run} line or after a save to the same file are
+   * not decoded early.
+   *
+   * @param prefetchThreads The number of loads decoded at once, or 0 to turn prefetching off.
+   * @throws IllegalArgumentException if the number is negative.
+   */
+  public void setPrefetchThreads(int prefetchThreads) {
+    if (prefetchThreads < 0) {
+      throw new IllegalArgumentException("Prefetch threads cannot be negative.");
+    }
+    this.prefetchThreads = prefetchThreads;
+  }
+
+  /**
+   * Sets how many saves of a script are encoded and written in the background while later lines
+   * run. Each save works on a copy of the image, and at most twice this many saves are pending at
+   * once; a further save waits for one to finish. A load of a file still being written waits for
+   * it. An error in a background save is reported at the next line, or when the script ends, which
+   * also waits for every save to finish.
+   *
+   * @param saveThreads The number of saves encoded at once, or 0 to save on the save line itself.
+   * @throws IllegalArgumentException if the number is negative.
+   */
+  public void setSaveThreads(int saveThreads) {
+    if (saveThreads < 0) {
+      throw new IllegalArgumentException("Save threads cannot be negative.");
+    }
+    this.saveThreads = saveThreads;
+  }
+
+  /**
+   * Sets how many lines of a script may run at once. Lines that touch unrelated images, such as
+   * the work on each channel after an rgb-split, then run on a work-stealing pool, while lines
+   * that read, overwrite or free an image another line uses keep their order. A {@code run} line
+   * waits for every line before it, and a save waits for every line before it too, so files are
+   * written as when the lines run in order. When lines fail, the error of the earliest one is
+   * thrown. Loads and saves run as lines of their own, so prefetching and background saves are
+   * not used; nor is this used for lazy parsers or for scripts started with {@code run}.
+   *
+   * @param parallelThreads The number of lines run at once, or 1 to run them in order.
+   * @throws IllegalArgumentException if the number is negative.
+   */
+  public void setParallelThreads(int parallelThreads) {
+    if (parallelThreads < 0) {
+      throw new IllegalArgumentException("Parallel threads cannot be negative.");
+    }
+    this.parallelThreads = parallelThreads;
+  }
+
+  /**
+   * Sets whether chains of lines that each work pixel by pixel, such as brighten, darken, sepia,
+   * greyscale, the component operations and level-adjust, run as a single pass over the image. A
+   * line joins a chain when it reads the image the line before it wrote and no other line reads
+   * that image, which is then never stored, as if {@link #setReleaseDeadImages(boolean)} were on
+   * for it. Lines with a mask are not fused. The images produced are the same as when each line
+   * runs on its own. Scripts started with {@code run} are not affected.
+   *
+   * @param fusing true to fuse chains of per-pixel lines.
+   */
+  public void setFusing(boolean fusing) {
+    this.fusing = fusing;
+  }
+
+  /**
+   * Sets whether lines that contribute to no file the script saves, nor to a kept name, are
+   * dropped before the script runs, along with the histogram a level-adjust stores when nothing
+   * reads it. Only enable this when nothing needs the script's other images once it is done. A
+   * {@code run} line may read any image, so it and every line before it always run. Scripts
+   * started with {@code run} are not pruned. Dropped lines are never executed, so errors in them,
+   * such as a load of a missing file, are not reported.
+   *
+   * @param pruning true to drop lines whose images are not needed.
+   * @see #setKeptNames(Collection)
+   */
+  public void setPruning(boolean pruning) {
+    this.pruning = pruning;
+  }
+
+  /**
+   * Sets the names whose images are still needed once a script is done. Pruning keeps the lines
+   * they depend on, and freeing dead images and fusion leave them stored.
+   *
+   * @param keptNames The names to keep.
+   */
+  public void setKeptNames(Collection<String> keptNames) {
+    this.keptNames = Collections.unmodifiableSet(new HashSet<>(keptNames));
+  }
+
+  /**
+   * Sets whether scripts are only pruned, as {@link #setPruning(boolean)} would, without running
+   * any of their lines. The lines that would be dropped are then available from
+   * {@link #getPrunedLines()}.
+   *
+   * @param dryRun true to prune scripts without running them.
+   */
+  public void setDryRun(boolean dryRun) {
+    this.dryRun = dryRun;
+  }
+
+  /**
+   * Returns the lines dropped from the last script that was pruned.
+   *
+   * @return The lines in script order, empty if no script was pruned.
+   */
+  public List<String> getPrunedLines() {
+    return prunedLines;
+  }
+
+  /**
+   * Returns the side products, such as histograms of level adjustments, that the last pruned
+   * script does not compute since nothing reads them.
+   *
+   * @return The image names in script order, empty if no script was pruned.
+   */
+  public List<String> getSkippedOutputs() {
+    return skippedOutputs;
+  }
+
+  /**
+   * Sets whether image operations reuse earlier results. An operation whose command, parameters
+   * and source images match one that ran before stores the earlier results under its own names
+   * instead of running, for instance the second of {@code blur img b1} and {@code blur img b2}.
+   * The names then share one image; since operations never write into an image they did not
+   * create, overwriting one of them leaves the others alone. Results are only held weakly, so
+   * freed images are not kept for reuse. Turning this off forgets every result.
+   *
+   * @param memoizing true to reuse the results of earlier operations.
+   */
+  public void setMemoizing(boolean memoizing) {
+    if (!memoizing) {
+      memo = null;
+    } else if (memo == null) {
+      memo = new ScriptMemo();
+    }
+  }
+
+  /**
+   * Returns how many image operations were skipped because their results were reused.
+   *
+   * @return The number of reused results, 0 if memoizing is off.
+   */
+  public long getReusedResults() {
+    return memo != null ? memo.getReused() : 0;
+  }
+
+  /**
+   * Returns how many pixels the skipped image operations would have computed.
+   *
+   * @return The number of pixels of the reused results, 0 if memoizing is off.
+   */
+  public long getReusedPixels() {
+    return memo != null ? memo.getReusedPixels() : 0;
+  }
+
+  /**
+   * Keeps the images that loads and image operations produce in a directory, so that later runs,
+   * even of other parsers, load the results of lines whose inputs and parameters have not changed
+   * instead of computing them again. Results are identified by a hash of the input files and of
+   * the commands that led to them, and once a script is done the least recently used ones are
+   * deleted until the directory is no larger than the given size. Lines reading images the caller
+   * stored, deferred lines and streamed scripts are not cached.
+   *
+   * @param directory The directory holding the results, or null to stop caching.
+   * @param maxBytes  The size the directory is trimmed to after each script.
+   * @throws IOException if the directory cannot be created.
+   */
+  public void setBuildCache(Path directory, long maxBytes) throws IOException {
+    this.buildCache = directory != null ? new BuildCache(directory, maxBytes) : null;
+  }
+
+  /**
+   * Returns how many lines loaded their results from the build cache.
+   *
+   * @return The number of hits, 0 if there is no build cache.
+   */
+  public long getCacheHits() {
+    return buildCache != null ? buildCache.getHits() : 0;
+  }
+
+  /**
+   * Returns how many lines were looked up in the build cache but had to be computed.
+   *
+   * @return The number of misses, 0 if there is no build cache.
+   */
+  public long getCacheMisses() {
+    return buildCache != null ? buildCache.getMisses() : 0;
+  }
+
+  /**
+   * Returns a one-line summary of the build cache: hits, misses, images stored and evicted, and
+   * the size of its directory.
+   *
+   * @return The summary, or null if there is no build cache.
+   */
+  public String getCacheReport() {
+    return buildCache != null ? buildCache.report() : null;
+  }
+
   /**
    * Parses the script file at the given path and executes its commands.
    *
@@ -66,19 +344,112 @@ public class ScriptParser {
   public void parseScript(String scriptPath) throws IOException {
     view.displayProcessingMessage(); // Display processing message
 
+    List<ScriptCommand> commands = new ArrayList<>();
     try (BufferedReader reader = new BufferedReader(new FileReader(scriptPath))) {
       String line;
       while ((line = reader.readLine()) != null) {
         line = line.trim();
         if (!line.isEmpty() && !line.startsWith("#")) {
-          executeLine(line);
+          commands.add(ScriptCommand.parse(line));
+        }
+      }
+    }
+
+    scriptDepth++;
+    try {
+      if ((pruning || dryRun) && scriptDepth == 1) {
+        ScriptPruning pruned = ScriptPruning.prune(commands, keptNames);
+        List<String> lines = new ArrayList<>();
+        for (ScriptCommand command : pruned.getPruned()) {
+          lines.add(command.getLine());
         }
+        prunedLines = Collections.unmodifiableList(lines);
+        skippedOutputs = pruned.getSkippedOutputs();
+        if (dryRun) {
+          return;
+        }
+        commands = pruned.getKept();
+      }
+      if (streaming && scriptDepth == 1 && ScriptStreamer.canStream(commands)
+          && ScriptStreamer.stream(commands, imageLoader, this::execute)) {
+        view.displayCompletionMessage();
+        return;
+      }
+      if (fusing && scriptDepth == 1) {
+        commands = ScriptFusion.fuse(commands, keptNames);
+      }
+      List<Set<String>> deadAfter = releaseDeadImages && scriptDepth == 1
+          ? ScriptLiveness.deadAfter(commands, keptNames) : null;
+      if (parallelThreads > 1 && scriptDepth == 1 && !lazy) {
+        runParallel(commands, deadAfter);
+      } else {
+        runInOrder(commands, deadAfter);
+      }
+    } finally {
+      if (buildCache != null && scriptDepth == 1) {
+        trimCache();
       }
+      scriptDepth--;
     }
     view.displayCompletionMessage();
 
   }
 
+  private void runInOrder(List<ScriptCommand> commands, List<Set<String>> deadAfter)
+      throws IOException {
+    LoadPrefetcher prefetcher = prefetchThreads > 0
+        ? new LoadPrefetcher(commands, this::load, prefetchThreads) : null;
+    if (saveThreads > 0 && scriptDepth == 1) {
+      saver = new AsyncSaver(imageLoader, saveThreads);
+    }
+    try {
+      for (int i = 0; i < commands.size(); i++) {
+        if (saver != null) {
+          saver.checkErrors();
+        }
+        Image prefetched = prefetcher != null ? prefetcher.take(i) : null;
+        if (prefetched != null) {
+          String[] parts = commands.get(i).getParts();
+          imageOperations.saveImage(parts[2], prefetched);
+          if (buildCache != null) {
+            buildCache.loaded(parts, buildCache.loadKey(parts), prefetched);
+          }
+        } else {
+          executeCommand(commands.get(i));
+        }
+        releaseDead(deadAfter, i);
+      }
+      if (saver != null && scriptDepth == 1) {
+        saver.flush();
+      }
+    } finally {
+      if (prefetcher != null) {
+        prefetcher.close();
+      }
+      if (saver != null && scriptDepth == 1) {
+        saver.close();
+        saver = null;
+      }
+    }
+  }
+
+  private void runParallel(List<ScriptCommand> commands, List<Set<String>> deadAfter)
+      throws IOException {
+    // Loads and saves are lines of the graph themselves, so they need no prefetcher or saver
+    ScriptGraph.build(commands, deadAfter).run(parallelThreads, i -> {
+      executeCommand(commands.get(i));
+      releaseDead(deadAfter, i);
+    });
+  }
+
+  private void releaseDead(List<Set<String>> deadAfter, int index) {
+    if (deadAfter != null) {
+      for (String name : deadAfter.get(index)) {
+        imageOperations.removeImage(name);
+      }
+    }
+  }
+
   /**
    * Executes a single line command from the script.
    *
@@ -86,29 +457,135 @@ public class ScriptParser {
    * @throws IOException If there is an error during execution.
    */
   void executeLine(String line) throws IOException {
-    String[] parts = line.split("\\s+");
+    executeCommand(ScriptCommand.parse(line));
+  }
+
+  private void executeCommand(ScriptCommand command) throws IOException {
+    BuildCache cache = buildCache;
+    Workspace workspace = imageOperations.getWorkspace();
+    if (lazy && canDefer(command)) {
+      imageOperations.saveRecipe(new CommandRecipe(command));
+      if (cache != null) {
+        // Deferred images are not cached
+        cache.written(command, null, workspace);
+      }
+      return;
+    }
+    // Taken before the command runs, since it may overwrite what it reads
+    String cacheKey = cache != null ? cache.key(command, workspace) : null;
+    ScriptMemo memo = this.memo;
+    String key = memo != null ? memo.key(command, workspace) : null;
+    if (key == null || !memo.reuse(key, command, workspace)) {
+      if (cacheKey == null || !restore(cacheKey, command, workspace)) {
+        execute(command, workspace);
+        if (cacheKey != null) {
+          cache.store(cacheKey, outputs(command, workspace));
+        }
+      }
+      if (key != null) {
+        memo.record(key, command, workspace);
+      }
+    }
+    if (cache != null && command.isImageOperation()) {
+      cache.written(command, cacheKey, workspace);
+    }
+  }
+
+  /**
+   * Stores the results the build cache holds for a command under its outputs.
+   */
+  private boolean restore(String cacheKey, ScriptCommand command, Workspace workspace) {
+    List<Image> images = buildCache.fetch(cacheKey, command.getWrites().size());
+    if (images == null) {
+      return false;
+    }
+    for (int i = 0; i < images.size(); i++) {
+      workspace.put(command.getWrites().get(i), images.get(i));
+    }
+    return true;
+  }
+
+  private static List<Image> outputs(ScriptCommand command, Workspace workspace) {
+    List<Image> images = new ArrayList<>();
+    for (String name : command.getWrites()) {
+      Image image = workspace.get(name);
+      if (image == null) {
+        return Collections.emptyList();
+      }
+      images.add(image);
+    }
+    return images;
+  }
+
+  private void trimCache() {
+    try {
+      buildCache.trim();
+    } catch (IOException e) {
+      // The script's results are unaffected; the cache is only trimmed after the next one
+    }
+  }
+
+  private void execute(ScriptCommand command, Workspace workspace) throws IOException {
+    if (!command.getSteps().isEmpty()) {
+      ScriptFusion.run(command, workspace, this::execute);
+    } else if (command.getName().equals("level-adjust") && !command.isBarrier()
+        && !command.getWrites().contains(ScriptCommand.histogramOf(command.getParts()[5]))) {
+      // Pruned so as not to store its histogram
+      levelAdjust(command.getParts(), workspace, false);
+    } else {
+      execute(command.getParts(), workspace);
+    }
+  }
+
+  private boolean canDefer(ScriptCommand command) {
+    if (!command.isImageOperation()) {
+      return false;
+    }
+    Workspace workspace = imageOperations.getWorkspace();
+    for (String source : command.getReads()) {
+      if (!workspace.contains(source) || command.getWrites().contains(source)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Executes a command. Image operations read and write the images of the given workspace; load
+   * and save always use the parser's own images.
+   */
+  private void execute(String[] parts, Workspace workspace) throws IOException {
     String command = parts[0].toLowerCase();
-    FlippingInterface flip = new Flipping();
-    BrightenDarkenInterface bd = new BrightenDarken();
-    FilteringInterface filter = new Filtering();
-    ComponentInterface comp = new ComponentVisualization();
-    ColorRepresentationInterface cr = new ColorRepresentation();
-    CombineChannelsInterface cci = new CombineChannels();
-    ColorTransformationInterface clr = new ColorTransformation();
-    SplitInterface spl = new Split();
-    HistogramInterface hi = new Histogram();
-    ColorCorrectionInterface clrc = new ColorCorrection();
-    LevelAdjustInterface lai = new LevelAdjust();
-    ImageCompressionInterface ic = new ImageCompression();
+    FlippingInterface flip = new Flipping(workspace);
+    BrightenDarkenInterface bd = new BrightenDarken(workspace);
+    FilteringInterface filter = new Filtering(workspace);
+    ComponentInterface comp = new ComponentVisualization(workspace);
+    ColorRepresentationInterface cr = new ColorRepresentation(workspace);
+    CombineChannelsInterface cci = new CombineChannels(workspace);
+    ColorTransformationInterface clr = new ColorTransformation(workspace);
+    SplitInterface spl = new Split(workspace);
+    HistogramInterface hi = new Histogram(workspace);
+    ColorCorrectionInterface clrc = new ColorCorrection(workspace);
+    ImageCompressionInterface ic = new ImageCompression(workspace);
 
     switch (command) {
       case "load":
-        validateArgCount(parts, 3, "load");
-        imageOperations.saveImage(parts[2], imageLoader.loadImage(parts[1]));
+        if (saver != null && parts.length > 1 && saver.isPending(parts[1])) {
+          saver.flush();
+        }
+        Image loaded = load(parts);
+        imageOperations.saveImage(parts[2], loaded);
+        if (buildCache != null) {
+          buildCache.loaded(parts, buildCache.loadKey(parts), loaded);
+        }
         break;
       case "save":
         validateArgCount(parts, 3, "save");
-        imageLoader.saveImage(parts[1], imageOperations.getImage(parts[2]));
+        if (saver != null) {
+          saver.save(parts[1], imageOperations.getImage(parts[2]));
+        } else {
+          imageLoader.saveImage(parts[1], imageOperations.getImage(parts[2]));
+        }
         break;
       // Component visualization commands
       case "red-component":
@@ -325,22 +802,7 @@ public class ScriptParser {
         ic.compress(threshold, parts[2], parts[3]);
         break;
       case "level-adjust":
-        if (parts.length == 6) {
-          // Command without split: "level-adjust b m w imageName destImageName"
-          lai.levelsAdjust(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
-              Integer.parseInt(parts[3]), parts[4], parts[5], null);
-        } else if (parts.length == 8 && parts[6].equals("split")) {
-          // Command with split: "level-adjust b m w imageName destImageName split 50"
-          try {
-            int splitPosition = Integer.parseInt(parts[7]);
-            lai.levelsAdjust(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
-                Integer.parseInt(parts[3]), parts[4], parts[5], splitPosition);
-          } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Invalid split position for level-adjust command");
-          }
-        } else {
-          throw new IllegalArgumentException("Invalid level-adjust command");
-        }
+        levelAdjust(parts, workspace, true);
         break;
       case "run":
         validateArgCount(parts, 2, "run");
@@ -351,6 +813,108 @@ public class ScriptParser {
     }
   }
 
+  /**
+   * Runs a level-adjust command, optionally without storing the histogram of its result.
+   */
+  private void levelAdjust(String[] parts, Workspace workspace, boolean histogram) {
+    LevelAdjustInterface lai = new LevelAdjust(workspace);
+    if (parts.length == 6) {
+      // Command without split: "level-adjust b m w imageName destImageName"
+      lai.levelsAdjust(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+          Integer.parseInt(parts[3]), parts[4], parts[5], null, histogram);
+    } else if (parts.length == 8 && parts[6].equals("split")) {
+      // Command with split: "level-adjust b m w imageName destImageName split 50"
+      try {
+        int splitPosition = Integer.parseInt(parts[7]);
+        lai.levelsAdjust(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+            Integer.parseInt(parts[3]), parts[4], parts[5], splitPosition, histogram);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid split position for level-adjust command");
+      }
+    } else {
+      throw new IllegalArgumentException("Invalid level-adjust command");
+    }
+  }
+
+  /**
+   * Loads the image of a load command: {@code load file name}, optionally followed by
+   * {@code crop x y width height} and then {@code subsample n}, which only decode that part of the
+   * file and only every n-th row and column of it.
+   */
+  private Image load(String[] parts) {
+    if (parts.length < 3) {
+      throw new IllegalArgumentException("Invalid load command");
+    }
+    Rectangle region = null;
+    int subsampling = 1;
+    int next = 3;
+    try {
+      if (next < parts.length && parts[next].equals("crop") && parts.length >= next + 5) {
+        region = new Rectangle(Integer.parseInt(parts[next + 1]), Integer.parseInt(parts[next + 2]),
+            Integer.parseInt(parts[next + 3]), Integer.parseInt(parts[next + 4]));
+        next += 5;
+      }
+      if (next < parts.length && parts[next].equals("subsample") && parts.length >= next + 2) {
+        subsampling = Integer.parseInt(parts[next + 1]);
+        next += 2;
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid crop or subsample value for load command");
+    }
+    if (next != parts.length) {
+      throw new IllegalArgumentException("Invalid load command");
+    }
+    BuildCache cache = buildCache;
+    String key = cache != null ? cache.loadKey(parts) : null;
+    if (key != null) {
+      List<Image> cached = cache.fetch(key, 1);
+      if (cached != null) {
+        return cached.get(0);
+      }
+    }
+    Image image = imageLoader.loadImage(parts[1], region, subsampling);
+    if (key != null) {
+      cache.store(key, Collections.singletonList(image));
+    }
+    return image;
+  }
+
+  /**
+   * A script command that runs when one of its outputs is first needed.
+   */
+  private final class CommandRecipe implements Recipe {
+
+    private final ScriptCommand command;
+
+    CommandRecipe(ScriptCommand command) {
+      this.command = command;
+    }
+
+    @Override
+    public List<String> getSources() {
+      return command.getReads();
+    }
+
+    @Override
+    public List<String> getOutputs() {
+      return command.getWrites();
+    }
+
+    @Override
+    public void apply() {
+      try {
+        execute(command, imageOperations.getWorkspace());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return command.toString();
+    }
+  }
+
   /**
    * Validates the number of arguments for a command.
    *
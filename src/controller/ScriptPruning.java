@@ -0,0 +1,105 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works out which lines of a script contribute to a file it saves or to a name the caller keeps,
+ * and drops the rest before the script runs. A line is needed when a later needed line reads one
+ * of its images before it is written again, or when it stores a kept name that nothing writes
+ * afterwards. Saves are always needed. A needed level-adjust whose histogram nothing reads is
+ * narrowed so that it does not compute it; other lines always store all of their images.
+ *
+ * <p>A barrier such as {@code run} may read any image, so it and every line before it are kept
+ * as they are. Loads that are pruned are not opened, so a missing file they name is not reported.
+ */
+final class ScriptPruning {
+
+  private final List<ScriptCommand> kept;
+  private final List<ScriptCommand> pruned;
+  private final List<String> skippedOutputs;
+
+  private ScriptPruning(List<ScriptCommand> kept, List<ScriptCommand> pruned,
+      List<String> skippedOutputs) {
+    this.kept = Collections.unmodifiableList(kept);
+    this.pruned = Collections.unmodifiableList(pruned);
+    this.skippedOutputs = Collections.unmodifiableList(skippedOutputs);
+  }
+
+  /**
+   * Prunes a script.
+   *
+   * @param commands  The commands of the script, in order.
+   * @param keptNames Names whose last value the caller needs once the script is done.
+   * @return The lines to run and the lines dropped.
+   */
+  static ScriptPruning prune(List<ScriptCommand> commands, Set<String> keptNames) {
+    List<ScriptCommand> kept = new ArrayList<>();
+    List<ScriptCommand> pruned = new ArrayList<>();
+    List<String> skippedOutputs = new ArrayList<>();
+    Set<String> needed = new HashSet<>(keptNames);
+    int i = commands.size() - 1;
+    for (; i >= 0; i--) {
+      ScriptCommand command = commands.get(i);
+      if (command.isBarrier()) {
+        break;
+      }
+      boolean save = command.getName().equals("save");
+      List<String> unused = new ArrayList<>(command.getWrites());
+      unused.removeAll(needed);
+      if (!save && unused.size() == command.getWrites().size()) {
+        pruned.add(command);
+        continue;
+      }
+      if (command.getName().equals("level-adjust")) {
+        String histogram = ScriptCommand.histogramOf(command.getParts()[5]);
+        if (unused.contains(histogram)) {
+          // A side product that nothing reads
+          skippedOutputs.add(histogram);
+          command = command.withoutWrites(Collections.singletonList(histogram));
+        }
+      }
+      kept.add(command);
+      needed.removeAll(command.getWrites());
+      needed.addAll(command.getReads());
+    }
+    // Everything up to the last barrier runs as written
+    for (; i >= 0; i--) {
+      kept.add(commands.get(i));
+    }
+    Collections.reverse(kept);
+    Collections.reverse(pruned);
+    Collections.reverse(skippedOutputs);
+    return new ScriptPruning(kept, pruned, skippedOutputs);
+  }
+
+  /**
+   * Returns the lines to run, narrowed where some of their outputs are not needed.
+   *
+   * @return The commands in order.
+   */
+  List<ScriptCommand> getKept() {
+    return kept;
+  }
+
+  /**
+   * Returns the lines that do not contribute to any save or kept name.
+   *
+   * @return The dropped commands in order.
+   */
+  List<ScriptCommand> getPruned() {
+    return pruned;
+  }
+
+  /**
+   * Returns the outputs of kept lines that are not computed since nothing needs them.
+   *
+   * @return The names, in the order of their lines.
+   */
+  List<String> getSkippedOutputs() {
+    return skippedOutputs;
+  }
+}
@@ -0,0 +1,269 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.Workspace;
+
+/**
+ * Runs a script whose operations each compute a row of their result from the same row of their
+ * sources, pushing its images through in bands of rows instead of holding them whole. Every band
+ * is read from the loaded files, run through the script's commands in a scratch workspace and
+ * written straight to the saved files, so memory depends on the width of the images but not on
+ * their height. The commands run through the same code as usual, so the files written are the same
+ * as when the script runs on whole images.
+ *
+ * <p>A script can be streamed when it has no barrier, loads only PPM or PGM files of one size,
+ * saves only PPM, PGM or PNG files none of which it also loads, and only reads names it wrote
+ * earlier. The script's images are never stored in the caller's workspace.
+ */
+final class ScriptStreamer {
+
+  /**
+   * Runs one image operation of a script on the images of a workspace.
+   */
+  interface Operation {
+
+    /**
+     * Runs the operation.
+     *
+     * @param parts     The command and its arguments.
+     * @param workspace The workspace holding the images the command reads and writes.
+     * @throws IOException If the operation fails to read or write a file.
+     */
+    void apply(String[] parts, Workspace workspace) throws IOException;
+  }
+
+  // Pixels in one band of rows, which bounds the size of each image in the scratch workspace
+  private static final int BAND_PIXELS = 1 << 18;
+
+  // Operations whose result rows only depend on the same rows of their sources. Split positions
+  // are a share of the width, so split variants are row-local as well. The histogram a
+  // level-adjust also stores is not, so scripts reading it are not streamed.
+  private static final Set<String> ROW_LOCAL = new HashSet<>(Arrays.asList("brighten", "darken",
+      "sepia", "greyscale", "red-component", "green-component", "blue-component",
+      "value-component", "luma-component", "intensity-component", "level-adjust", "rgb-split",
+      "rgb-combine", "horizontal-flip"));
+
+  private ScriptStreamer() {
+  }
+
+  /**
+   * Returns whether the script meets the conditions that do not depend on the files it loads.
+   *
+   * @param commands The commands of the script, in order.
+   * @return true if the script may be streamed.
+   */
+  static boolean canStream(List<ScriptCommand> commands) {
+    Set<String> written = new HashSet<>();
+    Set<Path> loaded = new HashSet<>();
+    Set<Path> saved = new HashSet<>();
+    // Names whose images do not have the rows of their source, such as level-adjust histograms
+    Set<String> wholeImage = new HashSet<>();
+    boolean hasLoad = false;
+    boolean hasSave = false;
+    for (ScriptCommand command : commands) {
+      if (command.isBarrier()) {
+        return false;
+      }
+      String name = command.getName();
+      if (name.equals("load")) {
+        String file = command.getParts()[1];
+        // A cropped or subsampled load changes the size of the image
+        if (command.getParts().length != 3 || !ImageLoader.canReadRows(file)) {
+          return false;
+        }
+        loaded.add(Paths.get(file).toAbsolutePath().normalize());
+        hasLoad = true;
+      } else if (name.equals("save")) {
+        String file = command.getParts()[1];
+        if (!ImageLoader.canWriteRows(file)
+            || !saved.add(Paths.get(file).toAbsolutePath().normalize())) {
+          return false;
+        }
+        hasSave = true;
+      } else if (!ROW_LOCAL.contains(name)) {
+        return false;
+      }
+      if (!written.containsAll(command.getReads())
+          || !Collections.disjoint(wholeImage, command.getReads())) {
+        return false;
+      }
+      written.addAll(command.getWrites());
+      wholeImage.removeAll(command.getWrites());
+      if (name.equals("level-adjust")) {
+        // Each band would only get the histogram of its own rows, and at a different size
+        wholeImage.add(ScriptCommand.histogramOf(command.getParts()[5]));
+      }
+    }
+    saved.retainAll(loaded);
+    return hasLoad && hasSave && saved.isEmpty();
+  }
+
+  /**
+   * Streams a script that {@link #canStream(List)} accepts. Nothing is written when the loaded
+   * files cannot be opened or differ in size; the script should then run as usual, which reports
+   * the problem. If a command fails part way through, the files it was saving are deleted.
+   *
+   * @param commands  The commands of the script, in order.
+   * @param loader    The loader that reads and writes the files.
+   * @param operation Runs the image operations of the script.
+   * @return true if the script ran, false if it was not started.
+   * @throws IOException If an operation fails to read or write a file.
+   */
+  static boolean stream(List<ScriptCommand> commands, ImageLoader loader, Operation operation)
+      throws IOException {
+    int count = commands.size();
+    RowReader[] readers = new RowReader[count];
+    RowWriter[] writers = new RowWriter[count];
+    try {
+      if (!openReaders(commands, loader, readers)) {
+        return false;
+      }
+      run(commands, loader, operation, readers, writers);
+      closeWriters(commands, writers);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      for (int i = 0; i < count; i++) {
+        if (writers[i] != null) {
+          closeQuietly(writers[i]);
+          Files.deleteIfExists(Paths.get(commands.get(i).getParts()[1]));
+        }
+      }
+      throw e;
+    } finally {
+      for (RowReader reader : readers) {
+        if (reader != null) {
+          closeQuietly(reader);
+        }
+      }
+    }
+  }
+
+  private static boolean openReaders(List<ScriptCommand> commands, ImageLoader loader,
+      RowReader[] readers) {
+    RowReader first = null;
+    for (int i = 0; i < commands.size(); i++) {
+      ScriptCommand command = commands.get(i);
+      if (!command.getName().equals("load")) {
+        continue;
+      }
+      try {
+        readers[i] = loader.openRowReader(command.getParts()[1]);
+      } catch (IOException e) {
+        return false;
+      }
+      if (first == null) {
+        first = readers[i];
+      } else if (readers[i].getWidth() != first.getWidth()
+          || readers[i].getHeight() != first.getHeight()) {
+        return false;
+      }
+    }
+    return first != null;
+  }
+
+  private static void run(List<ScriptCommand> commands, ImageLoader loader, Operation operation,
+      RowReader[] readers, RowWriter[] writers) throws IOException {
+    RowReader first = null;
+    for (RowReader reader : readers) {
+      if (reader != null) {
+        first = reader;
+        break;
+      }
+    }
+    int width = first.getWidth();
+    int height = first.getHeight();
+    int bandRows = Math.max(1, Math.min(height, BAND_PIXELS / width));
+    List<Set<String>> deadAfter = ScriptLiveness.deadAfter(commands);
+    Workspace band = new Workspace();
+    int[] row = new int[width];
+
+    for (int top = 0; top < height; top += bandRows) {
+      int rows = Math.min(bandRows, height - top);
+      for (int i = 0; i < commands.size(); i++) {
+        ScriptCommand command = commands.get(i);
+        String[] parts = command.getParts();
+        if (command.getName().equals("load")) {
+          band.put(parts[2], readBand(readers[i], width, rows, loader.getLayout(), row));
+        } else if (command.getName().equals("save")) {
+          if (writers[i] == null) {
+            writers[i] = openWriter(loader, parts[1], width, height);
+          }
+          writeBand(writers[i], band.get(parts[2]), row);
+        } else {
+          operation.apply(parts, band);
+        }
+        for (String name : deadAfter.get(i)) {
+          band.remove(name);
+        }
+      }
+    }
+  }
+
+  private static Image readBand(RowReader reader, int width, int rows, Image.Layout layout,
+      int[] row) {
+    Image image = Image.allocateUninitialized(width, rows, layout);
+    try {
+      for (int y = 0; y < rows; y++) {
+        reader.readRow(row);
+        image.writeRow(y, row);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not load image: " + e.getMessage());
+    }
+    return image;
+  }
+
+  private static RowWriter openWriter(ImageLoader loader, String file, int width, int height) {
+    try {
+      return loader.openRowWriter(file, width, height);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not save image: " + e.getMessage());
+    }
+  }
+
+  private static void writeBand(RowWriter writer, Image image, int[] row) {
+    try {
+      for (int y = 0; y < image.getHeight(); y++) {
+        image.readRow(y, row);
+        writer.writeRow(row);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not save image: " + e.getMessage());
+    }
+  }
+
+  private static void closeWriters(List<ScriptCommand> commands, RowWriter[] writers) {
+    List<String> failures = new ArrayList<>();
+    for (int i = 0; i < writers.length; i++) {
+      if (writers[i] != null) {
+        try {
+          writers[i].close();
+        } catch (IOException e) {
+          failures.add(commands.get(i).getParts()[1] + ": " + e.getMessage());
+        }
+      }
+    }
+    if (!failures.isEmpty()) {
+      throw new IllegalArgumentException("Could not save image: " + String.join(", ", failures));
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      // Already failing; the first error is the one worth reporting
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package model.imagerepresentation;
+
+/**
+ * A read-only view of one color channel of an {@link Image}. The view reads through to the image,
+ * so it always reflects the image's current content. Views can be combined into a new image with
+ * {@link Image#fromChannels(ChannelView, ChannelView, ChannelView)}; when the source image uses the
+ * planar layout this shares the underlying plane instead of copying it.
+ */
+public final class ChannelView {
+
+  private final Image image;
+  private final Image.Channel channel;
+
+  /**
+   * Creates a view of one channel of the given image.
+   *
+   * @param image   The image to view.
+   * @param channel The channel to expose.
+   */
+  ChannelView(Image image, Image.Channel channel) {
+    this.image = image;
+    this.channel = channel;
+  }
+
+  /**
+   * Returns the channel value at the given (x, y) position.
+   *
+   * @param x The x-coordinate of the pixel.
+   * @param y The y-coordinate of the pixel.
+   * @return The channel value, between 0 and 255.
+   */
+  public int get(int x, int y) {
+    return image.getChannelValue(channel, x, y);
+  }
+
+  /**
+   * Returns the channel this view exposes.
+   *
+   * @return The channel.
+   */
+  public Image.Channel getChannel() {
+    return channel;
+  }
+
+  /**
+   * Returns the width of the viewed image.
+   *
+   * @return The width.
+   */
+  public int getWidth() {
+    return image.getWidth();
+  }
+
+  /**
+   * Returns the height of the viewed image.
+   *
+   * @return The height.
+   */
+  public int getHeight() {
+    return image.getHeight();
+  }
+
+  /**
+   * Returns the viewed image.
+   */
+  Image image() {
+    return image;
+  }
+
+  /**
+   * Checks whether this view and the other one read the same channel of the same image.
+   */
+  boolean sameSource(ChannelView other) {
+    return image == other.image && channel == other.channel;
+  }
+
+  /**
+   * Returns a plane holding this channel's samples that can be owned by another image. Planar
+   * images hand out their own plane (marked shared); other layouts are copied into a new plane.
+   */
+  PlanarStorage.Plane toPlane() {
+    return image.sharePlane(channel);
+  }
+}
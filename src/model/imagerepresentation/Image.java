@@ -3,12 +3,25 @@ package model.imagerepresentation;
 /**
  * The Image class represents an image with a grid of pixels. Each pixel can have a red, green, and
  * blue value. The image has a width and height that define its size.
+ *
+ * <p>How the pixels are held in memory is decided by the image's {@link Layout}. The default
+ * {@link Layout#PACKED} layout keeps one {@code 0xRRGGBB} int per pixel; {@link Layout#PLANAR}
+ * keeps one byte plane per channel so that single channels can be shared between images through
+ * {@link ChannelView}s. {@link Layout#OFF_HEAP} images are allocated by an {@link OffHeapArena} and
+ * keep their pixels in native memory. {@link Layout#TILED} images split the pixels into tiles that
+ * are only allocated once written, which keeps mostly uniform images small. {@link Layout#MAPPED}
+ * images are read from an {@link ImageFile} by mapping it into memory, without parsing it.
+ * {@link #getRGB(int, int)} and {@link #setRGB(int, int, int)} work on packed values in every
+ * layout, and {@link #readRow(int, int[])}, {@link #writeRow(int, int[])} and the region variants
+ * move whole rows or rectangles at once for loops over many pixels;
+ * {@link #getPixel(int, int)} and {@link #setPixel(int, int, Pixel)} are kept for callers that
+ * prefer {@link Pixel} objects.
  */
 public class Image {
 
-  private Pixel[][] pixels;
-  private int width;
-  private int height;
+  private final PixelStorage storage;
+  private final int width;
+  private final int height;
 
   /**
    * Constructs an Image object with the given width and height. Initializes all pixels to black (0,
@@ -18,28 +31,109 @@ public class Image {
    * @param height The height of the image.
    */
   public Image(int width, int height) {
+    this(width, height, Layout.PACKED);
+  }
+
+  /**
+   * Constructs a black Image object with the given width, height and memory layout.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param layout The memory layout to use for the pixels.
+   */
+  public Image(int width, int height, Layout layout) {
+    this(width, height, createStorage(width, height, layout));
+  }
+
+  /**
+   * Constructs an Image object over an existing storage.
+   *
+   * @param width   The width of the image.
+   * @param height  The height of the image.
+   * @param storage The storage holding the pixels.
+   */
+  Image(int width, int height, PixelStorage storage) {
+    this.width = width;
+    this.height = height;
+    this.storage = storage;
+  }
+
+  private static PixelStorage createStorage(int width, int height, Layout layout) {
     if (width <= 0 || height <= 0) {
       throw new IllegalArgumentException("Width and height must be positive");
     }
-    this.width = width;
-    this.height = height;
-    pixels = new Pixel[height][width];
-    initializePixels();
+    if ((long) width * height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image is too large: " + width + "x" + height);
+    }
+    if (layout == null) {
+      throw new IllegalArgumentException("Layout cannot be null");
+    }
+    switch (layout) {
+      case PLANAR:
+        return new PlanarStorage(width, height);
+      case TILED:
+        return new TiledStorage(width, height, TiledStorage.DEFAULT_TILE_SIZE);
+      case OFF_HEAP:
+        throw new IllegalArgumentException("Off-heap images must be allocated by an OffHeapArena");
+      case MAPPED:
+        throw new IllegalArgumentException("Mapped images must be read with ImageFile.map");
+      case PACKED:
+      default:
+        return new PackedStorage(width, height);
+    }
   }
 
   /**
-   * Initializes all pixels in the image to the color black (0, 0, 0).
+   * Creates a planar image whose red, green and blue channels are taken from the given views. When
+   * a view belongs to a planar image its plane is shared rather than copied, so building an image
+   * from existing planar channels costs no pixel memory. Other views are copied into a plane once,
+   * even when several channels use the same view. Shared planes are copied on first write.
+   *
+   * @param red   The view supplying the red channel.
+   * @param green The view supplying the green channel.
+   * @param blue  The view supplying the blue channel.
+   * @return A new planar image, or an image compatible with the red view's image if that one is
+   *     off-heap.
+   * @throws IllegalArgumentException if the views are null or differ in size.
    */
-  private void initializePixels() {
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        pixels[y][x] = new Pixel(0, 0, 0);
+  public static Image fromChannels(ChannelView red, ChannelView green, ChannelView blue) {
+    if (red == null || green == null || blue == null) {
+      throw new IllegalArgumentException("Channel views cannot be null.");
+    }
+    if (red.getWidth() != green.getWidth() || red.getHeight() != green.getHeight()
+        || red.getWidth() != blue.getWidth() || red.getHeight() != blue.getHeight()) {
+      throw new IllegalArgumentException("All images must have the same dimensions.");
+    }
+    if (red.image().getLayout() == Layout.OFF_HEAP || green.image().getLayout() == Layout.OFF_HEAP
+        || blue.image().getLayout() == Layout.OFF_HEAP) {
+      // Off-heap images can be larger than a heap plane can hold, so copy into native memory
+      Image result = red.image().createCompatibleImage(red.getWidth(), red.getHeight());
+      for (int y = 0; y < result.height; y++) {
+        for (int x = 0; x < result.width; x++) {
+          result.storage.set(x, y, (red.get(x, y) << 16) | (green.get(x, y) << 8) | blue.get(x, y));
+        }
       }
+      return result;
+    }
+    PlanarStorage.Plane redPlane = red.toPlane();
+    PlanarStorage.Plane greenPlane = green.sameSource(red) ? redPlane : green.toPlane();
+    PlanarStorage.Plane bluePlane = blue.sameSource(red) ? redPlane
+        : blue.sameSource(green) ? greenPlane : blue.toPlane();
+    // A plane in more than one slot is copied before any of them is written, like a shared one
+    if (greenPlane == redPlane || bluePlane == redPlane) {
+      redPlane.shared = true;
     }
+    if (bluePlane == greenPlane) {
+      greenPlane.shared = true;
+    }
+    return new Image(red.getWidth(), red.getHeight(),
+        new PlanarStorage(red.getWidth(), new PlanarStorage.Plane[]{redPlane, greenPlane,
+            bluePlane}));
   }
 
   /**
-   * Returns the pixel at the given (x, y) position.
+   * Returns the pixel at the given (x, y) position. The returned pixel is a copy, so changing it
+   * does not change the image.
    *
    * @param x The x-coordinate of the pixel.
    * @param y The y-coordinate of the pixel.
@@ -49,7 +143,7 @@ public class Image {
     if (x < 0 || x >= width || y < 0 || y >= height) {
       throw new ArrayIndexOutOfBoundsException("Index out of bounds for pixel access");
     }
-    return pixels[y][x];
+    return Pixel.fromRGB(storage.get(x, y));
   }
 
   /**
@@ -66,7 +160,239 @@ public class Image {
     if (pixel == null) {
       throw new IllegalArgumentException("Pixel cannot be null");
     }
-    pixels[y][x] = pixel;
+    storage.set(x, y, pixel.toRGB());
+  }
+
+  /**
+   * Returns the packed {@code 0xRRGGBB} value of the pixel at the given (x, y) position.
+   *
+   * @param x The x-coordinate of the pixel.
+   * @param y The y-coordinate of the pixel.
+   * @return The packed color of the pixel.
+   */
+  public int getRGB(int x, int y) {
+    if (x < 0 || x >= width || y < 0 || y >= height) {
+      throw new ArrayIndexOutOfBoundsException("Index out of bounds for pixel access");
+    }
+    return storage.get(x, y);
+  }
+
+  /**
+   * Sets the pixel at the given (x, y) position from a packed {@code 0xRRGGBB} value. Any bits
+   * above the blue, green and red bytes are ignored.
+   *
+   * @param x   The x-coordinate of the pixel.
+   * @param y   The y-coordinate of the pixel.
+   * @param rgb The packed color to store.
+   */
+  public void setRGB(int x, int y, int rgb) {
+    if (x < 0 || x >= width || y < 0 || y >= height) {
+      throw new ArrayIndexOutOfBoundsException("Index out of bounds for pixel setting");
+    }
+    storage.set(x, y, rgb & 0xFFFFFF);
+  }
+
+  /**
+   * Copies one row of packed {@code 0xRRGGBB} values into the given array, which must hold at least
+   * {@link #getWidth()} elements.
+   *
+   * @param y   The row to read.
+   * @param dst The array receiving the row.
+   */
+  public void readRow(int y, int[] dst) {
+    readRegion(0, y, width, 1, dst, 0, width);
+  }
+
+  /**
+   * Sets one row of the image from packed {@code 0xRRGGBB} values. Any bits above the blue, green
+   * and red bytes are ignored.
+   *
+   * @param y   The row to write.
+   * @param src The array holding at least {@link #getWidth()} values.
+   */
+  public void writeRow(int y, int[] src) {
+    writeRegion(0, y, width, 1, src, 0, width);
+  }
+
+  /**
+   * Copies a rectangle of packed {@code 0xRRGGBB} values into the given array. The pixel at
+   * {@code (x + i, y + j)} is written to {@code dst[offset + j * scanline + i]}. Bounds are checked
+   * once for the whole rectangle, which makes this the preferred way to read many pixels.
+   *
+   * @param x        The left edge of the rectangle.
+   * @param y        The top edge of the rectangle.
+   * @param width    The width of the rectangle.
+   * @param height   The height of the rectangle.
+   * @param dst      The array receiving the pixels.
+   * @param offset   The index of the top left pixel in the array.
+   * @param scanline The distance between the starts of two rows in the array.
+   */
+  public void readRegion(int x, int y, int width, int height, int[] dst, int offset,
+      int scanline) {
+    checkRegion(x, y, width, height, dst, offset, scanline);
+    storage.getRegion(x, y, width, height, dst, offset, scanline);
+  }
+
+  /**
+   * Sets a rectangle of pixels from packed {@code 0xRRGGBB} values laid out as in
+   * {@link #readRegion(int, int, int, int, int[], int, int)}. Any bits above the blue, green and
+   * red bytes are ignored.
+   *
+   * @param x        The left edge of the rectangle.
+   * @param y        The top edge of the rectangle.
+   * @param width    The width of the rectangle.
+   * @param height   The height of the rectangle.
+   * @param src      The array holding the pixels.
+   * @param offset   The index of the top left pixel in the array.
+   * @param scanline The distance between the starts of two rows in the array.
+   */
+  public void writeRegion(int x, int y, int width, int height, int[] src, int offset,
+      int scanline) {
+    checkRegion(x, y, width, height, src, offset, scanline);
+    storage.setRegion(x, y, width, height, src, offset, scanline);
+  }
+
+  private void checkRegion(int x, int y, int width, int height, int[] array, int offset,
+      int scanline) {
+    if (array == null) {
+      throw new IllegalArgumentException("Pixel array cannot be null");
+    }
+    if (width <= 0 || height <= 0 || scanline < width || offset < 0) {
+      throw new IllegalArgumentException("Invalid region: " + width + "x" + height + ", offset "
+          + offset + ", scanline " + scanline);
+    }
+    if (x < 0 || y < 0 || x > this.width - width || y > this.height - height) {
+      throw new ArrayIndexOutOfBoundsException("Region out of bounds for pixel access");
+    }
+    if ((long) offset + (long) (height - 1) * scanline + width > array.length) {
+      throw new IllegalArgumentException("Pixel array is too small for the region");
+    }
+  }
+
+  /**
+   * Creates a packed image that uses the given array as its pixels, without copying it. The pixel
+   * at {@code (x, y)} is {@code pixels[y * width + x]}. Bits above the red byte are cleared in
+   * place. The array belongs to the image afterwards: changes made through either one show in the
+   * other, so the caller should only keep it when that is intended.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param pixels The packed {@code 0xRRGGBB} pixels in row-major order.
+   * @return The image backed by the array.
+   * @throws IllegalArgumentException if the size is not positive or the array length does not
+   *                                  match it.
+   */
+  public static Image wrapPacked(int width, int height, int[] pixels) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Width and height must be positive");
+    }
+    if (pixels == null || pixels.length != (long) width * height) {
+      throw new IllegalArgumentException("Pixel array does not hold " + width + "x" + height
+          + " pixels");
+    }
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] &= 0xFFFFFF;
+    }
+    return new Image(width, height, new PackedStorage(width, pixels));
+  }
+
+  /**
+   * Allocates a packed image whose pixel values are undefined. Use it for images whose every pixel
+   * is written before it is read, such as the destination of a transformation; the pixels are not
+   * guaranteed to be black.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return The new image.
+   */
+  public static Image allocateUninitialized(int width, int height) {
+    return allocateUninitialized(width, height, Layout.PACKED);
+  }
+
+  /**
+   * Allocates an image in the given layout whose pixel values are undefined. The image costs a
+   * single allocation of its pixel memory and no pass over the pixels.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param layout The memory layout to use for the pixels.
+   * @return The new image.
+   */
+  public static Image allocateUninitialized(int width, int height, Layout layout) {
+    return new Image(width, height, createStorage(width, height, layout));
+  }
+
+  /**
+   * Creates an image of the given size in the same memory layout as this one, like
+   * {@link #createCompatibleImage(int, int)}, but whose pixel values are undefined. Transformations
+   * use it for destinations they overwrite completely.
+   *
+   * @param width  The width of the new image.
+   * @param height The height of the new image.
+   * @return The new image.
+   */
+  public Image createUninitializedImage(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Width and height must be positive");
+    }
+    return storage.createUninitializedImage(width, height);
+  }
+
+  /**
+   * Creates a black image of the given size that uses the same memory layout as this one. Images
+   * derived from an off-heap image are allocated from the same {@link OffHeapArena}.
+   *
+   * @param width  The width of the new image.
+   * @param height The height of the new image.
+   * @return The new image.
+   */
+  public Image createCompatibleImage(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Width and height must be positive");
+    }
+    return storage.createCompatibleImage(width, height);
+  }
+
+  /**
+   * Sets every pixel of the image to the given packed {@code 0xRRGGBB} value. Tiled images drop all
+   * their tiles and go back to a single shared tile of that color.
+   *
+   * @param rgb The packed color to fill with.
+   */
+  public void fill(int rgb) {
+    storage.fill(rgb & 0xFFFFFF);
+  }
+
+  /**
+   * Returns the number of bytes of pixel memory held by this image, on or off the heap. Planes
+   * shared with other images are counted in full by each of them.
+   *
+   * @return The size of the pixel memory in bytes.
+   */
+  public long getByteSize() {
+    return storage.byteSize();
+  }
+
+  /**
+   * Returns a read-only view of one channel of this image.
+   *
+   * @param channel The channel to view.
+   * @return A view of the channel.
+   */
+  public ChannelView getChannel(Channel channel) {
+    if (channel == null) {
+      throw new IllegalArgumentException("Channel cannot be null");
+    }
+    return new ChannelView(this, channel);
+  }
+
+  /**
+   * Returns the memory layout of this image.
+   *
+   * @return The layout.
+   */
+  public Layout getLayout() {
+    return storage.layout();
   }
 
   /**
@@ -87,4 +413,88 @@ public class Image {
     return height;
   }
 
-}
\ No newline at end of file
+  /**
+   * Returns the storage holding this image's pixels.
+   */
+  PixelStorage storage() {
+    return storage;
+  }
+
+  /**
+   * Reads a single channel value, used by {@link ChannelView}.
+   */
+  int getChannelValue(Channel channel, int x, int y) {
+    if (x < 0 || x >= width || y < 0 || y >= height) {
+      throw new ArrayIndexOutOfBoundsException("Index out of bounds for pixel access");
+    }
+    return storage.getChannel(channel, x, y);
+  }
+
+  /**
+   * Returns a plane with the samples of one channel that another image may own. Planar images share
+   * their own plane; other layouts copy the channel out.
+   */
+  PlanarStorage.Plane sharePlane(Channel channel) {
+    if (storage instanceof PlanarStorage) {
+      return ((PlanarStorage) storage).share(channel);
+    }
+    byte[] samples = new byte[width * height];
+    int i = 0;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        samples[i++] = (byte) storage.getChannel(channel, x, y);
+      }
+    }
+    return new PlanarStorage.Plane(samples);
+  }
+
+  /**
+   * The ways an image can hold its pixels in memory.
+   */
+  public enum Layout {
+    /**
+     * One packed {@code 0xRRGGBB} int per pixel.
+     */
+    PACKED,
+    /**
+     * Three byte planes, one per channel.
+     */
+    PLANAR,
+    /**
+     * Three interleaved bytes per pixel in native memory owned by an {@link OffHeapArena}.
+     */
+    OFF_HEAP,
+    /**
+     * Square tiles of packed ints, allocated on first write. No operation chooses this layout on
+     * its own; callers opt in for masks and other mostly uniform images, for instance by loading
+     * them with an {@code ImageLoader} created for this layout.
+     */
+    TILED,
+    /**
+     * Interleaved or planar bytes of a file mapped into memory by {@link ImageFile#map}.
+     */
+    MAPPED
+  }
+
+  /**
+   * The color channels of an image.
+   */
+  public enum Channel {
+    RED(16), GREEN(8), BLUE(0);
+
+    private final int shift;
+
+    Channel(int shift) {
+      this.shift = shift;
+    }
+
+    /**
+     * Returns the bit offset of this channel inside a packed {@code 0xRRGGBB} value.
+     *
+     * @return The shift.
+     */
+    public int shift() {
+      return shift;
+    }
+  }
+}
@@ -0,0 +1,404 @@
+package model.imagerepresentation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes the native image format: a small header followed by the raw samples, so that a
+ * file can be mapped into memory and used as an image without being parsed. Planar images are
+ * written one plane after the other and every other layout interleaved, three bytes per pixel.
+ * Files can instead be compressed in square tiles with Deflate; those take less space but have to
+ * be inflated into the heap when read.
+ *
+ * <p>All numbers are big-endian. A file starts with a 24-byte header:
+ * <pre>
+ *   int  magic, "IMGF"
+ *   byte version, 1
+ *   byte sample order: 0 interleaved, 1 planar
+ *   byte compression: 0 none, 1 Deflate per tile
+ *   byte reserved, 0
+ *   int  width
+ *   int  height
+ *   int  ordinal of the {@link Image.Layout} of the image that was written
+ *   int  side of a tile, 0 when not compressed
+ * </pre>
+ * Uncompressed samples follow row by row. Compressed files go on with one {@code long} offset and
+ * {@code int} length per tile, tiles in row-major order, and then the deflated tiles, each holding
+ * its own rows in the file's sample order.
+ */
+public final class ImageFile {
+
+  /**
+   * Side of the tiles compressed separately.
+   */
+  public static final int TILE_SIZE = 256;
+
+  private static final int MAGIC = 0x494D4746; // "IMGF"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 24;
+  private static final int TILE_ENTRY_BYTES = 12;
+  private static final int INTERLEAVED = 0;
+  private static final int PLANAR = 1;
+  // Upper bound for a single mapping, so a written chunk is copied in reasonable pieces
+  private static final int MAX_CHUNK_BYTES = 1 << 24;
+  private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+  private ImageFile() {
+  }
+
+  /**
+   * Writes an image to a file, replacing the file if it exists. The image is written to a new file
+   * that is then moved over the old one, so images still mapped from the old file stay valid.
+   *
+   * @param path     The file to write.
+   * @param image    The image to write.
+   * @param compress true to deflate the samples tile by tile, false to write them raw so the file
+   *                 can be mapped.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void write(Path path, Image image, boolean compress) throws IOException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image to write cannot be null.");
+    }
+    int order = image.getLayout() == Image.Layout.PLANAR ? PLANAR : INTERLEAVED;
+    Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), "image", ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      header.putInt(MAGIC).put((byte) VERSION).put((byte) order).put((byte) (compress ? 1 : 0))
+          .put((byte) 0).putInt(image.getWidth()).putInt(image.getHeight())
+          .putInt(image.getLayout().ordinal()).putInt(compress ? TILE_SIZE : 0);
+      header.flip();
+      writeFully(channel, header);
+      if (compress) {
+        writeTiles(channel, image, order);
+      } else {
+        writeSamples(channel, image, order);
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    try {
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Maps an uncompressed file into memory and wraps it as a {@link Image.Layout#MAPPED} image
+   * without reading the samples; the pages are read by the operating system as the image is used.
+   * The mapping is read-only: a chunk of rows is copied to the heap the first time it is written,
+   * so the file is never changed. The file must not be truncated while the image is in use.
+   * Compressed files are inflated into a heap image in the layout they were written from.
+   *
+   * @param path The file to read.
+   * @return The image.
+   * @throws IOException if the file cannot be read or is not a valid image file.
+   */
+  public static Image map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      Header header = readHeader(channel, path);
+      if (header.tileSize > 0) {
+        return readTiles(channel, header);
+      }
+      return new Image(header.width, header.height, mapSamples(channel, header));
+    }
+  }
+
+  /**
+   * Reads a file into a heap image in the layout it was written from. Off-heap and mapped images
+   * are read back packed.
+   *
+   * @param path The file to read.
+   * @return The image.
+   * @throws IOException if the file cannot be read or is not a valid image file.
+   */
+  public static Image read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      Header header = readHeader(channel, path);
+      if (header.tileSize > 0) {
+        return readTiles(channel, header);
+      }
+      Image mapped = new Image(header.width, header.height, mapSamples(channel, header));
+      Image image = Image.allocateUninitialized(header.width, header.height, header.heapLayout());
+      int rows = Math.max(1, WRITE_BUFFER_BYTES / 4 / header.width);
+      int[] band = new int[rows * header.width];
+      for (int y = 0; y < header.height; y += rows) {
+        int count = Math.min(rows, header.height - y);
+        mapped.readRegion(0, y, header.width, count, band, 0, header.width);
+        image.writeRegion(0, y, header.width, count, band, 0, header.width);
+      }
+      return image;
+    }
+  }
+
+  private static void writeSamples(FileChannel channel, Image image, int order)
+      throws IOException {
+    int width = image.getWidth();
+    int stride = order == PLANAR ? 1 : 3;
+    int[] row = new int[width];
+    ByteBuffer buffer = ByteBuffer.allocate(Math.max(WRITE_BUFFER_BYTES, width * stride));
+    int passes = order == PLANAR ? 3 : 1;
+    for (int pass = 0; pass < passes; pass++) {
+      int shift = 16 - 8 * pass;
+      for (int y = 0; y < image.getHeight(); y++) {
+        image.readRow(y, row);
+        if (buffer.remaining() < width * stride) {
+          buffer.flip();
+          writeFully(channel, buffer);
+          buffer.clear();
+        }
+        if (order == PLANAR) {
+          for (int rgb : row) {
+            buffer.put((byte) (rgb >> shift));
+          }
+        } else {
+          for (int rgb : row) {
+            buffer.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+          }
+        }
+      }
+    }
+    buffer.flip();
+    writeFully(channel, buffer);
+  }
+
+  private static void writeTiles(FileChannel channel, Image image, int order)
+      throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+    int tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+    ByteBuffer table = ByteBuffer.allocate(tilesX * tilesY * TILE_ENTRY_BYTES);
+    long offset = HEADER_BYTES + table.capacity();
+    channel.position(offset);
+
+    int[] band = new int[width * Math.min(TILE_SIZE, height)];
+    byte[] samples = new byte[TILE_SIZE * TILE_SIZE * 3];
+    byte[] deflated = new byte[1 << 16];
+    // Intermediates are written far more often than they are archived, so favour speed
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      for (int ty = 0; ty < tilesY; ty++) {
+        int top = ty * TILE_SIZE;
+        int rows = Math.min(TILE_SIZE, height - top);
+        image.readRegion(0, top, width, rows, band, 0, width);
+        for (int tx = 0; tx < tilesX; tx++) {
+          int left = tx * TILE_SIZE;
+          int cols = Math.min(TILE_SIZE, width - left);
+          int length = packTile(band, width, left, cols, rows, order, samples);
+          deflater.reset();
+          deflater.setInput(samples, 0, length);
+          deflater.finish();
+          long written = 0;
+          while (!deflater.finished()) {
+            int count = deflater.deflate(deflated);
+            writeFully(channel, ByteBuffer.wrap(deflated, 0, count));
+            written += count;
+          }
+          table.putLong(offset).putInt((int) written);
+          offset += written;
+        }
+      }
+    } finally {
+      deflater.end();
+    }
+    table.flip();
+    channel.position(HEADER_BYTES);
+    writeFully(channel, table);
+  }
+
+  private static int packTile(int[] band, int width, int left, int cols, int rows, int order,
+      byte[] samples) {
+    int i = 0;
+    if (order == PLANAR) {
+      for (int shift = 16; shift >= 0; shift -= 8) {
+        for (int y = 0; y < rows; y++) {
+          for (int x = 0; x < cols; x++) {
+            samples[i++] = (byte) (band[y * width + left + x] >> shift);
+          }
+        }
+      }
+    } else {
+      for (int y = 0; y < rows; y++) {
+        for (int x = 0; x < cols; x++) {
+          int rgb = band[y * width + left + x];
+          samples[i++] = (byte) (rgb >> 16);
+          samples[i++] = (byte) (rgb >> 8);
+          samples[i++] = (byte) rgb;
+        }
+      }
+    }
+    return i;
+  }
+
+  private static Image readTiles(FileChannel channel, Header header) throws IOException {
+    int tilesX = (header.width + header.tileSize - 1) / header.tileSize;
+    int tilesY = (header.height + header.tileSize - 1) / header.tileSize;
+    ByteBuffer table = ByteBuffer.allocate(tilesX * tilesY * TILE_ENTRY_BYTES);
+    readFully(channel, table, HEADER_BYTES);
+    table.flip();
+
+    Image image = Image.allocateUninitialized(header.width, header.height, header.heapLayout());
+    int tileSize = header.tileSize;
+    byte[] samples = new byte[tileSize * tileSize * 3];
+    int[] pixels = new int[tileSize * tileSize];
+    Inflater inflater = new Inflater();
+    try {
+      for (int ty = 0; ty < tilesY; ty++) {
+        int top = ty * tileSize;
+        int rows = Math.min(tileSize, header.height - top);
+        for (int tx = 0; tx < tilesX; tx++) {
+          int left = tx * tileSize;
+          int cols = Math.min(tileSize, header.width - left);
+          long offset = table.getLong();
+          ByteBuffer deflated = ByteBuffer.allocate(table.getInt());
+          readFully(channel, deflated, offset);
+          inflater.reset();
+          inflater.setInput(deflated.array());
+          int length = cols * rows * 3;
+          int filled = 0;
+          while (filled < length) {
+            int count = inflater.inflate(samples, filled, length - filled);
+            if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+              throw new IOException("Image file has a truncated tile");
+            }
+            filled += count;
+          }
+          unpackTile(samples, cols, rows, header.order, pixels);
+          image.writeRegion(left, top, cols, rows, pixels, 0, cols);
+        }
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Image file has a corrupt tile: " + e.getMessage());
+    } finally {
+      inflater.end();
+    }
+    return image;
+  }
+
+  private static void unpackTile(byte[] samples, int cols, int rows, int order, int[] pixels) {
+    int count = cols * rows;
+    if (order == PLANAR) {
+      for (int i = 0; i < count; i++) {
+        pixels[i] = (samples[i] & 0xFF) << 16 | (samples[count + i] & 0xFF) << 8
+            | (samples[2 * count + i] & 0xFF);
+      }
+    } else {
+      for (int i = 0, k = 0; i < count; i++, k += 3) {
+        pixels[i] = (samples[k] & 0xFF) << 16 | (samples[k + 1] & 0xFF) << 8
+            | (samples[k + 2] & 0xFF);
+      }
+    }
+  }
+
+  private static MappedStorage mapSamples(FileChannel channel, Header header)
+      throws IOException {
+    int stride = header.order == PLANAR ? 1 : 3;
+    long rowBytes = (long) header.width * stride;
+    if (rowBytes > Integer.MAX_VALUE) {
+      throw new IOException("Image file rows are too wide to map: " + header.width);
+    }
+    long planeBytes = rowBytes * header.height;
+    int planes = header.order == PLANAR ? 3 : 1;
+    if (channel.size() < HEADER_BYTES + planeBytes * planes) {
+      throw new IOException("Image file is truncated");
+    }
+    int rowShift = 0;
+    while (rowShift < 30 && (rowBytes << (rowShift + 1)) <= MAX_CHUNK_BYTES
+        && (1L << (rowShift + 1)) <= header.height) {
+      rowShift++;
+    }
+    int rowsPerChunk = 1 << rowShift;
+    int chunks = (int) ((header.height + (long) rowsPerChunk - 1) >> rowShift);
+    ByteBuffer[][] mapped = new ByteBuffer[planes][chunks];
+    for (int p = 0; p < planes; p++) {
+      for (int c = 0; c < chunks; c++) {
+        long firstRow = (long) c << rowShift;
+        long rows = Math.min(rowsPerChunk, header.height - firstRow);
+        mapped[p][c] = channel.map(FileChannel.MapMode.READ_ONLY,
+            HEADER_BYTES + p * planeBytes + firstRow * rowBytes, rows * rowBytes);
+      }
+    }
+    return new MappedStorage(header.width, rowShift, mapped);
+  }
+
+  private static Header readHeader(FileChannel channel, Path path) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+    readFully(channel, buffer, 0);
+    buffer.flip();
+    if (buffer.getInt() != MAGIC) {
+      throw new IOException("Not an image file: " + path);
+    }
+    int version = buffer.get();
+    if (version != VERSION) {
+      throw new IOException("Unsupported image file version: " + version);
+    }
+    Header header = new Header();
+    header.order = buffer.get();
+    int compression = buffer.get();
+    buffer.get();
+    header.width = buffer.getInt();
+    header.height = buffer.getInt();
+    int layout = buffer.getInt();
+    header.tileSize = buffer.getInt();
+    if ((header.order != INTERLEAVED && header.order != PLANAR) || compression < 0
+        || compression > 1 || header.width <= 0 || header.height <= 0 || layout < 0
+        || layout >= Image.Layout.values().length || (compression == 1) != (header.tileSize > 0)
+        || header.tileSize > 1 << 12) {
+      throw new IOException("Image file has an invalid header: " + path);
+    }
+    header.layout = Image.Layout.values()[layout];
+    return header;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int count = channel.read(buffer, position);
+      if (count < 0) {
+        throw new IOException("Image file is truncated");
+      }
+      position += count;
+    }
+  }
+
+  /**
+   * The fields of a file header.
+   */
+  private static final class Header {
+
+    int order;
+    int width;
+    int height;
+    Image.Layout layout;
+    int tileSize;
+
+    /**
+     * Returns the layout to read the samples into on the heap.
+     */
+    Image.Layout heapLayout() {
+      return layout == Image.Layout.OFF_HEAP || layout == Image.Layout.MAPPED
+          ? Image.Layout.PACKED : layout;
+    }
+  }
+}
@@ -1,15 +1,68 @@
 package model.imagerepresentation;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This class is responsible for handling operations on images. It can store images and retrieve
- * them.
+ * them. The images live in a {@link Workspace}; instances created without one all share
+ * {@link Workspace#shared()}.
+ *
+ * <p>The store can be given a memory budget with {@link #setMemoryBudget(long)}. Once the images
+ * it holds take more pixel memory than that, the least recently used ones are spilled to disk and
+ * read back transparently by {@link #getImage(String)}.
+ *
+ * <p>{@link #saveSession(Path, boolean)} writes all stored images to a directory in the native
+ * {@link ImageFile} format and {@link #loadSession(Path)} maps them back in.
  */
 public class ImageOperations {
 
-  private static final Map<String, Image> images = new HashMap<>();
+  // Index of a saved session, one "file name" line per name after the header
+  private static final String SESSION_INDEX = "session.txt";
+  private static final String SESSION_HEADER = "image-session 1";
+
+  private final Workspace workspace;
+  private final ImageStore images;
+
+  /**
+   * Creates an instance that works on the shared workspace.
+   */
+  public ImageOperations() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates an instance that works on the given workspace.
+   *
+   * @param workspace the workspace holding the images.
+   * @throws IllegalArgumentException if the workspace is null.
+   */
+  public ImageOperations(Workspace workspace) {
+    if (workspace == null) {
+      throw new IllegalArgumentException("Workspace cannot be null.");
+    }
+    this.workspace = workspace;
+    this.images = workspace.store();
+  }
+
+  /**
+   * Returns the workspace this instance works on.
+   *
+   * @return the workspace.
+   */
+  public Workspace getWorkspace() {
+    return workspace;
+  }
 
   /**
    * Gets an image by its name.
@@ -39,4 +92,286 @@ public class ImageOperations {
     }
     images.put(destName, image);
   }
+
+  /**
+   * Saves an image under a name unless an image of that name already exists. The check and the
+   * save are one atomic step.
+   *
+   * @param destName the name to save the image under.
+   * @param image    the Image object to save.
+   * @return true if the image was saved.
+   * @throws IllegalArgumentException if the image or the name is null.
+   */
+  public boolean saveImageIfAbsent(String destName, Image image) {
+    if (image == null || destName == null || destName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Cannot save a null image.");
+    }
+    return images.putIfAbsent(destName, image);
+  }
+
+  /**
+   * Replaces the image stored under a name, but only if it is still the expected one. The check
+   * and the replacement are one atomic step.
+   *
+   * @param destName the name of the image.
+   * @param expected the image the caller read under that name.
+   * @param image    the new image.
+   * @return true if the image was replaced.
+   * @throws IllegalArgumentException if the new image or the name is null.
+   */
+  public boolean replaceImage(String destName, Image expected, Image image) {
+    if (image == null || destName == null || destName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Cannot save a null image.");
+    }
+    return images.replace(destName, expected, image);
+  }
+
+  /**
+   * Stores a recipe for images instead of their pixels. The recipe runs when one of its outputs is
+   * first retrieved; afterwards its outputs can be dropped under memory pressure and recomputed.
+   *
+   * @param recipe the recipe to store.
+   * @throws IllegalArgumentException if the recipe is null, has no outputs or reads one of them.
+   */
+  public void saveRecipe(Recipe recipe) {
+    if (recipe == null) {
+      throw new IllegalArgumentException("Cannot save a null recipe.");
+    }
+    images.putRecipe(recipe);
+  }
+
+  /**
+   * Sets the number of bytes of pixel memory the stored images may take before the least recently
+   * used ones are spilled to disk. The budget is unlimited by default.
+   *
+   * @param bytes the memory budget in bytes, or {@link Long#MAX_VALUE} for no limit.
+   * @throws IllegalArgumentException if the budget is negative.
+   */
+  public void setMemoryBudget(long bytes) {
+    images.setBudget(bytes);
+  }
+
+  /**
+   * Returns the memory budget of the store.
+   *
+   * @return the budget in bytes.
+   */
+  public long getMemoryBudget() {
+    return images.getBudget();
+  }
+
+  /**
+   * Returns the pixel memory of the stored images that are currently held in memory. An image
+   * stored under several names is counted once.
+   *
+   * @return the resident bytes.
+   */
+  public long getResidentBytes() {
+    return images.getResidentBytes();
+  }
+
+  /**
+   * Returns the largest number of resident bytes seen since the store was created or since the
+   * last {@link #resetPeakResidentBytes()}.
+   *
+   * @return the peak resident bytes.
+   */
+  public long getPeakResidentBytes() {
+    return images.getPeakResidentBytes();
+  }
+
+  /**
+   * Restarts peak tracking from the bytes that are resident now.
+   */
+  public void resetPeakResidentBytes() {
+    images.resetPeakResidentBytes();
+  }
+
+  /**
+   * Returns how many times an image has been spilled to disk.
+   *
+   * @return the spill count.
+   */
+  public long getSpillCount() {
+    return images.getSpills();
+  }
+
+  /**
+   * Returns how many times a spilled image has been read back from disk.
+   *
+   * @return the reload count.
+   */
+  public long getReloadCount() {
+    return images.getReloads();
+  }
+
+  /**
+   * Returns how many times a recipe has been run to compute its images.
+   *
+   * @return the materialization count.
+   */
+  public long getMaterializeCount() {
+    return images.getMaterializations();
+  }
+
+  /**
+   * Removes the image stored under a name, if any.
+   *
+   * @param imageName the name of the image to remove.
+   * @return the removed image, or null if no image had that name, it was spilled to disk or it was
+   *         not computed yet.
+   */
+  public Image removeImage(String imageName) {
+    return images.remove(imageName);
+  }
+
+  /**
+   * Writes every stored image to a directory so that {@link #loadSession(Path)} can restore them.
+   * Each image is written once as an {@link ImageFile}, however many names it is stored under, and
+   * an index file maps the names to the files. Recipes are run and spilled images read back first.
+   * Every file is replaced in one step, so images mapped from an earlier session saved to the same
+   * directory stay valid.
+   *
+   * @param directory the directory to write to, which is created if needed.
+   * @param compress  true to deflate the images, false to write them raw so they load by mapping.
+   * @throws IOException if a file cannot be written.
+   */
+  public void saveSession(Path directory, boolean compress) throws IOException {
+    Files.createDirectories(directory);
+    List<String> previous = new ArrayList<>();
+    Path indexFile = directory.resolve(SESSION_INDEX);
+    if (Files.exists(indexFile)) {
+      previous.addAll(readSessionIndex(directory).keySet());
+    }
+
+    Map<Image, String> files = new IdentityHashMap<>();
+    List<String> index = new ArrayList<>();
+    index.add(SESSION_HEADER);
+    for (String name : images.names()) {
+      Image image = images.get(name);
+      if (image == null) {
+        continue;
+      }
+      String file = files.get(image);
+      if (file == null) {
+        file = "image" + files.size() + ".img";
+        ImageFile.write(directory.resolve(file), image, compress);
+        files.put(image, file);
+      }
+      index.add(file + " " + name);
+    }
+    Path temp = Files.createTempFile(directory, "session", ".tmp");
+    try {
+      Files.write(temp, index, StandardCharsets.UTF_8);
+      Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    // IdentityHashMap compares its values by identity too, so look the file names up in a set
+    Set<String> written = new HashSet<>(files.values());
+    for (String file : previous) {
+      if (!written.contains(file)) {
+        Files.deleteIfExists(directory.resolve(file));
+      }
+    }
+  }
+
+  /**
+   * Restores the images of a session written by {@link #saveSession(Path, boolean)}, replacing
+   * stored images of the same names. Uncompressed images are mapped rather than read, so restoring
+   * takes about as long however large the images are; an image saved under several names is
+   * restored as one image again.
+   *
+   * @param directory the directory the session was saved to.
+   * @return the names that were restored.
+   * @throws IOException if the index or an image cannot be read.
+   */
+  public List<String> loadSession(Path directory) throws IOException {
+    Map<String, List<String>> index = readSessionIndex(directory);
+    List<String> restored = new ArrayList<>();
+    for (Map.Entry<String, List<String>> entry : index.entrySet()) {
+      Image image = ImageFile.map(directory.resolve(entry.getKey()));
+      for (String name : entry.getValue()) {
+        images.put(name, image);
+        restored.add(name);
+      }
+    }
+    return restored;
+  }
+
+  private static Map<String, List<String>> readSessionIndex(Path directory) throws IOException {
+    List<String> lines = Files.readAllLines(directory.resolve(SESSION_INDEX),
+        StandardCharsets.UTF_8);
+    if (lines.isEmpty() || !lines.get(0).equals(SESSION_HEADER)) {
+      throw new IOException("Not a saved session: " + directory);
+    }
+    Map<String, List<String>> index = new LinkedHashMap<>();
+    for (String line : lines.subList(1, lines.size())) {
+      int space = line.indexOf(' ');
+      if (space <= 0 || space == line.length() - 1
+          || !line.substring(0, space).matches("image[0-9]+\\.img")) {
+        throw new IOException("Invalid session index line: " + line);
+      }
+      index.computeIfAbsent(line.substring(0, space), file -> new ArrayList<>())
+          .add(line.substring(space + 1));
+    }
+    return index;
+  }
+
+  /**
+   * Sets the pool that destination images in this workspace are taken from. Images are only ever
+   * returned to it by whoever owns them, see {@link ImagePool#release(Image)}.
+   *
+   * @param pool the pool to use, or null to always allocate new images.
+   */
+  public void setImagePool(ImagePool pool) {
+    workspace.setImagePool(pool);
+  }
+
+  /**
+   * Returns the pool that destination images are taken from.
+   *
+   * @return the pool, or null if none is set.
+   */
+  public ImagePool getImagePool() {
+    return workspace.getImagePool();
+  }
+
+  /**
+   * Creates the destination image of an operation on the given source: an image of the given size
+   * in the source's layout whose contents are undefined. It is taken from the image pool when one
+   * is set; destinations of off-heap images come from the source's arena, and those of mapped
+   * images are packed.
+   *
+   * @param source the image the operation reads.
+   * @param width  the width of the destination.
+   * @param height the height of the destination.
+   * @return the destination image.
+   */
+  public Image createDestination(Image source, int width, int height) {
+    if (source.getLayout() == Image.Layout.OFF_HEAP) {
+      return source.createUninitializedImage(width, height);
+    }
+    if (source.getLayout() == Image.Layout.MAPPED) {
+      // Results of mapped inputs live on the heap, leaving the files untouched
+      return createDestination(width, height, Image.Layout.PACKED);
+    }
+    return createDestination(width, height, source.getLayout());
+  }
+
+  /**
+   * Creates an image of the given size and layout whose contents are undefined, taking it from the
+   * image pool when one is set.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param layout the memory layout of the image.
+   * @return the new image.
+   */
+  public Image createDestination(int width, int height, Image.Layout layout) {
+    ImagePool pool = workspace.getImagePool();
+    return pool != null ? pool.acquire(width, height, layout)
+        : Image.allocateUninitialized(width, height, layout);
+  }
 }
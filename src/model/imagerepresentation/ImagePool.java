@@ -0,0 +1,180 @@
+package model.imagerepresentation;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps images that are no longer needed so that later operations at the same size can reuse their
+ * memory instead of allocating a new image. Images are grouped by width, height and layout; an
+ * image handed out by {@link #acquire(int, int, Image.Layout)} has undefined contents, like one
+ * created by {@link Image#allocateUninitialized(int, int, Image.Layout)}.
+ *
+ * <p>Only the owner of an image knows when nothing else refers to it, so images are never
+ * returned automatically: callers release them explicitly. The pool holds at most a configurable
+ * number of bytes; images released beyond that are left to the garbage collector. Off-heap images
+ * belong to their arena and are never pooled.
+ */
+public final class ImagePool {
+
+  /**
+   * Default upper bound for the pixel memory held by a pool, in bytes.
+   */
+  public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+  private final long maxBytes;
+  private final Map<Key, ArrayDeque<Image>> free = new HashMap<>();
+  private final Set<Image> pooled = Collections.newSetFromMap(new IdentityHashMap<>());
+  private long pooledBytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Creates a pool that holds at most {@link #DEFAULT_MAX_BYTES} bytes.
+   */
+  public ImagePool() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * Creates a pool that holds at most the given number of bytes of pixel memory.
+   *
+   * @param maxBytes The byte cap, zero to disable pooling.
+   */
+  public ImagePool(long maxBytes) {
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Byte cap cannot be negative: " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns an image of the given size and layout, reusing a released one when there is one. The
+   * contents of the image are undefined.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param layout The memory layout of the image.
+   * @return A pooled or newly allocated image.
+   * @throws IllegalArgumentException if the size is not positive or the layout is off-heap.
+   */
+  public Image acquire(int width, int height, Image.Layout layout) {
+    synchronized (this) {
+      ArrayDeque<Image> images = free.get(new Key(width, height, layout));
+      Image image = images == null ? null : images.pollFirst();
+      if (image != null) {
+        pooled.remove(image);
+        pooledBytes -= image.getByteSize();
+        hits++;
+        return image;
+      }
+      misses++;
+    }
+    return Image.allocateUninitialized(width, height, layout);
+  }
+
+  /**
+   * Hands an image back to the pool. The caller must not use the image afterwards, and nothing
+   * else may still refer to it. Images that would push the pool over its byte cap, off-heap and
+   * mapped images and images that are already in the pool are not kept.
+   *
+   * @param image The image to release.
+   * @return true if the pool kept the image.
+   */
+  public synchronized boolean release(Image image) {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (image.getLayout() == Image.Layout.OFF_HEAP || image.getLayout() == Image.Layout.MAPPED
+        || pooled.contains(image)) {
+      return false;
+    }
+    long size = image.getByteSize();
+    if (pooledBytes + size > maxBytes) {
+      return false;
+    }
+    free.computeIfAbsent(new Key(image.getWidth(), image.getHeight(), image.getLayout()),
+        key -> new ArrayDeque<>()).addFirst(image);
+    pooled.add(image);
+    pooledBytes += size;
+    return true;
+  }
+
+  /**
+   * Drops every pooled image.
+   */
+  public synchronized void clear() {
+    free.clear();
+    pooled.clear();
+    pooledBytes = 0;
+  }
+
+  /**
+   * Returns the number of acquisitions served from the pool.
+   *
+   * @return The hit count.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of acquisitions that had to allocate a new image.
+   *
+   * @return The miss count.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the pixel memory currently held by pooled images.
+   *
+   * @return The pooled bytes.
+   */
+  public synchronized long getPooledBytes() {
+    return pooledBytes;
+  }
+
+  /**
+   * Returns the byte cap of this pool.
+   *
+   * @return The maximum number of pooled bytes.
+   */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Size and layout under which images are pooled.
+   */
+  private static final class Key {
+
+    private final int width;
+    private final int height;
+    private final Image.Layout layout;
+
+    Key(int width, int height, Image.Layout layout) {
+      this.width = width;
+      this.height = height;
+      this.layout = layout;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return width == other.width && height == other.height && layout == other.layout;
+    }
+
+    @Override
+    public int hashCode() {
+      return (width * 31 + height) * 31 + (layout == null ? 0 : layout.ordinal());
+    }
+  }
+}
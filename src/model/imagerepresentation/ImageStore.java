@@ -0,0 +1,530 @@
+package model.imagerepresentation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Named image store with a memory budget. While the pixel memory of the stored images exceeds the
+ * budget, the least recently used images are written to an uncompressed {@link ImageFile} and
+ * dropped from memory; {@link #get(String)} maps the file and copies it back on demand. An image
+ * stored under several names is kept, counted and spilled once. Off-heap and mapped images live
+ * outside the heap and are neither counted nor spilled. Spill files are written once the store's
+ * lock is released, so other threads keep using the store while an image is written out; an image
+ * that is used, replaced or removed in the meantime stays in memory and its file is dropped.
+ *
+ * <p>A name can also hold a {@link Recipe} instead of pixels. The recipe runs the first time one
+ * of its outputs is read, and its outputs keep the recipe afterwards: under memory pressure they
+ * are dropped rather than spilled and recomputed when read again. Before a name a recipe reads is
+ * replaced or removed, the recipe is run and detached, so its outputs always match the sources it
+ * was stored with.
+ */
+final class ImageStore {
+
+  // Access-ordered, so iteration starts at the least recently used name
+  private final Map<String, Slot> names = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Image, Slot> slots = new IdentityHashMap<>();
+  private long budget = Long.MAX_VALUE;
+  private Path spillDirectory;
+  private long residentBytes;
+  private long peakResidentBytes;
+  private long spills;
+  private long reloads;
+  private long materializations;
+  // Recipes currently running, innermost last
+  private final List<Recipe> applying = new ArrayList<>();
+  // Slots chosen to be spilled whose files are not written yet, and the bytes they hold
+  private final Deque<Slot> pendingSpills = new ArrayDeque<>();
+  private long spillingBytes;
+
+  /**
+   * Returns the image stored under a name, reading it back from disk if it was spilled.
+   *
+   * @param name The name of the image.
+   * @return The image, or null if there is none.
+   */
+  Image get(String name) {
+    try {
+      synchronized (this) {
+        Slot slot = names.get(name);
+        if (slot == null) {
+          return null;
+        }
+        if (slot.image == null) {
+          if (slot.file != null) {
+            reload(name, slot);
+          } else {
+            materialize(name, slot);
+            slot = names.get(name);
+          }
+          enforceBudget(slot);
+        } else {
+          // Just used, so no longer the one to spill
+          cancelSpill(slot);
+        }
+        return slot.image;
+      }
+    } finally {
+      writeSpills();
+    }
+  }
+
+  /**
+   * Stores an image under a name, replacing any previous image of that name.
+   *
+   * @param name  The name of the image.
+   * @param image The image to store.
+   */
+  void put(String name, Image image) {
+    try {
+      synchronized (this) {
+        Recipe owner = applyingRecipeFor(name);
+        if (owner != null) {
+          // A running recipe delivers its output; names it no longer owns keep their images
+          Slot current = names.get(name);
+          if (current != null && current.recipe == owner) {
+            fill(name, current, image);
+          }
+          return;
+        }
+        invalidate(name);
+        store(name, image);
+      }
+    } finally {
+      writeSpills();
+    }
+  }
+
+  /**
+   * Stores an image under a name unless the name is already taken.
+   *
+   * @param name  The name of the image.
+   * @param image The image to store.
+   * @return true if the image was stored.
+   */
+  boolean putIfAbsent(String name, Image image) {
+    try {
+      synchronized (this) {
+        if (names.containsKey(name)) {
+          return false;
+        }
+        invalidate(name);
+        store(name, image);
+        return true;
+      }
+    } finally {
+      writeSpills();
+    }
+  }
+
+  /**
+   * Replaces the image stored under a name if it is still the expected one. A spilled image is
+   * read back as a new object, so an expected image that has been spilled no longer matches.
+   *
+   * @param name     The name of the image.
+   * @param expected The image expected under the name.
+   * @param image    The new image.
+   * @return true if the image was replaced.
+   */
+  boolean replace(String name, Image expected, Image image) {
+    try {
+      synchronized (this) {
+        Slot current = names.get(name);
+        if (current == null || current.image != expected) {
+          return false;
+        }
+        invalidate(name);
+        store(name, image);
+        return true;
+      }
+    } finally {
+      writeSpills();
+    }
+  }
+
+  /**
+   * Stores a recipe under each of its output names, replacing what those names held.
+   *
+   * @param recipe The recipe to store.
+   * @throws IllegalArgumentException if the recipe has no outputs or reads one of them.
+   */
+  synchronized void putRecipe(Recipe recipe) {
+    List<String> outputs = recipe.getOutputs();
+    if (outputs.isEmpty()) {
+      throw new IllegalArgumentException("A recipe needs at least one output");
+    }
+    for (String output : outputs) {
+      if (recipe.getSources().contains(output)) {
+        throw new IllegalArgumentException("A recipe cannot read its own output: " + output);
+      }
+    }
+    for (String output : outputs) {
+      invalidate(output);
+      Slot slot = new Slot(recipe);
+      slot.names = 1;
+      Slot previous = names.put(output, slot);
+      if (previous != null) {
+        unreference(previous);
+      }
+    }
+  }
+
+  /**
+   * Returns whether a name holds an image, in memory, on disk or as a recipe.
+   *
+   * @param name The name of the image.
+   * @return true if the name is taken.
+   */
+  synchronized boolean contains(String name) {
+    return names.containsKey(name);
+  }
+
+  /**
+   * Returns the names that hold an image, in memory, on disk or as a recipe.
+   *
+   * @return A copy of the names, least recently used first.
+   */
+  synchronized List<String> names() {
+    return new ArrayList<>(names.keySet());
+  }
+
+  private void store(String name, Image image) {
+    Slot slot = slots.get(image);
+    if (slot == null) {
+      slot = new Slot(image);
+      slots.put(image, slot);
+      addResident(slot.bytes);
+    }
+    Slot previous = names.put(name, slot);
+    if (previous != slot) {
+      slot.names++;
+      if (previous != null) {
+        unreference(previous);
+      }
+    }
+    enforceBudget(slot);
+  }
+
+  /**
+   * Removes the image stored under a name.
+   *
+   * @param name The name of the image.
+   * @return The removed image, or null if there was none or it was only held on disk or as a
+   *         recipe.
+   */
+  synchronized Image remove(String name) {
+    invalidate(name);
+    Slot slot = names.remove(name);
+    if (slot == null) {
+      return null;
+    }
+    Image image = slot.image;
+    unreference(slot);
+    return image;
+  }
+
+  /**
+   * Sets the number of bytes of pixel memory the store may keep in memory, spilling images at once
+   * if the new budget is already exceeded.
+   *
+   * @param budget The budget in bytes.
+   */
+  void setBudget(long budget) {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Memory budget cannot be negative: " + budget);
+    }
+    synchronized (this) {
+      this.budget = budget;
+      enforceBudget(null);
+    }
+    writeSpills();
+  }
+
+  synchronized long getBudget() {
+    return budget;
+  }
+
+  synchronized long getResidentBytes() {
+    return residentBytes;
+  }
+
+  synchronized long getPeakResidentBytes() {
+    return peakResidentBytes;
+  }
+
+  /**
+   * Restarts peak tracking from the current resident bytes.
+   */
+  synchronized void resetPeakResidentBytes() {
+    peakResidentBytes = residentBytes;
+  }
+
+  synchronized long getSpills() {
+    return spills;
+  }
+
+  synchronized long getReloads() {
+    return reloads;
+  }
+
+  synchronized long getMaterializations() {
+    return materializations;
+  }
+
+  private void addResident(long bytes) {
+    residentBytes += bytes;
+    peakResidentBytes = Math.max(peakResidentBytes, residentBytes);
+  }
+
+  private Recipe applyingRecipeFor(String name) {
+    for (int i = applying.size() - 1; i >= 0; i--) {
+      if (applying.get(i).getOutputs().contains(name)) {
+        return applying.get(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Runs the recipe of a slot that holds no pixels.
+   */
+  private void materialize(String name, Slot slot) {
+    Recipe recipe = slot.recipe;
+    applying.add(recipe);
+    try {
+      recipe.apply();
+    } finally {
+      applying.remove(applying.size() - 1);
+    }
+    materializations++;
+    Slot current = names.get(name);
+    if (current == null || current.image == null) {
+      throw new IllegalStateException("Recipe did not produce image " + name);
+    }
+  }
+
+  /**
+   * Gives a recipe slot the pixels its recipe just computed.
+   */
+  private void fill(String name, Slot slot, Image image) {
+    Slot other = slots.get(image);
+    if (other != null && other != slot) {
+      // Already stored under another name; share that slot and let the recipe go
+      store(name, image);
+      return;
+    }
+    cancelSpill(slot);
+    if (slot.image != null) {
+      slots.remove(slot.image);
+      residentBytes -= slot.bytes;
+    }
+    deleteSpillFile(slot);
+    slot.image = image;
+    slot.bytes = bytesOf(image);
+    slots.put(image, slot);
+    addResident(slot.bytes);
+    enforceBudget(slot);
+  }
+
+  /**
+   * Runs and detaches the recipes that read a name that is about to change.
+   */
+  private void invalidate(String name) {
+    List<String> dependents = new ArrayList<>();
+    for (Map.Entry<String, Slot> entry : names.entrySet()) {
+      Recipe recipe = entry.getValue().recipe;
+      if (recipe != null && recipe.getSources().contains(name)) {
+        dependents.add(entry.getKey());
+      }
+    }
+    for (String dependent : dependents) {
+      Slot slot = names.get(dependent);
+      if (slot == null || slot.recipe == null) {
+        continue;
+      }
+      if (slot.image == null && slot.file == null) {
+        materialize(dependent, slot);
+        slot = names.get(dependent);
+      }
+      slot.recipe = null;
+    }
+  }
+
+  private void unreference(Slot slot) {
+    if (--slot.names > 0) {
+      return;
+    }
+    cancelSpill(slot);
+    if (slot.image != null) {
+      slots.remove(slot.image);
+      residentBytes -= slot.bytes;
+    }
+    deleteSpillFile(slot);
+  }
+
+  /**
+   * Chooses least recently used images to spill until the resident bytes, not counting those
+   * already chosen, fit the budget. Their files are written by {@link #writeSpills()}. The given
+   * slot was just used and is never spilled, so a single image larger than the budget stays in
+   * memory.
+   */
+  private void enforceBudget(Slot keep) {
+    Iterator<Slot> candidates = names.values().iterator();
+    while (residentBytes - spillingBytes > budget && candidates.hasNext()) {
+      Slot slot = candidates.next();
+      if (slot == keep || slot.image == null || slot.bytes == 0 || slot.spilling) {
+        continue;
+      }
+      if (slot.recipe == null) {
+        slot.spilling = true;
+        spillingBytes += slot.bytes;
+        pendingSpills.add(slot);
+      } else if (!applying.contains(slot.recipe)) {
+        // Cheaper to recompute than to write out
+        slots.remove(slot.image);
+        slot.image = null;
+        residentBytes -= slot.bytes;
+      }
+    }
+  }
+
+  /**
+   * Writes out the images chosen to be spilled. The files are written without holding the store's
+   * lock, and an image is only dropped from memory if its slot still holds it and it was not used
+   * meanwhile. Calls made while the lock is held, such as from a running recipe, leave the writes
+   * to the outermost call, which makes them once it has released the lock.
+   */
+  private void writeSpills() {
+    if (Thread.holdsLock(this)) {
+      return;
+    }
+    while (true) {
+      Slot slot;
+      Image image;
+      Path directory;
+      synchronized (this) {
+        slot = pendingSpills.poll();
+        if (slot == null) {
+          return;
+        }
+        if (!slot.spilling) {
+          continue;
+        }
+        image = slot.image;
+        try {
+          directory = spillDirectory();
+        } catch (IOException e) {
+          cancelSpill(slot);
+          continue;
+        }
+      }
+      Path file = null;
+      try {
+        file = Files.createTempFile(directory, "image", ".spill");
+        file.toFile().deleteOnExit();
+        ImageFile.write(file, image, false);
+      } catch (IOException e) {
+        // Keep the image in memory; the budget is a target, not a hard limit
+        deleteQuietly(file);
+        file = null;
+      }
+      synchronized (this) {
+        boolean current = slot.spilling && slot.image == image && slots.get(image) == slot;
+        cancelSpill(slot);
+        if (file != null && current) {
+          slots.remove(image);
+          slot.image = null;
+          slot.file = file;
+          residentBytes -= slot.bytes;
+          spills++;
+        } else {
+          deleteQuietly(file);
+        }
+      }
+    }
+  }
+
+  private Path spillDirectory() throws IOException {
+    if (spillDirectory == null) {
+      spillDirectory = Files.createTempDirectory("image-spill");
+      spillDirectory.toFile().deleteOnExit();
+    }
+    return spillDirectory;
+  }
+
+  private void cancelSpill(Slot slot) {
+    if (slot.spilling) {
+      slot.spilling = false;
+      spillingBytes -= slot.bytes;
+    }
+  }
+
+  private void reload(String name, Slot slot) {
+    Image image;
+    try {
+      // Maps the file and copies it back in one pass, in the layout it was spilled from
+      image = ImageFile.read(slot.file);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not reload spilled image " + name + ": "
+          + e.getMessage());
+    }
+    deleteSpillFile(slot);
+    slot.image = image;
+    slot.bytes = image.getByteSize();
+    slots.put(image, slot);
+    addResident(slot.bytes);
+    reloads++;
+  }
+
+  private static long bytesOf(Image image) {
+    // Off-heap and mapped pixels do not count against the heap budget
+    return image.getLayout() == Image.Layout.OFF_HEAP || image.getLayout() == Image.Layout.MAPPED
+        ? 0 : image.getByteSize();
+  }
+
+  private static void deleteSpillFile(Slot slot) {
+    deleteQuietly(slot.file);
+    slot.file = null;
+  }
+
+  private static void deleteQuietly(Path file) {
+    if (file != null) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // Left for deleteOnExit
+      }
+    }
+  }
+
+  /**
+   * One stored image, shared by every name it is stored under.
+   */
+  private static final class Slot {
+
+    Image image;
+    Path file;
+    long bytes;
+    int names;
+    Recipe recipe;
+    // Chosen to be spilled, with its file not written yet
+    boolean spilling;
+
+    Slot(Image image) {
+      this.image = image;
+      this.bytes = bytesOf(image);
+    }
+
+    Slot(Recipe recipe) {
+      this.recipe = recipe;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package model.imagerepresentation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Storage over the samples of an {@link ImageFile} mapped into memory. The samples are either
+ * interleaved, three bytes per pixel, or held in three planes of one byte per pixel; either way
+ * they are split into chunks of whole rows so that a file larger than a single mapping can address
+ * is still covered. The mapping is read-only: the first write to a chunk copies it to the heap, so
+ * writes change this image only, never the file. Images derived from a mapped one are packed heap
+ * images.
+ */
+class MappedStorage implements PixelStorage {
+
+  private final int width;
+  private final int rowShift;
+  private final int rowMask;
+  // One array of chunks for interleaved samples, or one per channel for planar samples
+  private final ByteBuffer[][] planes;
+
+  /**
+   * Creates a storage over mapped chunks.
+   *
+   * @param width    The width of the image.
+   * @param rowShift log2 of the number of rows held by each chunk.
+   * @param planes   The chunks of the interleaved samples, or of the red, green and blue planes.
+   */
+  MappedStorage(int width, int rowShift, ByteBuffer[][] planes) {
+    this.width = width;
+    this.rowShift = rowShift;
+    this.rowMask = (1 << rowShift) - 1;
+    this.planes = planes;
+  }
+
+  @Override
+  public int get(int x, int y) {
+    int chunk = y >> rowShift;
+    int i = (y & rowMask) * width + x;
+    if (planes.length == 1) {
+      ByteBuffer samples = planes[0][chunk];
+      i *= 3;
+      return ((samples.get(i) & 0xFF) << 16) | ((samples.get(i + 1) & 0xFF) << 8)
+          | (samples.get(i + 2) & 0xFF);
+    }
+    return ((planes[0][chunk].get(i) & 0xFF) << 16) | ((planes[1][chunk].get(i) & 0xFF) << 8)
+        | (planes[2][chunk].get(i) & 0xFF);
+  }
+
+  @Override
+  public void set(int x, int y, int rgb) {
+    int chunk = y >> rowShift;
+    int i = (y & rowMask) * width + x;
+    if (planes.length == 1) {
+      ByteBuffer samples = writable(0, chunk);
+      i *= 3;
+      samples.put(i, (byte) (rgb >> 16));
+      samples.put(i + 1, (byte) (rgb >> 8));
+      samples.put(i + 2, (byte) rgb);
+    } else {
+      writable(0, chunk).put(i, (byte) (rgb >> 16));
+      writable(1, chunk).put(i, (byte) (rgb >> 8));
+      writable(2, chunk).put(i, (byte) rgb);
+    }
+  }
+
+  @Override
+  public void getRegion(int x, int y, int width, int height, int[] dst, int offset,
+      int scanline) {
+    for (int j = 0; j < height; j++) {
+      int chunk = (y + j) >> rowShift;
+      int from = ((y + j) & rowMask) * this.width + x;
+      int to = offset + j * scanline;
+      if (planes.length == 1) {
+        ByteBuffer samples = planes[0][chunk];
+        for (int i = 0; i < width; i++) {
+          int k = (from + i) * 3;
+          dst[to + i] = ((samples.get(k) & 0xFF) << 16) | ((samples.get(k + 1) & 0xFF) << 8)
+              | (samples.get(k + 2) & 0xFF);
+        }
+      } else {
+        ByteBuffer red = planes[0][chunk];
+        ByteBuffer green = planes[1][chunk];
+        ByteBuffer blue = planes[2][chunk];
+        for (int i = 0; i < width; i++) {
+          dst[to + i] = ((red.get(from + i) & 0xFF) << 16)
+              | ((green.get(from + i) & 0xFF) << 8) | (blue.get(from + i) & 0xFF);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void fill(int rgb) {
+    for (int p = 0; p < planes.length; p++) {
+      for (int c = 0; c < planes[p].length; c++) {
+        ByteBuffer chunk = writable(p, c);
+        if (planes.length == 1) {
+          for (int i = 0; i < chunk.capacity(); i += 3) {
+            chunk.put(i, (byte) (rgb >> 16));
+            chunk.put(i + 1, (byte) (rgb >> 8));
+            chunk.put(i + 2, (byte) rgb);
+          }
+        } else {
+          byte sample = (byte) (rgb >> (16 - 8 * p));
+          for (int i = 0; i < chunk.capacity(); i++) {
+            chunk.put(i, sample);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public long byteSize() {
+    long size = 0;
+    for (ByteBuffer[] plane : planes) {
+      for (ByteBuffer chunk : plane) {
+        size += chunk.capacity();
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public Image createCompatibleImage(int width, int height) {
+    return new Image(width, height, Image.Layout.PACKED);
+  }
+
+  @Override
+  public Image createUninitializedImage(int width, int height) {
+    return Image.allocateUninitialized(width, height, Image.Layout.PACKED);
+  }
+
+  @Override
+  public Image.Layout layout() {
+    return Image.Layout.MAPPED;
+  }
+
+  private ByteBuffer writable(int plane, int chunk) {
+    ByteBuffer samples = planes[plane][chunk];
+    if (samples.isReadOnly()) {
+      ByteBuffer copy = ByteBuffer.allocate(samples.capacity());
+      copy.put(samples.duplicate());
+      planes[plane][chunk] = copy;
+      samples = copy;
+    }
+    return samples;
+  }
+}
@@ -0,0 +1,171 @@
+package model.imagerepresentation;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocates images whose pixels live in native memory outside the Java heap, and releases that
+ * memory deterministically. Off-heap images are meant for inputs that are larger than the heap or
+ * than a single Java array can address: they take three bytes per pixel, are split into chunks of
+ * whole rows, and never create garbage for the collector to trace.
+ *
+ * <p>Every image allocated by an arena, and every image a transformation derives from one through
+ * {@link Image#createCompatibleImage(int, int)}, belongs to that arena. Closing the arena frees all
+ * of them at once; using such an image afterwards throws {@link IllegalStateException}. The JVM
+ * caps direct memory at the maximum heap size unless {@code -XX:MaxDirectMemorySize} says
+ * otherwise.
+ */
+public final class OffHeapArena implements AutoCloseable {
+
+  /**
+   * Default upper bound for the size of a single native chunk, in bytes.
+   */
+  public static final int DEFAULT_CHUNK_BYTES = 1 << 30;
+
+  private static final Method INVOKE_CLEANER;
+  private static final Object UNSAFE;
+
+  static {
+    // sun.misc.Unsafe.invokeCleaner frees a direct buffer immediately; without it the memory is
+    // only returned once the collector notices the buffer is unreachable
+    Method invokeCleaner = null;
+    Object unsafe = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafe = theUnsafe.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      invokeCleaner = null;
+      unsafe = null;
+    }
+    INVOKE_CLEANER = invokeCleaner;
+    UNSAFE = unsafe;
+  }
+
+  private final int maxChunkBytes;
+  private final List<OffHeapStorage> storages = new ArrayList<>();
+  private long allocatedBytes;
+  private boolean closed;
+
+  /**
+   * Creates an arena that uses chunks of at most {@link #DEFAULT_CHUNK_BYTES} bytes.
+   */
+  public OffHeapArena() {
+    this(DEFAULT_CHUNK_BYTES);
+  }
+
+  /**
+   * Creates an arena that uses chunks of at most the given size.
+   *
+   * @param maxChunkBytes The largest native buffer the arena will allocate.
+   */
+  public OffHeapArena(int maxChunkBytes) {
+    if (maxChunkBytes < 3) {
+      throw new IllegalArgumentException("Chunk size must hold at least one pixel");
+    }
+    this.maxChunkBytes = maxChunkBytes;
+  }
+
+  /**
+   * Allocates a black off-heap image of the given size.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return The new image.
+   * @throws IllegalArgumentException if the size is not positive or a row does not fit in a chunk.
+   * @throws IllegalStateException    if the arena is closed.
+   */
+  public synchronized Image allocate(int width, int height) {
+    if (closed) {
+      throw new IllegalStateException("Arena is closed");
+    }
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Width and height must be positive");
+    }
+    long rowBytes = (long) width * 3;
+    if (rowBytes > maxChunkBytes) {
+      throw new IllegalArgumentException("Image row is larger than a chunk: " + width);
+    }
+
+    int rowsPerChunk = Integer.highestOneBit((int) (maxChunkBytes / rowBytes));
+    int rowShift = Integer.numberOfTrailingZeros(rowsPerChunk);
+    int chunkCount = (int) (((long) height + rowsPerChunk - 1) / rowsPerChunk);
+    ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+    try {
+      for (int i = 0; i < chunkCount; i++) {
+        int rows = Math.min(rowsPerChunk, height - i * rowsPerChunk);
+        chunks[i] = ByteBuffer.allocateDirect((int) (rows * rowBytes));
+      }
+    } catch (OutOfMemoryError e) {
+      free(chunks);
+      throw e;
+    }
+
+    OffHeapStorage storage = new OffHeapStorage(this, width, rowShift, chunks);
+    storages.add(storage);
+    allocatedBytes += rowBytes * height;
+    return new Image(width, height, storage);
+  }
+
+  /**
+   * Frees the memory of one image allocated by this arena before the arena itself is closed.
+   *
+   * @param image The image to free.
+   * @throws IllegalArgumentException if the image was not allocated by this arena.
+   */
+  public synchronized void free(Image image) {
+    PixelStorage storage = image == null ? null : image.storage();
+    if (!(storage instanceof OffHeapStorage) || ((OffHeapStorage) storage).arena() != this) {
+      throw new IllegalArgumentException("Image does not belong to this arena");
+    }
+    if (storages.remove(storage)) {
+      allocatedBytes -= (long) image.getWidth() * image.getHeight() * 3;
+      free(((OffHeapStorage) storage).detach());
+    }
+  }
+
+  /**
+   * Returns the number of native bytes currently held by images of this arena.
+   *
+   * @return The allocated bytes.
+   */
+  public synchronized long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Frees every image allocated by this arena. Closing an arena twice has no further effect.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (OffHeapStorage storage : storages) {
+      free(storage.detach());
+    }
+    storages.clear();
+    allocatedBytes = 0;
+  }
+
+  private static void free(ByteBuffer[] chunks) {
+    if (chunks == null || INVOKE_CLEANER == null) {
+      return;
+    }
+    for (ByteBuffer chunk : chunks) {
+      if (chunk != null) {
+        try {
+          INVOKE_CLEANER.invoke(UNSAFE, chunk);
+        } catch (ReflectiveOperationException e) {
+          // The buffer is still released by the collector once it becomes unreachable
+        }
+      }
+    }
+  }
+}
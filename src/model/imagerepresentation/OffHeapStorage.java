@@ -0,0 +1,146 @@
+package model.imagerepresentation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interleaved RGB storage, three bytes per pixel, held in direct (native) buffers outside the Java
+ * heap. The image is split into chunks of whole rows so that its total size is not limited by the
+ * 2^31 element cap of a single Java buffer. The memory belongs to an {@link OffHeapArena}; once the
+ * arena is closed the storage refuses any further access.
+ */
+class OffHeapStorage implements PixelStorage {
+
+  private final OffHeapArena arena;
+  private final int width;
+  private final int rowShift;
+  private final int rowMask;
+  private ByteBuffer[] chunks;
+
+  /**
+   * Creates a storage over chunks that have already been allocated by the arena.
+   *
+   * @param arena    The arena that owns the memory.
+   * @param width    The width of the image.
+   * @param rowShift log2 of the number of rows held by each chunk.
+   * @param chunks   The chunks, each holding {@code 1 << rowShift} rows (the last may hold fewer).
+   */
+  OffHeapStorage(OffHeapArena arena, int width, int rowShift, ByteBuffer[] chunks) {
+    this.arena = arena;
+    this.width = width;
+    this.rowShift = rowShift;
+    this.rowMask = (1 << rowShift) - 1;
+    this.chunks = chunks;
+  }
+
+  @Override
+  public int get(int x, int y) {
+    ByteBuffer chunk = chunk(y);
+    int i = ((y & rowMask) * width + x) * 3;
+    return ((chunk.get(i) & 0xFF) << 16) | ((chunk.get(i + 1) & 0xFF) << 8)
+        | (chunk.get(i + 2) & 0xFF);
+  }
+
+  @Override
+  public void set(int x, int y, int rgb) {
+    ByteBuffer chunk = chunk(y);
+    int i = ((y & rowMask) * width + x) * 3;
+    chunk.put(i, (byte) (rgb >> 16));
+    chunk.put(i + 1, (byte) (rgb >> 8));
+    chunk.put(i + 2, (byte) rgb);
+  }
+
+  @Override
+  public void getRegion(int x, int y, int width, int height, int[] dst, int offset,
+      int scanline) {
+    for (int j = 0; j < height; j++) {
+      ByteBuffer chunk = chunk(y + j);
+      int from = (((y + j) & rowMask) * this.width + x) * 3;
+      int to = offset + j * scanline;
+      for (int i = 0; i < width; i++, from += 3) {
+        dst[to + i] = ((chunk.get(from) & 0xFF) << 16) | ((chunk.get(from + 1) & 0xFF) << 8)
+            | (chunk.get(from + 2) & 0xFF);
+      }
+    }
+  }
+
+  @Override
+  public void setRegion(int x, int y, int width, int height, int[] src, int offset,
+      int scanline) {
+    for (int j = 0; j < height; j++) {
+      ByteBuffer chunk = chunk(y + j);
+      int from = offset + j * scanline;
+      int to = (((y + j) & rowMask) * this.width + x) * 3;
+      for (int i = 0; i < width; i++, to += 3) {
+        int rgb = src[from + i];
+        chunk.put(to, (byte) (rgb >> 16));
+        chunk.put(to + 1, (byte) (rgb >> 8));
+        chunk.put(to + 2, (byte) rgb);
+      }
+    }
+  }
+
+  @Override
+  public void fill(int rgb) {
+    ByteBuffer[] current = chunks;
+    if (current == null) {
+      throw new IllegalStateException("Image memory has already been released");
+    }
+    for (ByteBuffer chunk : current) {
+      for (int i = 0; i < chunk.capacity(); i += 3) {
+        chunk.put(i, (byte) (rgb >> 16));
+        chunk.put(i + 1, (byte) (rgb >> 8));
+        chunk.put(i + 2, (byte) rgb);
+      }
+    }
+  }
+
+  @Override
+  public long byteSize() {
+    ByteBuffer[] current = chunks;
+    long size = 0;
+    if (current != null) {
+      for (ByteBuffer chunk : current) {
+        size += chunk.capacity();
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public Image createCompatibleImage(int width, int height) {
+    return arena.allocate(width, height);
+  }
+
+  @Override
+  public Image.Layout layout() {
+    return Image.Layout.OFF_HEAP;
+  }
+
+  /**
+   * Returns the arena that owns this storage.
+   *
+   * @return The arena.
+   */
+  OffHeapArena arena() {
+    return arena;
+  }
+
+  /**
+   * Returns the chunks so the arena can free them, and makes this storage unusable.
+   *
+   * @return The chunks that were backing this storage.
+   */
+  ByteBuffer[] detach() {
+    ByteBuffer[] detached = chunks;
+    chunks = null;
+    return detached;
+  }
+
+  private ByteBuffer chunk(int y) {
+    ByteBuffer[] current = chunks;
+    if (current == null) {
+      throw new IllegalStateException("Image memory has already been released");
+    }
+    return current[y >> rowShift];
+  }
+}
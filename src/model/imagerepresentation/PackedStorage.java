@@ -0,0 +1,85 @@
+package model.imagerepresentation;
+
+import java.util.Arrays;
+
+/**
+ * Interleaved storage that keeps one packed {@code 0xRRGGBB} int per pixel in a single row-major
+ * array.
+ */
+class PackedStorage implements PixelStorage {
+
+  private final int[] data;
+  private final int width;
+
+  /**
+   * Allocates a black image of the given size.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   */
+  PackedStorage(int width, int height) {
+    this.width = width;
+    this.data = new int[width * height];
+  }
+
+  /**
+   * Uses an existing row-major array of packed values as the pixels, without copying it.
+   *
+   * @param width The width of the image.
+   * @param data  The pixels, whose bits above the red byte must be clear.
+   */
+  PackedStorage(int width, int[] data) {
+    this.width = width;
+    this.data = data;
+  }
+
+  @Override
+  public int get(int x, int y) {
+    return data[y * width + x];
+  }
+
+  @Override
+  public void set(int x, int y, int rgb) {
+    data[y * width + x] = rgb;
+  }
+
+  @Override
+  public void getRegion(int x, int y, int width, int height, int[] dst, int offset,
+      int scanline) {
+    for (int j = 0; j < height; j++) {
+      System.arraycopy(data, (y + j) * this.width + x, dst, offset + j * scanline, width);
+    }
+  }
+
+  @Override
+  public void setRegion(int x, int y, int width, int height, int[] src, int offset,
+      int scanline) {
+    for (int j = 0; j < height; j++) {
+      int from = offset + j * scanline;
+      int to = (y + j) * this.width + x;
+      for (int i = 0; i < width; i++) {
+        data[to + i] = src[from + i] & 0xFFFFFF;
+      }
+    }
+  }
+
+  @Override
+  public void fill(int rgb) {
+    Arrays.fill(data, rgb);
+  }
+
+  @Override
+  public long byteSize() {
+    return (long) data.length * Integer.BYTES;
+  }
+
+  @Override
+  public Image createCompatibleImage(int width, int height) {
+    return new Image(width, height, Image.Layout.PACKED);
+  }
+
+  @Override
+  public Image.Layout layout() {
+    return Image.Layout.PACKED;
+  }
+}
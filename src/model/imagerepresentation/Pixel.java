@@ -24,6 +24,69 @@ public class Pixel {
     this.blue = clamp(blue);
   }
 
+  /**
+   * Creates a Pixel from a packed {@code 0xRRGGBB} value.
+   *
+   * @param rgb The packed color.
+   * @return A new Pixel with the same red, green and blue components.
+   */
+  public static Pixel fromRGB(int rgb) {
+    return new Pixel(red(rgb), green(rgb), blue(rgb));
+  }
+
+  /**
+   * Packs the given components into a single {@code 0xRRGGBB} value. The components are clamped to
+   * be between 0 and 255 first.
+   *
+   * @param red   The red color component.
+   * @param green The green color component.
+   * @param blue  The blue color component.
+   * @return The packed color.
+   */
+  public static int toRGB(int red, int green, int blue) {
+    return (clampComponent(red) << 16) | (clampComponent(green) << 8) | clampComponent(blue);
+  }
+
+  /**
+   * Extracts the red component from a packed {@code 0xRRGGBB} value.
+   *
+   * @param rgb The packed color.
+   * @return The red component.
+   */
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  /**
+   * Extracts the green component from a packed {@code 0xRRGGBB} value.
+   *
+   * @param rgb The packed color.
+   * @return The green component.
+   */
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  /**
+   * Extracts the blue component from a packed {@code 0xRRGGBB} value.
+   *
+   * @param rgb The packed color.
+   * @return The blue component.
+   */
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+
+  /**
+   * Clamps a color component to make sure it is between 0 and 255.
+   *
+   * @param value The value to be clamped.
+   * @return The clamped value between 0 and 255.
+   */
+  public static int clampComponent(int value) {
+    return value < 0 ? 0 : (value > 255 ? 255 : value);
+  }
+
   /**
    * Clamps the value to make sure it is between 0 and 255.
    *
@@ -31,7 +94,16 @@ public class Pixel {
    * @return The clamped value between 0 and 255.
    */
   private int clamp(int value) {
-    return Math.max(0, Math.min(255, value));
+    return clampComponent(value);
+  }
+
+  /**
+   * Returns this pixel as a packed {@code 0xRRGGBB} value.
+   *
+   * @return The packed color.
+   */
+  public int toRGB() {
+    return (red << 16) | (green << 8) | blue;
   }
 
   /**
@@ -90,4 +162,21 @@ public class Pixel {
   public void setBlue(int blue) {
     this.blue = clamp(blue);
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Pixel)) {
+      return false;
+    }
+    Pixel other = (Pixel) o;
+    return red == other.red && green == other.green && blue == other.blue;
+  }
+
+  @Override
+  public int hashCode() {
+    return toRGB();
+  }
 }
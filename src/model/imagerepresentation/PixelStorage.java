@@ -0,0 +1,127 @@
+package model.imagerepresentation;
+
+/**
+ * Backing store for the pixels of an {@link Image}. Implementations decide how the samples are laid
+ * out in memory; {@link Image} does the bounds checking before calling into them.
+ */
+interface PixelStorage {
+
+  /**
+   * Returns the packed {@code 0xRRGGBB} value at the given position.
+   *
+   * @param x The x-coordinate of the pixel.
+   * @param y The y-coordinate of the pixel.
+   * @return The packed color.
+   */
+  int get(int x, int y);
+
+  /**
+   * Stores a packed {@code 0xRRGGBB} value at the given position.
+   *
+   * @param x   The x-coordinate of the pixel.
+   * @param y   The y-coordinate of the pixel.
+   * @param rgb The packed color, with the upper byte already cleared.
+   */
+  void set(int x, int y, int rgb);
+
+  /**
+   * Copies a rectangle of packed {@code 0xRRGGBB} values into an array. The pixel at
+   * {@code (x + i, y + j)} goes to {@code dst[offset + j * scanline + i]}. The arguments have
+   * already been checked by {@link Image}.
+   *
+   * @param x        The left edge of the rectangle.
+   * @param y        The top edge of the rectangle.
+   * @param width    The width of the rectangle.
+   * @param height   The height of the rectangle.
+   * @param dst      The array to fill.
+   * @param offset   The index of the top left pixel in the array.
+   * @param scanline The distance between two rows in the array.
+   */
+  default void getRegion(int x, int y, int width, int height, int[] dst, int offset,
+      int scanline) {
+    for (int j = 0; j < height; j++) {
+      int index = offset + j * scanline;
+      for (int i = 0; i < width; i++) {
+        dst[index + i] = get(x + i, y + j);
+      }
+    }
+  }
+
+  /**
+   * Stores a rectangle of packed values taken from an array, laid out as in
+   * {@link #getRegion(int, int, int, int, int[], int, int)}. The upper byte of each value is
+   * ignored.
+   *
+   * @param x        The left edge of the rectangle.
+   * @param y        The top edge of the rectangle.
+   * @param width    The width of the rectangle.
+   * @param height   The height of the rectangle.
+   * @param src      The array to read.
+   * @param offset   The index of the top left pixel in the array.
+   * @param scanline The distance between two rows in the array.
+   */
+  default void setRegion(int x, int y, int width, int height, int[] src, int offset,
+      int scanline) {
+    for (int j = 0; j < height; j++) {
+      int index = offset + j * scanline;
+      for (int i = 0; i < width; i++) {
+        set(x + i, y + j, src[index + i] & 0xFFFFFF);
+      }
+    }
+  }
+
+  /**
+   * Sets every pixel to the given packed {@code 0xRRGGBB} value.
+   *
+   * @param rgb The packed color, with the upper byte already cleared.
+   */
+  void fill(int rgb);
+
+  /**
+   * Returns the number of bytes of pixel memory this storage holds, on or off the heap.
+   *
+   * @return The size in bytes.
+   */
+  long byteSize();
+
+  /**
+   * Returns a single 0-255 channel sample at the given position.
+   *
+   * @param channel The channel to read.
+   * @param x       The x-coordinate of the pixel.
+   * @param y       The y-coordinate of the pixel.
+   * @return The channel value.
+   */
+  default int getChannel(Image.Channel channel, int x, int y) {
+    return (get(x, y) >> channel.shift()) & 0xFF;
+  }
+
+  /**
+   * Creates a black image of the given size backed by the same kind of storage.
+   *
+   * @param width  The width of the new image.
+   * @param height The height of the new image.
+   * @return The new image.
+   */
+  Image createCompatibleImage(int width, int height);
+
+  /**
+   * Creates an image of the given size backed by the same kind of storage, whose contents are
+   * undefined until written. Storages that can hand out memory without clearing it override this;
+   * the default clears like {@link #createCompatibleImage(int, int)}.
+   *
+   * @param width  The width of the new image.
+   * @param height The height of the new image.
+   * @return The new image.
+   */
+  default Image createUninitializedImage(int width, int height) {
+    return createCompatibleImage(width, height);
+  }
+
+  /**
+   * Returns the memory layout implemented by this storage.
+   *
+   * @return The layout.
+   */
+  Image.Layout layout();
+}
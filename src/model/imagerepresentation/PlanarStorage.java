@@ -0,0 +1,154 @@
+package model.imagerepresentation;
+
+import java.util.Arrays;
+
+/**
+ * Planar storage that keeps the red, green and blue samples in three separate byte planes. Planes
+ * can be shared between images; a shared plane is copied the first time one of its owners writes
+ * to it, so aliasing never changes what another image sees.
+ */
+class PlanarStorage implements PixelStorage {
+
+  private final Plane[] planes;
+  private final int width;
+
+  /**
+   * Allocates a black image of the given size with three private planes.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   */
+  PlanarStorage(int width, int height) {
+    this(width, new Plane[]{new Plane(new byte[width * height]),
+        new Plane(new byte[width * height]), new Plane(new byte[width * height])});
+  }
+
+  /**
+   * Creates a storage over existing planes, in red, green, blue order. The same plane may appear
+   * more than once.
+   *
+   * @param width  The width of the image.
+   * @param planes The red, green and blue planes.
+   */
+  PlanarStorage(int width, Plane[] planes) {
+    this.width = width;
+    this.planes = planes;
+  }
+
+  @Override
+  public int get(int x, int y) {
+    int i = y * width + x;
+    return ((planes[0].data[i] & 0xFF) << 16) | ((planes[1].data[i] & 0xFF) << 8)
+        | (planes[2].data[i] & 0xFF);
+  }
+
+  @Override
+  public void set(int x, int y, int rgb) {
+    int i = y * width + x;
+    writable(0)[i] = (byte) (rgb >> 16);
+    writable(1)[i] = (byte) (rgb >> 8);
+    writable(2)[i] = (byte) rgb;
+  }
+
+  @Override
+  public void getRegion(int x, int y, int width, int height, int[] dst, int offset,
+      int scanline) {
+    byte[] red = planes[0].data;
+    byte[] green = planes[1].data;
+    byte[] blue = planes[2].data;
+    for (int j = 0; j < height; j++) {
+      int from = (y + j) * this.width + x;
+      int to = offset + j * scanline;
+      for (int i = 0; i < width; i++) {
+        dst[to + i] = ((red[from + i] & 0xFF) << 16) | ((green[from + i] & 0xFF) << 8)
+            | (blue[from + i] & 0xFF);
+      }
+    }
+  }
+
+  @Override
+  public void setRegion(int x, int y, int width, int height, int[] src, int offset,
+      int scanline) {
+    byte[] red = writable(0);
+    byte[] green = writable(1);
+    byte[] blue = writable(2);
+    for (int j = 0; j < height; j++) {
+      int from = offset + j * scanline;
+      int to = (y + j) * this.width + x;
+      for (int i = 0; i < width; i++) {
+        int rgb = src[from + i];
+        red[to + i] = (byte) (rgb >> 16);
+        green[to + i] = (byte) (rgb >> 8);
+        blue[to + i] = (byte) rgb;
+      }
+    }
+  }
+
+  @Override
+  public int getChannel(Image.Channel channel, int x, int y) {
+    return planes[channel.ordinal()].data[y * width + x] & 0xFF;
+  }
+
+  @Override
+  public void fill(int rgb) {
+    int length = planes[0].data.length;
+    for (int i = 0; i < planes.length; i++) {
+      byte[] samples = new byte[length];
+      Arrays.fill(samples, (byte) (rgb >> (16 - 8 * i)));
+      planes[i] = new Plane(samples);
+    }
+  }
+
+  @Override
+  public long byteSize() {
+    return (long) planes[0].data.length * planes.length;
+  }
+
+  @Override
+  public Image createCompatibleImage(int width, int height) {
+    return new Image(width, height, Image.Layout.PLANAR);
+  }
+
+  @Override
+  public Image.Layout layout() {
+    return Image.Layout.PLANAR;
+  }
+
+  /**
+   * Returns the plane of the given channel and marks it as shared, so that neither this image nor
+   * the new owner can change it in place any more.
+   *
+   * @param channel The channel whose plane is requested.
+   * @return The shared plane.
+   */
+  Plane share(Image.Channel channel) {
+    Plane plane = planes[channel.ordinal()];
+    plane.shared = true;
+    return plane;
+  }
+
+  /**
+   * Returns the samples of a plane for writing, copying the plane first if it is shared.
+   */
+  private byte[] writable(int index) {
+    Plane plane = planes[index];
+    if (plane.shared) {
+      plane = new Plane(plane.data.clone());
+      planes[index] = plane;
+    }
+    return plane.data;
+  }
+
+  /**
+   * One channel worth of samples, one byte per pixel in row-major order.
+   */
+  static final class Plane {
+
+    final byte[] data;
+    volatile boolean shared;
+
+    Plane(byte[] data) {
+      this.data = data;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package model.imagerepresentation;
+
+import java.util.List;
+
+/**
+ * Describes how to compute named images instead of holding their pixels: the names of the images
+ * an operation reads, the names it writes, and the operation itself. A workspace stores a recipe
+ * under its output names and runs it only when one of them is read, see
+ * {@link Workspace#putRecipe(Recipe)}.
+ */
+public interface Recipe {
+
+  /**
+   * Returns the names of the images the operation reads.
+   *
+   * @return The source names.
+   */
+  List<String> getSources();
+
+  /**
+   * Returns the names of the images the operation writes. None of them may be a source.
+   *
+   * @return The output names.
+   */
+  List<String> getOutputs();
+
+  /**
+   * Runs the operation. It must read its sources from, and save every output to, the workspace
+   * the recipe was stored in.
+   */
+  void apply();
+}
@@ -0,0 +1,161 @@
+package model.imagerepresentation;
+
+import java.util.Arrays;
+
+/**
+ * Storage that splits the image into square tiles of packed {@code 0xRRGGBB} ints. Every tile that
+ * has not been written yet points at one shared constant tile holding the background color, so a
+ * new or mostly uniform image costs a single tile of memory. A tile gets its own array the first
+ * time a pixel in it changes to a value other than the background.
+ */
+class TiledStorage implements PixelStorage {
+
+  /**
+   * Tile edge length used when none is given.
+   */
+  static final int DEFAULT_TILE_SIZE = 256;
+
+  private final int tileSize;
+  private final int tileShift;
+  private final int tileMask;
+  private final int tilesPerRow;
+  private final int[][] tiles;
+  private int[] uniform;
+  private int background;
+  private int allocatedTiles;
+
+  /**
+   * Creates a black image where no tile is allocated yet.
+   *
+   * @param width    The width of the image.
+   * @param height   The height of the image.
+   * @param tileSize The edge length of a tile, a power of two.
+   */
+  TiledStorage(int width, int height, int tileSize) {
+    if (tileSize <= 0 || Integer.bitCount(tileSize) != 1) {
+      throw new IllegalArgumentException("Tile size must be a power of two: " + tileSize);
+    }
+    this.tileSize = tileSize;
+    this.tileShift = Integer.numberOfTrailingZeros(tileSize);
+    this.tileMask = tileSize - 1;
+    this.tilesPerRow = (width + tileSize - 1) >> tileShift;
+    int tilesPerColumn = (height + tileSize - 1) >> tileShift;
+    this.tiles = new int[tilesPerRow * tilesPerColumn][];
+    fill(0);
+  }
+
+  @Override
+  public int get(int x, int y) {
+    return tiles[(y >> tileShift) * tilesPerRow + (x >> tileShift)][((y & tileMask) << tileShift)
+        | (x & tileMask)];
+  }
+
+  @Override
+  public void set(int x, int y, int rgb) {
+    int index = (y >> tileShift) * tilesPerRow + (x >> tileShift);
+    int[] tile = tiles[index];
+    if (tile == uniform) {
+      if (rgb == background) {
+        return;
+      }
+      tile = uniform.clone();
+      tiles[index] = tile;
+      allocatedTiles++;
+    }
+    tile[((y & tileMask) << tileShift) | (x & tileMask)] = rgb;
+  }
+
+  @Override
+  public void getRegion(int x, int y, int width, int height, int[] dst, int offset,
+      int scanline) {
+    int end = x + width;
+    for (int j = 0; j < height; j++) {
+      int row = y + j;
+      int tileRow = (row >> tileShift) * tilesPerRow;
+      int inTile = (row & tileMask) << tileShift;
+      int to = offset + j * scanline;
+      for (int column = x; column < end; ) {
+        int length = Math.min(tileSize - (column & tileMask), end - column);
+        System.arraycopy(tiles[tileRow + (column >> tileShift)], inTile | (column & tileMask), dst,
+            to, length);
+        to += length;
+        column += length;
+      }
+    }
+  }
+
+  @Override
+  public void setRegion(int x, int y, int width, int height, int[] src, int offset,
+      int scanline) {
+    int end = x + width;
+    for (int j = 0; j < height; j++) {
+      int row = y + j;
+      int tileRow = (row >> tileShift) * tilesPerRow;
+      int inTile = (row & tileMask) << tileShift;
+      int from = offset + j * scanline;
+      for (int column = x; column < end; ) {
+        int length = Math.min(tileSize - (column & tileMask), end - column);
+        int index = tileRow + (column >> tileShift);
+        int[] tile = tiles[index];
+        // A segment that only repeats the background leaves a shared tile untouched
+        if (tile != uniform || differsFromBackground(src, from, length)) {
+          if (tile == uniform) {
+            tile = uniform.clone();
+            tiles[index] = tile;
+            allocatedTiles++;
+          }
+          int to = inTile | (column & tileMask);
+          for (int i = 0; i < length; i++) {
+            tile[to + i] = src[from + i] & 0xFFFFFF;
+          }
+        }
+        from += length;
+        column += length;
+      }
+    }
+  }
+
+  @Override
+  public void fill(int rgb) {
+    background = rgb;
+    uniform = new int[tileSize * tileSize];
+    if (rgb != 0) {
+      Arrays.fill(uniform, rgb);
+    }
+    Arrays.fill(tiles, uniform);
+    allocatedTiles = 0;
+  }
+
+  @Override
+  public long byteSize() {
+    return (long) (allocatedTiles + 1) * tileSize * tileSize * Integer.BYTES;
+  }
+
+  @Override
+  public Image createCompatibleImage(int width, int height) {
+    return new Image(width, height, new TiledStorage(width, height, tileSize));
+  }
+
+  @Override
+  public Image.Layout layout() {
+    return Image.Layout.TILED;
+  }
+
+  private boolean differsFromBackground(int[] src, int from, int length) {
+    for (int i = 0; i < length; i++) {
+      if ((src[from + i] & 0xFFFFFF) != background) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of tiles that have their own memory.
+   *
+   * @return The allocated tile count.
+   */
+  int allocatedTiles() {
+    return allocatedTiles;
+  }
+}
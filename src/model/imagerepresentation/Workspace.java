@@ -0,0 +1,124 @@
+package model.imagerepresentation;
+
+/**
+ * A set of named images together with the image pool their operations draw from. Names are scoped
+ * to a workspace, so independent scripts, GUI windows or server jobs can each use "currentImage"
+ * without seeing each other's images. All methods are thread-safe, and
+ * {@link #putIfAbsent(String, Image)} and {@link #replace(String, Image, Image)} are atomic.
+ *
+ * <p>Code that is not given a workspace uses the {@link #shared()} one, which keeps the behaviour
+ * of the original global image map.
+ */
+public final class Workspace {
+
+  private static final Workspace SHARED = new Workspace();
+
+  private final ImageStore images = new ImageStore();
+  private volatile ImagePool imagePool;
+
+  /**
+   * Returns the workspace used by everything that is not given one explicitly.
+   *
+   * @return The shared workspace.
+   */
+  public static Workspace shared() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the image stored under a name.
+   *
+   * @param name The name of the image.
+   * @return The image, or null if there is none.
+   */
+  public Image get(String name) {
+    return images.get(name);
+  }
+
+  /**
+   * Stores an image under a name, replacing any previous image of that name.
+   *
+   * @param name  The name of the image.
+   * @param image The image to store.
+   */
+  public void put(String name, Image image) {
+    images.put(name, image);
+  }
+
+  /**
+   * Stores an image under a name unless that name is already taken.
+   *
+   * @param name  The name of the image.
+   * @param image The image to store.
+   * @return true if the image was stored.
+   */
+  public boolean putIfAbsent(String name, Image image) {
+    return images.putIfAbsent(name, image);
+  }
+
+  /**
+   * Replaces the image stored under a name only if it is still the expected one. An expected
+   * image that has been spilled to disk since it was read no longer matches.
+   *
+   * @param name     The name of the image.
+   * @param expected The image the caller expects under the name.
+   * @param image    The new image.
+   * @return true if the image was replaced.
+   */
+  public boolean replace(String name, Image expected, Image image) {
+    return images.replace(name, expected, image);
+  }
+
+  /**
+   * Stores a recipe under each of its output names. Nothing is computed until one of the outputs
+   * is read; outputs that are never read cost no pixel memory.
+   *
+   * @param recipe The recipe to store.
+   * @throws IllegalArgumentException if the recipe has no outputs or reads one of them.
+   */
+  public void putRecipe(Recipe recipe) {
+    images.putRecipe(recipe);
+  }
+
+  /**
+   * Returns whether an image, in memory, on disk or as a recipe, is stored under a name.
+   *
+   * @param name The name of the image.
+   * @return true if the name is taken.
+   */
+  public boolean contains(String name) {
+    return images.contains(name);
+  }
+
+  /**
+   * Removes the image stored under a name.
+   *
+   * @param name The name of the image.
+   * @return The removed image, or null if there was none or it was only held on disk.
+   */
+  public Image remove(String name) {
+    return images.remove(name);
+  }
+
+  /**
+   * Sets the pool that operations on this workspace take their destination images from.
+   *
+   * @param pool The pool, or null to always allocate new images.
+   */
+  public void setImagePool(ImagePool pool) {
+    imagePool = pool;
+  }
+
+  /**
+   * Returns the pool that operations on this workspace take their destination images from.
+   *
+   * @return The pool, or null if none is set.
+   */
+  public ImagePool getImagePool() {
+    return imagePool;
+  }
+
+  ImageStore store() {
+    return images;
+  }
+}
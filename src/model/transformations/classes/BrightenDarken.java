@@ -3,7 +3,9 @@ package model.transformations.classes;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.BrightenDarkenInterface;
+import model.transformations.interfaces.PointwiseKernel;
 
 /**
  * This class handles operations for brightening and darkening an image. It adjusts the brightness
@@ -11,6 +13,24 @@ import model.transformations.interfaces.BrightenDarkenInterface;
  */
 public class BrightenDarken implements BrightenDarkenInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a brightness adjustment that works on the images of the shared workspace.
+   */
+  public BrightenDarken() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a brightness adjustment that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public BrightenDarken(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Adjusts the brightness of an image.
    *
@@ -20,27 +40,40 @@ public class BrightenDarken implements BrightenDarkenInterface {
    * @param destImageName the name to save the adjusted image as.
    * @param isBrighten    true to brighten the image, false to darken it.
    */
-  private static void adjustBrightness(int amount, String imageName, String destImageName,
+  private void adjustBrightness(int amount, String imageName, String destImageName,
       boolean isBrighten) {
-    ImageOperations opn = new ImageOperations();
     Image original = opn.getImage(imageName);
-    Image result = new Image(original.getWidth(), original.getHeight());
+    Image result = opn.createDestination(original, original.getWidth(), original.getHeight());
 
-    for (int y = 0; y < original.getHeight(); y++) {
-      for (int x = 0; x < original.getWidth(); x++) {
-        Pixel pixel = original.getPixel(x, y);
-        int adjustment = isBrighten ? amount : -amount;
-
-        Pixel newPixel = new Pixel(pixel.getRed() + adjustment, pixel.getGreen() + adjustment,
-            pixel.getBlue() + adjustment);
+    PointwiseKernel kernel = kernel(isBrighten ? amount : -amount);
 
-        result.setPixel(x, y, newPixel);
-      }
+    int[] row = new int[original.getWidth()];
+    for (int y = 0; y < original.getHeight(); y++) {
+      original.readRow(y, row);
+      kernel.apply(row);
+      result.writeRow(y, row);
     }
 
     opn.saveImage(destImageName, result);
   }
 
+  /**
+   * Returns the per-pixel operation of a brightness adjustment, which adds the same amount to each
+   * channel and clamps the result.
+   *
+   * @param adjustment the amount added to each channel, negative to darken.
+   * @return the operation.
+   */
+  public static PointwiseKernel kernel(int adjustment) {
+    return row -> {
+      for (int x = 0; x < row.length; x++) {
+        int rgb = row[x];
+        row[x] = Pixel.toRGB(Pixel.red(rgb) + adjustment, Pixel.green(rgb) + adjustment,
+            Pixel.blue(rgb) + adjustment);
+      }
+    };
+  }
+
 
   /**
    * Brightens an image by a specified amount.
@@ -3,6 +3,7 @@ package model.transformations.classes;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.ColorCorrectionInterface;
 
 /**
@@ -10,6 +11,24 @@ import model.transformations.interfaces.ColorCorrectionInterface;
  */
 public class ColorCorrection implements ColorCorrectionInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a color correction that works on the images of the shared workspace.
+   */
+  public ColorCorrection() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a color correction that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public ColorCorrection(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   @Override
   public void colorCorrect(String imageName, String destImageName,
       Integer splitPositionPercentage) {
@@ -18,9 +37,8 @@ public class ColorCorrection implements ColorCorrectionInterface {
       throw new IllegalArgumentException("Split position percentage must be between 0 and 100.");
     }
 
-    ImageOperations opn = new ImageOperations();
     Image original = opn.getImage(imageName);
-    Histogram histogramGenerator = new Histogram();
+    Histogram histogramGenerator = new Histogram(opn.getWorkspace());
     int[][] histograms = histogramGenerator.calculateHistograms(original);
 
     int[] redHistogram = histograms[0];
@@ -33,7 +51,8 @@ public class ColorCorrection implements ColorCorrectionInterface {
 
     int averagePeak = (redPeak + greenPeak + bluePeak) / 3;
 
-    Image correctedImage = new Image(original.getWidth(), original.getHeight());
+    Image correctedImage = opn.createDestination(original, original.getWidth(),
+        original.getHeight());
 
     // Calculate split position
     int splitPosition = SplitView.calculateSplitPosition(original.getWidth(),
@@ -55,13 +74,13 @@ public class ColorCorrection implements ColorCorrectionInterface {
       int averagePeak, int splitPosition) {
     for (int y = 0; y < original.getHeight(); y++) {
       for (int x = 0; x < splitPosition; x++) {
-        Pixel pixel = original.getPixel(x, y);
-        Pixel correctedPixel = new Pixel(
-            adjustColorValue(pixel.getRed(), redPeak, averagePeak),
-            adjustColorValue(pixel.getGreen(), greenPeak, averagePeak),
-            adjustColorValue(pixel.getBlue(), bluePeak, averagePeak)
+        int rgb = original.getRGB(x, y);
+        int correctedPixel = Pixel.toRGB(
+            adjustColorValue(Pixel.red(rgb), redPeak, averagePeak),
+            adjustColorValue(Pixel.green(rgb), greenPeak, averagePeak),
+            adjustColorValue(Pixel.blue(rgb), bluePeak, averagePeak)
         );
-        correctedImage.setPixel(x, y, correctedPixel);
+        correctedImage.setRGB(x, y, correctedPixel);
       }
     }
   }
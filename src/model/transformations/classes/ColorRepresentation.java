@@ -3,7 +3,9 @@ package model.transformations.classes;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.ColorRepresentationInterface;
+import model.transformations.interfaces.PointwiseKernel;
 
 /**
  * This class provides methods to visualize different color components of an image such as value,
@@ -11,6 +13,24 @@ import model.transformations.interfaces.ColorRepresentationInterface;
  */
 public class ColorRepresentation implements ColorRepresentationInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a color representation that works on the images of the shared workspace.
+   */
+  public ColorRepresentation() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a color representation that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public ColorRepresentation(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Applies the selected color component to the image and creates a new grayscale image based on
    * that component.
@@ -19,17 +39,34 @@ public class ColorRepresentation implements ColorRepresentationInterface {
    * @param destImageName the name to save the resulting image as.
    * @param type          the type of color component to apply.
    */
-  private static void applyComponent(String imageName, String destImageName, ComponentType type) {
-    ImageOperations opn = new ImageOperations();
+  private void applyComponent(String imageName, String destImageName, ComponentType type) {
     Image original = opn.getImage(imageName);
-    Image result = new Image(original.getWidth(), original.getHeight());
+    Image result = opn.createDestination(original, original.getWidth(), original.getHeight());
+    PointwiseKernel kernel = kernel(type);
 
+    int[] row = new int[original.getWidth()];
     for (int y = 0; y < original.getHeight(); y++) {
-      for (int x = 0; x < original.getWidth(); x++) {
-        Pixel pixel = original.getPixel(x, y);
-        int r = pixel.getRed();
-        int g = pixel.getGreen();
-        int b = pixel.getBlue();
+      original.readRow(y, row);
+      kernel.apply(row);
+      result.writeRow(y, row);
+    }
+
+    opn.saveImage(destImageName, result);
+  }
+
+  /**
+   * Returns the per-pixel operation that replaces each pixel by a grey of the selected component.
+   *
+   * @param type the type of color component to apply.
+   * @return the operation.
+   */
+  public static PointwiseKernel kernel(ComponentType type) {
+    return row -> {
+      for (int x = 0; x < row.length; x++) {
+        int rgb = row[x];
+        int r = Pixel.red(rgb);
+        int g = Pixel.green(rgb);
+        int b = Pixel.blue(rgb);
         int componentValue = 0;
 
         switch (type) {
@@ -46,11 +83,9 @@ public class ColorRepresentation implements ColorRepresentationInterface {
             break;
         }
 
-        result.setPixel(x, y, new Pixel(componentValue, componentValue, componentValue));
+        row[x] = Pixel.toRGB(componentValue, componentValue, componentValue);
       }
-    }
-
-    opn.saveImage(destImageName, result);
+    };
   }
 
   /**
@@ -3,7 +3,9 @@ package model.transformations.classes;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.ColorTransformationInterface;
+import model.transformations.interfaces.PointwiseKernel;
 
 /**
  * This class provides functions to apply color transformations to images like sepia and greyscale
@@ -11,6 +13,29 @@ import model.transformations.interfaces.ColorTransformationInterface;
  */
 public class ColorTransformation implements ColorTransformationInterface {
 
+  private static final double[] SEPIA = {0.393, 0.769, 0.189, 0.349, 0.686, 0.168, 0.272, 0.534,
+      0.131};
+  private static final double[] GREYSCALE = {0.2126, 0.7152, 0.0722, 0.2126, 0.7152, 0.0722,
+      0.2126, 0.7152, 0.0722};
+
+  private final ImageOperations opn;
+
+  /**
+   * Creates a color transformation that works on the images of the shared workspace.
+   */
+  public ColorTransformation() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a color transformation that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public ColorTransformation(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Changes image colors by applying transformation matrix to pixels.
    *
@@ -32,36 +57,33 @@ public class ColorTransformation implements ColorTransformationInterface {
       double redFactorG, double redFactorB, double greenFactorR, double greenFactorG,
       double greenFactorB, double blueFactorR, double blueFactorG, double blueFactorB,
       Integer splitPosition, String maskImageName) {
+    applyColorTransformation(imageName, destImageName, new double[]{redFactorR, redFactorG,
+        redFactorB, greenFactorR, greenFactorG, greenFactorB, blueFactorR, blueFactorG,
+        blueFactorB}, splitPosition, maskImageName);
+  }
 
-    ImageOperations opn = new ImageOperations();
+  private void applyColorTransformation(String imageName, String destImageName, double[] matrix,
+      Integer splitPosition, String maskImageName) {
     Image original = opn.getImage(imageName);
-    Image result = new Image(original.getWidth(), original.getHeight());
+    Image result = opn.createDestination(original, original.getWidth(), original.getHeight());
     Image mask = maskImageName != null ? opn.getImage(maskImageName) : null;
 
     // Apply color transformation to all pixels or based on the mask
+    int width = original.getWidth();
+    int[] row = new int[width];
+    int[] maskRow = mask != null ? new int[width] : null;
     for (int y = 0; y < original.getHeight(); y++) {
-      for (int x = 0; x < original.getWidth(); x++) {
-        if (mask == null || (mask.getPixel(x, y).getRed() == 0
-            && mask.getPixel(x, y).getGreen() == 0 && mask.getPixel(x, y).getBlue() == 0)) {
-          Pixel pixel = original.getPixel(x, y);
-          int r = pixel.getRed();
-          int g = pixel.getGreen();
-          int b = pixel.getBlue();
-
-          int newRed = (int) (redFactorR * r + redFactorG * g + redFactorB * b);
-          int newGreen = (int) (greenFactorR * r + greenFactorG * g + greenFactorB * b);
-          int newBlue = (int) (blueFactorR * r + blueFactorG * g + blueFactorB * b);
-
-          // Clamping to ensure values are between 0-255
-          newRed = Math.min(255, Math.max(0, newRed));
-          newGreen = Math.min(255, Math.max(0, newGreen));
-          newBlue = Math.min(255, Math.max(0, newBlue));
-
-          result.setPixel(x, y, new Pixel(newRed, newGreen, newBlue));
-        } else {
-          result.setPixel(x, y, original.getPixel(x, y)); // Retain original pixel if not masked
+      original.readRow(y, row);
+      if (mask != null) {
+        mask.readRegion(0, y, width, 1, maskRow, 0, width);
+      }
+      for (int x = 0; x < width; x++) {
+        // Pixels outside the mask keep their original value
+        if (maskRow == null || maskRow[x] == 0) {
+          row[x] = transform(row[x], matrix);
         }
       }
+      result.writeRow(y, row);
     }
 
     // Apply split view effect
@@ -70,6 +92,57 @@ public class ColorTransformation implements ColorTransformationInterface {
     opn.saveImage(destImageName, result);
   }
 
+  /**
+   * Returns the per-pixel operation of an unmasked color transformation, including the columns its
+   * split view leaves untouched.
+   *
+   * @param matrix        the factors of the red, green and blue channels, row by row.
+   * @param splitPosition the percentage (0-100) where the split should occur, or null.
+   * @return the operation.
+   */
+  public static PointwiseKernel kernel(double[] matrix, Integer splitPosition) {
+    double[] factors = matrix.clone();
+    return row -> {
+      int splitPixel = SplitView.splitPixel(row.length, splitPosition);
+      for (int x = 0; x < splitPixel; x++) {
+        row[x] = transform(row[x], factors);
+      }
+    };
+  }
+
+  /**
+   * Returns the per-pixel operation of an unmasked sepia effect.
+   *
+   * @param splitPosition the percentage (0-100) where the split should occur, or null.
+   * @return the operation.
+   */
+  public static PointwiseKernel sepiaKernel(Integer splitPosition) {
+    return kernel(SEPIA, splitPosition);
+  }
+
+  /**
+   * Returns the per-pixel operation of an unmasked greyscale effect.
+   *
+   * @param splitPosition the percentage (0-100) where the split should occur, or null.
+   * @return the operation.
+   */
+  public static PointwiseKernel greyscaleKernel(Integer splitPosition) {
+    return kernel(GREYSCALE, splitPosition);
+  }
+
+  private static int transform(int rgb, double[] matrix) {
+    int r = Pixel.red(rgb);
+    int g = Pixel.green(rgb);
+    int b = Pixel.blue(rgb);
+
+    int newRed = (int) (matrix[0] * r + matrix[1] * g + matrix[2] * b);
+    int newGreen = (int) (matrix[3] * r + matrix[4] * g + matrix[5] * b);
+    int newBlue = (int) (matrix[6] * r + matrix[7] * g + matrix[8] * b);
+
+    // Clamping to ensure values are between 0-255
+    return Pixel.toRGB(newRed, newGreen, newBlue);
+  }
+
   /**
    * Applies a sepia tone effect to an image with an optional mask.
    *
@@ -82,8 +155,7 @@ public class ColorTransformation implements ColorTransformationInterface {
    */
   public void sepia(String imageName, String destImageName, Integer splitPosition,
       String maskImageName) {
-    applyColorTransformation(imageName, destImageName, 0.393, 0.769, 0.189, 0.349, 0.686, 0.168,
-        0.272, 0.534, 0.131, splitPosition, maskImageName);
+    applyColorTransformation(imageName, destImageName, SEPIA, splitPosition, maskImageName);
   }
 
   /**
@@ -110,8 +182,7 @@ public class ColorTransformation implements ColorTransformationInterface {
    */
   public void greyscale(String imageName, String destImageName, Integer splitPosition,
       String maskImageName) {
-    applyColorTransformation(imageName, destImageName, 0.2126, 0.7152, 0.0722, 0.2126, 0.7152,
-        0.0722, 0.2126, 0.7152, 0.0722, splitPosition, maskImageName);
+    applyColorTransformation(imageName, destImageName, GREYSCALE, splitPosition, maskImageName);
   }
 
   /**
@@ -2,7 +2,7 @@ package model.transformations.classes;
 
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
-import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.CombineChannelsInterface;
 
 /**
@@ -10,6 +10,24 @@ import model.transformations.interfaces.CombineChannelsInterface;
  */
 public class CombineChannels implements CombineChannelsInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a channel combiner that works on the images of the shared workspace.
+   */
+  public CombineChannels() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a channel combiner that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public CombineChannels(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Combines red, green, and blue images into one RGB image.
    *
@@ -20,7 +38,6 @@ public class CombineChannels implements CombineChannelsInterface {
    */
   public void rgbCombine(String destImageName, String redImageName, String greenImageName,
       String blueImageName) {
-    ImageOperations opn = new ImageOperations();
     Image redImage = opn.getImage(redImageName);
     Image greenImage = opn.getImage(greenImageName);
     Image blueImage = opn.getImage(blueImageName);
@@ -33,14 +50,29 @@ public class CombineChannels implements CombineChannelsInterface {
       throw new IllegalArgumentException("All images must have the same dimensions.");
     }
 
-    Image result = new Image(redImage.getWidth(), redImage.getHeight());
-
-    for (int y = 0; y < result.getHeight(); y++) {
-      for (int x = 0; x < result.getWidth(); x++) {
-        int r = redImage.getPixel(x, y).getRed();
-        int g = greenImage.getPixel(x, y).getGreen();
-        int b = blueImage.getPixel(x, y).getBlue();
-        result.setPixel(x, y, new Pixel(r, g, b));
+    Image result;
+    if (redImage.getLayout() == Image.Layout.PLANAR
+        && greenImage.getLayout() == Image.Layout.PLANAR
+        && blueImage.getLayout() == Image.Layout.PLANAR) {
+      // Planar channel images (such as the output of rgb-split) are combined by sharing their
+      // planes
+      result = Image.fromChannels(redImage.getChannel(Image.Channel.RED),
+          greenImage.getChannel(Image.Channel.GREEN), blueImage.getChannel(Image.Channel.BLUE));
+    } else {
+      // Otherwise the result keeps the layout of the red image, a row at a time
+      int width = redImage.getWidth();
+      result = opn.createDestination(redImage, width, redImage.getHeight());
+      int[] reds = new int[width];
+      int[] greens = new int[width];
+      int[] blues = new int[width];
+      for (int y = 0; y < result.getHeight(); y++) {
+        redImage.readRow(y, reds);
+        greenImage.readRow(y, greens);
+        blueImage.readRow(y, blues);
+        for (int x = 0; x < width; x++) {
+          reds[x] = (reds[x] & 0xFF0000) | (greens[x] & 0x00FF00) | (blues[x] & 0x0000FF);
+        }
+        result.writeRow(y, reds);
       }
     }
 
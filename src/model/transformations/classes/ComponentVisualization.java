@@ -1,15 +1,35 @@
 package model.transformations.classes;
 
+import model.imagerepresentation.ChannelView;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
-import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.ComponentInterface;
+import model.transformations.interfaces.PointwiseKernel;
 
 /**
  * Class for visualizing color components of an image with optional mask support.
  */
 public class ComponentVisualization implements ComponentInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a component visualization that works on the images of the shared workspace.
+   */
+  public ComponentVisualization() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a component visualization that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public ComponentVisualization(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Extracts and saves the red component of the specified image with optional mask.
    *
@@ -76,6 +96,23 @@ public class ComponentVisualization implements ComponentInterface {
     blueComponent(imageName, destImageName, null);
   }
 
+  /**
+   * Returns the per-pixel operation of an unmasked component visualization, which replaces each
+   * pixel by a grey of one of its channels.
+   *
+   * @param channel the channel to visualize.
+   * @return the operation.
+   */
+  public static PointwiseKernel kernel(Image.Channel channel) {
+    int shift = channel.shift();
+    return row -> {
+      for (int x = 0; x < row.length; x++) {
+        int grayscaleValue = (row[x] >> shift) & 0xFF;
+        row[x] = (grayscaleValue << 16) | (grayscaleValue << 8) | grayscaleValue;
+      }
+    };
+  }
+
   /**
    * Applies the visualization of the specified color component to a new image with optional mask.
    *
@@ -87,34 +124,39 @@ public class ComponentVisualization implements ComponentInterface {
    */
   private void applyComponentVisualization(String imageName, String destImageName, int component,
       String maskImageName) {
-    ImageOperations opn = new ImageOperations();
     Image original = opn.getImage(imageName);
-    Image result = new Image(original.getWidth(), original.getHeight());
     Image mask = maskImageName != null ? opn.getImage(maskImageName) : null;
 
+    if (mask == null && original.getLayout() == Image.Layout.PLANAR) {
+      // Without a mask every channel of the result is the selected component, so the result can
+      // reuse that one plane for red, green and blue instead of writing three copies per pixel
+      ChannelView view = original.getChannel(Image.Channel.values()[component]);
+      opn.saveImage(destImageName, Image.fromChannels(view, view, view));
+      return;
+    }
+    // Other layouts, and masked images, keep their own layout, a row at a time
+    Image result = opn.createDestination(original, original.getWidth(), original.getHeight());
+    PointwiseKernel kernel = kernel(Image.Channel.values()[component]);
+    int width = original.getWidth();
+    int[] row = new int[width];
+    int[] visualized = mask != null ? new int[width] : row;
+    int[] maskRow = mask != null ? new int[width] : null;
     for (int y = 0; y < original.getHeight(); y++) {
-      for (int x = 0; x < original.getWidth(); x++) {
-        if (mask == null || (mask.getPixel(x, y).getRed() == 0
-            && mask.getPixel(x, y).getGreen() == 0 && mask.getPixel(x, y).getBlue() == 0)) {
-          // Apply component visualization if no mask or mask pixel is black
-          Pixel pixel = original.getPixel(x, y);
-          int grayscaleValue;
-
-          if (component == 0) { // Red component
-            grayscaleValue = pixel.getRed();
-          } else if (component == 1) { // Green component
-            grayscaleValue = pixel.getGreen();
-          } else { // Blue component
-            grayscaleValue = pixel.getBlue();
+      original.readRow(y, row);
+      if (mask != null) {
+        System.arraycopy(row, 0, visualized, 0, width);
+      }
+      kernel.apply(visualized);
+      if (mask != null) {
+        mask.readRegion(0, y, width, 1, maskRow, 0, width);
+        for (int x = 0; x < width; x++) {
+          // Pixels outside the mask keep their original value
+          if (maskRow[x] == 0) {
+            row[x] = visualized[x];
           }
-
-          // Create a grayscale pixel based on the selected component
-          result.setPixel(x, y, new Pixel(grayscaleValue, grayscaleValue, grayscaleValue));
-        } else {
-          // Retain original pixel if masked
-          result.setPixel(x, y, original.getPixel(x, y));
         }
       }
+      result.writeRow(y, row);
     }
 
     opn.saveImage(destImageName, result);
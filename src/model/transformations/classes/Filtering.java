@@ -1,8 +1,10 @@
 package model.transformations.classes;
 
+import java.util.Arrays;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.FilteringInterface;
 
 /**
@@ -10,6 +12,24 @@ import model.transformations.interfaces.FilteringInterface;
  */
 public class Filtering implements FilteringInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a filter that works on the images of the shared workspace.
+   */
+  public Filtering() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a filter that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public Filtering(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Applies a filter to the image using the specified matrix and saves the result.
    *
@@ -22,48 +42,65 @@ public class Filtering implements FilteringInterface {
    */
   public void applyFilter(String imageName, String destImageName, float[] matrix,
       Integer splitPosition, String maskImageName) {
-    ImageOperations opn = new ImageOperations();
     Image original = opn.getImage(imageName);
-    Image result = new Image(original.getWidth(), original.getHeight());
+    Image result = opn.createDestination(original, original.getWidth(), original.getHeight());
     Image mask = maskImageName != null ? opn.getImage(maskImageName) : null;
 
     // Apply filter to the entire image
+    int width = original.getWidth();
+    int height = original.getHeight();
     int matrixSize = (int) Math.sqrt(matrix.length);
     int matrixRadius = matrixSize / 2;
 
-    for (int y = 0; y < original.getHeight(); y++) {
-      for (int x = 0; x < original.getWidth(); x++) {
-        if (mask == null || (mask.getPixel(x, y).getRed() == 0
-            && mask.getPixel(x, y).getGreen() == 0 && mask.getPixel(x, y).getBlue() == 0)) {
+    // The rows under the kernel, padded on both sides by repeating the edge pixels so that the
+    // inner loop needs no clamping
+    int[][] window = new int[matrixSize][width + 2 * matrixRadius];
+    for (int i = 0; i < matrixSize; i++) {
+      readPaddedRow(original, i - matrixRadius, window[i], matrixRadius);
+    }
+    int[] maskRow = mask != null ? new int[width] : null;
+    int[] resultRow = new int[width];
+
+    for (int y = 0; y < height; y++) {
+      if (y > 0) {
+        // Slide the window down by one row, reusing the buffer of the row that drops out
+        int[] recycled = window[0];
+        System.arraycopy(window, 1, window, 0, matrixSize - 1);
+        window[matrixSize - 1] = recycled;
+        readPaddedRow(original, y + matrixRadius, recycled, matrixRadius);
+      }
+      if (mask != null) {
+        mask.readRegion(0, y, width, 1, maskRow, 0, width);
+      }
+      int[] centerRow = window[matrixRadius];
+
+      for (int x = 0; x < width; x++) {
+        if (maskRow == null || maskRow[x] == 0) {
           float red = 0;
           float green = 0;
           float blue = 0;
 
           // Apply filter only to the relevant portion based on the matrix
           for (int i = 0; i < matrixSize; i++) {
+            int[] row = window[i];
+            int base = i * matrixSize;
             for (int j = 0; j < matrixSize; j++) {
-              int pixelX = Math.min(Math.max(x + j - matrixRadius, 0), original.getWidth() - 1);
-              int pixelY = Math.min(Math.max(y + i - matrixRadius, 0), original.getHeight() - 1);
+              int rgb = row[x + j];
+              float factor = matrix[base + j];
 
-              Pixel pixel = original.getPixel(pixelX, pixelY);
-              float factor = matrix[i * matrixSize + j];
-
-              red += pixel.getRed() * factor;
-              green += pixel.getGreen() * factor;
-              blue += pixel.getBlue() * factor;
+              red += Pixel.red(rgb) * factor;
+              green += Pixel.green(rgb) * factor;
+              blue += Pixel.blue(rgb) * factor;
             }
           }
 
           // Clamping the values to valid color ranges (0-255)
-          int r = Math.min(255, Math.max(0, (int) red));
-          int g = Math.min(255, Math.max(0, (int) green));
-          int b = Math.min(255, Math.max(0, (int) blue));
-
-          result.setPixel(x, y, new Pixel(r, g, b));
+          resultRow[x] = Pixel.toRGB((int) red, (int) green, (int) blue);
         } else {
-          result.setPixel(x, y, original.getPixel(x, y)); // Retain original pixel if not masked
+          resultRow[x] = centerRow[x + matrixRadius]; // Retain original pixel if not masked
         }
       }
+      result.writeRow(y, resultRow);
     }
 
     // After filtering, apply the split view effect
@@ -73,6 +110,23 @@ public class Filtering implements FilteringInterface {
     opn.saveImage(destImageName, result);
   }
 
+  /**
+   * Reads a row of the image into a buffer with {@code padding} extra pixels on each side that
+   * repeat the first and last pixel. Rows above or below the image read the nearest edge row.
+   *
+   * @param image   the image to read.
+   * @param y       the row to read, clamped to the image.
+   * @param buffer  the buffer of length {@code width + 2 * padding}.
+   * @param padding the number of pixels to repeat on each side.
+   */
+  private static void readPaddedRow(Image image, int y, int[] buffer, int padding) {
+    int width = image.getWidth();
+    image.readRegion(0, Math.min(Math.max(y, 0), image.getHeight() - 1), width, 1, buffer,
+        padding, width);
+    Arrays.fill(buffer, 0, padding, buffer[padding]);
+    Arrays.fill(buffer, padding + width, buffer.length, buffer[padding + width - 1]);
+  }
+
   /**
    * Applies a blur filter to the specified image and saves the result.
    *
@@ -2,6 +2,7 @@ package model.transformations.classes;
 
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.FlippingInterface;
 
 /**
@@ -9,6 +10,24 @@ import model.transformations.interfaces.FlippingInterface;
  */
 public class Flipping implements FlippingInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a flipping operation that works on the images of the shared workspace.
+   */
+  public Flipping() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a flipping operation that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public Flipping(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Flips the image either horizontally or vertically.
    *
@@ -16,20 +35,26 @@ public class Flipping implements FlippingInterface {
    * @param destImageName  The name for the new flipped image.
    * @param horizontalFlip True to flip horizontally, false to flip vertically.
    */
-  private static void applyFlip(String imageName, String destImageName, boolean horizontalFlip) {
-    ImageOperations opn = new ImageOperations();
+  private void applyFlip(String imageName, String destImageName, boolean horizontalFlip) {
     Image original = opn.getImage(imageName);
-    Image result = new Image(original.getWidth(), original.getHeight());
+    Image result = opn.createDestination(original, original.getWidth(), original.getHeight());
 
-    for (int y = 0; y < original.getHeight(); y++) {
-      for (int x = 0; x < original.getWidth(); x++) {
-        if (horizontalFlip) {
-          // Set pixel for horizontal flip
-          result.setPixel(original.getWidth() - 1 - x, y, original.getPixel(x, y));
-        } else {
-          // Set pixel for vertical flip
-          result.setPixel(x, original.getHeight() - 1 - y, original.getPixel(x, y));
+    int width = original.getWidth();
+    int height = original.getHeight();
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      original.readRow(y, row);
+      if (horizontalFlip) {
+        // Reverse the row in place for a horizontal flip
+        for (int left = 0, right = width - 1; left < right; left++, right--) {
+          int rgb = row[left];
+          row[left] = row[right];
+          row[right] = rgb;
         }
+        result.writeRow(y, row);
+      } else {
+        // Write the row to the mirrored row for a vertical flip
+        result.writeRow(height - 1 - y, row);
       }
     }
 
@@ -4,6 +4,7 @@ import java.awt.Color;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.HistogramInterface;
 
 /**
@@ -12,6 +13,24 @@ import model.transformations.interfaces.HistogramInterface;
  */
 public class Histogram implements HistogramInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a histogram generator that works on the images of the shared workspace.
+   */
+  public Histogram() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a histogram generator that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public Histogram(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Generates a histogram image for a given input image and saves it to a destination file.
    *
@@ -20,7 +39,6 @@ public class Histogram implements HistogramInterface {
    */
   @Override
   public void generateHistogram(String imageName, String destImageName) {
-    ImageOperations opn = new ImageOperations();
     Image original = opn.getImage(imageName);
     Image histogramImage = createHistogram(original);
     opn.saveImage(destImageName, histogramImage);
@@ -38,12 +56,13 @@ public class Histogram implements HistogramInterface {
     int[] greenHistogram = new int[256];
     int[] blueHistogram = new int[256];
 
+    int[] row = new int[image.getWidth()];
     for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        Pixel pixel = image.getPixel(x, y);
-        redHistogram[pixel.getRed()]++;
-        greenHistogram[pixel.getGreen()]++;
-        blueHistogram[pixel.getBlue()]++;
+      image.readRow(y, row);
+      for (int rgb : row) {
+        redHistogram[Pixel.red(rgb)]++;
+        greenHistogram[Pixel.green(rgb)]++;
+        blueHistogram[Pixel.blue(rgb)]++;
       }
     }
 
@@ -70,14 +89,14 @@ public class Histogram implements HistogramInterface {
    */
   // Main method with two parameters for conditional behavior
   public Image createHistogram(Image original, String component) {
-    Image histogramImage = new Image(256, 256);
-    fillBackground(histogramImage, new Pixel(255, 255, 255)); // White background
+    Image histogramImage = opn.createDestination(256, 256, Image.Layout.PACKED);
+    fillBackground(histogramImage, Pixel.toRGB(255, 255, 255)); // White background
 
     int[][] histograms = calculateHistograms(original);
     int maxValue = Math.max(Math.max(getMaxValue(histograms[0]), getMaxValue(histograms[1])),
         getMaxValue(histograms[2]));
 
-    drawGrid(histogramImage, new Pixel(230, 230, 230), 16);
+    drawGrid(histogramImage, Pixel.toRGB(230, 230, 230), 16);
 
     // Conditional drawing based on the specified component
     switch (component.toLowerCase()) {
@@ -124,12 +143,8 @@ public class Histogram implements HistogramInterface {
    * @param image the image to fill.
    * @param color the color to fill with.
    */
-  private void fillBackground(Image image, Pixel color) {
-    for (int y = 0; y < image.getHeight(); y++) {
-      for (int x = 0; x < image.getWidth(); x++) {
-        image.setPixel(x, y, color);
-      }
-    }
+  private void fillBackground(Image image, int color) {
+    image.fill(color);
   }
 
   /**
@@ -165,6 +180,7 @@ public class Histogram implements HistogramInterface {
    * @param color the color to draw the line.
    */
   private void drawLine(Image img, int x1, int y1, int x2, int y2, Color color) {
+    int rgb = color.getRGB();
     int dx = Math.abs(x2 - x1);
     int dy = Math.abs(y2 - y1);
     int sx = x1 < x2 ? 1 : -1;
@@ -173,7 +189,7 @@ public class Histogram implements HistogramInterface {
 
     while (true) {
       if (x1 >= 0 && x1 < 256 && y1 >= 0 && y1 < 256) {
-        img.setPixel(x1, y1, new Pixel(color.getRed(), color.getGreen(), color.getBlue()));
+        img.setRGB(x1, y1, rgb);
       }
       if (x1 == x2 && y1 == y2) {
         break;
@@ -197,16 +213,16 @@ public class Histogram implements HistogramInterface {
    * @param color          the color of the grid lines.
    * @param spacing        the spacing between grid lines.
    */
-  private void drawGrid(Image histogramImage, Pixel color, int spacing) {
+  private void drawGrid(Image histogramImage, int color, int spacing) {
     for (int i = 0; i < 256; i += spacing) {
       for (int y = 0; y < histogramImage.getHeight(); y++) {
         if (i < histogramImage.getWidth()) {
-          histogramImage.setPixel(i, y, color);
+          histogramImage.setRGB(i, y, color);
         }
       }
       for (int x = 0; x < histogramImage.getWidth(); x++) {
         if (i < histogramImage.getHeight()) {
-          histogramImage.setPixel(x, i, color);
+          histogramImage.setRGB(x, i, color);
         }
       }
     }
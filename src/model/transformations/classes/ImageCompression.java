@@ -1,13 +1,10 @@
 package model.transformations.classes;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.ImageCompressionInterface;
 
 /**
@@ -16,72 +13,107 @@ import model.transformations.interfaces.ImageCompressionInterface;
  */
 public class ImageCompression implements ImageCompressionInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a compressor that works on the images of the shared workspace.
+   */
+  public ImageCompression() {
+    this(Workspace.shared());
+  }
+
   /**
-   * Transforms a sequence using averaging and differencing.
+   * Creates a compressor that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
    */
-  private double[] transform(double[] sequence) {
-    int length = sequence.length;
-    double[] result = new double[length];
+  public ImageCompression(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
+  /**
+   * Transforms the first {@code length} values of a sequence in place using averaging and
+   * differencing.
+   *
+   * @param sequence the values to transform.
+   * @param length   the number of values to transform.
+   * @param scratch  a buffer of at least {@code length} values.
+   */
+  private void transform(double[] sequence, int length, double[] scratch) {
     int halfLength = length / 2;
 
     for (int i = 0; i < halfLength; i++) {
       double a = sequence[2 * i];
       double b = sequence[2 * i + 1];
-      result[i] = (a + b) / 2.0;  // Average
-      result[i + halfLength] = (a - b) / 2.0;  // Difference
+      scratch[i] = (a + b) / 2.0;  // Average
+      scratch[i + halfLength] = (a - b) / 2.0;  // Difference
     }
 
     if (length % 2 != 0) {
-      result[halfLength] = sequence[length - 1];
+      scratch[halfLength] = sequence[length - 1];
     }
 
-    return result;
+    System.arraycopy(scratch, 0, sequence, 0, length);
   }
 
   /**
-   * Inverts a transformed sequence.
+   * Inverts the first {@code length} values of a transformed sequence in place.
+   *
+   * @param sequence the values to invert.
+   * @param length   the number of values to invert.
+   * @param scratch  a buffer of at least {@code length} values.
    */
-  private double[] inverse(double[] sequence) {
-    int length = sequence.length;
-    double[] result = new double[length];
+  private void inverse(double[] sequence, int length, double[] scratch) {
     int halfLength = length / 2;
 
     for (int i = 0; i < halfLength; i++) {
       double avg = sequence[i];
       double diff = sequence[i + halfLength];
-      result[2 * i] = (avg + diff);
-      result[2 * i + 1] = avg - diff;
+      scratch[2 * i] = (avg + diff);
+      scratch[2 * i + 1] = avg - diff;
     }
 
     if (length % 2 != 0) {
-      result[length - 1] = sequence[halfLength];
+      scratch[length - 1] = sequence[halfLength];
     }
 
-    return result;
+    System.arraycopy(scratch, 0, sequence, 0, length);
   }
 
   /**
    * Applies a pixelated effect by simplifying wavelet coefficients.
+   *
+   * @param data             the coefficients of one channel.
+   * @param width            the padded width.
+   * @param height           the padded height.
+   * @param compressionRatio the percentage of distinct coefficient magnitudes to drop.
+   * @param magnitudes       a buffer of at least {@code width * height} values.
    */
-  private void applyPixelation(double[][] data, int width, int height, double compressionRatio) {
-    List<Double> allCoefficients = new ArrayList<>();
+  private void applyPixelation(double[][] data, int width, int height, double compressionRatio,
+      double[] magnitudes) {
+    int count = 0;
 
     for (int y = 0; y < height; y++) {
       for (int x = 0; x < width; x++) {
         if (data[y][x] != 0) {
-
-          allCoefficients.add(Math.abs(data[y][x]));
+          magnitudes[count++] = Math.abs(data[y][x]);
         }
       }
     }
-    HashSet<Double> clearDup = new HashSet<>(allCoefficients);
-    allCoefficients.clear();
-    allCoefficients.addAll(clearDup);
+    if (count == 0) {
+      return; // Nothing left to simplify
+    }
 
-    // Sort coefficients to find threshold
-    Collections.sort(allCoefficients);
-    int thresholdIndex = (int) (allCoefficients.size() * compressionRatio / 100.0);
-    double threshold = allCoefficients.get(thresholdIndex);
+    // Sort coefficients and drop duplicates to find threshold
+    Arrays.sort(magnitudes, 0, count);
+    int distinct = 1;
+    for (int i = 1; i < count; i++) {
+      if (magnitudes[i] != magnitudes[distinct - 1]) {
+        magnitudes[distinct++] = magnitudes[i];
+      }
+    }
+    int thresholdIndex = Math.min((int) (distinct * compressionRatio / 100.0), distinct - 1);
+    double threshold = magnitudes[thresholdIndex];
 
     // Apply aggressive threshold to create a pixelated effect
     for (int y = 0; y < height; y++) {
@@ -103,9 +135,8 @@ public class ImageCompression implements ImageCompressionInterface {
       throw new IllegalArgumentException(
           "Compression ratio must be between 0 and 100. Provided: " + compressionRatio);
     }
-    ImageOperations opn = new ImageOperations();
     Image original = opn.getImage(imageName);
-    Image result = new Image(original.getWidth(), original.getHeight());
+    Image result = opn.createDestination(original, original.getWidth(), original.getHeight());
 
     int width = original.getWidth();
     int height = original.getHeight();
@@ -115,13 +146,20 @@ public class ImageCompression implements ImageCompressionInterface {
     // Process each color channel independently
     double[][][] channels = new double[3][paddedHeight][paddedWidth];
 
+    // Buffers shared by all passes so that the loops below allocate nothing
+    int[] pixels = new int[width];
+    double[] column = new double[paddedHeight];
+    double[] scratch = new double[Math.max(paddedWidth, paddedHeight)];
+    double[] magnitudes = new double[paddedWidth * paddedHeight];
+
     // Extract channels
     for (int y = 0; y < height; y++) {
+      original.readRow(y, pixels);
       for (int x = 0; x < width; x++) {
-        Pixel p = original.getPixel(x, y);
-        channels[0][y][x] = p.getRed();
-        channels[1][y][x] = p.getGreen();
-        channels[2][y][x] = p.getBlue();
+        int rgb = pixels[x];
+        channels[0][y][x] = Pixel.red(rgb);
+        channels[1][y][x] = Pixel.green(rgb);
+        channels[2][y][x] = Pixel.blue(rgb);
       }
     }
 
@@ -129,58 +167,36 @@ public class ImageCompression implements ImageCompressionInterface {
     for (int c = 0; c < 3; c++) {
       // Transform rows
       for (int y = 0; y < paddedHeight; y++) {
-        int m = paddedWidth;
-        while (m > 1) {
-          double[] row = Arrays.copyOf(channels[c][y], m);
-          double[] transformed = transform(row);
-          System.arraycopy(transformed, 0, channels[c][y], 0, m);
-          m /= 2;
+        for (int m = paddedWidth; m > 1; m /= 2) {
+          transform(channels[c][y], m, scratch);
         }
       }
 
       // Transform columns
       for (int x = 0; x < paddedWidth; x++) {
-        int m = paddedHeight;
-        while (m > 1) {
-          double[] col = new double[m];
-          for (int y = 0; y < m; y++) {
-            col[y] = channels[c][y][x];
-          }
-          double[] transformed = transform(col);
-          for (int y = 0; y < m; y++) {
-            channels[c][y][x] = transformed[y];
-          }
-          m /= 2;
+        readColumn(channels[c], x, column);
+        for (int m = paddedHeight; m > 1; m /= 2) {
+          transform(column, m, scratch);
         }
+        writeColumn(channels[c], x, column);
       }
 
       // Apply pixelation
-      applyPixelation(channels[c], paddedWidth, paddedHeight, compressionRatio);
+      applyPixelation(channels[c], paddedWidth, paddedHeight, compressionRatio, magnitudes);
 
       // Inverse transform columns
       for (int x = 0; x < paddedWidth; x++) {
-        int m = 2;
-        while (m <= paddedHeight) {
-          double[] col = new double[m];
-          for (int y = 0; y < m; y++) {
-            col[y] = channels[c][y][x];
-          }
-          double[] inverted = inverse(col);
-          for (int y = 0; y < m; y++) {
-            channels[c][y][x] = inverted[y];
-          }
-          m *= 2;
+        readColumn(channels[c], x, column);
+        for (int m = 2; m <= paddedHeight; m *= 2) {
+          inverse(column, m, scratch);
         }
+        writeColumn(channels[c], x, column);
       }
 
       // Inverse transform rows
       for (int y = 0; y < paddedHeight; y++) {
-        int m = 2;
-        while (m <= paddedWidth) {
-          double[] row = Arrays.copyOf(channels[c][y], m);
-          double[] inverted = inverse(row);
-          System.arraycopy(inverted, 0, channels[c][y], 0, m);
-          m *= 2;
+        for (int m = 2; m <= paddedWidth; m *= 2) {
+          inverse(channels[c][y], m, scratch);
         }
       }
     }
@@ -191,15 +207,26 @@ public class ImageCompression implements ImageCompressionInterface {
         int r = clamp((int) Math.round(channels[0][y][x]));
         int g = clamp((int) Math.round(channels[1][y][x]));
         int b = clamp((int) Math.round(channels[2][y][x]));
-        result.setPixel(x, y, new Pixel(r, g, b));
-
-
+        pixels[x] = (r << 16) | (g << 8) | b;
       }
+      result.writeRow(y, pixels);
     }
 
     opn.saveImage(destImageName, result);
   }
 
+  private static void readColumn(double[][] data, int x, double[] column) {
+    for (int y = 0; y < column.length; y++) {
+      column[y] = data[y][x];
+    }
+  }
+
+  private static void writeColumn(double[][] data, int x, double[] column) {
+    for (int y = 0; y < column.length; y++) {
+      data[y][x] = column[y];
+    }
+  }
+
   /**
    * Clamps a value to the valid pixel range [0, 255].
    */
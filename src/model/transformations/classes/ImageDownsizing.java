@@ -3,6 +3,7 @@ package model.transformations.classes;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.ImageDownsizingInterface;
 
 /**
@@ -10,6 +11,24 @@ import model.transformations.interfaces.ImageDownsizingInterface;
  */
 public class ImageDownsizing implements ImageDownsizingInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a downsizer that works on the images of the shared workspace.
+   */
+  public ImageDownsizing() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a downsizer that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public ImageDownsizing(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Downscale an image to the target dimensions.
    *
@@ -21,7 +40,6 @@ public class ImageDownsizing implements ImageDownsizingInterface {
 
   @Override
   public void downsize(String imageName, String destImageName, int targetWidth, int targetHeight) {
-    ImageOperations opn = new ImageOperations();
     Image original = opn.getImage(imageName);
 
     int originalWidth = original.getWidth();
@@ -31,7 +49,7 @@ public class ImageDownsizing implements ImageDownsizingInterface {
       throw new IllegalArgumentException(
           "Target dimensions must be smaller than or equal to the original dimensions.");
     }
-    Image downsized = new Image(targetWidth, targetHeight);
+    Image downsized = opn.createDestination(original, targetWidth, targetHeight);
 
     // Iterate over each pixel in the target downsized image
     for (int y = 0; y < targetHeight; y++) {
@@ -52,20 +70,21 @@ public class ImageDownsizing implements ImageDownsizingInterface {
         int y2 = Math.min(y1 + 1, originalHeight - 1);
 
         // Get the four neighboring pixels for bilinear interpolation
-        Pixel pA = original.getPixel(x1, y1);
-        Pixel pB = original.getPixel(x2, y1);
-        Pixel pC = original.getPixel(x1, y2);
-        Pixel pD = original.getPixel(x2, y2);
+        int pA = original.getRGB(x1, y1);
+        int pB = original.getRGB(x2, y1);
+        int pC = original.getRGB(x1, y2);
+        int pD = original.getRGB(x2, y2);
 
         // Interpolate the red, green and blue components separately
-        int red = bilinearInterpolate(pA.getRed(), pB.getRed(), pC.getRed(), pD.getRed(), dx, dy);
-        int green = bilinearInterpolate(pA.getGreen(), pB.getGreen(), pC.getGreen(), pD.getGreen(),
+        int red = bilinearInterpolate(Pixel.red(pA), Pixel.red(pB), Pixel.red(pC), Pixel.red(pD),
             dx, dy);
-        int blue = bilinearInterpolate(pA.getBlue(), pB.getBlue(), pC.getBlue(), pD.getBlue(), dx,
-            dy);
+        int green = bilinearInterpolate(Pixel.green(pA), Pixel.green(pB), Pixel.green(pC),
+            Pixel.green(pD), dx, dy);
+        int blue = bilinearInterpolate(Pixel.blue(pA), Pixel.blue(pB), Pixel.blue(pC),
+            Pixel.blue(pD), dx, dy);
 
         // Set the pixel in the downsized image
-        downsized.setPixel(x, y, new Pixel(red, green, blue));
+        downsized.setRGB(x, y, (red << 16) | (green << 8) | blue);
       }
     }
 
@@ -3,7 +3,9 @@ package model.transformations.classes;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.LevelAdjustInterface;
+import model.transformations.interfaces.PointwiseKernel;
 
 /**
  * The levelAdjustment class provides the functionality to perform levelAdjustment on an image.
@@ -11,30 +13,86 @@ import model.transformations.interfaces.LevelAdjustInterface;
 
 public class LevelAdjust implements LevelAdjustInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a level adjustment that works on the images of the shared workspace.
+   */
+  public LevelAdjust() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a level adjustment that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public LevelAdjust(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   @Override
   public void levelsAdjust(int b, int m, int w, String imageName, String destImageName,
       Integer splitPercentage) {
-    validateLevels(b, m, w);
-    validateSplitPercentage(splitPercentage);
+    levelsAdjust(b, m, w, imageName, destImageName, splitPercentage, true);
+  }
 
-    ImageOperations opn = new ImageOperations();
-    Image original = opn.getImage(imageName);
+  @Override
+  public void levelsAdjust(int b, int m, int w, String imageName, String destImageName,
+      Integer splitPercentage, boolean histogram) {
+    PointwiseKernel kernel = kernel(b, m, w, splitPercentage);
 
-    // Compute quadratic coefficients for level adjustment
-    double[] coefficients = computeQuadraticCoefficients(b, m, w);
+    Image original = opn.getImage(imageName);
 
     // Adjust levels and apply split view logic
-    Image adjustedImage = adjustLevels(original, coefficients, splitPercentage);
+    Image adjustedImage = adjustLevels(original, kernel);
 
     // Save the adjusted image
     opn.saveImage(destImageName, adjustedImage);
 
-    // Generate histogram for the adjusted image
-    Histogram histogramGenerator = new Histogram();
-    histogramGenerator.generateHistogram(destImageName, "histogram_" + destImageName);
+    if (histogram) {
+      // Generate histogram for the adjusted image
+      Histogram histogramGenerator = new Histogram(opn.getWorkspace());
+      histogramGenerator.generateHistogram(destImageName, "histogram_" + destImageName);
+    }
+  }
+
+  /**
+   * Returns the per-pixel operation of a level adjustment, including the columns its split view
+   * leaves untouched.
+   *
+   * @param b               the black level.
+   * @param m               the mid level.
+   * @param w               the white level.
+   * @param splitPercentage the percentage (0-100) of the width that is adjusted, or null.
+   * @return the operation.
+   * @throws IllegalArgumentException if the levels or the split percentage are invalid.
+   */
+  public static PointwiseKernel kernel(int b, int m, int w, Integer splitPercentage) {
+    validateLevels(b, m, w);
+    validateSplitPercentage(splitPercentage);
+
+    // Compute quadratic coefficients for level adjustment
+    double[] coefficients = computeQuadraticCoefficients(b, m, w);
+
+    // The adjustment only depends on the channel value, so compute it once per value
+    int[] levels = new int[256];
+    for (int value = 0; value < levels.length; value++) {
+      levels[value] = adjustValue(value, coefficients);
+    }
+
+    return row -> {
+      // Apply level adjustment for pixels before the split position; pixels after it are kept
+      int splitPosition = SplitView.calculateSplitPosition(row.length, splitPercentage);
+      for (int x = 0; x < splitPosition; x++) {
+        int rgb = row[x];
+        row[x] = Pixel.toRGB(levels[Pixel.red(rgb)], levels[Pixel.green(rgb)],
+            levels[Pixel.blue(rgb)]);
+      }
+    };
   }
 
-  private void validateLevels(int b, int m, int w) {
+  private static void validateLevels(int b, int m, int w) {
     if (b < 0 || b > 255 || m < 0 || m > 255 || w < 0 || w > 255) {
       throw new IllegalArgumentException("Black, Mid, and White values must be between 0 and 255.");
     }
@@ -43,49 +101,35 @@ public class LevelAdjust implements LevelAdjustInterface {
     }
   }
 
-  private void validateSplitPercentage(Integer splitPercentage) {
+  private static void validateSplitPercentage(Integer splitPercentage) {
     if (splitPercentage != null && (splitPercentage < 0 || splitPercentage > 100)) {
       throw new IllegalArgumentException("Split percentage must be between 0 and 100.");
     }
   }
 
-  private Image adjustLevels(Image original, double[] coefficients, Integer splitPercentage) {
+  private Image adjustLevels(Image original, PointwiseKernel kernel) {
     // Create a new image for storing the adjusted pixels
-    Image adjustedImage = new Image(original.getWidth(), original.getHeight());
-
-    // Calculate the split position using SplitViewHandler
-    int splitPosition = SplitView.calculateSplitPosition(original.getWidth(), splitPercentage);
+    Image adjustedImage = opn.createDestination(original, original.getWidth(),
+        original.getHeight());
 
-    // Adjust pixels and apply the split view logic
+    int[] row = new int[original.getWidth()];
     for (int y = 0; y < original.getHeight(); y++) {
-      for (int x = 0; x < original.getWidth(); x++) {
-        Pixel pixel = original.getPixel(x, y);
-
-        if (x < splitPosition) {
-          // Apply level adjustment for pixels before the split position
-          int red = adjustValue(pixel.getRed(), coefficients);
-          int green = adjustValue(pixel.getGreen(), coefficients);
-          int blue = adjustValue(pixel.getBlue(), coefficients);
-          adjustedImage.setPixel(x, y, new Pixel(red, green, blue));
-        } else {
-          // Copy original pixels after the split position (no adjustment)
-          adjustedImage.setPixel(x, y,
-              new Pixel(pixel.getRed(), pixel.getGreen(), pixel.getBlue()));
-        }
-      }
+      original.readRow(y, row);
+      kernel.apply(row);
+      adjustedImage.writeRow(y, row);
     }
 
     return adjustedImage;
   }
 
-  private int adjustValue(int value, double[] coefficients) {
+  private static int adjustValue(int value, double[] coefficients) {
     double normValue = value / 255.0;
     double adjustedValue = applyQuadraticFunction(normValue, coefficients[0], coefficients[1],
         coefficients[2]);
     return (int) Math.min(255, Math.max(0, adjustedValue * 255));
   }
 
-  private double[] computeQuadraticCoefficients(int b, int m, int w) {
+  private static double[] computeQuadraticCoefficients(int b, int m, int w) {
     double aa = b * b * (m - w) - b * (m * m - w * w) + w * m * m - m * w * w;
     double a_a = b * (128 - 255) + 128 * w - 255 * m;
     double a_b = b * b * (128 - 255) + 255 * m * m - 128 * w * w;
@@ -98,7 +142,7 @@ public class LevelAdjust implements LevelAdjustInterface {
     return new double[]{a, b_, c};
   }
 
-  private double applyQuadraticFunction(double value, double a, double b, double c) {
+  private static double applyQuadraticFunction(double value, double a, double b, double c) {
     // Apply the quadratic formula: y = ax^2 + bx + c
     return a * value * value + b * value + c;
   }
@@ -1,8 +1,10 @@
 package model.transformations.classes;
 
+import model.imagerepresentation.ChannelView;
 import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
 import model.imagerepresentation.Pixel;
+import model.imagerepresentation.Workspace;
 import model.transformations.interfaces.SplitInterface;
 
 /**
@@ -10,6 +12,24 @@ import model.transformations.interfaces.SplitInterface;
  */
 public class Split implements SplitInterface {
 
+  private final ImageOperations opn;
+
+  /**
+   * Creates a channel splitter that works on the images of the shared workspace.
+   */
+  public Split() {
+    this(Workspace.shared());
+  }
+
+  /**
+   * Creates a channel splitter that reads and writes images in the given workspace.
+   *
+   * @param workspace The workspace holding the images.
+   */
+  public Split(Workspace workspace) {
+    this.opn = new ImageOperations(workspace);
+  }
+
   /**
    * Splits an image into red, green, and blue components.
    *
@@ -19,23 +39,43 @@ public class Split implements SplitInterface {
    * @param blueName  The name for the new blue image.
    */
   public void rgbSplit(String imageName, String redName, String greenName, String blueName) {
-    ImageOperations opn = new ImageOperations();
     Image original = opn.getImage(imageName);
-    Image redImage = new Image(original.getWidth(), original.getHeight());
-    Image greenImage = new Image(original.getWidth(), original.getHeight());
-    Image blueImage = new Image(original.getWidth(), original.getHeight());
-
-    for (int y = 0; y < original.getHeight(); y++) {
-      for (int x = 0; x < original.getWidth(); x++) {
-        Pixel pixel = original.getPixel(x, y);
-
-        int r = pixel.getRed();
-        int g = pixel.getGreen();
-        int b = pixel.getBlue();
+    Image redImage;
+    Image greenImage;
+    Image blueImage;
 
-        redImage.setPixel(x, y, new Pixel(r, r, r));
-        greenImage.setPixel(x, y, new Pixel(g, g, g));
-        blueImage.setPixel(x, y, new Pixel(b, b, b));
+    if (original.getLayout() == Image.Layout.PLANAR) {
+      // Each greyscale result uses one channel plane of the source for all three of its channels,
+      // so no pixel data is copied
+      ChannelView red = original.getChannel(Image.Channel.RED);
+      ChannelView green = original.getChannel(Image.Channel.GREEN);
+      ChannelView blue = original.getChannel(Image.Channel.BLUE);
+      redImage = Image.fromChannels(red, red, red);
+      greenImage = Image.fromChannels(green, green, green);
+      blueImage = Image.fromChannels(blue, blue, blue);
+    } else {
+      // Other layouts keep their own layout, a row at a time
+      int width = original.getWidth();
+      redImage = opn.createDestination(original, width, original.getHeight());
+      greenImage = opn.createDestination(original, width, original.getHeight());
+      blueImage = opn.createDestination(original, width, original.getHeight());
+      int[] row = new int[width];
+      int[] reds = new int[width];
+      int[] greens = new int[width];
+      int[] blues = new int[width];
+      for (int y = 0; y < original.getHeight(); y++) {
+        original.readRow(y, row);
+        for (int x = 0; x < width; x++) {
+          int r = Pixel.red(row[x]);
+          int g = Pixel.green(row[x]);
+          int b = Pixel.blue(row[x]);
+          reds[x] = (r << 16) | (r << 8) | r;
+          greens[x] = (g << 16) | (g << 8) | g;
+          blues[x] = (b << 16) | (b << 8) | b;
+        }
+        redImage.writeRow(y, reds);
+        greenImage.writeRow(y, greens);
+        blueImage.writeRow(y, blues);
       }
     }
 
@@ -15,33 +15,38 @@ public class SplitView {
    * @param splitPosition Split percentage (0-100)
    */
   public static void applySplit(Image original, Image result, Integer splitPosition) {
-    // Default to full image if split position is null
-    int splitPixel = (splitPosition != null)
-        ? (original.getWidth() * splitPosition) / 100 : original.getWidth();
+    int splitPixel = splitPixel(original.getWidth(), splitPosition);
 
-    // Ensure splitPixel does not exceed the image width
-    if (splitPixel >= original.getWidth()) {
-      splitPixel = original.getWidth() - 1;
+    // Left side of split keeps the processed pixels already stored in the result image; the right
+    // side gets the original pixels back, one row segment at a time
+    int copyWidth = Math.min(original.getWidth(), result.getWidth()) - splitPixel;
+    if (copyWidth <= 0) {
+      return;
     }
-
-    // Process for all rows
+    int[] segment = new int[copyWidth];
     for (int y = 0; y < original.getHeight(); y++) {
-      // Left side of split (processed image)
-      for (int x = 0; x < splitPixel; x++) {
-        if (x < result.getWidth()) {
-          // Keep the processed pixels from result image
-          // They should already be there from image processing operation
-        }
-      }
+      original.readRegion(splitPixel, y, copyWidth, 1, segment, 0, copyWidth);
+      result.writeRegion(splitPixel, y, copyWidth, 1, segment, 0, copyWidth);
+    }
+  }
 
-      // Right side of split (original image)
-      for (int x = splitPixel; x < original.getWidth(); x++) {
-        if (x < result.getWidth()) {
-          // Copy original image pixels
-          result.setPixel(x, y, original.getPixel(x, y));
-        }
-      }
+  /**
+   * Returns the first column that {@link #applySplit(Image, Image, Integer)} restores to the
+   * original pixels. The last column is always restored, even without a split.
+   *
+   * @param width         Width of the original image
+   * @param splitPosition Split percentage (0-100)
+   * @return The first restored column
+   */
+  public static int splitPixel(int width, Integer splitPosition) {
+    // Default to full image if split position is null
+    int splitPixel = (splitPosition != null) ? (width * splitPosition) / 100 : width;
+
+    // Ensure splitPixel does not exceed the image width
+    if (splitPixel >= width) {
+      splitPixel = width - 1;
     }
+    return splitPixel;
   }
 
   /**
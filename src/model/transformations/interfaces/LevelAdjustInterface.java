@@ -17,4 +17,19 @@ public interface LevelAdjustInterface {
    */
   void levelsAdjust(int b, int m, int w, String imageName, String destImageName,
       Integer splitPercentage);
+
+  /**
+   * Changes image levels using black, mid, and white point values, optionally without storing the
+   * histogram of the result as "histogram_" followed by the new image name.
+   *
+   * @param b               Black point (0-255)
+   * @param m               Midtone value (0-255)
+   * @param w               White point (0-255)
+   * @param imageName       Source image name
+   * @param destImageName   New image name after adjustment
+   * @param splitPercentage Where to split image (0-100). Null means whole image
+   * @param histogram       Whether to store the histogram of the result
+   */
+  void levelsAdjust(int b, int m, int w, String imageName, String destImageName,
+      Integer splitPercentage, boolean histogram);
 }
\ No newline at end of file
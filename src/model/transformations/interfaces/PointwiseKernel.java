@@ -0,0 +1,17 @@
+package model.transformations.interfaces;
+
+/**
+ * This interface defines an operation whose result pixel only depends on the source pixel at the
+ * same position. It works on one row of packed {@code 0xRRGGBB} pixels at a time, in place, so
+ * several kernels can be applied in turn to a row while it is still in cache, which gives the same
+ * pixels as running each operation over the whole image on its own.
+ */
+public interface PointwiseKernel {
+
+  /**
+   * Applies the operation to one row of an image.
+   *
+   * @param row the pixels of the row, as wide as the image, replaced by the result.
+   */
+  public void apply(int[] row);
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import controller.ImageLoader;
+import controller.ScriptParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import view.ConsoleImageLoaderView;
+
+/**
+ * Runs a script that brightens an image N times and saves each result as a PNG, with saves written
+ * on their own line and with one save thread per core, and reports the wall-clock time. The gain
+ * grows with the number of cores, since the encodes then overlap each other as well as the
+ * operations. Run with e.g. {@code java -Xmx3g -cp <classes> benchmark.AsyncSaveBenchmark 8 2000
+ * 2000}.
+ */
+public class AsyncSaveBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per configuration and round.
+   *
+   * @param args the number of saves, and the width and height of the image.
+   * @throws IOException if the files cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int width = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int height = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+    int cores = Runtime.getRuntime().availableProcessors();
+
+    Path dir = Files.createTempDirectory("async-save");
+    try {
+      Image image = new Image(width, height);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          image.setRGB(x, y, (x * 31 + y * 7) * 0x010203);
+        }
+      }
+      Path source = dir.resolve("source.png");
+      new ImageLoader().saveImage(source.toString(), image);
+      List<String> script = new ArrayList<>();
+      script.add("load " + source + " image0");
+      for (int i = 1; i <= count; i++) {
+        script.add("brighten 1 image" + (i - 1) + " image" + i);
+        script.add("save " + dir.resolve("out" + i + ".png") + " image" + i);
+      }
+      Path scriptFile = dir.resolve("script.txt");
+      Files.write(scriptFile, script);
+
+      System.out.printf("%d saves of %dx%d, %d cores%n", count, width, height, cores);
+      for (int round = 0; round < 3; round++) {
+        run("synchronous saves", scriptFile, 0);
+        run(cores + " save threads", scriptFile, cores);
+      }
+    } finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  private static void run(String name, Path script, int threads) throws IOException {
+    ScriptParser parser = new ScriptParser(new ImageLoader(),
+        new ImageOperations(new Workspace()), new ConsoleImageLoaderView());
+    parser.setReleaseDeadImages(true);
+    parser.setSaveThreads(threads);
+    System.gc();
+    long start = System.nanoTime();
+    parser.parseScript(script.toString());
+    System.out.printf("%-20s %8.0f ms%n", name, (System.nanoTime() - start) / 1e6);
+  }
+}
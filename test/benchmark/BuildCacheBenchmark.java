@@ -0,0 +1,83 @@
+package benchmark;
+
+import controller.ImageLoader;
+import controller.ScriptParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import view.ConsoleImageLoaderView;
+
+/**
+ * Runs a script that loads a PPM file and blurs, sharpens and tints it N times in a chain, first
+ * with an empty build cache, then again unchanged and then with the parameter of its last line
+ * changed, and reports the wall-clock time and the cache hits of each run. Run with e.g.
+ * {@code java -Xmx3g -cp <classes> benchmark.BuildCacheBenchmark 6 2000 1500}.
+ */
+public class BuildCacheBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per run.
+   *
+   * @param args the length of the chain, and the width and height of the image.
+   * @throws IOException if the files cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int length = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+    int width = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int height = args.length > 2 ? Integer.parseInt(args[2]) : 1500;
+
+    Path dir = Files.createTempDirectory("buildcache");
+    try {
+      Image image = new Image(width, height);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          image.setRGB(x, y, (x * 31 + y * 7) * 0x010203);
+        }
+      }
+      Path input = dir.resolve("in.ppm");
+      new ImageLoader().saveImage(input.toString(), image);
+
+      System.out.printf("chain of %d blur/sharpen/brighten lines over %dx%d%n", 3 * length, width,
+          height);
+      run("cold", dir, script(input, length, 10));
+      run("unchanged", dir, script(input, length, 10));
+      run("last line changed", dir, script(input, length, 20));
+    } finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  private static List<String> script(Path input, int length, int lastBrightness) {
+    List<String> script = new ArrayList<>();
+    script.add("load " + input + " t0");
+    for (int i = 0; i < length; i++) {
+      script.add("blur t" + 3 * i + " t" + (3 * i + 1));
+      script.add("sharpen t" + (3 * i + 1) + " t" + (3 * i + 2));
+      script.add("brighten " + (i == length - 1 ? lastBrightness : 10) + " t" + (3 * i + 2)
+          + " t" + (3 * i + 3));
+    }
+    return script;
+  }
+
+  private static void run(String name, Path dir, List<String> lines) throws IOException {
+    Path script = dir.resolve("script.txt");
+    Files.write(script, lines);
+    ScriptParser parser = new ScriptParser(new ImageLoader(),
+        new ImageOperations(new Workspace()), new ConsoleImageLoaderView());
+    parser.setBuildCache(dir.resolve("cache"), 1L << 32);
+    System.gc();
+    long start = System.nanoTime();
+    parser.parseScript(script.toString());
+    System.out.printf("%-20s %8.0f ms %4d hits %4d misses%n", name,
+        (System.nanoTime() - start) / 1e6, parser.getCacheHits(), parser.getCacheMisses());
+  }
+}
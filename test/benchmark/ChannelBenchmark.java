@@ -0,0 +1,61 @@
+package benchmark;
+
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.transformations.classes.CombineChannels;
+import model.transformations.classes.ComponentVisualization;
+import model.transformations.classes.Split;
+
+/**
+ * Measures time and retained heap of the channel operations (red-component, rgb-split and
+ * rgb-combine) on a 50 megapixel image in both layouts. Run with e.g.
+ * {@code java -Xmx3g -cp <classes> benchmark.ChannelBenchmark}.
+ */
+public class ChannelBenchmark {
+
+  private static final int WIDTH = 8660;
+  private static final int HEIGHT = 5774;
+
+  /**
+   * Runs the benchmark and prints one line per measurement.
+   *
+   * @param args unused.
+   */
+  public static void main(String[] args) {
+    for (Image.Layout layout : Image.Layout.values()) {
+      ImageOperations opn = new ImageOperations();
+      Image source = new Image(WIDTH, HEIGHT, layout);
+      for (int y = 0; y < HEIGHT; y++) {
+        for (int x = 0; x < WIDTH; x++) {
+          source.setRGB(x, y, x * 31 + y * 17);
+        }
+      }
+      opn.saveImage("src-" + layout, source);
+
+      measure(layout + " red-component", () -> new ComponentVisualization()
+          .redComponent("src-" + layout, "red-" + layout));
+      measure(layout + " rgb-split", () -> new Split()
+          .rgbSplit("src-" + layout, "r-" + layout, "g-" + layout, "b-" + layout));
+      measure(layout + " rgb-combine", () -> new CombineChannels()
+          .rgbCombine("rgb-" + layout, "r-" + layout, "g-" + layout, "b-" + layout));
+    }
+  }
+
+  private static void measure(String name, Runnable op) {
+    long before = usedHeap();
+    long start = System.nanoTime();
+    op.run();
+    long elapsed = System.nanoTime() - start;
+    long retained = usedHeap() - before;
+    System.out.printf("%-22s %8.1f ms %8.1f MB retained%n", name, elapsed / 1e6,
+        retained / 1048576.0);
+  }
+
+  private static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
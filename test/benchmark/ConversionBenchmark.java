@@ -0,0 +1,69 @@
+package benchmark;
+
+import controller.ImageLoader;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import model.imagerepresentation.Image;
+
+/**
+ * Measures the conversions between Image and BufferedImage. The load direction is timed through
+ * ImageLoader on an uncompressed BMP, which ImageIO decodes into a {@code TYPE_3BYTE_BGR} raster,
+ * next to the bare ImageIO decode so the conversion cost can be read off the difference. Run with
+ * e.g. {@code java -Xmx3g -cp <classes> benchmark.ConversionBenchmark 3840 2160 5}.
+ */
+public class ConversionBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per measurement.
+   *
+   * @param args the width and height of the image and the number of rounds.
+   * @throws IOException if the temporary file cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 3840;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 2160;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    double megapixels = (double) width * height / 1_000_000;
+
+    Image image = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 31 + y * 17) * 0x010203);
+      }
+    }
+    Path file = Files.createTempFile("benchmark", ".bmp");
+    try {
+      BufferedImage bgr = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+      bgr.getGraphics().drawImage(ImageLoader.convertToBufferedImage(image), 0, 0, null);
+      ImageIO.write(bgr, "bmp", file.toFile());
+      ImageLoader loader = new ImageLoader();
+
+      time("to BufferedImage", megapixels, rounds, () -> ImageLoader.convertToBufferedImage(image));
+      time("decode bmp", megapixels, rounds, () -> {
+        try {
+          ImageIO.read(new File(file.toString()));
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      time("load bmp", megapixels, rounds, () -> loader.loadImage(file.toString()));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static void time(String name, double megapixels, int rounds, Runnable op) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < rounds; i++) {
+      long start = System.nanoTime();
+      op.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.printf("%-18s %8.1f ms %8.1f MP/s%n", name, best / 1e6,
+        megapixels / (best / 1e9));
+  }
+}
@@ -0,0 +1,73 @@
+package benchmark;
+
+import controller.ImageLoader;
+import controller.ScriptParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import view.ConsoleImageLoaderView;
+
+/**
+ * Runs a script that is one chain of N per-pixel lines (brighten, sepia, darken, greyscale and
+ * the component operations in turn) over an image already in the workspace, once line by line and
+ * once fused into a single pass, and reports the wall-clock time. Run with e.g.
+ * {@code java -Xmx3g -cp <classes> benchmark.FusionBenchmark 6 4000 3000}.
+ */
+public class FusionBenchmark {
+
+  private static final String[] OPERATIONS = {"brighten 10", "sepia", "darken 5", "greyscale",
+      "luma-component", "red-component", "intensity-component", "value-component"};
+
+  /**
+   * Runs the benchmark and prints one line per configuration and round.
+   *
+   * @param args the length of the chain, and the width and height of the image.
+   * @throws IOException if the script cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int length = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+    int width = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+    int height = args.length > 2 ? Integer.parseInt(args[2]) : 3000;
+
+    Image image = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 31 + y * 7) * 0x010203);
+      }
+    }
+    List<String> script = new ArrayList<>();
+    for (int i = 0; i < length; i++) {
+      String source = i == 0 ? "source" : "t" + (i - 1);
+      script.add(OPERATIONS[i % OPERATIONS.length] + " " + source + " t" + i);
+    }
+    Path scriptFile = Files.createTempFile("fusion", ".txt");
+    try {
+      Files.write(scriptFile, script);
+      System.out.printf("chain of %d lines over %dx%d%n", length, width, height);
+      for (int round = 0; round < 3; round++) {
+        run("line by line", scriptFile, image, false);
+        run("fused", scriptFile, image, true);
+      }
+    } finally {
+      Files.delete(scriptFile);
+    }
+  }
+
+  private static void run(String name, Path script, Image image, boolean fusing)
+      throws IOException {
+    ImageOperations operations = new ImageOperations(new Workspace());
+    operations.saveImage("source", image);
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    parser.setFusing(fusing);
+    System.gc();
+    long start = System.nanoTime();
+    parser.parseScript(script.toString());
+    System.out.printf("%-20s %8.0f ms%n", name, (System.nanoTime() - start) / 1e6);
+  }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import controller.ImageLoader;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import model.imagerepresentation.Image;
+
+/**
+ * Loads a large JPEG and a large binary PPM whole, cropped to a quarter of the image and
+ * subsampled by 4, and reports the time taken for each. Run with e.g.
+ * {@code java -Xmx3g -cp <classes> benchmark.LoadRegionBenchmark 7680 4320 3}.
+ */
+public class LoadRegionBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per file and load.
+   *
+   * @param args the width and height of the image and the number of rounds.
+   * @throws IOException if the temporary files cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 7680;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 4320;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    Image image = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 31 + y * 17) * 0x010203);
+      }
+    }
+    ImageLoader loader = new ImageLoader();
+    loader.setBinaryPpm(true);
+    Path jpeg = Files.createTempFile("benchmark", ".jpg");
+    Path ppm = Files.createTempFile("benchmark", ".ppm");
+    try {
+      loader.saveImage(jpeg.toString(), image);
+      loader.saveImage(ppm.toString(), image);
+      image = null;
+      Rectangle corner = new Rectangle(width / 2, height / 2, width / 2, height / 2);
+      for (int round = 0; round < rounds; round++) {
+        for (Path file : new Path[]{jpeg, ppm}) {
+          time(loader, file, "whole", null, 1);
+          time(loader, file, "quarter crop", corner, 1);
+          time(loader, file, "subsample 4", null, 4);
+        }
+      }
+    } finally {
+      Files.delete(jpeg);
+      Files.delete(ppm);
+    }
+  }
+
+  private static void time(ImageLoader loader, Path file, String name, Rectangle region,
+      int subsampling) {
+    long start = System.nanoTime();
+    Image loaded = loader.loadImage(file.toString(), region, subsampling);
+    long elapsed = System.nanoTime() - start;
+    String format = file.toString().substring(file.toString().lastIndexOf('.') + 1);
+    System.out.printf("%-4s %-13s %5dx%-5d %8.1f ms%n", format, name, loaded.getWidth(),
+        loaded.getHeight(), elapsed / 1e6);
+  }
+}
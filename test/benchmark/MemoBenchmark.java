@@ -0,0 +1,72 @@
+package benchmark;
+
+import controller.ImageLoader;
+import controller.ScriptParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import view.ConsoleImageLoaderView;
+
+/**
+ * Runs a generated-looking script that blurs, sharpens and tints the same image N times under
+ * different names, once computing every line and once reusing earlier results, and reports the
+ * wall-clock time and the pixels that were not recomputed. Run with e.g.
+ * {@code java -Xmx3g -cp <classes> benchmark.MemoBenchmark 8 1500 1500}.
+ */
+public class MemoBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per configuration and round.
+   *
+   * @param args the number of repeats, and the width and height of the image.
+   * @throws IOException if the script cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int repeats = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int width = args.length > 1 ? Integer.parseInt(args[1]) : 1500;
+    int height = args.length > 2 ? Integer.parseInt(args[2]) : 1500;
+
+    Image image = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 31 + y * 7) * 0x010203);
+      }
+    }
+    List<String> script = new ArrayList<>();
+    for (int i = 0; i < repeats; i++) {
+      script.add("blur source b" + i);
+      script.add("sharpen b" + i + " s" + i);
+      script.add("sepia s" + i + " t" + i);
+    }
+    Path scriptFile = Files.createTempFile("memo", ".txt");
+    try {
+      Files.write(scriptFile, script);
+      System.out.printf("%d repeats over %dx%d%n", repeats, width, height);
+      for (int round = 0; round < 3; round++) {
+        run("every line", scriptFile, image, false);
+        run("memoized", scriptFile, image, true);
+      }
+    } finally {
+      Files.delete(scriptFile);
+    }
+  }
+
+  private static void run(String name, Path script, Image image, boolean memoizing)
+      throws IOException {
+    ImageOperations operations = new ImageOperations(new Workspace());
+    operations.saveImage("source", image);
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    parser.setMemoizing(memoizing);
+    System.gc();
+    long start = System.nanoTime();
+    parser.parseScript(script.toString());
+    System.out.printf("%-20s %8.0f ms %12d pixels reused%n", name,
+        (System.nanoTime() - start) / 1e6, parser.getReusedPixels());
+  }
+}
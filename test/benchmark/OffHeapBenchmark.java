@@ -0,0 +1,68 @@
+package benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.OffHeapArena;
+import model.transformations.classes.ColorTransformation;
+import model.transformations.classes.Filtering;
+import model.transformations.classes.Flipping;
+
+/**
+ * Runs blur, sepia and a flip on an off-heap image with a small Java heap and reports time and the
+ * number of collections. Pass the size as arguments, e.g.
+ * {@code java -Xmx64m -XX:MaxDirectMemorySize=4g -cp <classes> benchmark.OffHeapBenchmark 30000
+ * 20000}. A 3-gigapixel input (e.g. 60000 x 50000) needs about 9 GB of native memory per image.
+ */
+public class OffHeapBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per operation.
+   *
+   * @param args the width and height of the image.
+   */
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+    double megapixels = (double) width * height / 1_000_000;
+
+    try (OffHeapArena arena = new OffHeapArena()) {
+      Image source = arena.allocate(width, height);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          source.setRGB(x, y, x * 31 + y * 17);
+        }
+      }
+      ImageOperations opn = new ImageOperations();
+      opn.saveImage("source", source);
+      System.out.printf("%dx%d (%.0f MP), %.0f MB native%n", width, height, megapixels,
+          arena.getAllocatedBytes() / 1048576.0);
+
+      run("sepia", megapixels, arena, opn,
+          () -> new ColorTransformation().sepia("source", "out", 100));
+      run("horizontal-flip", megapixels, arena, opn,
+          () -> new Flipping().horizontalFlip("source", "out"));
+      run("blur", megapixels, arena, opn, () -> new Filtering().blur("source", "out", 100));
+    }
+  }
+
+  private static void run(String name, double megapixels, OffHeapArena arena, ImageOperations opn,
+      Runnable op) {
+    long collections = collections();
+    long start = System.nanoTime();
+    op.run();
+    long elapsed = System.nanoTime() - start;
+    System.out.printf("%-16s %8.0f ms %7.1f MP/s %3d GCs%n", name, elapsed / 1e6,
+        megapixels / (elapsed / 1e9), collections() - collections);
+    arena.free(opn.getImage("out"));
+  }
+
+  private static long collections() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+}
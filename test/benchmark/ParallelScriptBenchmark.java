@@ -0,0 +1,82 @@
+package benchmark;
+
+import controller.ImageLoader;
+import controller.ScriptParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import view.ConsoleImageLoaderView;
+
+/**
+ * Runs a script with N independent branches, each blurring, sharpening and tinting its own copy
+ * of an image, in order and with one line per core at a time, and reports the wall-clock time.
+ * The speedup is bounded by the number of cores and the number of branches. Run with e.g.
+ * {@code java -Xmx3g -cp <classes> benchmark.ParallelScriptBenchmark 8 1500 1500}.
+ */
+public class ParallelScriptBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per configuration and round.
+   *
+   * @param args the number of branches, and the width and height of the image.
+   * @throws IOException if the files cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int branches = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int width = args.length > 1 ? Integer.parseInt(args[1]) : 1500;
+    int height = args.length > 2 ? Integer.parseInt(args[2]) : 1500;
+    int cores = Runtime.getRuntime().availableProcessors();
+
+    Path dir = Files.createTempDirectory("parallel");
+    try {
+      Image image = new Image(width, height);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          image.setRGB(x, y, (x * 31 + y * 7) * 0x010203);
+        }
+      }
+      Path source = dir.resolve("source.ppm");
+      ImageLoader loader = new ImageLoader();
+      loader.setBinaryPpm(true);
+      loader.saveImage(source.toString(), image);
+      List<String> script = new ArrayList<>();
+      script.add("load " + source + " source");
+      for (int i = 0; i < branches; i++) {
+        script.add("brighten " + i + " source b" + i);
+        script.add("blur b" + i + " b" + i);
+        script.add("sharpen b" + i + " b" + i);
+        script.add("sepia b" + i + " b" + i);
+      }
+      Path scriptFile = dir.resolve("script.txt");
+      Files.write(scriptFile, script);
+
+      System.out.printf("%d branches of %dx%d, %d cores%n", branches, width, height, cores);
+      for (int round = 0; round < 3; round++) {
+        run("in order", scriptFile, 1);
+        run(cores + " lines at once", scriptFile, cores);
+      }
+    } finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  private static void run(String name, Path script, int threads) throws IOException {
+    ScriptParser parser = new ScriptParser(new ImageLoader(),
+        new ImageOperations(new Workspace()), new ConsoleImageLoaderView());
+    parser.setReleaseDeadImages(true);
+    parser.setParallelThreads(threads);
+    System.gc();
+    long start = System.nanoTime();
+    parser.parseScript(script.toString());
+    System.out.printf("%-20s %8.0f ms%n", name, (System.nanoTime() - start) / 1e6);
+  }
+}
@@ -0,0 +1,62 @@
+package benchmark;
+
+import controller.ImageLoader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import model.imagerepresentation.Image;
+
+/**
+ * Saves and loads an image as ASCII PPM (P3) and binary PPM (P6) and reports the throughput in MB
+ * of pixel data (three bytes per pixel) per second, along with the file size. Run with e.g.
+ * {@code java -Xmx2g -cp <classes> benchmark.PpmBenchmark 3840 2160 3}.
+ */
+public class PpmBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per format and round.
+   *
+   * @param args the width and height of the image and the number of rounds.
+   * @throws IOException if the temporary file cannot be created.
+   */
+  public static void main(String[] args) throws IOException {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 3840;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 2160;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    Image image = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 31 + y * 17) * 0x010203);
+      }
+    }
+    Path file = Files.createTempFile("benchmark", ".ppm");
+    try {
+      for (int round = 0; round < rounds; round++) {
+        run("P3", file, image, false);
+        run("P6", file, image, true);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static void run(String name, Path file, Image image, boolean binary) throws IOException {
+    ImageLoader loader = new ImageLoader();
+    loader.setBinaryPpm(binary);
+    double megabytes = image.getWidth() * (double) image.getHeight() * 3 / 1048576.0;
+
+    long start = System.nanoTime();
+    loader.saveImage(file.toString(), image);
+    long saved = System.nanoTime();
+    Image loaded = loader.loadImage(file.toString());
+    long loadedAt = System.nanoTime();
+    if (loaded.getRGB(image.getWidth() - 1, 0) != image.getRGB(image.getWidth() - 1, 0)) {
+      throw new IllegalStateException("Round trip changed the image");
+    }
+
+    System.out.printf("%s  save %8.1f MB/s  load %8.1f MB/s  file %8.1f MB%n", name,
+        megabytes / ((saved - start) / 1e9), megabytes / ((loadedAt - saved) / 1e9),
+        Files.size(file) / 1048576.0);
+  }
+}
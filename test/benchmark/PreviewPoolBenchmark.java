@@ -0,0 +1,84 @@
+package benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.ImagePool;
+import model.transformations.classes.ColorTransformation;
+import model.transformations.classes.Filtering;
+
+/**
+ * Replays what the preview dialog does on every slider tick (run the operation into
+ * "previewImage", then drop the preview) with and without an image pool, and reports time, heap
+ * allocation and collections. Run with e.g.
+ * {@code java -Xmx1g -cp <classes> benchmark.PreviewPoolBenchmark 3840 2160 60}.
+ */
+public class PreviewPoolBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per configuration.
+   *
+   * @param args the width and height of the image and the number of slider ticks.
+   */
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 3840;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 2160;
+    int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+
+    Image source = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        source.setRGB(x, y, (x * 31 + y * 17) * 0x010203);
+      }
+    }
+    ImageOperations opn = new ImageOperations();
+    opn.saveImage("currentImage", source);
+
+    for (int round = 0; round < 2; round++) {
+      run("no pool", opn, null, ticks);
+      run("pool", opn, new ImagePool(), ticks);
+    }
+  }
+
+  private static void run(String name, ImageOperations opn, ImagePool pool, int ticks) {
+    opn.setImagePool(pool);
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long allocated = threads.getThreadAllocatedBytes(threadId);
+    long collections = collections();
+    long start = System.nanoTime();
+
+    for (int tick = 0; tick < ticks; tick++) {
+      int splitPosition = tick * 100 / ticks;
+      if (tick % 2 == 0) {
+        new ColorTransformation().sepia("currentImage", "previewImage", splitPosition);
+      } else {
+        new Filtering().blur("currentImage", "previewImage", splitPosition);
+      }
+      Image preview = opn.removeImage("previewImage");
+      if (pool != null) {
+        pool.release(preview);
+      }
+    }
+
+    long elapsed = System.nanoTime() - start;
+    System.out.printf("%-8s %4d ticks %8.0f ms %8.0f MB allocated %4d GCs", name, ticks,
+        elapsed / 1e6, (threads.getThreadAllocatedBytes(threadId) - allocated) / 1048576.0,
+        collections() - collections);
+    if (pool != null) {
+      System.out.printf("  hits %d misses %d", pool.getHits(), pool.getMisses());
+    }
+    System.out.println();
+    opn.setImagePool(null);
+  }
+
+  private static long collections() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+}
@@ -0,0 +1,73 @@
+package benchmark;
+
+import controller.ImageLoader;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.transformations.classes.BrightenDarken;
+import model.transformations.classes.ColorTransformation;
+import model.transformations.classes.Filtering;
+import model.transformations.classes.Flipping;
+import model.transformations.classes.Histogram;
+import model.transformations.classes.LevelAdjust;
+
+/**
+ * Times every operation that reads and writes pixels through the row and region accessors, once
+ * per in-heap memory layout. The source is a synthetic 12-megapixel image so that no input file is
+ * needed. Pass the size as arguments to change it, e.g.
+ * {@code java -Xmx2g -cp <classes> benchmark.RowAccessBenchmark 4000 3000}.
+ */
+public class RowAccessBenchmark {
+
+  private static final int ROUNDS = 3;
+
+  /**
+   * Runs the benchmark and prints one line per operation and layout.
+   *
+   * @param args the width and height of the image.
+   */
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+    double megapixels = (double) width * height / 1_000_000;
+    ImageOperations opn = new ImageOperations();
+
+    for (Image.Layout layout : new Image.Layout[]{Image.Layout.PACKED, Image.Layout.PLANAR,
+        Image.Layout.TILED}) {
+      Image image = new Image(width, height, layout);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          image.setRGB(x, y, (x * 31 + y * 17) * 0x010203);
+        }
+      }
+      opn.saveImage("bench", image);
+      System.out.printf("%s %dx%d%n", layout, width, height);
+
+      time("blur", megapixels, () -> new Filtering().blur("bench", "out", 100));
+      time("sharpen", megapixels, () -> new Filtering().sharpen("bench", "out", 100));
+      time("sepia", megapixels, () -> new ColorTransformation().sepia("bench", "out", 100));
+      time("greyscale", megapixels,
+          () -> new ColorTransformation().greyscale("bench", "out", 100));
+      time("sepia split 50", megapixels,
+          () -> new ColorTransformation().sepia("bench", "out", 50));
+      time("levels-adjust", megapixels,
+          () -> new LevelAdjust().levelsAdjust(20, 100, 230, "bench", "out", 100));
+      time("histogram", megapixels, () -> new Histogram().calculateHistograms(image));
+      time("brighten", megapixels, () -> new BrightenDarken().brighten(10, "bench", "out"));
+      time("horizontal-flip", megapixels,
+          () -> new Flipping().horizontalFlip("bench", "out"));
+      time("vertical-flip", megapixels, () -> new Flipping().verticalFlip("bench", "out"));
+      time("to BufferedImage", megapixels, () -> ImageLoader.convertToBufferedImage(image));
+    }
+  }
+
+  private static void time(String name, double megapixels, Runnable op) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      op.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.printf("  %-18s %8.1f ms %8.1f MP/s%n", name, best / 1e6,
+        megapixels / (best / 1e9));
+  }
+}
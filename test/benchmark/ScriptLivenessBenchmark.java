@@ -0,0 +1,80 @@
+package benchmark;
+
+import controller.ImageLoader;
+import controller.ScriptParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import view.ConsoleImageLoaderView;
+
+/**
+ * Runs a long script of chained operations, each writing a new name, with and without freeing
+ * dead images, and reports the peak resident bytes of the workspace and the time taken. Run with
+ * e.g. {@code java -Xmx2g -cp <classes> benchmark.ScriptLivenessBenchmark 1920 1080 40}.
+ */
+public class ScriptLivenessBenchmark {
+
+  private static final String[] STEPS = {
+      "brighten 5 %s %s", "horizontal-flip %s %s", "blur %s %s", "vertical-flip %s %s",
+      "sepia %s %s", "darken 5 %s %s", "luma-component %s %s", "sharpen %s %s"};
+
+  /**
+   * Runs the benchmark and prints one line per configuration.
+   *
+   * @param args the width and height of the image and the number of script lines.
+   * @throws IOException if the script cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 1920;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 1080;
+    int lines = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+
+    List<String> script = new ArrayList<>();
+    String previous = "source";
+    for (int i = 0; i < lines; i++) {
+      String next = "step" + i;
+      script.add(String.format(STEPS[i % STEPS.length], previous, next));
+      previous = next;
+    }
+    script.add("histogram " + previous + " result");
+    Path file = Files.createTempFile("liveness", ".txt");
+    Files.write(file, script);
+
+    Image source = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        source.setRGB(x, y, (x * 7 + y * 13) * 0x010203);
+      }
+    }
+    try {
+      for (int round = 0; round < 2; round++) {
+        run("all names kept", file, source, false);
+        run("dead images freed", file, source, true);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static void run(String name, Path script, Image source, boolean releaseDeadImages)
+      throws IOException {
+    ImageOperations opn = new ImageOperations(new Workspace());
+    ScriptParser parser = new ScriptParser(new ImageLoader(), opn, new ConsoleImageLoaderView());
+    parser.setReleaseDeadImages(releaseDeadImages);
+    opn.saveImage("source", source);
+    opn.resetPeakResidentBytes();
+    System.gc();
+
+    long start = System.nanoTime();
+    parser.parseScript(script.toString());
+    long elapsed = System.nanoTime() - start;
+    System.out.printf("%-18s %8.0f ms  peak resident %8.1f MB  resident after %8.1f MB%n", name,
+        elapsed / 1e6, opn.getPeakResidentBytes() / 1048576.0,
+        opn.getResidentBytes() / 1048576.0);
+  }
+}
@@ -0,0 +1,97 @@
+package benchmark;
+
+import controller.ImageLoader;
+import controller.ScriptParser;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import view.ConsoleImageLoaderView;
+
+/**
+ * Runs a load, a chain of row-by-row operations and a save of a binary PPM, on whole images and
+ * streamed in bands of rows, and reports the time taken and the peak heap use. Dead images are
+ * freed in both cases. Run with e.g.
+ * {@code java -Xmx3g -cp <classes> benchmark.ScriptStreamingBenchmark 7680 4320 ppm}; the last
+ * argument is the format saved, ppm or png.
+ */
+public class ScriptStreamingBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per configuration and round.
+   *
+   * @param args the width and height of the image and the format to save.
+   * @throws IOException if the files cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 7680;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 4320;
+    String format = args.length > 2 ? args[2] : "ppm";
+
+    Path dir = Files.createTempDirectory("streaming");
+    try {
+      Image source = new Image(width, height);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          source.setRGB(x, y, (x * 7 + y * 13) * 0x010203);
+        }
+      }
+      ImageLoader loader = new ImageLoader();
+      loader.setBinaryPpm(true);
+      Path input = dir.resolve("in.ppm");
+      loader.saveImage(input.toString(), source);
+      source = null;
+
+      Path script = dir.resolve("script.txt");
+      Files.write(script, Arrays.asList(
+          "load " + input + " a",
+          "brighten 10 a b",
+          "sepia b c",
+          "level-adjust 20 100 230 c d",
+          "greyscale d e split 50",
+          "darken 5 e f",
+          "save " + dir.resolve("out." + format) + " f"));
+      for (int round = 0; round < 2; round++) {
+        run("whole images", script, false);
+        run("streamed", script, true);
+      }
+    } finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  private static void run(String name, Path script, boolean streaming) throws IOException {
+    ImageLoader loader = new ImageLoader();
+    loader.setBinaryPpm(true);
+    ScriptParser parser = new ScriptParser(loader, new ImageOperations(new Workspace()),
+        new ConsoleImageLoaderView());
+    parser.setReleaseDeadImages(true);
+    parser.setStreaming(streaming);
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      pool.resetPeakUsage();
+    }
+
+    long start = System.nanoTime();
+    parser.parseScript(script.toString());
+    long elapsed = System.nanoTime() - start;
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    System.out.printf("%-14s %8.0f ms  peak heap %8.1f MB%n", name, elapsed / 1e6,
+        peak / 1048576.0);
+  }
+}
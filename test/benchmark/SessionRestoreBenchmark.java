@@ -0,0 +1,89 @@
+package benchmark;
+
+import controller.ImageLoader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+
+/**
+ * Restores a session of N large images by decoding PNG files, by mapping a raw saved session and
+ * by inflating a compressed one, and reports the time taken for each and the size on disk. Run
+ * with e.g. {@code java -Xmx3g -cp <classes> benchmark.SessionRestoreBenchmark 24 2000 2000}.
+ */
+public class SessionRestoreBenchmark {
+
+  /**
+   * Runs the benchmark and prints one line per way of restoring and round.
+   *
+   * @param args the number of images, and their width and height.
+   * @throws IOException if the files cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+    int width = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int height = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+    Path dir = Files.createTempDirectory("session");
+    Path png = Files.createDirectory(dir.resolve("png"));
+    Path raw = dir.resolve("raw");
+    Path deflated = dir.resolve("deflated");
+    try {
+      ImageLoader loader = new ImageLoader();
+      ImageOperations session = new ImageOperations(new Workspace());
+      for (int i = 0; i < count; i++) {
+        Image image = new Image(width, height);
+        for (int y = 0; y < height; y++) {
+          for (int x = 0; x < width; x++) {
+            image.setRGB(x, y, (x * (i + 3) + y * 7) * 0x010203);
+          }
+        }
+        loader.saveImage(png.resolve("image" + i + ".png").toString(), image);
+        session.saveImage("image" + i, image);
+      }
+      session.saveSession(raw, false);
+      session.saveSession(deflated, true);
+      session = null;
+
+      System.out.printf("%d images of %dx%d%n", count, width, height);
+      for (int round = 0; round < 3; round++) {
+        System.gc();
+        long start = System.nanoTime();
+        ImageOperations restored = new ImageOperations(new Workspace());
+        for (int i = 0; i < count; i++) {
+          restored.saveImage("image" + i,
+              loader.loadImage(png.resolve("image" + i + ".png").toString()));
+        }
+        report("png decode", start, png);
+        restored = null;
+
+        System.gc();
+        start = System.nanoTime();
+        new ImageOperations(new Workspace()).loadSession(raw);
+        report("raw session (mapped)", start, raw);
+
+        System.gc();
+        start = System.nanoTime();
+        new ImageOperations(new Workspace()).loadSession(deflated);
+        report("deflated session", start, deflated);
+      }
+    } finally {
+      try (Stream<Path> files = Files.walk(dir)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  private static void report(String name, long start, Path dir) throws IOException {
+    double millis = (System.nanoTime() - start) / 1e6;
+    long bytes;
+    try (Stream<Path> files = Files.list(dir)) {
+      bytes = files.mapToLong(path -> path.toFile().length()).sum();
+    }
+    System.out.printf("%-22s %9.1f ms %8.1f MB%n", name, millis, bytes / 1e6);
+  }
+}
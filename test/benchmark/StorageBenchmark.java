@@ -0,0 +1,96 @@
+package benchmark;
+
+import controller.ImageLoader;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Pixel;
+import model.transformations.classes.BrightenDarken;
+import model.transformations.classes.ColorTransformation;
+import model.transformations.classes.Filtering;
+import model.transformations.classes.Flipping;
+
+/**
+ * Measures the heap footprint of an 8K image and the throughput of a few transformations on it.
+ * The source is res/tiger.jpeg scaled up to 7680x4320. Run with a large heap, e.g.
+ * {@code java -Xmx4g -cp <classes> benchmark.StorageBenchmark}.
+ */
+public class StorageBenchmark {
+
+  private static final int WIDTH = 7680;
+  private static final int HEIGHT = 4320;
+  private static final int ROUNDS = 3;
+
+  /**
+   * Runs the benchmark and prints one line per measurement.
+   *
+   * @param args optional path of the source image, defaults to res/tiger.jpeg.
+   * @throws IOException if the source image cannot be read.
+   */
+  public static void main(String[] args) throws IOException {
+    String source = args.length > 0 ? args[0] : "res/tiger.jpeg";
+    BufferedImage scaled = scale(ImageIO.read(new File(source)), WIDTH, HEIGHT);
+
+    long before = usedHeap();
+    Image image = toImage(scaled);
+    long after = usedHeap();
+    scaled = null;
+    double megapixels = (double) WIDTH * HEIGHT / 1_000_000;
+    System.out.printf("image %dx%d: %.1f MB retained, %.1f bytes/pixel%n", WIDTH, HEIGHT,
+        (after - before) / 1048576.0, (double) (after - before) / (WIDTH * HEIGHT));
+
+    ImageOperations opn = new ImageOperations();
+    opn.saveImage("bench", image);
+
+    time("brighten", megapixels, () -> new BrightenDarken().brighten(10, "bench", "out"));
+    time("sepia", megapixels, () -> new ColorTransformation().sepia("bench", "out", 100));
+    time("blur", megapixels, () -> new Filtering().blur("bench", "out", 100));
+    time("horizontal-flip", megapixels, () -> new Flipping().horizontalFlip("bench", "out"));
+    time("to BufferedImage", megapixels, () -> ImageLoader.convertToBufferedImage(image));
+  }
+
+  private static void time(String name, double megapixels, Runnable op) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      op.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.printf("%-18s %8.1f ms %8.1f MP/s%n", name, best / 1e6,
+        megapixels / (best / 1e9));
+  }
+
+  private static BufferedImage scale(BufferedImage src, int width, int height) {
+    BufferedImage dst = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = dst.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.drawImage(src, 0, 0, width, height, null);
+    g.dispose();
+    return dst;
+  }
+
+  private static Image toImage(BufferedImage src) {
+    Image image = new Image(src.getWidth(), src.getHeight());
+    for (int y = 0; y < src.getHeight(); y++) {
+      for (int x = 0; x < src.getWidth(); x++) {
+        int rgb = src.getRGB(x, y);
+        image.setPixel(x, y, new Pixel((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF));
+      }
+    }
+    return image;
+  }
+
+  private static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
@@ -0,0 +1,109 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.imagerepresentation.Image;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing saves written on background threads.
+ */
+public class AsyncSaverTest {
+
+  private Path dir;
+  private ImageLoader loader;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("async");
+    loader = new ImageLoader();
+    loader.setBinaryPpm(true);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path file : Files.newDirectoryStream(dir)) {
+      Files.delete(file);
+    }
+    Files.delete(dir);
+  }
+
+  @Test
+  public void testSaveWritesImageAsQueued() {
+    Image image = new Image(3, 2);
+    image.setRGB(1, 1, 0x102030);
+    String file = dir.resolve("out.ppm").toString();
+    try (AsyncSaver saver = new AsyncSaver(loader, 1)) {
+      saver.save(file, image);
+      image.setRGB(1, 1, 0xffffff);
+      saver.flush();
+      assertFalse(saver.isPending(file));
+    }
+    assertEquals(0x102030, loader.loadImage(file).getRGB(1, 1));
+  }
+
+  @Test
+  public void testLastSaveToSameFileWins() {
+    String file = dir.resolve("out.ppm").toString();
+    try (AsyncSaver saver = new AsyncSaver(loader, 2)) {
+      for (int i = 0; i < 8; i++) {
+        Image image = new Image(1, 1);
+        image.setRGB(0, 0, i);
+        saver.save(file, image);
+      }
+      saver.flush();
+    }
+    assertEquals(7, loader.loadImage(file).getRGB(0, 0));
+  }
+
+  @Test
+  public void testErrorIsReportedByFlush() {
+    try (AsyncSaver saver = new AsyncSaver(loader, 1)) {
+      saver.save(dir.resolve("missing/out.ppm").toString(), new Image(1, 1));
+      saver.flush();
+      fail("Expected the save to fail");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().startsWith("Could not save image"));
+    }
+  }
+
+  @Test
+  public void testAtMostTwoSavesPerThreadArePending() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger started = new AtomicInteger();
+    ImageLoader blocking = new ImageLoader() {
+      @Override
+      public void saveImage(String imagePath, Image imageToSave) {
+        started.incrementAndGet();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    try (AsyncSaver saver = new AsyncSaver(blocking, 1)) {
+      saver.save(dir.resolve("a.ppm").toString(), new Image(1, 1));
+      saver.save(dir.resolve("b.ppm").toString(), new Image(1, 1));
+      Thread third = new Thread(() ->
+          saver.save(dir.resolve("c.ppm").toString(), new Image(1, 1)));
+      third.start();
+      third.join(200);
+      assertTrue(third.isAlive());
+      release.countDown();
+      third.join();
+      saver.flush();
+      assertEquals(3, started.get());
+    }
+  }
+}
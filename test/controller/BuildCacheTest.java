@@ -0,0 +1,143 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import view.ConsoleImageLoaderView;
+
+/**
+ * A Junit4 class for testing that scripts load the results of unchanged lines from a build cache
+ * kept across runs.
+ */
+public class BuildCacheTest {
+
+  private Path dir;
+  private Path cache;
+  private Path input;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("buildcache");
+    cache = dir.resolve("cache");
+    input = dir.resolve("in.ppm");
+    writeInput(0);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private void writeInput(int seed) {
+    Image image = new Image(40, 30);
+    for (int y = 0; y < 30; y++) {
+      for (int x = 0; x < 40; x++) {
+        image.setRGB(x, y, (x * 6 + seed) << 16 | (y * 8) << 8 | (x + y + seed) * 3);
+      }
+    }
+    new ImageLoader().saveImage(input.toString(), image);
+  }
+
+  private ScriptParser run(ImageOperations operations, long maxBytes, String... lines)
+      throws IOException {
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    parser.setBuildCache(cache, maxBytes);
+    Path script = dir.resolve("script.txt");
+    Files.write(script, Arrays.asList(lines));
+    parser.parseScript(script.toString());
+    return parser;
+  }
+
+  private ScriptParser run(String... lines) throws IOException {
+    return run(new ImageOperations(new Workspace()), 1L << 30, lines);
+  }
+
+  private static void assertSamePixels(Image expected, Image actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testRerunLoadsEveryLine() throws IOException {
+    String[] script = {"load " + input + " a", "blur a b", "rgb-split b r g bl",
+        "brighten 10 g c"};
+    ImageOperations first = new ImageOperations(new Workspace());
+    ScriptParser parser = run(first, 1L << 30, script);
+    assertEquals(0, parser.getCacheHits());
+    assertEquals(4, parser.getCacheMisses());
+
+    ImageOperations second = new ImageOperations(new Workspace());
+    parser = run(second, 1L << 30, script);
+    assertEquals(4, parser.getCacheHits());
+    assertEquals(0, parser.getCacheMisses());
+    for (String name : new String[] {"a", "b", "r", "g", "bl", "c"}) {
+      assertSamePixels(first.getImage(name), second.getImage(name));
+    }
+  }
+
+  @Test
+  public void testChangedParameterOnlyRecomputesItsLines() throws IOException {
+    run("load " + input + " a", "blur a b", "brighten 10 b c", "sepia c d");
+    ScriptParser parser = run("load " + input + " a", "blur a b", "brighten 20 b c",
+        "sepia c d");
+    assertEquals(2, parser.getCacheHits());
+    assertEquals(2, parser.getCacheMisses());
+  }
+
+  @Test
+  public void testChangedInputRecomputesEverything() throws IOException {
+    run("load " + input + " a", "blur a b");
+    writeInput(1);
+    ScriptParser parser = run("load " + input + " a", "blur a b");
+    assertEquals(0, parser.getCacheHits());
+    assertEquals(2, parser.getCacheMisses());
+  }
+
+  @Test
+  public void testNamesFromCallerAreNotCached() throws IOException {
+    ImageOperations operations = new ImageOperations(new Workspace());
+    operations.saveImage("img", new Image(4, 3));
+    ScriptParser parser = run(operations, 1L << 30, "blur img b", "sepia b c");
+    assertEquals(0, parser.getCacheHits());
+    assertEquals(0, parser.getCacheMisses());
+  }
+
+  @Test
+  public void testOverwrittenNameGetsNewDigest() throws IOException {
+    run("load " + input + " a", "brighten 10 a a", "blur a b");
+    ScriptParser parser = run("load " + input + " a", "blur a b");
+    // The blur reads the loaded image this time, not the brightened one
+    assertEquals(1, parser.getCacheHits());
+    assertEquals(1, parser.getCacheMisses());
+  }
+
+  @Test
+  public void testTrimEvictsToSizeLimit() throws IOException {
+    ScriptParser parser = run(new ImageOperations(new Workspace()), 0,
+        "load " + input + " a", "blur a b");
+    try (Stream<Path> files = Files.list(cache)) {
+      assertEquals(0, files.count());
+    }
+    assertTrue(parser.getCacheReport().contains("2 evicted"));
+  }
+}
@@ -0,0 +1,100 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.imagerepresentation.Image;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing which loads of a script are decoded early and how they are handed
+ * over.
+ */
+public class LoadPrefetcherTest {
+
+  private static List<ScriptCommand> commands(String... lines) {
+    List<ScriptCommand> commands = new ArrayList<>();
+    for (String line : lines) {
+      commands.add(ScriptCommand.parse(line));
+    }
+    return commands;
+  }
+
+  @Test
+  public void testLoadsBeforeBarrierArePrefetched() {
+    assertEquals(Arrays.asList(0, 2, 3), LoadPrefetcher.prefetchable(commands(
+        "load a.ppm a",
+        "brighten 5 a b",
+        "load b.png c",
+        "load c.jpg d crop 0 0 5 5",
+        "run other.txt",
+        "load d.ppm e")));
+  }
+
+  @Test
+  public void testLoadAfterSaveOfSameFileIsNot() {
+    assertEquals(Arrays.asList(0, 3), LoadPrefetcher.prefetchable(commands(
+        "load a.ppm a",
+        "save out.ppm a",
+        "load ./out.ppm b",
+        "load other.ppm c")));
+  }
+
+  @Test
+  public void testTakeHandsOverEachImageOnce() {
+    Image first = new Image(1, 1);
+    Image second = new Image(2, 2);
+    List<ScriptCommand> script = commands("load a.ppm a", "brighten 5 a b", "load b.ppm c");
+    try (LoadPrefetcher prefetcher = new LoadPrefetcher(script,
+        parts -> parts[1].equals("a.ppm") ? first : second, 2)) {
+      assertSame(first, prefetcher.take(0));
+      assertNull(prefetcher.take(1));
+      assertSame(second, prefetcher.take(2));
+      assertNull(prefetcher.take(2));
+    }
+  }
+
+  @Test
+  public void testAtMostOneWindowIsDecodedAhead() throws InterruptedException {
+    AtomicInteger started = new AtomicInteger();
+    CountDownLatch twoStarted = new CountDownLatch(2);
+    List<ScriptCommand> script = commands("load a.ppm a", "load b.ppm b", "load c.ppm c",
+        "load d.ppm d");
+    try (LoadPrefetcher prefetcher = new LoadPrefetcher(script, parts -> {
+      started.incrementAndGet();
+      twoStarted.countDown();
+      return new Image(1, 1);
+    }, 2)) {
+      twoStarted.await();
+      Thread.sleep(50);
+      assertEquals(2, started.get());
+      prefetcher.take(0);
+      prefetcher.take(1);
+      prefetcher.take(2);
+      prefetcher.take(3);
+      assertEquals(4, started.get());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testErrorIsThrownByTake() {
+    try (LoadPrefetcher prefetcher = new LoadPrefetcher(commands("load a.ppm a"), parts -> {
+      throw new IllegalArgumentException("Could not load image: missing");
+    }, 1)) {
+      prefetcher.take(0);
+    }
+  }
+
+  @Test
+  public void testNothingToPrefetch() {
+    assertEquals(Collections.emptyList(), LoadPrefetcher.prefetchable(commands(
+        "run other.txt", "load a.ppm a")));
+  }
+}
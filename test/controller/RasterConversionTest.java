@@ -0,0 +1,86 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import model.imagerepresentation.Image;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing the conversions between Image and BufferedImage.
+ */
+public class RasterConversionTest {
+
+  private static final int[] TYPES = {
+      BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE,
+      BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+      BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_565_RGB};
+
+  private static BufferedImage gradient(int type, int width, int height) {
+    BufferedImage bufferedImage = new BufferedImage(width, height, type);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        bufferedImage.setRGB(x, y, 0xFF000000 | (x * 7) << 16 | (y * 11 & 0xFF) << 8
+            | (x + y) & 0xFF);
+      }
+    }
+    return bufferedImage;
+  }
+
+  private static void assertSamePixels(BufferedImage expected, Image actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        assertEquals(expected.getRGB(x, y) & 0xFFFFFF, actual.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testEveryTypeMatchesGetRgb() {
+    for (int type : TYPES) {
+      BufferedImage bufferedImage = gradient(type, 31, 17);
+      assertSamePixels(bufferedImage, RasterConversion.toImage(bufferedImage,
+          Image.Layout.PACKED));
+      assertSamePixels(bufferedImage, RasterConversion.toImage(bufferedImage,
+          Image.Layout.PLANAR));
+    }
+  }
+
+  @Test
+  public void testSubimageUsesItsOwnOrigin() {
+    for (int type : TYPES) {
+      BufferedImage subimage = gradient(type, 40, 30).getSubimage(5, 7, 20, 10);
+      assertSamePixels(subimage, RasterConversion.toImage(subimage, Image.Layout.PACKED));
+    }
+  }
+
+  @Test
+  public void testPackedIntRgbIsWrapped() {
+    BufferedImage bufferedImage = gradient(BufferedImage.TYPE_INT_RGB, 4, 3);
+    Image image = RasterConversion.toImage(bufferedImage, Image.Layout.PACKED);
+    int[] data = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+    data[5] = 0x123456;
+    assertEquals(0x123456, image.getRGB(1, 1));
+  }
+
+  @Test
+  public void testToBufferedImage() {
+    Image image = new Image(13, 9);
+    for (int y = 0; y < 9; y++) {
+      for (int x = 0; x < 13; x++) {
+        image.setRGB(x, y, x * 0x0F0000 + y * 0x1A00 + x * y);
+      }
+    }
+    BufferedImage bufferedImage = RasterConversion.toBufferedImage(image);
+    assertEquals(BufferedImage.TYPE_INT_RGB, bufferedImage.getType());
+    assertSamePixels(bufferedImage, image);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrapRejectsWrongLength() {
+    Image.wrapPacked(4, 4, new int[15]);
+  }
+}
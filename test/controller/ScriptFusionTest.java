@@ -0,0 +1,139 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import org.junit.Test;
+import view.ConsoleImageLoaderView;
+
+/**
+ * A Junit4 class for testing the fusion of chains of per-pixel script lines.
+ */
+public class ScriptFusionTest {
+
+  private static List<ScriptCommand> fuse(String... lines) {
+    List<ScriptCommand> commands = new ArrayList<>();
+    for (String line : lines) {
+      commands.add(ScriptCommand.parse(line));
+    }
+    return ScriptFusion.fuse(commands);
+  }
+
+  private static List<String> lines(List<ScriptCommand> commands) {
+    List<String> lines = new ArrayList<>();
+    for (ScriptCommand command : commands) {
+      lines.add(command.getLine());
+    }
+    return lines;
+  }
+
+  @Test
+  public void testChainIsFused() {
+    List<ScriptCommand> fused = fuse("load a.ppm a", "brighten 10 a b", "sepia b c",
+        "greyscale c d", "save out.ppm d");
+    assertEquals(3, fused.size());
+    ScriptCommand chain = fused.get(1);
+    assertEquals(3, chain.getSteps().size());
+    assertEquals(Arrays.asList("a"), chain.getReads());
+    assertEquals(Arrays.asList("d"), chain.getWrites());
+    assertTrue(chain.isImageOperation());
+  }
+
+  @Test
+  public void testIntermediateReadElsewhereEndsChain() {
+    List<ScriptCommand> fused = fuse("brighten 10 a b", "sepia b c", "greyscale c d",
+        "save out.ppm c", "blur d e");
+    assertEquals(Arrays.asList("brighten 10 a b; sepia b c", "greyscale c d", "save out.ppm c",
+        "blur d e"), lines(fused));
+  }
+
+  @Test
+  public void testMasksAndLevelAdjustLimitChains() {
+    assertEquals(2, fuse("sepia a m b", "greyscale b c").size());
+    assertEquals(2, fuse("level-adjust 10 100 200 a b", "sepia b c").size());
+    assertEquals(1, fuse("brighten 10 a b", "level-adjust 10 100 200 b c").size());
+    assertEquals(1, fuse("sepia a b split 50", "red-component b c").size());
+  }
+
+  @Test
+  public void testNothingFusedBeforeBarrier() {
+    assertEquals(3, fuse("brighten 10 a b", "sepia b c", "run other.txt").size());
+    assertEquals(2, fuse("run other.txt", "brighten 10 a b", "sepia b c").size());
+  }
+
+  @Test
+  public void testIntermediateNamedLikeSourceIsNotFused() {
+    assertEquals(2, fuse("brighten 10 a a", "sepia a b").size());
+    // Overwriting the source with the final result is fine
+    assertEquals(1, fuse("brighten 10 a b", "sepia b a").size());
+  }
+
+  @Test
+  public void testFusedScriptMatchesUnfused() throws IOException {
+    Path dir = Files.createTempDirectory("fusion");
+    Path source = dir.resolve("source.ppm");
+    Path script = dir.resolve("script.txt");
+    Image image = new Image(23, 11);
+    for (int y = 0; y < 11; y++) {
+      for (int x = 0; x < 23; x++) {
+        image.setRGB(x, y, (x * 11) << 16 | (y * 23) << 8 | (x * y) & 0xFF);
+      }
+    }
+    ImageOperations unfused = new ImageOperations(new Workspace());
+    ImageOperations fused = new ImageOperations(new Workspace());
+    try {
+      new ImageLoader().saveImage(source.toString(), image);
+      Files.write(script, Arrays.asList("load " + source + " a", "brighten 40 a b", "sepia b c",
+          "darken 15 c d", "greyscale d e split 40", "value-component e f",
+          "level-adjust 20 120 220 f g split 70", "sepia a h split 30", "green-component h i",
+          "intensity-component i j", "luma-component j k"));
+      new ScriptParser(new ImageLoader(), unfused, new ConsoleImageLoaderView())
+          .parseScript(script.toString());
+      ScriptParser parser = new ScriptParser(new ImageLoader(), fused,
+          new ConsoleImageLoaderView());
+      parser.setFusing(true);
+      parser.parseScript(script.toString());
+    } finally {
+      Files.delete(source);
+      Files.delete(script);
+      Files.delete(dir);
+    }
+    for (String name : new String[]{"g", "histogram_g", "k"}) {
+      Image expected = unfused.getImage(name);
+      Image actual = fused.getImage(name);
+      for (int y = 0; y < expected.getHeight(); y++) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+          assertEquals(name, expected.getRGB(x, y), actual.getRGB(x, y));
+        }
+      }
+    }
+    assertFalse(fused.getWorkspace().contains("c"));
+    assertFalse(fused.getWorkspace().contains("j"));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testInvalidLineInChainReportsItsError() throws IOException {
+    Path script = Files.createTempFile("fusion", ".txt");
+    ImageOperations operations = new ImageOperations(new Workspace());
+    operations.saveImage("a", new Image(4, 4));
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    parser.setFusing(true);
+    try {
+      Files.write(script, Arrays.asList("brighten 5 a b", "darken lots b c"));
+      parser.parseScript(script.toString());
+    } finally {
+      Files.delete(script);
+    }
+  }
+}
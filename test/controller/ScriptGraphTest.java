@@ -0,0 +1,166 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing the dataflow graph of a script and running it in parallel.
+ */
+public class ScriptGraphTest {
+
+  private static List<ScriptCommand> commands(String... lines) {
+    List<ScriptCommand> commands = new ArrayList<>();
+    for (String line : lines) {
+      commands.add(ScriptCommand.parse(line));
+    }
+    return commands;
+  }
+
+  private static ScriptGraph graph(String... lines) {
+    return ScriptGraph.build(commands(lines), null);
+  }
+
+  @Test
+  public void testIndependentBranchesOnlyWaitForTheirSource() {
+    ScriptGraph graph = graph(
+        "load a.ppm a",
+        "rgb-split a r g b",
+        "blur r r1",
+        "blur g g1",
+        "sharpen r1 r2",
+        "sharpen g1 g2");
+    assertEquals(Collections.emptyList(), graph.getDependencies(0));
+    assertEquals(Arrays.asList(0), graph.getDependencies(1));
+    assertEquals(Arrays.asList(1), graph.getDependencies(2));
+    assertEquals(Arrays.asList(1), graph.getDependencies(3));
+    assertEquals(Arrays.asList(2), graph.getDependencies(4));
+    assertEquals(Arrays.asList(3), graph.getDependencies(5));
+  }
+
+  @Test
+  public void testOverwriteWaitsForReadersAndWriter() {
+    ScriptGraph graph = graph(
+        "brighten 10 a b",
+        "blur b c",
+        "sepia b d",
+        "darken 5 a b");
+    // Write after read on b, and write after write
+    assertEquals(Arrays.asList(0, 1, 2), graph.getDependencies(3));
+  }
+
+  @Test
+  public void testSaveWaitsForEveryEarlierLine() {
+    ScriptGraph graph = graph(
+        "blur a b",
+        "sepia c d",
+        "save out.ppm b",
+        "greyscale c e",
+        "save out2.ppm e");
+    assertEquals(Arrays.asList(0, 1), graph.getDependencies(2));
+    assertEquals(Collections.emptyList(), graph.getDependencies(3));
+    assertEquals(Arrays.asList(2, 3), graph.getDependencies(4));
+  }
+
+  @Test
+  public void testLoadWaitsForSaveOfSameFile() {
+    ScriptGraph graph = graph(
+        "save out.ppm a",
+        "load ./out.ppm b",
+        "load other.ppm c");
+    assertEquals(Arrays.asList(0), graph.getDependencies(1));
+    assertEquals(Collections.emptyList(), graph.getDependencies(2));
+  }
+
+  @Test
+  public void testBarrierIsAFence() {
+    ScriptGraph graph = graph(
+        "blur a b",
+        "sepia c d",
+        "run other.txt",
+        "greyscale e f");
+    assertEquals(Arrays.asList(0, 1), graph.getDependencies(2));
+    assertEquals(Arrays.asList(2), graph.getDependencies(3));
+  }
+
+  @Test
+  public void testFreeingWaitsForOtherReaders() {
+    List<ScriptCommand> script = commands(
+        "load a.ppm a",
+        "blur a b",
+        "sepia a c");
+    List<Set<String>> deadAfter = ScriptLiveness.deadAfter(script);
+    ScriptGraph graph = ScriptGraph.build(script, deadAfter);
+    // The last reader of a frees it, so it must run after the other reader
+    assertTrue(deadAfter.get(2).contains("a"));
+    assertEquals(Arrays.asList(0, 1), graph.getDependencies(2));
+  }
+
+  @Test
+  public void testIndependentLinesRunConcurrently() throws IOException {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    graph("blur a b", "sepia c d").run(2, index -> {
+      bothStarted.countDown();
+      try {
+        // Only returns if the other line runs at the same time
+        assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+  }
+
+  @Test
+  public void testDependenciesRunFirst() throws IOException {
+    Set<Integer> done = ConcurrentHashMap.newKeySet();
+    ScriptGraph graph = graph("load a.ppm a", "rgb-split a r g b", "blur r r1", "blur g g1",
+        "rgb-combine out r1 g1 b", "save out.ppm out");
+    graph.run(4, index -> {
+      for (int dependency : graph.getDependencies(index)) {
+        assertTrue(done.contains(dependency));
+      }
+      done.add(index);
+    });
+    assertEquals(6, done.size());
+  }
+
+  @Test
+  public void testEarliestFailureIsReported() {
+    Set<Integer> ran = ConcurrentHashMap.newKeySet();
+    CountDownLatch laterFailed = new CountDownLatch(1);
+    try {
+      graph("blur a b", "sepia c d", "save out.ppm d").run(2, index -> {
+        ran.add(index);
+        if (index == 0) {
+          // Fails only after the later line has failed
+          try {
+            laterFailed.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          throw new IllegalArgumentException("first");
+        }
+        if (index == 1) {
+          laterFailed.countDown();
+          throw new IllegalArgumentException("second");
+        }
+      });
+      fail("Expected the script to fail");
+    } catch (IOException | IllegalArgumentException e) {
+      assertEquals("first", e.getMessage());
+    }
+    assertFalse(ran.contains(2));
+  }
+}
@@ -0,0 +1,92 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing which image names a script can free after each command.
+ */
+public class ScriptLivenessTest {
+
+  private static List<Set<String>> deadAfter(String... lines) {
+    List<ScriptCommand> commands = new ArrayList<>();
+    for (String line : lines) {
+      commands.add(ScriptCommand.parse(line));
+    }
+    return ScriptLiveness.deadAfter(commands);
+  }
+
+  private static List<String> names(Set<String> names) {
+    return new ArrayList<>(names);
+  }
+
+  @Test
+  public void testNameDiesAfterLastRead() {
+    List<Set<String>> dead = deadAfter(
+        "load in.ppm a",
+        "brighten 10 a b",
+        "blur b c",
+        "save out.ppm c");
+    assertEquals(Collections.emptyList(), names(dead.get(0)));
+    assertEquals(Arrays.asList("a"), names(dead.get(1)));
+    assertEquals(Arrays.asList("b"), names(dead.get(2)));
+    assertEquals(Arrays.asList("c"), names(dead.get(3)));
+  }
+
+  @Test
+  public void testUnreadOutputDiesAtOnce() {
+    List<Set<String>> dead = deadAfter(
+        "load in.ppm a",
+        "rgb-split a r g b",
+        "save out.ppm g");
+    assertEquals(Arrays.asList("a", "r", "b"), names(dead.get(1)));
+    assertEquals(Arrays.asList("g"), names(dead.get(2)));
+  }
+
+  @Test
+  public void testOverwrittenNameDiesBeforeRewrite() {
+    List<Set<String>> dead = deadAfter(
+        "load in.ppm a",
+        "save first.ppm a",
+        "load other.ppm a",
+        "save second.ppm a");
+    assertEquals(Arrays.asList("a"), names(dead.get(1)));
+    assertEquals(Arrays.asList("a"), names(dead.get(3)));
+  }
+
+  @Test
+  public void testImagesFromBeforeTheScriptAreKept() {
+    List<Set<String>> dead = deadAfter(
+        "brighten 10 existing a",
+        "save out.ppm a");
+    assertEquals(Collections.emptyList(), names(dead.get(0)));
+  }
+
+  @Test
+  public void testNothingDiesBeforeBarrier() {
+    List<Set<String>> dead = deadAfter(
+        "load in.ppm a",
+        "brighten 10 a b",
+        "run other.txt",
+        "save out.ppm b");
+    assertEquals(Collections.emptyList(), names(dead.get(1)));
+    assertEquals(Collections.emptyList(), names(dead.get(2)));
+    assertEquals(Arrays.asList("b"), names(dead.get(3)));
+  }
+
+  @Test
+  public void testMaskIsRead() {
+    List<Set<String>> dead = deadAfter(
+        "load in.ppm a",
+        "load mask.ppm m",
+        "blur a m b",
+        "save out.ppm b");
+    assertEquals(Arrays.asList("a", "m"), names(dead.get(2)));
+  }
+}
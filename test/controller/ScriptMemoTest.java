@@ -0,0 +1,125 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import org.junit.Before;
+import org.junit.Test;
+import view.ConsoleImageLoaderView;
+
+/**
+ * A Junit4 class for testing that script commands reuse the results of identical earlier ones.
+ */
+public class ScriptMemoTest {
+
+  private ImageOperations operations;
+  private ScriptParser parser;
+
+  @Before
+  public void setUp() {
+    operations = new ImageOperations(new Workspace());
+    Image image = new Image(8, 6);
+    for (int y = 0; y < 6; y++) {
+      for (int x = 0; x < 8; x++) {
+        image.setRGB(x, y, (x * 30) << 16 | (y * 40) << 8 | (x + y) * 10);
+      }
+    }
+    operations.saveImage("img", image);
+    parser = new ScriptParser(new ImageLoader(), operations, new ConsoleImageLoaderView());
+    parser.setMemoizing(true);
+  }
+
+  private void run(String... lines) throws IOException {
+    Path script = Files.createTempFile("memo", ".txt");
+    try {
+      Files.write(script, Arrays.asList(lines));
+      parser.parseScript(script.toString());
+    } finally {
+      Files.delete(script);
+    }
+  }
+
+  @Test
+  public void testRepeatedCommandIsReused() throws IOException {
+    run("blur img b1", "blur img b2");
+    assertSame(operations.getImage("b1"), operations.getImage("b2"));
+    assertEquals(1, parser.getReusedResults());
+    assertEquals(48, parser.getReusedPixels());
+  }
+
+  @Test
+  public void testDifferentParametersAreNotReused() throws IOException {
+    run("brighten 10 img b1", "brighten 20 img b2", "sepia img s1", "sepia img s2 split 50");
+    assertNotSame(operations.getImage("b1"), operations.getImage("b2"));
+    assertNotSame(operations.getImage("s1"), operations.getImage("s2"));
+    assertEquals(0, parser.getReusedResults());
+  }
+
+  @Test
+  public void testChangedSourceIsNotReused() throws IOException {
+    run("blur img b1", "brighten 10 img img", "blur img b2");
+    assertNotSame(operations.getImage("b1"), operations.getImage("b2"));
+    assertEquals(0, parser.getReusedResults());
+  }
+
+  @Test
+  public void testReusedResultsAreTheSameContent() throws IOException {
+    // The second chain starts from an alias of b1, so it is reused line by line
+    run("blur img b1", "blur img b2", "sharpen b1 s1", "sharpen b2 s2", "rgb-split s1 r g b",
+        "rgb-split s2 r2 g2 b2");
+    assertEquals(3, parser.getReusedResults());
+    assertSame(operations.getImage("g"), operations.getImage("g2"));
+  }
+
+  @Test
+  public void testOverwritingSharedResultLeavesOtherName() throws IOException {
+    run("blur img b1", "blur img b2", "brighten 50 b1 b1");
+    Image blurred = operations.getImage("b2");
+    assertNotSame(blurred, operations.getImage("b1"));
+    ImageOperations expected = new ImageOperations(new Workspace());
+    expected.saveImage("img", operations.getImage("img"));
+    new ScriptParser(new ImageLoader(), expected, new ConsoleImageLoaderView())
+        .executeLine("blur img b");
+    for (int y = 0; y < 6; y++) {
+      for (int x = 0; x < 8; x++) {
+        assertEquals(expected.getImage("b").getRGB(x, y), blurred.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testLevelAdjustReusesHistogram() throws IOException {
+    run("level-adjust 20 100 200 img l1", "level-adjust 20 100 200 img l2");
+    assertSame(operations.getImage("l1"), operations.getImage("l2"));
+    assertSame(operations.getImage("histogram_l1"), operations.getImage("histogram_l2"));
+  }
+
+  @Test
+  public void testFusedChainsAreReused() throws IOException {
+    parser.setFusing(true);
+    Path out = Files.createTempFile("memo", ".ppm");
+    try {
+      // Each chain is fused, since only its second line reads a or c
+      run("brighten 10 img a", "sepia a b", "brighten 10 img c", "sepia c d", "save " + out + " b",
+          "save " + out + " d");
+    } finally {
+      Files.delete(out);
+    }
+    assertSame(operations.getImage("b"), operations.getImage("d"));
+    assertEquals(1, parser.getReusedResults());
+  }
+
+  @Test
+  public void testNumericNamesAreNotReused() throws IOException {
+    run("brighten 10 img 5", "brighten 5 img 5");
+    assertEquals(0, parser.getReusedResults());
+  }
+}
@@ -1,12 +1,19 @@
 package controller;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import model.imagerepresentation.Image;
 import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
 import org.junit.Before;
 import org.junit.Test;
 import view.ConsoleImageLoaderView;
@@ -601,5 +608,274 @@ public class ScriptParserTest {
     assertTrue("hello_levelAdjust_split should be created", Files.exists(Paths.get(savePath)));
   }
 
+  @Test
+  public void testLazyOperationsRunOnlyWhenRead() throws IOException {
+    ImageOperations lazyOperations = new ImageOperations(new Workspace());
+    ScriptParser parser = new ScriptParser(new ImageLoader(), lazyOperations,
+        new ConsoleImageLoaderView());
+    parser.setLazy(true);
+    Image source = new Image(4, 4);
+    source.fill(0x102030);
+    lazyOperations.saveImage("source", source);
+
+    parser.executeLine("brighten 16 source bright");
+    parser.executeLine("horizontal-flip bright flipped");
+    parser.executeLine("vertical-flip source unused");
+    assertEquals(0, lazyOperations.getMaterializeCount());
+
+    assertEquals(0x203040, lazyOperations.getImage("flipped").getRGB(0, 0));
+    assertEquals(2, lazyOperations.getMaterializeCount());
+  }
+
+  @Test
+  public void testLazyInPlaceOperationRunsAtOnce() throws IOException {
+    ImageOperations lazyOperations = new ImageOperations(new Workspace());
+    ScriptParser parser = new ScriptParser(new ImageLoader(), lazyOperations,
+        new ConsoleImageLoaderView());
+    parser.setLazy(true);
+    lazyOperations.saveImage("image", new Image(2, 2));
+
+    parser.executeLine("brighten 16 image image");
+    assertEquals(0, lazyOperations.getMaterializeCount());
+    assertEquals(0x101010, lazyOperations.getImage("image").getRGB(1, 1));
+  }
+
+  private static long runChain(boolean releaseDeadImages) throws IOException {
+    Workspace workspace = new Workspace();
+    ImageOperations operations = new ImageOperations(workspace);
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    parser.setReleaseDeadImages(releaseDeadImages);
+    operations.saveImage("source", new Image(50, 50));
+    operations.resetPeakResidentBytes();
+
+    Path script = Files.createTempFile("chain", ".txt");
+    try {
+      Files.write(script, Arrays.asList("brighten 10 source step1", "horizontal-flip step1 step2",
+          "vertical-flip step2 step3", "blur step3 step4", "sepia step4 step5"));
+      parser.parseScript(script.toString());
+    } finally {
+      Files.delete(script);
+    }
+    assertTrue(workspace.contains("source"));
+    assertEquals(!releaseDeadImages, workspace.contains("step5"));
+    return operations.getPeakResidentBytes();
+  }
+
+  @Test
+  public void testReleasingDeadImagesBoundsPeakMemory() throws IOException {
+    long imageBytes = 50 * 50 * 4;
+    assertEquals(6 * imageBytes, runChain(false));
+    // The source plus one step's input and output
+    assertEquals(3 * imageBytes, runChain(true));
+  }
+
+  @Test
+  public void testNestedScriptKeepsImages() throws IOException {
+    Workspace workspace = new Workspace();
+    ImageOperations operations = new ImageOperations(workspace);
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    parser.setReleaseDeadImages(true);
+    operations.saveImage("source", new Image(2, 2));
+
+    Path inner = Files.createTempFile("inner", ".txt");
+    Path outer = Files.createTempFile("outer", ".txt");
+    try {
+      Files.write(inner, Arrays.asList("brighten 10 source made"));
+      Files.write(outer, Arrays.asList("run " + inner, "horizontal-flip made flipped",
+          "vertical-flip flipped kept"));
+      parser.parseScript(outer.toString());
+    } finally {
+      Files.delete(inner);
+      Files.delete(outer);
+    }
+    // Only the outer script frees images, and only the ones it writes itself
+    assertTrue(workspace.contains("made"));
+    assertFalse(workspace.contains("flipped"));
+  }
+
+  @Test
+  public void testLoadCropAndSubsample() throws IOException {
+    Image source = new Image(20, 10);
+    for (int y = 0; y < 10; y++) {
+      for (int x = 0; x < 20; x++) {
+        source.setRGB(x, y, x << 16 | y);
+      }
+    }
+    Path file = Files.createTempFile("crop", ".ppm");
+    ImageOperations operations = new ImageOperations(new Workspace());
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    try {
+      new ImageLoader().saveImage(file.toString(), source);
+      parser.executeLine("load " + file + " corner crop 10 4 10 6 subsample 2");
+      parser.executeLine("load " + file + " small subsample 5");
+    } finally {
+      Files.delete(file);
+    }
+    Image corner = operations.getImage("corner");
+    assertEquals(5, corner.getWidth());
+    assertEquals(3, corner.getHeight());
+    assertEquals(12 << 16 | 6, corner.getRGB(1, 1));
+    assertEquals(4, operations.getImage("small").getWidth());
+  }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void testLoadWithBadCrop() throws IOException {
+    scriptParser.executeLine("load image.ppm name crop 1 2 three 4");
+  }
+
+  private static ScriptParser prefetchingParser(ImageOperations operations) {
+    ImageLoader loader = new ImageLoader();
+    loader.setBinaryPpm(true);
+    ScriptParser parser = new ScriptParser(loader, operations, new ConsoleImageLoaderView());
+    parser.setPrefetchThreads(2);
+    return parser;
+  }
+
+  @Test
+  public void testPrefetchedLoadsSeeEarlierSaves() throws IOException {
+    Path dir = Files.createTempDirectory("prefetch");
+    Path first = dir.resolve("first.ppm");
+    Path copy = dir.resolve("copy.ppm");
+    Path script = dir.resolve("script.txt");
+    Image source = new Image(3, 2);
+    source.setRGB(2, 1, 0x405060);
+    ImageOperations operations = new ImageOperations(new Workspace());
+    try {
+      new ImageLoader().saveImage(first.toString(), source);
+      Files.write(script, Arrays.asList("load " + first + " a", "brighten 16 a b",
+          "save " + copy + " b", "load " + copy + " c", "load " + first + " d"));
+      prefetchingParser(operations).parseScript(script.toString());
+    } finally {
+      Files.deleteIfExists(first);
+      Files.deleteIfExists(copy);
+      Files.delete(script);
+      Files.delete(dir);
+    }
+    assertEquals(0x506070, operations.getImage("c").getRGB(2, 1));
+    assertEquals(0x405060, operations.getImage("d").getRGB(2, 1));
+  }
+
+  @Test
+  public void testPrefetchKeepsErrorOrder() throws IOException {
+    Path script = Files.createTempFile("prefetch", ".txt");
+    ImageOperations operations = new ImageOperations(new Workspace());
+    try {
+      // The missing file is decoded first, but the bad brighten line comes before it
+      Files.write(script, Arrays.asList("brighten 5 nothing out", "load missing.ppm a"));
+      prefetchingParser(operations).parseScript(script.toString());
+      fail("Expected the script to fail");
+    } catch (IllegalArgumentException e) {
+      assertFalse(e.getMessage().startsWith("Could not load image"));
+    } finally {
+      Files.delete(script);
+    }
+  }
+
+  private static ScriptParser savingParser(ImageOperations operations) {
+    ImageLoader loader = new ImageLoader();
+    loader.setBinaryPpm(true);
+    ScriptParser parser = new ScriptParser(loader, operations, new ConsoleImageLoaderView());
+    parser.setSaveThreads(2);
+    return parser;
+  }
+
+  @Test
+  public void testLoadWaitsForBackgroundSave() throws IOException {
+    Path dir = Files.createTempDirectory("save");
+    Path first = dir.resolve("first.ppm");
+    Path copy = dir.resolve("copy.ppm");
+    Path script = dir.resolve("script.txt");
+    Image source = new Image(3, 2);
+    source.setRGB(2, 1, 0x405060);
+    ImageOperations operations = new ImageOperations(new Workspace());
+    try {
+      new ImageLoader().saveImage(first.toString(), source);
+      Files.write(script, Arrays.asList("load " + first + " a", "brighten 16 a b",
+          "save " + copy + " b", "brighten 16 b b", "load " + copy + " c"));
+      savingParser(operations).parseScript(script.toString());
+    } finally {
+      Files.deleteIfExists(first);
+      Files.deleteIfExists(copy);
+      Files.delete(script);
+      Files.delete(dir);
+    }
+    // The save wrote b as it was on its line, not after the second brighten
+    assertEquals(0x506070, operations.getImage("c").getRGB(2, 1));
+  }
+
+  @Test
+  public void testBackgroundSaveErrorFailsScript() throws IOException {
+    Path script = Files.createTempFile("save", ".txt");
+    ImageOperations operations = new ImageOperations(new Workspace());
+    operations.saveImage("a", new Image(2, 2));
+    try {
+      Files.write(script, Arrays.asList("save missing-dir/out.ppm a", "brighten 5 a b"));
+      savingParser(operations).parseScript(script.toString());
+      fail("Expected the script to fail");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().startsWith("Could not save image"));
+    } finally {
+      Files.delete(script);
+    }
+  }
+
+  @Test
+  public void testParallelScriptMatchesInOrder() throws IOException {
+    Path dir = Files.createTempDirectory("parallel");
+    Path source = dir.resolve("source.ppm");
+    Path script = dir.resolve("script.txt");
+    Image image = new Image(16, 12);
+    for (int y = 0; y < 12; y++) {
+      for (int x = 0; x < 16; x++) {
+        image.setRGB(x, y, (x * 16) << 16 | (y * 20) << 8 | (x + y) * 8);
+      }
+    }
+    ImageOperations inOrder = new ImageOperations(new Workspace());
+    ImageOperations parallel = new ImageOperations(new Workspace());
+    try {
+      new ImageLoader().saveImage(source.toString(), image);
+      Files.write(script, Arrays.asList("load " + source + " a", "rgb-split a r g b",
+          "blur r r1", "sharpen g g1", "brighten 20 b b1", "rgb-combine c r1 g1 b1",
+          "sepia a s", "horizontal-flip s s"));
+      new ScriptParser(new ImageLoader(), inOrder, new ConsoleImageLoaderView())
+          .parseScript(script.toString());
+      ScriptParser parser = new ScriptParser(new ImageLoader(), parallel,
+          new ConsoleImageLoaderView());
+      parser.setParallelThreads(4);
+      parser.parseScript(script.toString());
+    } finally {
+      Files.delete(source);
+      Files.delete(script);
+      Files.delete(dir);
+    }
+    for (String name : new String[]{"c", "s"}) {
+      for (int y = 0; y < 12; y++) {
+        for (int x = 0; x < 16; x++) {
+          assertEquals(inOrder.getImage(name).getRGB(x, y), parallel.getImage(name).getRGB(x, y));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testParallelScriptReportsEarliestError() throws IOException {
+    Path script = Files.createTempFile("parallel", ".txt");
+    ImageOperations operations = new ImageOperations(new Workspace());
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    parser.setParallelThreads(4);
+    try {
+      Files.write(script, Arrays.asList("brighten 5 missingFirst out1",
+          "brighten 5 missingSecond out2"));
+      parser.parseScript(script.toString());
+      fail("Expected the script to fail");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("missingFirst"));
+    } finally {
+      Files.delete(script);
+    }
+  }
 }
@@ -0,0 +1,153 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import org.junit.Test;
+import view.ConsoleImageLoaderView;
+
+/**
+ * A Junit4 class for testing that scripts skip the lines no save or kept name depends on.
+ */
+public class ScriptPruningTest {
+
+  private static ScriptPruning prune(Set<String> kept, String... lines) {
+    List<ScriptCommand> commands = new ArrayList<>();
+    for (String line : lines) {
+      commands.add(ScriptCommand.parse(line));
+    }
+    return ScriptPruning.prune(commands, kept);
+  }
+
+  private static List<String> lines(List<ScriptCommand> commands) {
+    List<String> lines = new ArrayList<>();
+    for (ScriptCommand command : commands) {
+      lines.add(command.getLine());
+    }
+    return lines;
+  }
+
+  @Test
+  public void testUnsavedLinesArePruned() {
+    ScriptPruning pruning = prune(Collections.emptySet(),
+        "load in.ppm a",
+        "blur a b",
+        "sharpen a c",
+        "sepia c d",
+        "save out.ppm b");
+    assertEquals(Arrays.asList("load in.ppm a", "blur a b", "save out.ppm b"),
+        lines(pruning.getKept()));
+    assertEquals(Arrays.asList("sharpen a c", "sepia c d"), lines(pruning.getPruned()));
+  }
+
+  @Test
+  public void testOverwrittenValueIsPruned() {
+    ScriptPruning pruning = prune(Collections.emptySet(),
+        "load in.ppm a",
+        "blur a b",
+        "sharpen a b",
+        "save out.ppm b");
+    assertEquals(Arrays.asList("blur a b"), lines(pruning.getPruned()));
+  }
+
+  @Test
+  public void testKeptNamesArePreserved() {
+    ScriptPruning pruning = prune(Collections.singleton("c"),
+        "load in.ppm a",
+        "blur a b",
+        "sharpen a c");
+    assertEquals(Arrays.asList("load in.ppm a", "sharpen a c"), lines(pruning.getKept()));
+  }
+
+  @Test
+  public void testMultipleOutputsKeptWhenOneIsNeeded() {
+    ScriptPruning pruning = prune(Collections.emptySet(),
+        "load in.ppm a",
+        "rgb-split a r g b",
+        "save out.ppm g");
+    assertEquals(Collections.emptyList(), pruning.getPruned());
+    assertEquals(Arrays.asList("r", "g", "b"), pruning.getKept().get(1).getWrites());
+  }
+
+  @Test
+  public void testUnreadHistogramIsSkipped() {
+    ScriptPruning pruning = prune(Collections.emptySet(),
+        "load in.ppm a",
+        "level-adjust 20 100 200 a l",
+        "save out.ppm l");
+    assertEquals(Arrays.asList("histogram_l"), pruning.getSkippedOutputs());
+    assertEquals(Arrays.asList("l"), pruning.getKept().get(1).getWrites());
+  }
+
+  @Test
+  public void testReadHistogramIsComputed() {
+    ScriptPruning pruning = prune(Collections.emptySet(),
+        "load in.ppm a",
+        "level-adjust 20 100 200 a l",
+        "save out.ppm histogram_l");
+    assertEquals(Collections.emptyList(), pruning.getSkippedOutputs());
+    assertEquals(Arrays.asList("l", "histogram_l"), pruning.getKept().get(1).getWrites());
+  }
+
+  @Test
+  public void testLinesBeforeBarrierAreKept() {
+    ScriptPruning pruning = prune(Collections.emptySet(),
+        "load in.ppm a",
+        "blur a b",
+        "run other.txt",
+        "sharpen a c");
+    assertEquals(Arrays.asList("sharpen a c"), lines(pruning.getPruned()));
+    assertEquals(Arrays.asList("load in.ppm a", "blur a b", "run other.txt"),
+        lines(pruning.getKept()));
+  }
+
+  @Test
+  public void testParserSkipsPrunedLinesAndHistogram() throws IOException {
+    ImageOperations operations = new ImageOperations(new Workspace());
+    operations.saveImage("img", new Image(4, 3));
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    parser.setPruning(true);
+    parser.setKeptNames(Collections.singleton("l"));
+    run(parser, "blur img b", "level-adjust 20 100 200 img l");
+    assertEquals(Arrays.asList("blur img b"), parser.getPrunedLines());
+    assertEquals(Arrays.asList("histogram_l"), parser.getSkippedOutputs());
+    assertNotNull(operations.getImage("l"));
+    assertNull(operations.getWorkspace().get("b"));
+    assertNull(operations.getWorkspace().get("histogram_l"));
+  }
+
+  @Test
+  public void testDryRunRunsNothing() throws IOException {
+    ImageOperations operations = new ImageOperations(new Workspace());
+    operations.saveImage("img", new Image(4, 3));
+    ScriptParser parser = new ScriptParser(new ImageLoader(), operations,
+        new ConsoleImageLoaderView());
+    parser.setDryRun(true);
+    run(parser, "blur img b", "sharpen img s", "save missing-dir/out.ppm s");
+    assertEquals(Arrays.asList("blur img b"), parser.getPrunedLines());
+    assertNull(operations.getWorkspace().get("s"));
+  }
+
+  private static void run(ScriptParser parser, String... lines) throws IOException {
+    Path script = Files.createTempFile("prune", ".txt");
+    try {
+      Files.write(script, Arrays.asList(lines));
+      parser.parseScript(script.toString());
+    } finally {
+      Files.delete(script);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import view.ConsoleImageLoaderView;
+
+/**
+ * A Junit4 class for testing that scripts streamed in bands of rows write the same files as
+ * scripts run on whole images.
+ */
+public class ScriptStreamerTest {
+
+  private Path dir;
+  private Path input;
+  private Path mask;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("stream");
+    input = dir.resolve("in.ppm");
+    mask = dir.resolve("mask.pgm");
+    // Tall enough for several bands
+    Image image = new Image(300, 2000);
+    Image maskImage = new Image(300, 2000);
+    for (int y = 0; y < 2000; y++) {
+      for (int x = 0; x < 300; x++) {
+        image.setRGB(x, y, (x * 7 + y) << 16 & 0xFF0000 | (y * 3 & 0xFF) << 8 | x * y & 0xFF);
+        maskImage.setRGB(x, y, (x / 20 + y / 50) % 2 == 0 ? 0 : 0xFFFFFF);
+      }
+    }
+    ImageLoader loader = new ImageLoader();
+    loader.setBinaryPpm(true);
+    loader.saveImage(input.toString(), image);
+    loader.saveImage(mask.toString(), maskImage);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private static List<ScriptCommand> commands(String... lines) {
+    List<ScriptCommand> commands = new ArrayList<>();
+    for (String line : lines) {
+      commands.add(ScriptCommand.parse(line));
+    }
+    return commands;
+  }
+
+  private Workspace runScript(boolean streaming, boolean binaryPpm, String... lines)
+      throws IOException {
+    Path script = dir.resolve("script.txt");
+    Files.write(script, Arrays.asList(lines));
+    ImageLoader loader = new ImageLoader();
+    loader.setBinaryPpm(binaryPpm);
+    Workspace workspace = new Workspace();
+    ScriptParser parser = new ScriptParser(loader, new ImageOperations(workspace),
+        new ConsoleImageLoaderView());
+    parser.setStreaming(streaming);
+    parser.parseScript(script.toString());
+    return workspace;
+  }
+
+  private void assertSameOutput(boolean binaryPpm, String out, String... lines) throws IOException {
+    runScript(false, binaryPpm, lines);
+    byte[] expected = Files.readAllBytes(dir.resolve(out));
+    Files.delete(dir.resolve(out));
+    // A streamed script keeps none of its images
+    assertFalse(runScript(true, binaryPpm, lines).contains("a"));
+    assertArrayEquals(expected, Files.readAllBytes(dir.resolve(out)));
+  }
+
+  @Test
+  public void testChainMatchesWholeImages() throws IOException {
+    String[] lines = {
+        "load " + input + " a",
+        "brighten 25 a b",
+        "sepia b c split 40",
+        "level-adjust 20 100 230 c d",
+        "darken 10 d e",
+        "save " + dir.resolve("out.ppm") + " e"};
+    assertSameOutput(true, "out.ppm", lines);
+    assertSameOutput(false, "out.ppm", lines);
+  }
+
+  @Test
+  public void testMasksAndChannelsMatchWholeImages() throws IOException {
+    assertSameOutput(true, "out.ppm",
+        "load " + input + " a",
+        "load " + mask + " m",
+        "greyscale a m g",
+        "rgb-split g r gr b",
+        "blue-component a m bc",
+        "rgb-combine c r bc b",
+        "horizontal-flip c f",
+        "save " + dir.resolve("out.ppm") + " f",
+        "luma-component a l",
+        "save " + dir.resolve("out.pgm") + " l");
+    assertTrue(Files.size(dir.resolve("out.pgm")) > 300 * 2000);
+  }
+
+  @Test
+  public void testPngHasTheSamePixels() throws IOException {
+    String out = dir.resolve("out.png").toString();
+    runScript(false, false, "load " + input + " a", "brighten 40 a b", "save " + out + " b");
+    BufferedImage expected = ImageIO.read(dir.resolve("out.png").toFile());
+    Files.delete(dir.resolve("out.png"));
+    runScript(true, false, "load " + input + " a", "brighten 40 a b", "save " + out + " b");
+    BufferedImage actual = ImageIO.read(dir.resolve("out.png").toFile());
+
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testWhichScriptsStream() {
+    String save = "save " + dir.resolve("out.ppm") + " b";
+    assertTrue(ScriptStreamer.canStream(commands("load in.ppm a", "brighten 5 a b", save)));
+    assertTrue(ScriptStreamer.canStream(commands("load IN.PPM a", "brighten 5 a b", save)));
+    // Neighbourhood and whole-image operations need every row
+    assertFalse(ScriptStreamer.canStream(commands("load in.ppm a", "blur a b", save)));
+    assertFalse(ScriptStreamer.canStream(commands("load in.ppm a", "vertical-flip a b", save)));
+    // Names from before the script
+    assertFalse(ScriptStreamer.canStream(commands("brighten 5 a b", save)));
+    // Files decoded by ImageIO
+    assertFalse(ScriptStreamer.canStream(commands("load in.png a", "brighten 5 a b", save)));
+    assertFalse(ScriptStreamer.canStream(commands("load in.ppm a", "brighten 5 a b",
+        "save out.jpg b")));
+    // Overwriting the loaded file
+    assertFalse(ScriptStreamer.canStream(commands("load in.ppm a", "brighten 5 a b",
+        "save in.ppm b")));
+    assertFalse(ScriptStreamer.canStream(commands("load in.ppm a", "run other.txt", save)));
+  }
+
+  @Test
+  public void testLevelAdjustHistogramRunsOnWholeImage() throws IOException {
+    Path histogram = dir.resolve("hist.png");
+    String[] lines = {
+        "load " + input + " a",
+        "level-adjust 10 100 200 a b",
+        "save " + histogram + " histogram_b",
+        "save " + dir.resolve("b.png") + " b"};
+    assertFalse(ScriptStreamer.canStream(commands(lines)));
+    // Only the adjusted image itself is row-local
+    assertTrue(ScriptStreamer.canStream(commands(lines[0], lines[1], lines[3])));
+
+    runScript(true, false, lines);
+    BufferedImage saved = ImageIO.read(histogram.toFile());
+    assertEquals(256, saved.getWidth());
+    assertEquals(256, saved.getHeight());
+  }
+
+  @Test
+  public void testFailedScriptLeavesNoOutput() throws IOException {
+    Path out = dir.resolve("out.ppm");
+    try {
+      runScript(true, true, "load " + input + " a", "save " + out + " a",
+          "level-adjust 200 100 50 a b", "save " + dir.resolve("other.ppm") + " b");
+      fail("Expected the level-adjust to fail");
+    } catch (IllegalArgumentException e) {
+      assertFalse(Files.exists(out));
+    }
+  }
+
+  @Test(expected = ArrayIndexOutOfBoundsException.class)
+  public void testMismatchedSizesRunAsUsual() throws IOException {
+    Path small = dir.resolve("small.ppm");
+    new ImageLoader().saveImage(small.toString(), new Image(3, 3));
+    // The mask is too small, which the greyscale reports as it would without streaming
+    runScript(true, true, "load " + input + " a", "load " + small + " m",
+        "greyscale a m g", "save " + dir.resolve("out.ppm") + " g");
+  }
+}
@@ -0,0 +1,171 @@
+package model;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.transformations.classes.BrightenDarken;
+import model.transformations.classes.ColorCorrection;
+import model.transformations.classes.ColorRepresentation;
+import model.transformations.classes.ColorTransformation;
+import model.transformations.classes.CombineChannels;
+import model.transformations.classes.ComponentVisualization;
+import model.transformations.classes.Filtering;
+import model.transformations.classes.Flipping;
+import model.transformations.classes.Histogram;
+import model.transformations.classes.ImageCompression;
+import model.transformations.classes.ImageDownsizing;
+import model.transformations.classes.LevelAdjust;
+import model.transformations.classes.Split;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class that checks that the transformations do not allocate objects per pixel. Each
+ * operation is warmed up and then run once while the bytes allocated by the test thread are
+ * counted. Producing the result image costs four bytes per pixel in the packed layout; a single
+ * {@code Pixel} object per pixel would add at least sixteen more, so the budget below fails long
+ * before that.
+ */
+public class AllocationTest {
+
+  private static final int WIDTH = 1024;
+  private static final int HEIGHT = 768;
+  private static final int WARMUP_ROUNDS = 3;
+
+  // Result image plus row buffers and a few fixed-size tables
+  private static final double BYTES_PER_PIXEL = 5.0;
+
+  // The wavelet transform works on three padded double planes and one buffer of magnitudes
+  private static final double COMPRESSION_BYTES_PER_PIXEL = 4 * 8 * 1.4 + 5.0;
+
+  private com.sun.management.ThreadMXBean threads;
+
+  @Before
+  public void setUp() {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    Image source = new Image(WIDTH, HEIGHT);
+    Image mask = new Image(WIDTH, HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        source.setRGB(x, y, (x * 31 + y * 17) * 0x010203);
+        mask.setRGB(x, y, x < WIDTH / 2 ? 0 : 0xFFFFFF);
+      }
+    }
+    ImageOperations opn = new ImageOperations();
+    opn.saveImage("allocSource", source);
+    opn.saveImage("allocMask", mask);
+  }
+
+  private void assertAllocationFree(String name, double budget, Runnable operation) {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      operation.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    operation.run();
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+    double perPixel = (double) allocated / (WIDTH * HEIGHT);
+    assertTrue(String.format("%s allocated %.2f bytes per pixel, budget %.2f", name, perPixel,
+        budget), perPixel <= budget);
+  }
+
+  private void assertAllocationFree(String name, Runnable operation) {
+    assertAllocationFree(name, BYTES_PER_PIXEL, operation);
+  }
+
+  @Test
+  public void testUninitializedImageIsOneAllocation() {
+    Image source = new ImageOperations().getImage("allocSource");
+    assertAllocationFree("packed image", 4 + 0.01,
+        () -> Image.allocateUninitialized(WIDTH, HEIGHT));
+    assertAllocationFree("planar image", 3 + 0.01,
+        () -> Image.allocateUninitialized(WIDTH, HEIGHT, Image.Layout.PLANAR));
+    assertAllocationFree("compatible image", 4 + 0.01,
+        () -> source.createUninitializedImage(WIDTH, HEIGHT));
+  }
+
+  @Test
+  public void testBrightenDarken() {
+    assertAllocationFree("brighten",
+        () -> new BrightenDarken().brighten(20, "allocSource", "allocOut"));
+    assertAllocationFree("darken",
+        () -> new BrightenDarken().darken(20, "allocSource", "allocOut"));
+  }
+
+  @Test
+  public void testColorRepresentation() {
+    assertAllocationFree("value",
+        () -> new ColorRepresentation().valueComponent("allocSource", "allocOut"));
+    assertAllocationFree("intensity",
+        () -> new ColorRepresentation().intensityComponent("allocSource", "allocOut"));
+    assertAllocationFree("luma",
+        () -> new ColorRepresentation().lumaComponent("allocSource", "allocOut"));
+  }
+
+  @Test
+  public void testColorTransformation() {
+    assertAllocationFree("sepia",
+        () -> new ColorTransformation().sepia("allocSource", "allocOut", 100));
+    assertAllocationFree("greyscale split",
+        () -> new ColorTransformation().greyscale("allocSource", "allocOut", 50));
+    assertAllocationFree("sepia masked",
+        () -> new ColorTransformation().sepia("allocSource", "allocOut", 100, "allocMask"));
+  }
+
+  @Test
+  public void testComponentVisualization() {
+    assertAllocationFree("red",
+        () -> new ComponentVisualization().redComponent("allocSource", "allocOut"));
+    assertAllocationFree("green masked", () -> new ComponentVisualization()
+        .greenComponent("allocSource", "allocOut", "allocMask"));
+  }
+
+  @Test
+  public void testFiltering() {
+    assertAllocationFree("blur", () -> new Filtering().blur("allocSource", "allocOut", 100));
+    assertAllocationFree("sharpen masked",
+        () -> new Filtering().sharpen("allocSource", "allocOut", 100, "allocMask"));
+  }
+
+  @Test
+  public void testFlipping() {
+    assertAllocationFree("horizontal-flip",
+        () -> new Flipping().horizontalFlip("allocSource", "allocOut"));
+    assertAllocationFree("vertical-flip",
+        () -> new Flipping().verticalFlip("allocSource", "allocOut"));
+  }
+
+  @Test
+  public void testHistogramAndLevels() {
+    assertAllocationFree("histogram",
+        () -> new Histogram().generateHistogram("allocSource", "allocOut"));
+    assertAllocationFree("levels-adjust",
+        () -> new LevelAdjust().levelsAdjust(20, 100, 230, "allocSource", "allocOut", 100));
+    assertAllocationFree("color-correct",
+        () -> new ColorCorrection().colorCorrect("allocSource", "allocOut", 100));
+  }
+
+  @Test
+  public void testSplitAndCombine() {
+    // Three result images
+    assertAllocationFree("rgb-split", 3 * BYTES_PER_PIXEL, () -> new Split().rgbSplit(
+        "allocSource", "allocRed", "allocGreen", "allocBlue"));
+    assertAllocationFree("rgb-combine", () -> new CombineChannels().rgbCombine("allocOut",
+        "allocSource", "allocSource", "allocSource"));
+  }
+
+  @Test
+  public void testDownsizeAndCompress() {
+    assertAllocationFree("downsize", () -> new ImageDownsizing().downsize("allocSource",
+        "allocOut", WIDTH / 2, HEIGHT / 2));
+    assertAllocationFree("compress", COMPRESSION_BYTES_PER_PIXEL,
+        () -> new ImageCompression().compress(50, "allocSource", "allocOut"));
+  }
+}
@@ -0,0 +1,169 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+
+import model.imagerepresentation.ChannelView;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Pixel;
+import model.transformations.classes.CombineChannels;
+import model.transformations.classes.ComponentVisualization;
+import model.transformations.classes.Split;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing the planar layout and channel views of Image.
+ */
+public class ChannelViewTest {
+
+  private Image planar;
+
+  @Before
+  public void setUp() {
+    planar = new Image(2, 2, Image.Layout.PLANAR);
+    planar.setPixel(0, 0, new Pixel(10, 20, 30));
+    planar.setPixel(1, 0, new Pixel(40, 50, 60));
+    planar.setPixel(0, 1, new Pixel(70, 80, 90));
+    planar.setPixel(1, 1, new Pixel(100, 110, 120));
+  }
+
+  @Test
+  public void testPlanarImageStoresPixels() {
+    assertEquals(Image.Layout.PLANAR, planar.getLayout());
+    assertEquals(new Pixel(40, 50, 60), planar.getPixel(1, 0));
+    assertEquals(0x646E78, planar.getRGB(1, 1));
+  }
+
+  @Test
+  public void testChannelViewReadsChannel() {
+    ChannelView green = planar.getChannel(Image.Channel.GREEN);
+    assertEquals(2, green.getWidth());
+    assertEquals(2, green.getHeight());
+    assertEquals(20, green.get(0, 0));
+    assertEquals(110, green.get(1, 1));
+  }
+
+  @Test
+  public void testChannelViewOfPackedImage() {
+    Image packed = new Image(1, 1);
+    packed.setPixel(0, 0, new Pixel(1, 2, 3));
+    assertEquals(3, packed.getChannel(Image.Channel.BLUE).get(0, 0));
+  }
+
+  @Test
+  public void testFromChannelsCombinesViews() {
+    ChannelView red = planar.getChannel(Image.Channel.RED);
+    ChannelView blue = planar.getChannel(Image.Channel.BLUE);
+    Image result = Image.fromChannels(blue, red, red);
+    assertEquals(new Pixel(30, 10, 10), result.getPixel(0, 0));
+    assertEquals(new Pixel(120, 100, 100), result.getPixel(1, 1));
+  }
+
+  @Test
+  public void testWritingSharedPlaneLeavesSourceUnchanged() {
+    ChannelView red = planar.getChannel(Image.Channel.RED);
+    Image alias = Image.fromChannels(red, red, red);
+    alias.setPixel(0, 0, new Pixel(255, 255, 255));
+
+    assertEquals(new Pixel(10, 20, 30), planar.getPixel(0, 0));
+    assertEquals(new Pixel(255, 255, 255), alias.getPixel(0, 0));
+    assertEquals(new Pixel(40, 40, 40), alias.getPixel(1, 0));
+  }
+
+  @Test
+  public void testWritingSourceLeavesAliasUnchanged() {
+    ChannelView red = planar.getChannel(Image.Channel.RED);
+    Image alias = Image.fromChannels(red, red, red);
+    planar.setPixel(0, 0, new Pixel(0, 0, 0));
+
+    assertEquals(new Pixel(10, 10, 10), alias.getPixel(0, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFromChannelsRejectsDifferentSizes() {
+    Image other = new Image(3, 3, Image.Layout.PLANAR);
+    Image.fromChannels(planar.getChannel(Image.Channel.RED),
+        other.getChannel(Image.Channel.GREEN), planar.getChannel(Image.Channel.BLUE));
+  }
+
+  @Test
+  public void testSplitAndCombineRoundTripOnPlanarImage() {
+    ImageOperations opn = new ImageOperations();
+    opn.saveImage("planarSource", planar);
+    new Split().rgbSplit("planarSource", "planarRed", "planarGreen", "planarBlue");
+    new CombineChannels().rgbCombine("planarCombined", "planarRed", "planarGreen", "planarBlue");
+
+    assertEquals(new Pixel(70, 70, 70), opn.getImage("planarRed").getPixel(0, 1));
+    Image combined = opn.getImage("planarCombined");
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 2; x++) {
+        assertEquals(planar.getPixel(x, y), combined.getPixel(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testComponentOfPackedImage() {
+    Image packed = new Image(2, 1);
+    packed.setPixel(0, 0, new Pixel(5, 6, 7));
+    packed.setPixel(1, 0, new Pixel(8, 9, 10));
+    ImageOperations opn = new ImageOperations();
+    opn.saveImage("packedSource", packed);
+    new ComponentVisualization().greenComponent("packedSource", "packedGreen");
+
+    Image green = opn.getImage("packedGreen");
+    assertEquals(new Pixel(6, 6, 6), green.getPixel(0, 0));
+    assertEquals(new Pixel(9, 9, 9), green.getPixel(1, 0));
+  }
+
+  @Test
+  public void testWritingAliasedPlaneOfPackedViewKeepsChannels() {
+    Image packed = new Image(2, 1);
+    packed.setRGB(0, 0, 0x405060);
+    ChannelView red = packed.getChannel(Image.Channel.RED);
+    Image grey = Image.fromChannels(red, red, red);
+    grey.setRGB(1, 0, 0x112233);
+    assertEquals(0x404040, grey.getRGB(0, 0));
+    assertEquals(0x112233, grey.getRGB(1, 0));
+  }
+
+  @Test
+  public void testWritingComponentOfPackedImageKeepsChannels() {
+    Image packed = new Image(2, 1);
+    packed.setRGB(0, 0, 0x405060);
+    packed.setRGB(1, 0, 0x708090);
+    ImageOperations opn = new ImageOperations();
+    opn.saveImage("packedSource", packed);
+    new ComponentVisualization().redComponent("packedSource", "packedRed");
+
+    Image red = opn.getImage("packedRed");
+    assertEquals(Image.Layout.PACKED, red.getLayout());
+    red.setRGB(0, 0, 0x112233);
+    assertEquals(0x112233, red.getRGB(0, 0));
+    assertEquals(0x707070, red.getRGB(1, 0));
+  }
+
+  @Test
+  public void testWritingSplitOfPackedImageKeepsChannels() {
+    Image packed = new Image(2, 1);
+    packed.setRGB(0, 0, 0x405060);
+    packed.setRGB(1, 0, 0x708090);
+    ImageOperations opn = new ImageOperations();
+    opn.saveImage("packedSource", packed);
+    new Split().rgbSplit("packedSource", "r", "g", "b");
+    assertEquals(0x909090, opn.getImage("b").getRGB(1, 0));
+
+    for (String name : new String[]{"r", "g", "b"}) {
+      Image channel = opn.getImage(name);
+      assertEquals(Image.Layout.PACKED, channel.getLayout());
+      channel.setRGB(0, 0, 0x112233);
+      assertEquals(0x112233, channel.getRGB(0, 0));
+    }
+    new CombineChannels().rgbCombine("combined", "r", "g", "b");
+    Image combined = opn.getImage("combined");
+    assertEquals(Image.Layout.PACKED, combined.getLayout());
+    assertEquals(0x112233, combined.getRGB(0, 0));
+    assertEquals(0x708090, combined.getRGB(1, 0));
+  }
+}
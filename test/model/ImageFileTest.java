@@ -0,0 +1,209 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import controller.ImageLoader;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageFile;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Workspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing the native image file format, its mapped reads and saved sessions.
+ */
+public class ImageFileTest {
+
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("image-file");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private static Image image(int width, int height, Image.Layout layout) {
+    Image image = new Image(width, height, layout);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 7) << 16 | (y * 3) << 8 | (x + y) & 0xFF);
+      }
+    }
+    return image;
+  }
+
+  private static void assertSamePixels(Image expected, Image actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    int[] expectedRow = new int[expected.getWidth()];
+    int[] actualRow = new int[expected.getWidth()];
+    for (int y = 0; y < expected.getHeight(); y++) {
+      expected.readRow(y, expectedRow);
+      actual.readRow(y, actualRow);
+      assertArrayEquals("row " + y, expectedRow, actualRow);
+    }
+  }
+
+  @Test
+  public void testRawFilesAreMapped() throws IOException {
+    for (Image.Layout layout : new Image.Layout[]{Image.Layout.PACKED, Image.Layout.PLANAR,
+        Image.Layout.TILED}) {
+      Image image = image(37, 23, layout);
+      Path file = dir.resolve(layout + ".img");
+      ImageFile.write(file, image, false);
+
+      Image mapped = ImageFile.map(file);
+      assertEquals(Image.Layout.MAPPED, mapped.getLayout());
+      assertSamePixels(image, mapped);
+      Image read = ImageFile.read(file);
+      assertEquals(layout, read.getLayout());
+      assertSamePixels(image, read);
+    }
+  }
+
+  @Test
+  public void testCompressedFilesAreInflated() throws IOException {
+    for (Image.Layout layout : new Image.Layout[]{Image.Layout.PACKED, Image.Layout.PLANAR}) {
+      // Several tiles, with partial ones on the right and at the bottom
+      Image image = image(600, 300, layout);
+      Path file = dir.resolve(layout + ".img");
+      ImageFile.write(file, image, true);
+
+      assertTrue(Files.size(file) < 600 * 300 * 3);
+      Image read = ImageFile.map(file);
+      assertEquals(layout, read.getLayout());
+      assertSamePixels(image, read);
+    }
+  }
+
+  @Test
+  public void testMappedImageSpanningChunks() throws IOException {
+    Image image = image(4096, 1100, Image.Layout.PACKED);
+    Path file = dir.resolve("large.img");
+    ImageFile.write(file, image, false);
+    assertSamePixels(image, ImageFile.map(file));
+  }
+
+  @Test
+  public void testWritesToMappedImageLeaveFileUnchanged() throws IOException {
+    Image image = image(10, 10, Image.Layout.PACKED);
+    Path file = dir.resolve("image.img");
+    ImageFile.write(file, image, false);
+
+    Image mapped = ImageFile.map(file);
+    mapped.setRGB(3, 4, 0xABCDEF);
+    assertEquals(0xABCDEF, mapped.getRGB(3, 4));
+    assertEquals(image.getRGB(3, 5), mapped.getRGB(3, 5));
+    assertSamePixels(image, ImageFile.map(file));
+
+    mapped.fill(0x010203);
+    assertEquals(0x010203, mapped.getRGB(9, 9));
+    assertSamePixels(image, ImageFile.map(file));
+  }
+
+  @Test
+  public void testOverwritingKeepsMappedImageValid() throws IOException {
+    Image first = image(10, 10, Image.Layout.PACKED);
+    Path file = dir.resolve("image.img");
+    ImageFile.write(file, first, false);
+    Image mapped = ImageFile.map(file);
+
+    ImageFile.write(file, new Image(2, 2), false);
+    assertSamePixels(first, mapped);
+    assertEquals(2, ImageFile.map(file).getWidth());
+  }
+
+  @Test
+  public void testDerivedImagesAreOnHeap() throws IOException {
+    Path file = dir.resolve("image.img");
+    ImageFile.write(file, image(4, 4, Image.Layout.PACKED), false);
+    Image mapped = ImageFile.map(file);
+    ImageOperations opn = new ImageOperations(new Workspace());
+    assertEquals(Image.Layout.PACKED, mapped.createCompatibleImage(2, 2).getLayout());
+    assertEquals(Image.Layout.PACKED, opn.createDestination(mapped, 2, 2).getLayout());
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedFile() throws IOException {
+    Path file = dir.resolve("image.img");
+    ImageFile.write(file, image(20, 20, Image.Layout.PACKED), false);
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+    ImageFile.map(file);
+  }
+
+  @Test(expected = IOException.class)
+  public void testNotAnImageFile() throws IOException {
+    Path file = dir.resolve("image.img");
+    Files.write(file, new byte[64]);
+    ImageFile.map(file);
+  }
+
+  @Test
+  public void testSessionRoundTrip() throws IOException {
+    ImageOperations saved = new ImageOperations(new Workspace());
+    Image shared = image(30, 20, Image.Layout.PACKED);
+    Image planar = image(8, 9, Image.Layout.PLANAR);
+    saved.saveImage("first", shared);
+    saved.saveImage("alias", shared);
+    saved.saveImage("planar", planar);
+    saved.saveSession(dir, false);
+
+    ImageOperations restored = new ImageOperations(new Workspace());
+    List<String> names = restored.loadSession(dir);
+    assertEquals(3, names.size());
+    assertSame(restored.getImage("first"), restored.getImage("alias"));
+    assertSamePixels(shared, restored.getImage("first"));
+    assertSamePixels(planar, restored.getImage("planar"));
+    assertEquals(0, restored.getResidentBytes());
+  }
+
+  @Test
+  public void testSavingSessionAgainDropsStaleFiles() throws IOException {
+    ImageOperations opn = new ImageOperations(new Workspace());
+    opn.saveImage("first", image(5, 5, Image.Layout.PACKED));
+    opn.saveImage("second", image(6, 6, Image.Layout.PACKED));
+    opn.saveSession(dir, true);
+    opn.removeImage("second");
+    opn.saveSession(dir, true);
+
+    try (Stream<Path> files = Files.list(dir)) {
+      assertEquals(2, files.count());
+    }
+    ImageOperations restored = new ImageOperations(new Workspace());
+    assertEquals(Arrays.asList("first"), restored.loadSession(dir));
+  }
+
+  @Test
+  public void testLoaderSavesAndLoadsImgFiles() {
+    Image image = image(20, 10, Image.Layout.PACKED);
+    String file = dir.resolve("image.img").toString();
+    ImageLoader loader = new ImageLoader();
+    loader.saveImage(file, image);
+
+    assertSamePixels(image, loader.loadImage(file));
+    Image part = loader.loadImage(file, new Rectangle(4, 2, 10, 10), 2);
+    assertEquals(5, part.getWidth());
+    assertEquals(4, part.getHeight());
+    assertEquals(image.getRGB(6, 4), part.getRGB(1, 1));
+  }
+}
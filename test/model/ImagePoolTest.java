@@ -0,0 +1,126 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.ImagePool;
+import model.imagerepresentation.OffHeapArena;
+import model.transformations.classes.ColorTransformation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing the ImagePool and its use by the transformations.
+ */
+public class ImagePoolTest {
+
+  private ImagePool pool;
+  private ImageOperations opn;
+
+  @Before
+  public void setUp() {
+    pool = new ImagePool(1000);
+    opn = new ImageOperations();
+  }
+
+  @After
+  public void tearDown() {
+    opn.setImagePool(null);
+  }
+
+  @Test
+  public void testReleasedImageIsReused() {
+    Image first = pool.acquire(10, 10, Image.Layout.PACKED);
+    assertEquals(0, pool.getHits());
+    assertEquals(1, pool.getMisses());
+
+    assertTrue(pool.release(first));
+    assertEquals(400, pool.getPooledBytes());
+    assertSame(first, pool.acquire(10, 10, Image.Layout.PACKED));
+    assertEquals(1, pool.getHits());
+    assertEquals(0, pool.getPooledBytes());
+  }
+
+  @Test
+  public void testImagesAreKeyedBySizeAndLayout() {
+    pool.release(new Image(10, 10));
+    Image planar = pool.acquire(10, 10, Image.Layout.PLANAR);
+    assertEquals(Image.Layout.PLANAR, planar.getLayout());
+    Image wider = pool.acquire(20, 5, Image.Layout.PACKED);
+    assertEquals(20, wider.getWidth());
+    assertEquals(0, pool.getHits());
+    assertEquals(2, pool.getMisses());
+  }
+
+  @Test
+  public void testByteCap() {
+    assertTrue(pool.release(new Image(10, 10)));
+    assertTrue(pool.release(new Image(10, 10)));
+    assertFalse(pool.release(new Image(20, 20)));
+    assertEquals(800, pool.getPooledBytes());
+
+    pool.clear();
+    assertEquals(0, pool.getPooledBytes());
+    assertFalse(new ImagePool(0).release(new Image(1, 1)));
+  }
+
+  @Test
+  public void testDoubleReleaseIsIgnored() {
+    Image image = new Image(10, 10);
+    assertTrue(pool.release(image));
+    assertFalse(pool.release(image));
+    assertSame(image, pool.acquire(10, 10, Image.Layout.PACKED));
+    assertNotSame(image, pool.acquire(10, 10, Image.Layout.PACKED));
+  }
+
+  @Test
+  public void testOffHeapImagesAreNotPooled() {
+    try (OffHeapArena arena = new OffHeapArena()) {
+      assertFalse(pool.release(arena.allocate(2, 2)));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeCap() {
+    new ImagePool(-1);
+  }
+
+  @Test
+  public void testTransformationsTakeDestinationsFromPool() {
+    Image source = new Image(5, 4);
+    source.fill(0x808080);
+    opn.saveImage("poolSource", source);
+    opn.setImagePool(pool);
+
+    Image recycled = new Image(5, 4);
+    recycled.fill(0xFF0000);
+    pool.release(recycled);
+    new ColorTransformation().sepia("poolSource", "poolSepia", 100);
+
+    Image result = opn.getImage("poolSepia");
+    assertSame(recycled, result);
+    assertEquals(1, pool.getHits());
+    // Every pixel was overwritten, none of the recycled red is left
+    for (int y = 0; y < 4; y++) {
+      for (int x = 0; x < 5; x++) {
+        assertTrue(result.getRGB(x, y) != 0xFF0000);
+      }
+    }
+    assertEquals(0xAC9977, result.getRGB(0, 0));
+  }
+
+  @Test
+  public void testRemoveImage() {
+    Image image = new Image(1, 1);
+    opn.saveImage("poolRemoved", image);
+    assertSame(image, opn.removeImage("poolRemoved"));
+    assertNull(opn.removeImage("poolRemoved"));
+  }
+}
@@ -0,0 +1,154 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.OffHeapArena;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing the memory budget of ImageOperations and its spilling to disk.
+ */
+public class ImageStoreTest {
+
+  // Room for two 100x100 packed images but not three
+  private static final long BUDGET = 100_000;
+  private static final long IMAGE_BYTES = 100 * 100 * 4;
+
+  private ImageOperations opn;
+  private long spills;
+  private long reloads;
+
+  @Before
+  public void setUp() {
+    opn = new ImageOperations();
+    // Spill whatever other tests left behind so the resident bytes start from zero
+    opn.setMemoryBudget(0);
+    opn.setMemoryBudget(BUDGET);
+    spills = opn.getSpillCount();
+    reloads = opn.getReloadCount();
+  }
+
+  @After
+  public void tearDown() {
+    opn.setMemoryBudget(Long.MAX_VALUE);
+  }
+
+  private static Image image(int seed) {
+    Image image = new Image(100, 100);
+    for (int y = 0; y < 100; y++) {
+      for (int x = 0; x < 100; x++) {
+        image.setRGB(x, y, seed * 0x010101 + x * 0x100 + y);
+      }
+    }
+    return image;
+  }
+
+  @Test
+  public void testLeastRecentlyUsedImageIsSpilled() {
+    opn.saveImage("storeFirst", image(1));
+    opn.saveImage("storeSecond", image(2));
+    assertEquals(2 * IMAGE_BYTES, opn.getResidentBytes());
+    assertEquals(spills, opn.getSpillCount());
+
+    // Using the first image makes the second one the least recently used
+    opn.getImage("storeFirst");
+    Image third = image(3);
+    opn.saveImage("storeThird", third);
+    assertEquals(spills + 1, opn.getSpillCount());
+    assertEquals(2 * IMAGE_BYTES, opn.getResidentBytes());
+    assertSame(third, opn.getImage("storeThird"));
+    assertEquals(reloads, opn.getReloadCount());
+  }
+
+  @Test
+  public void testSpilledImageIsReloadedTransparently() {
+    Image first = image(1);
+    opn.saveImage("storeFirst", first);
+    opn.saveImage("storeSecond", image(2));
+    opn.saveImage("storeThird", image(3));
+
+    Image reloaded = opn.getImage("storeFirst");
+    assertNotSame(first, reloaded);
+    assertEquals(reloads + 1, opn.getReloadCount());
+    for (int y = 0; y < 100; y++) {
+      for (int x = 0; x < 100; x++) {
+        assertEquals(first.getRGB(x, y), reloaded.getRGB(x, y));
+      }
+    }
+    // Reloading pushed the least recently used of the others out
+    assertEquals(spills + 2, opn.getSpillCount());
+    assertEquals(2 * IMAGE_BYTES, opn.getResidentBytes());
+  }
+
+  @Test
+  public void testLayoutSurvivesSpill() {
+    Image planar = new Image(100, 100, Image.Layout.PLANAR);
+    planar.setRGB(5, 6, 0x123456);
+    opn.saveImage("storePlanar", planar);
+    opn.setMemoryBudget(0);
+    opn.setMemoryBudget(BUDGET);
+
+    Image reloaded = opn.getImage("storePlanar");
+    assertEquals(Image.Layout.PLANAR, reloaded.getLayout());
+    assertEquals(0x123456, reloaded.getRGB(5, 6));
+    assertEquals(0, reloaded.getRGB(6, 5));
+  }
+
+  @Test
+  public void testImageUnderTwoNamesCountsOnce() {
+    Image shared = image(1);
+    opn.saveImage("storeFirst", shared);
+    opn.saveImage("storeAlias", shared);
+    assertEquals(IMAGE_BYTES, opn.getResidentBytes());
+
+    opn.removeImage("storeFirst");
+    assertEquals(IMAGE_BYTES, opn.getResidentBytes());
+    opn.removeImage("storeAlias");
+    assertEquals(0, opn.getResidentBytes());
+  }
+
+  @Test
+  public void testReplacingAndRemovingReleaseBytes() {
+    opn.saveImage("storeFirst", image(1));
+    opn.saveImage("storeFirst", new Image(10, 10));
+    assertEquals(400, opn.getResidentBytes());
+
+    opn.saveImage("storeSecond", image(2));
+    opn.saveImage("storeThird", image(3));
+    opn.saveImage("storeFourth", image(4));
+    assertNull(opn.removeImage("storeSecond"));
+    opn.removeImage("storeThird");
+    opn.removeImage("storeFourth");
+    opn.removeImage("storeFirst");
+    assertEquals(0, opn.getResidentBytes());
+  }
+
+  @Test
+  public void testSingleImageLargerThanBudgetStaysResident() {
+    Image large = new Image(200, 200);
+    opn.saveImage("storeLarge", large);
+    assertSame(large, opn.getImage("storeLarge"));
+    assertEquals(spills, opn.getSpillCount());
+  }
+
+  @Test
+  public void testOffHeapImagesAreNotCounted() {
+    try (OffHeapArena arena = new OffHeapArena()) {
+      opn.saveImage("storeOffHeap", arena.allocate(1000, 1000));
+      assertEquals(0, opn.getResidentBytes());
+      opn.removeImage("storeOffHeap");
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeBudget() {
+    opn.setMemoryBudget(-1);
+  }
+}
@@ -0,0 +1,243 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+
+import controller.ImageLoader;
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import model.imagerepresentation.Image;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing ASCII PPM (P3), binary PPM (P6) and PGM (P5) loading and saving, and
+ * loading part of an image.
+ */
+public class NetpbmTest {
+
+  private ImageLoader imageLoader;
+  private Path ppm;
+  private Path pgm;
+
+  @Before
+  public void setUp() throws IOException {
+    imageLoader = new ImageLoader();
+    ppm = Files.createTempFile("netpbm", ".ppm");
+    pgm = Files.createTempFile("netpbm", ".pgm");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(ppm);
+    Files.deleteIfExists(pgm);
+  }
+
+  private static Image gradient(int width, int height) {
+    Image image = new Image(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, (x * 5) << 16 | (y * 3) << 8 | (x + y) & 0xFF);
+      }
+    }
+    return image;
+  }
+
+  private void writeFile(Path path, String header, int... samples) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write(header.getBytes(StandardCharsets.US_ASCII));
+    for (int sample : samples) {
+      bytes.write(sample);
+    }
+    Files.write(path, bytes.toByteArray());
+  }
+
+  @Test
+  public void testBinaryPpmRoundTrip() throws IOException {
+    Image image = gradient(37, 21);
+    imageLoader.setBinaryPpm(true);
+    imageLoader.saveImage(ppm.toString(), image);
+
+    byte[] bytes = Files.readAllBytes(ppm);
+    String header = "P6\n37 21\n255\n";
+    assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII));
+    assertEquals(header.length() + 37 * 21 * 3, bytes.length);
+
+    Image loaded = imageLoader.loadImage(ppm.toString());
+    for (int y = 0; y < 21; y++) {
+      for (int x = 0; x < 37; x++) {
+        assertEquals(image.getRGB(x, y), loaded.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testRowsLargerThanBuffer() throws IOException {
+    Image image = gradient(30000, 3);
+    imageLoader.setBinaryPpm(true);
+    imageLoader.saveImage(ppm.toString(), image);
+    Image loaded = imageLoader.loadImage(ppm.toString());
+    assertEquals(image.getRGB(29999, 2), loaded.getRGB(29999, 2));
+    assertEquals(image.getRGB(12345, 1), loaded.getRGB(12345, 1));
+  }
+
+  @Test
+  public void testAsciiPpmIsStillTheDefault() throws IOException {
+    imageLoader.saveImage(ppm.toString(), gradient(2, 2));
+    assertEquals("P3", Files.readAllLines(ppm).get(0));
+    assertEquals(gradient(2, 2).getRGB(1, 1), imageLoader.loadImage(ppm.toString()).getRGB(1, 1));
+  }
+
+  @Test
+  public void testPgmRoundTrip() throws IOException {
+    Image grey = new Image(3, 2);
+    grey.setRGB(0, 0, 0x000000);
+    grey.setRGB(1, 0, 0x808080);
+    grey.setRGB(2, 1, 0xFFFFFF);
+    imageLoader.saveImage(pgm.toString(), grey);
+    assertEquals(3 * 2 + "P5\n3 2\n255\n".length(), Files.size(pgm));
+
+    Image loaded = imageLoader.loadImage(pgm.toString());
+    assertEquals(0x808080, loaded.getRGB(1, 0));
+    assertEquals(0xFFFFFF, loaded.getRGB(2, 1));
+  }
+
+  @Test
+  public void testHeaderCommentsAndScaling() throws IOException {
+    writeFile(ppm, "P6 # binary\n# size follows\n2 1\n# max\n15\n", 15, 0, 5, 0, 15, 0);
+    Image loaded = imageLoader.loadImage(ppm.toString());
+    assertEquals(0xFF0055, loaded.getRGB(0, 0));
+    assertEquals(0x00FF00, loaded.getRGB(1, 0));
+  }
+
+  @Test
+  public void testTwoByteSamples() throws IOException {
+    writeFile(pgm, "P5\n1 1\n65535\n", 0x80, 0x00);
+    assertEquals(0x7F7F7F, imageLoader.loadImage(pgm.toString()).getRGB(0, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedFile() throws IOException {
+    writeFile(ppm, "P6\n2 2\n255\n", 1, 2, 3, 4, 5, 6);
+    imageLoader.loadImage(ppm.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadHeader() throws IOException {
+    writeFile(ppm, "P6\n2 x\n255\n", 1, 2, 3);
+    imageLoader.loadImage(ppm.toString());
+  }
+
+  @Test
+  public void testAsciiRoundTrip() throws IOException {
+    Image image = gradient(53, 17);
+    imageLoader.saveImage(ppm.toString(), image);
+    Image loaded = imageLoader.loadImage(ppm.toString());
+    for (int y = 0; y < 17; y++) {
+      for (int x = 0; x < 53; x++) {
+        assertEquals(image.getRGB(x, y), loaded.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testAsciiCommentsAnywhere() throws IOException {
+    Files.write(ppm, ("P3 # one-line header\n2 1 255#max\n"
+        + "# first pixel\n10 20\n30 # half a pixel\n\n40\t50 60\n").getBytes(
+        StandardCharsets.US_ASCII));
+    Image loaded = imageLoader.loadImage(ppm.toString());
+    assertEquals(0x0A141E, loaded.getRGB(0, 0));
+    assertEquals(0x28323C, loaded.getRGB(1, 0));
+  }
+
+  @Test
+  public void testAsciiScalingAndClamping() throws IOException {
+    Files.write(ppm, "P3\n2 1\n15\n15 0 5 99 15 0\n".getBytes(StandardCharsets.US_ASCII));
+    Image loaded = imageLoader.loadImage(ppm.toString());
+    assertEquals(0xFF0055, loaded.getRGB(0, 0));
+    assertEquals(0xFFFF00, loaded.getRGB(1, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAsciiTruncated() throws IOException {
+    Files.write(ppm, "P3\n2 2\n255\n1 2 3 4 5 6\n".getBytes(StandardCharsets.US_ASCII));
+    imageLoader.loadImage(ppm.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAsciiBadValue() throws IOException {
+    Files.write(ppm, "P3\n1 1\n255\n1 2x 3\n".getBytes(StandardCharsets.US_ASCII));
+    imageLoader.loadImage(ppm.toString());
+  }
+
+  private void assertRegion(Image full, Image part, int x, int y, int step) {
+    for (int j = 0; j < part.getHeight(); j++) {
+      for (int i = 0; i < part.getWidth(); i++) {
+        assertEquals(full.getRGB(x + i * step, y + j * step), part.getRGB(i, j));
+      }
+    }
+  }
+
+  @Test
+  public void testCropAndSubsampleEveryFormat() throws IOException {
+    Image image = gradient(41, 29);
+    for (int kind = 0; kind < 3; kind++) {
+      Path path = kind == 2 ? pgm : ppm;
+      imageLoader.setBinaryPpm(kind == 1);
+      imageLoader.saveImage(path.toString(), image);
+      Image full = imageLoader.loadImage(path.toString());
+
+      Image part = imageLoader.loadImage(path.toString(), new Rectangle(5, 7, 20, 13), 3);
+      assertEquals(7, part.getWidth());
+      assertEquals(5, part.getHeight());
+      assertRegion(full, part, 5, 7, 3);
+
+      Image sampled = imageLoader.loadImage(path.toString(), null, 4);
+      assertEquals(11, sampled.getWidth());
+      assertEquals(8, sampled.getHeight());
+      assertRegion(full, sampled, 0, 0, 4);
+    }
+  }
+
+  @Test
+  public void testCropIsClippedToTheImage() throws IOException {
+    imageLoader.setBinaryPpm(true);
+    Image image = gradient(10, 10);
+    imageLoader.saveImage(ppm.toString(), image);
+    Image part = imageLoader.loadImage(ppm.toString(), new Rectangle(6, 8, 100, 100), 1);
+    assertEquals(4, part.getWidth());
+    assertEquals(2, part.getHeight());
+    assertRegion(image, part, 6, 8, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCropOutsideTheImage() throws IOException {
+    imageLoader.saveImage(ppm.toString(), gradient(10, 10));
+    imageLoader.loadImage(ppm.toString(), new Rectangle(10, 0, 5, 5), 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCropPastTruncatedData() throws IOException {
+    writeFile(ppm, "P6\n2 4\n255\n", 1, 2, 3, 4, 5, 6);
+    imageLoader.loadImage(ppm.toString(), new Rectangle(0, 3, 2, 1), 1);
+  }
+
+  @Test
+  public void testCropAndSubsampleThroughImageIo() throws IOException {
+    Image image = gradient(41, 29);
+    Path png = Files.createTempFile("netpbm", ".png");
+    try {
+      imageLoader.saveImage(png.toString(), image);
+      Image part = imageLoader.loadImage(png.toString(), new Rectangle(5, 7, 20, 13), 3);
+      assertEquals(7, part.getWidth());
+      assertEquals(5, part.getHeight());
+      assertRegion(image, part, 5, 7, 3);
+    } finally {
+      Files.delete(png);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.OffHeapArena;
+import model.imagerepresentation.Pixel;
+import model.transformations.classes.ColorTransformation;
+import model.transformations.classes.ComponentVisualization;
+import model.transformations.classes.Filtering;
+import model.transformations.classes.Flipping;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing images allocated off the Java heap.
+ */
+public class OffHeapImageTest {
+
+  private OffHeapArena arena;
+  private ImageOperations opn;
+
+  @Before
+  public void setUp() {
+    // Small chunks so that the test images span several native buffers
+    arena = new OffHeapArena(64);
+    opn = new ImageOperations();
+  }
+
+  @After
+  public void tearDown() {
+    arena.close();
+  }
+
+  private static void fill(Image image) {
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        image.setRGB(x, y, (x * 40) << 16 | (y * 20) << 8 | (x + y) * 10);
+      }
+    }
+  }
+
+  @Test
+  public void testSetAndGetAcrossChunks() {
+    Image image = arena.allocate(5, 7);
+    assertEquals(Image.Layout.OFF_HEAP, image.getLayout());
+    fill(image);
+    assertEquals(new Pixel(160, 120, 100), image.getPixel(4, 6));
+    assertEquals(new Pixel(0, 0, 0), image.getPixel(0, 0));
+    assertEquals(5 * 7 * 3, arena.getAllocatedBytes());
+  }
+
+  @Test
+  public void testTransformationsMatchHeapImage() {
+    Image offHeap = arena.allocate(6, 5);
+    Image onHeap = new Image(6, 5);
+    fill(offHeap);
+    fill(onHeap);
+    opn.saveImage("offHeapSource", offHeap);
+    opn.saveImage("onHeapSource", onHeap);
+
+    new Filtering().blur("offHeapSource", "offHeapBlur", 100);
+    new Filtering().blur("onHeapSource", "onHeapBlur", 100);
+    new ColorTransformation().sepia("offHeapSource", "offHeapSepia", 100);
+    new ColorTransformation().sepia("onHeapSource", "onHeapSepia", 100);
+    new Flipping().horizontalFlip("offHeapSource", "offHeapFlip");
+    new Flipping().horizontalFlip("onHeapSource", "onHeapFlip");
+    new ComponentVisualization().redComponent("offHeapSource", "offHeapRed");
+    new ComponentVisualization().redComponent("onHeapSource", "onHeapRed");
+
+    for (String op : new String[]{"Blur", "Sepia", "Flip", "Red"}) {
+      Image expected = opn.getImage("onHeap" + op);
+      Image actual = opn.getImage("offHeap" + op);
+      assertEquals(Image.Layout.OFF_HEAP, actual.getLayout());
+      for (int y = 0; y < expected.getHeight(); y++) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+          assertEquals(op + " at (" + x + "," + y + ")", expected.getRGB(x, y),
+              actual.getRGB(x, y));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCloseReleasesImages() {
+    Image image = arena.allocate(2, 2);
+    Image derived = image.createCompatibleImage(3, 3);
+    arena.close();
+    assertEquals(0, arena.getAllocatedBytes());
+    try {
+      image.getRGB(0, 0);
+      fail("Expected released image to be unusable");
+    } catch (IllegalStateException e) {
+      assertEquals("Image memory has already been released", e.getMessage());
+    }
+    try {
+      derived.setRGB(0, 0, 1);
+      fail("Expected released image to be unusable");
+    } catch (IllegalStateException e) {
+      assertEquals("Image memory has already been released", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testFreeSingleImage() {
+    Image first = arena.allocate(2, 2);
+    Image second = arena.allocate(4, 4);
+    arena.free(first);
+    assertEquals(4 * 4 * 3, arena.getAllocatedBytes());
+    second.setRGB(3, 3, 0x123456);
+    assertEquals(0x123456, second.getRGB(3, 3));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAllocateAfterClose() {
+    arena.close();
+    arena.allocate(1, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOffHeapLayoutNeedsArena() {
+    new Image(2, 2, Image.Layout.OFF_HEAP);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRowLargerThanChunk() {
+    arena.allocate(100, 1);
+  }
+}
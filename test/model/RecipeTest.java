@@ -0,0 +1,187 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Recipe;
+import model.imagerepresentation.Workspace;
+import model.transformations.classes.BrightenDarken;
+import model.transformations.classes.Split;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing images stored as recipes and computed on demand.
+ */
+public class RecipeTest {
+
+  private Workspace workspace;
+  private ImageOperations opn;
+
+  @Before
+  public void setUp() {
+    workspace = new Workspace();
+    opn = new ImageOperations(workspace);
+    Image source = new Image(100, 100);
+    source.fill(0x101010);
+    opn.saveImage("source", source);
+  }
+
+  /**
+   * Brightens one image into another and counts how often it ran.
+   */
+  private final class Brighten implements Recipe {
+
+    private final String source;
+    private final String dest;
+    private int runs;
+
+    Brighten(String source, String dest) {
+      this.source = source;
+      this.dest = dest;
+    }
+
+    @Override
+    public List<String> getSources() {
+      return Collections.singletonList(source);
+    }
+
+    @Override
+    public List<String> getOutputs() {
+      return Collections.singletonList(dest);
+    }
+
+    @Override
+    public void apply() {
+      runs++;
+      new BrightenDarken(workspace).brighten(16, source, dest);
+    }
+  }
+
+  private Recipe splitRecipe() {
+    return new Recipe() {
+      @Override
+      public List<String> getSources() {
+        return Collections.singletonList("source");
+      }
+
+      @Override
+      public List<String> getOutputs() {
+        return Arrays.asList("red", "green", "blue");
+      }
+
+      @Override
+      public void apply() {
+        new Split(workspace).rgbSplit("source", "red", "green", "blue");
+      }
+    };
+  }
+
+  @Test
+  public void testRecipeRunsOnFirstRead() {
+    Brighten recipe = new Brighten("source", "bright");
+    opn.saveRecipe(recipe);
+    assertEquals(0, recipe.runs);
+    assertTrue(workspace.contains("bright"));
+
+    assertEquals(0x202020, opn.getImage("bright").getRGB(0, 0));
+    opn.getImage("bright");
+    assertEquals(1, recipe.runs);
+    assertEquals(1, opn.getMaterializeCount());
+  }
+
+  @Test
+  public void testUnreadRecipeCostsNothing() {
+    long resident = opn.getResidentBytes();
+    Brighten recipe = new Brighten("source", "unused");
+    opn.saveRecipe(recipe);
+    assertNull(opn.removeImage("unused"));
+    assertEquals(resident, opn.getResidentBytes());
+    assertEquals(0, recipe.runs);
+  }
+
+  @Test
+  public void testChainedRecipes() {
+    opn.saveRecipe(new Brighten("source", "once"));
+    opn.saveRecipe(new Brighten("once", "twice"));
+    assertEquals(0x303030, opn.getImage("twice").getRGB(5, 5));
+    assertEquals(2, opn.getMaterializeCount());
+  }
+
+  @Test
+  public void testReplacingSourceComputesDependentsFirst() {
+    Brighten recipe = new Brighten("source", "bright");
+    opn.saveRecipe(recipe);
+    opn.saveImage("source", new Image(100, 100));
+    assertEquals(1, recipe.runs);
+
+    // Computed from the source it was stored with
+    assertEquals(0x202020, opn.getImage("bright").getRGB(0, 0));
+  }
+
+  @Test
+  public void testRemovingSourceComputesDependentsFirst() {
+    opn.saveRecipe(new Brighten("source", "bright"));
+    opn.removeImage("source");
+    assertEquals(0x202020, opn.getImage("bright").getRGB(0, 0));
+  }
+
+  @Test
+  public void testOutputsAreRecomputedInsteadOfSpilled() {
+    Brighten recipe = new Brighten("source", "bright");
+    opn.saveRecipe(recipe);
+    opn.getImage("bright");
+    long spills = opn.getSpillCount();
+
+    // Room for one 100x100 image: the least recently used recipe output is dropped, not spilled
+    opn.getImage("source");
+    opn.setMemoryBudget(40_000);
+    assertEquals(40_000, opn.getResidentBytes());
+    assertEquals(spills, opn.getSpillCount());
+
+    assertEquals(0x202020, opn.getImage("bright").getRGB(99, 99));
+    assertEquals(2, recipe.runs);
+  }
+
+  @Test
+  public void testOneRunFillsAllOutputs() {
+    opn.saveRecipe(splitRecipe());
+    opn.getImage("green");
+    opn.getImage("red");
+    opn.getImage("blue");
+    assertEquals(1, opn.getMaterializeCount());
+  }
+
+  @Test
+  public void testOutputReplacedBeforeRunKeepsNewImage() {
+    opn.saveRecipe(splitRecipe());
+    Image mine = new Image(1, 1);
+    opn.saveImage("green", mine);
+    opn.getImage("red");
+    assertSame(mine, opn.getImage("green"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRecipeCannotReadItsOutput() {
+    opn.saveRecipe(new Brighten("source", "source"));
+  }
+
+  @Test
+  public void testFailingRecipeStaysLazy() {
+    opn.saveRecipe(new Brighten("missing", "bright"));
+    try {
+      opn.getImage("bright");
+    } catch (IllegalArgumentException e) {
+      assertTrue(workspace.contains("bright"));
+      return;
+    }
+    throw new AssertionError("Expected the recipe to fail");
+  }
+}
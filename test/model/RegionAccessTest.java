@@ -0,0 +1,133 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import model.imagerepresentation.Image;
+import model.imagerepresentation.OffHeapArena;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing the row and region accessors of Image in every layout.
+ */
+public class RegionAccessTest {
+
+  private OffHeapArena arena;
+  private Image[] images;
+
+  @Before
+  public void setUp() {
+    arena = new OffHeapArena(64);
+    images = new Image[]{new Image(7, 5), new Image(7, 5, Image.Layout.PLANAR),
+        new Image(7, 5, Image.Layout.TILED), arena.allocate(7, 5)};
+    for (Image image : images) {
+      for (int y = 0; y < 5; y++) {
+        for (int x = 0; x < 7; x++) {
+          image.setRGB(x, y, value(x, y));
+        }
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    arena.close();
+  }
+
+  private static int value(int x, int y) {
+    return (x * 30) << 16 | (y * 40) << 8 | (x + y);
+  }
+
+  @Test
+  public void testReadRow() {
+    int[] expected = new int[7];
+    for (int x = 0; x < 7; x++) {
+      expected[x] = value(x, 3);
+    }
+    for (Image image : images) {
+      int[] row = new int[7];
+      image.readRow(3, row);
+      assertArrayEquals(image.getLayout().toString(), expected, row);
+    }
+  }
+
+  @Test
+  public void testReadRegionWithOffsetAndScanline() {
+    for (Image image : images) {
+      int[] region = new int[1 + 2 * 4];
+      image.readRegion(4, 2, 3, 2, region, 1, 4);
+      assertArrayEquals(image.getLayout().toString(), new int[]{0, value(4, 2), value(5, 2),
+          value(6, 2), 0, value(4, 3), value(5, 3), value(6, 3), 0}, region);
+    }
+  }
+
+  @Test
+  public void testWriteRowMasksUpperByte() {
+    for (Image image : images) {
+      int[] row = new int[7];
+      for (int x = 0; x < 7; x++) {
+        row[x] = 0xFF000000 | (x * 10);
+      }
+      image.writeRow(1, row);
+      for (int x = 0; x < 7; x++) {
+        assertEquals(image.getLayout().toString(), x * 10, image.getRGB(x, 1));
+      }
+      assertEquals(value(0, 0), image.getRGB(0, 0));
+      assertEquals(value(0, 2), image.getRGB(0, 2));
+    }
+  }
+
+  @Test
+  public void testWriteRegionLeavesSurroundingPixels() {
+    for (Image image : images) {
+      image.writeRegion(1, 1, 2, 2, new int[]{1, 2, -1, 3, 4, -1}, 0, 3);
+      assertEquals(1, image.getRGB(1, 1));
+      assertEquals(2, image.getRGB(2, 1));
+      assertEquals(3, image.getRGB(1, 2));
+      assertEquals(4, image.getRGB(2, 2));
+      assertEquals(value(3, 1), image.getRGB(3, 1));
+      assertEquals(value(0, 2), image.getRGB(0, 2));
+    }
+  }
+
+  @Test
+  public void testTiledRegionWriteOfBackgroundAllocatesNothing() {
+    Image tiled = new Image(600, 300, Image.Layout.TILED);
+    long empty = tiled.getByteSize();
+    tiled.writeRow(10, new int[600]);
+    assertEquals(empty, tiled.getByteSize());
+
+    int[] row = new int[600];
+    row[599] = 0x010203;
+    tiled.writeRow(10, row);
+    assertEquals(2 * empty, tiled.getByteSize());
+    assertEquals(0x010203, tiled.getRGB(599, 10));
+  }
+
+  @Test(expected = ArrayIndexOutOfBoundsException.class)
+  public void testRegionOutsideImage() {
+    images[0].readRegion(5, 0, 3, 1, new int[3], 0, 3);
+  }
+
+  @Test(expected = ArrayIndexOutOfBoundsException.class)
+  public void testRowOutsideImage() {
+    images[0].readRow(5, new int[7]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testArrayTooSmall() {
+    images[0].readRow(0, new int[6]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testScanlineShorterThanRegion() {
+    images[0].writeRegion(0, 0, 3, 2, new int[6], 0, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullArray() {
+    images[0].writeRow(0, null);
+  }
+}
@@ -0,0 +1,110 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.Pixel;
+import model.transformations.classes.ColorTransformation;
+import model.transformations.classes.Filtering;
+import model.transformations.classes.Flipping;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing the tiled layout of Image.
+ */
+public class TiledImageTest {
+
+  private static final long TILE_BYTES = 256L * 256 * 4;
+
+  private Image tiled;
+  private ImageOperations opn;
+
+  @Before
+  public void setUp() {
+    // 3 x 2 tiles, the last column and row only partly covered
+    tiled = new Image(600, 300, Image.Layout.TILED);
+    opn = new ImageOperations();
+  }
+
+  @Test
+  public void testNewImageIsBlackAndSmall() {
+    assertEquals(Image.Layout.TILED, tiled.getLayout());
+    assertEquals(new Pixel(0, 0, 0), tiled.getPixel(599, 299));
+    assertEquals(TILE_BYTES, tiled.getByteSize());
+  }
+
+  @Test
+  public void testWritesAllocateOnlyTouchedTiles() {
+    tiled.setRGB(10, 10, 0);
+    assertEquals(TILE_BYTES, tiled.getByteSize());
+
+    tiled.setRGB(10, 10, 0x102030);
+    tiled.setRGB(20, 20, 0x405060);
+    tiled.setRGB(599, 299, 0xFFFFFF);
+    assertEquals(3 * TILE_BYTES, tiled.getByteSize());
+    assertEquals(0x102030, tiled.getRGB(10, 10));
+    assertEquals(0x405060, tiled.getRGB(20, 20));
+    assertEquals(0xFFFFFF, tiled.getRGB(599, 299));
+    assertEquals(0, tiled.getRGB(300, 10));
+  }
+
+  @Test
+  public void testFillResetsTiles() {
+    tiled.setRGB(10, 10, 0x102030);
+    tiled.setRGB(400, 10, 0x102030);
+    tiled.fill(0xABCDEF);
+    assertEquals(TILE_BYTES, tiled.getByteSize());
+    assertEquals(0xABCDEF, tiled.getRGB(10, 10));
+    assertEquals(0xABCDEF, tiled.getRGB(599, 299));
+
+    tiled.setRGB(0, 0, 0xABCDEF);
+    assertEquals(TILE_BYTES, tiled.getByteSize());
+  }
+
+  @Test
+  public void testFillOtherLayouts() {
+    for (Image.Layout layout : new Image.Layout[]{Image.Layout.PACKED, Image.Layout.PLANAR}) {
+      Image image = new Image(3, 2, layout);
+      image.fill(0x123456);
+      assertEquals(new Pixel(0x12, 0x34, 0x56), image.getPixel(2, 1));
+    }
+    assertEquals(3 * 2 * 4, new Image(3, 2).getByteSize());
+    assertEquals(3 * 2 * 3, new Image(3, 2, Image.Layout.PLANAR).getByteSize());
+  }
+
+  @Test
+  public void testTransformationsMatchPackedImage() {
+    Image packed = new Image(600, 300);
+    for (int y = 100; y < 140; y++) {
+      for (int x = 250; x < 290; x++) {
+        packed.setRGB(x, y, (x * 7) << 16 | (y * 3) << 8 | x + y);
+        tiled.setRGB(x, y, (x * 7) << 16 | (y * 3) << 8 | x + y);
+      }
+    }
+    opn.saveImage("tiledSource", tiled);
+    opn.saveImage("packedSource", packed);
+
+    new Filtering().blur("tiledSource", "tiledBlur", 100);
+    new Filtering().blur("packedSource", "packedBlur", 100);
+    new ColorTransformation().sepia("tiledSource", "tiledSepia", 100);
+    new ColorTransformation().sepia("packedSource", "packedSepia", 100);
+    new Flipping().verticalFlip("tiledSource", "tiledFlip");
+    new Flipping().verticalFlip("packedSource", "packedFlip");
+
+    for (String op : new String[]{"Blur", "Sepia", "Flip"}) {
+      Image expected = opn.getImage("packed" + op);
+      Image actual = opn.getImage("tiled" + op);
+      assertEquals(Image.Layout.TILED, actual.getLayout());
+      for (int y = 0; y < expected.getHeight(); y++) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+          assertEquals(op + " at (" + x + "," + y + ")", expected.getRGB(x, y),
+              actual.getRGB(x, y));
+        }
+      }
+    }
+    // Two tiles hold the square, plus the shared background tile
+    assertEquals(3 * TILE_BYTES, opn.getImage("tiledBlur").getByteSize());
+  }
+}
@@ -0,0 +1,146 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.imagerepresentation.Image;
+import model.imagerepresentation.ImageOperations;
+import model.imagerepresentation.ImagePool;
+import model.imagerepresentation.Workspace;
+import model.transformations.classes.BrightenDarken;
+import model.transformations.classes.Flipping;
+import org.junit.Test;
+
+/**
+ * A Junit4 class for testing that workspaces keep their images apart and update them atomically.
+ */
+public class WorkspaceTest {
+
+  @Test
+  public void testNamesAreScopedToWorkspace() {
+    Workspace first = new Workspace();
+    Workspace second = new Workspace();
+    Image firstImage = new Image(2, 2);
+    Image secondImage = new Image(3, 3);
+    new ImageOperations(first).saveImage("currentImage", firstImage);
+    new ImageOperations(second).saveImage("currentImage", secondImage);
+
+    assertSame(firstImage, new ImageOperations(first).getImage("currentImage"));
+    assertSame(secondImage, second.get("currentImage"));
+    assertNull(Workspace.shared().get("currentImage"));
+  }
+
+  @Test
+  public void testDefaultInstancesShareWorkspace() {
+    Image image = new Image(1, 1);
+    new ImageOperations().saveImage("workspaceShared", image);
+    assertSame(Workspace.shared(), new ImageOperations().getWorkspace());
+    assertSame(image, new ImageOperations().getImage("workspaceShared"));
+    new ImageOperations().removeImage("workspaceShared");
+  }
+
+  @Test
+  public void testTransformationsUseGivenWorkspace() {
+    Workspace workspace = new Workspace();
+    Image source = new Image(2, 1);
+    source.setRGB(0, 0, 0x102030);
+    workspace.put("source", source);
+
+    new Flipping(workspace).horizontalFlip("source", "flipped");
+    new BrightenDarken(workspace).brighten(10, "flipped", "brighter");
+
+    assertEquals(0x1A2A3A, workspace.get("brighter").getRGB(1, 0));
+    assertNull(Workspace.shared().get("brighter"));
+  }
+
+  @Test
+  public void testPoolIsPerWorkspace() {
+    Workspace workspace = new Workspace();
+    ImagePool pool = new ImagePool();
+    new ImageOperations(workspace).setImagePool(pool);
+    assertSame(pool, workspace.getImagePool());
+    assertNull(new ImageOperations(new Workspace()).getImagePool());
+  }
+
+  @Test
+  public void testPutIfAbsent() {
+    ImageOperations opn = new ImageOperations(new Workspace());
+    Image first = new Image(1, 1);
+    assertTrue(opn.saveImageIfAbsent("name", first));
+    assertFalse(opn.saveImageIfAbsent("name", new Image(1, 1)));
+    assertSame(first, opn.getImage("name"));
+  }
+
+  @Test
+  public void testReplaceOnlyExpectedImage() {
+    ImageOperations opn = new ImageOperations(new Workspace());
+    Image first = new Image(1, 1);
+    Image second = new Image(1, 1);
+    assertFalse(opn.replaceImage("name", null, first));
+    opn.saveImage("name", first);
+
+    assertFalse(opn.replaceImage("name", second, second));
+    assertTrue(opn.replaceImage("name", first, second));
+    assertSame(second, opn.getImage("name"));
+  }
+
+  @Test
+  public void testConcurrentPutIfAbsentHasOneWinner() throws Exception {
+    Workspace workspace = new Workspace();
+    AtomicInteger winners = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        futures.add(executor.submit(() -> {
+          if (workspace.putIfAbsent("race", new Image(1, 1))) {
+            winners.incrementAndGet();
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, winners.get());
+  }
+
+  @Test
+  public void testIndependentJobsRunInParallel() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int job = 0; job < 16; job++) {
+        int amount = job;
+        Callable<Integer> task = () -> {
+          Workspace workspace = new Workspace();
+          Image source = new Image(64, 64);
+          source.fill(0x404040);
+          workspace.put("currentImage", source);
+          new BrightenDarken(workspace).brighten(amount, "currentImage", "currentImage");
+          new Flipping(workspace).verticalFlip("currentImage", "currentImage");
+          return workspace.get("currentImage").getRGB(10, 10);
+        };
+        results.add(executor.submit(task));
+      }
+      for (int job = 0; job < 16; job++) {
+        int value = 0x40 + job;
+        assertEquals(value << 16 | value << 8 | value, (int) results.get(job).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}